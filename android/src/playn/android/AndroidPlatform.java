@@ -64,7 +64,8 @@ public class AndroidPlatform extends Platform {
 
   @Override public Type type() { return Type.ANDROID; }
   @Override public double time() { return System.currentTimeMillis(); }
-  @Override public int tick() { return (int)((System.nanoTime() - start) / 1000000L); }
+  @Override public int tick() { return (int)(tickNanos() / 1000000L); }
+  @Override public long tickNanos() { return System.nanoTime() - start; }
 
   @Override public void openURL(String url) {
     Intent browserIntent = new Intent(Intent.ACTION_VIEW, Uri.parse(url));
@@ -0,0 +1,100 @@
+/**
+ * Copyright 2010-2015 The PlayN Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package playn.bench;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+
+import pythagoras.f.AffineTransform;
+
+import playn.core.QuadBatch;
+import playn.core.Texture;
+import playn.core.TriangleBatch;
+import playn.core.UniformQuadBatch;
+
+/**
+ * Measures the CPU cost of adding geometry to the GL batches (packing it into their vertex or
+ * uniform arrays), using a {@link NoopGL20} so that flushes cost nothing but the buffer copies.
+ * Each invocation adds {@code QUADS} quads (or the equivalent triangles) with varying transforms,
+ * switching textures every {@code QUADS_PER_TEX} quads.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BatchBenchmark {
+
+  static final int QUADS = 1000, QUADS_PER_TEX = 100, WIDTH = 1024, HEIGHT = 768;
+
+  @State(Scope.Thread) public static class Geometry {
+    public final NoopGL20 gl = new NoopGL20();
+    public final Texture[] texs = new Texture[QUADS/QUADS_PER_TEX];
+    public final AffineTransform[] xfs = new AffineTransform[QUADS];
+
+    // a 2x2 grid of quads, as triangles
+    public final float[] xys = { 0, 0, 8, 0, 16, 0, 0, 8, 8, 8, 16, 8, 0, 16, 8, 16, 16, 16 };
+    public final int[] indices = { 0, 1, 3, 1, 4, 3, 1, 2, 4, 2, 5, 4,
+                                   3, 4, 6, 4, 7, 6, 4, 5, 7, 5, 8, 7 };
+
+    @Setup public void setup () {
+      Random rando = new Random(42);
+      for (int ii = 0; ii < texs.length; ii++) texs[ii] = VertexQuadBatch.createTexture(64, 64);
+      for (int ii = 0; ii < xfs.length; ii++) {
+        xfs[ii] = new AffineTransform(1, 1, rando.nextFloat()*6.28f,
+                                      rando.nextFloat()*WIDTH, rando.nextFloat()*HEIGHT);
+      }
+    }
+  }
+
+  @State(Scope.Thread) public static class Quads {
+    /** Which batch implementation to use. */
+    @Param({"triangle", "uniform"}) public String batch;
+    public QuadBatch quads;
+
+    @Setup public void setup (Geometry geom) {
+      quads = "uniform".equals(batch) ? new UniformQuadBatch(geom.gl) : new TriangleBatch(geom.gl);
+    }
+  }
+
+  @State(Scope.Thread) public static class Tris {
+    public TriangleBatch tris;
+
+    @Setup public void setup (Geometry geom) {
+      tris = new TriangleBatch(geom.gl);
+    }
+  }
+
+  @Benchmark public void addQuad (Geometry geom, Quads state) {
+    QuadBatch quads = state.quads;
+    quads.begin(WIDTH, HEIGHT, false);
+    for (int ii = 0; ii < QUADS; ii++) {
+      quads.addQuad(geom.texs[ii/QUADS_PER_TEX], 0xFFFFFFFF, geom.xfs[ii], 0, 0, 16, 16);
+    }
+    quads.end();
+  }
+
+  @Benchmark public void addTris (Geometry geom, Tris state) {
+    TriangleBatch tris = state.tris;
+    tris.begin(WIDTH, HEIGHT, false);
+    // each call adds four quads' worth of triangles
+    for (int ii = 0; ii < QUADS; ii += 4) {
+      tris.addTris(geom.texs[ii/QUADS_PER_TEX], 0xFFFFFFFF, geom.xfs[ii], geom.xys, 0,
+                   geom.xys.length, 64, 64, geom.indices, 0, geom.indices.length, 0);
+    }
+    tris.end();
+  }
+}
@@ -0,0 +1,60 @@
+/**
+ * Copyright 2010-2015 The PlayN Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package playn.bench;
+
+import pythagoras.f.IDimension;
+
+import playn.core.*;
+
+/**
+ * Creates {@link Surface}s which render into a {@link VertexQuadBatch}, without a GL context.
+ */
+public class BenchSurface {
+
+  /** Creates a surface which renders into {@code batch} with a {@code width x height} target. */
+  public static Surface create (QuadBatch batch, final int width, final int height) {
+    Graphics gfx = new Graphics(null, null, Scale.ONE) {
+      @Override public IDimension screenSize () { return null; }
+      @Override public Canvas createCanvas (Scale scale, int pixelWidth, int pixelHeight) {
+        throw new UnsupportedOperationException();
+      }
+      @Override public Path createPath () { throw new UnsupportedOperationException(); }
+      @Override public Gradient createGradient (Gradient.Config config) {
+        throw new UnsupportedOperationException();
+      }
+      @Override public TextLayout layoutText (String text, TextFormat format) {
+        throw new UnsupportedOperationException();
+      }
+      @Override public TextLayout[] layoutText (String text, TextFormat format, TextWrap wrap) {
+        throw new UnsupportedOperationException();
+      }
+      // the surface wants a solid color texture, which would normally be drawn via a canvas and
+      // uploaded to GL
+      @Override protected Texture createColorTex () {
+        return VertexQuadBatch.createTexture(1, 1);
+      }
+    };
+    RenderTarget target = new RenderTarget(gfx) {
+      public int id () { return 0; }
+      public int width () { return width; }
+      public int height () { return height; }
+      public float xscale () { return 1; }
+      public float yscale () { return 1; }
+      public boolean flip () { return false; }
+      @Override public void bind () {} // noop!
+      @Override public void close () {} // noop!
+    };
+    return new Surface(gfx, target, batch);
+  }
+}
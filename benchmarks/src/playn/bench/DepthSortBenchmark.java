@@ -0,0 +1,74 @@
+/**
+ * Copyright 2010-2015 The PlayN Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package playn.bench;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+
+import playn.scene.GroupLayer;
+import playn.scene.ImageLayer;
+import playn.scene.Layer;
+
+/**
+ * Measures one frame of painter's ordering: every child moves a little in y, then the children
+ * are re-sorted by y, either by calling {@link Layer#setDepth} on each child or by a single call to
+ * {@link GroupLayer#setDepths}.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DepthSortBenchmark {
+
+  @Param({"5000"}) public int children;
+
+  private final Random rando = new Random(42);
+  private GroupLayer group;
+  private float[] depths;
+
+  @Setup public void setup () {
+    group = new GroupLayer();
+    for (int ii = 0; ii < children; ii++) {
+      group.addAt(new ImageLayer().setSize(16, 16), rando.nextFloat()*1024, rando.nextFloat()*768);
+    }
+    depths = new float[children];
+  }
+
+  @Benchmark public GroupLayer setDepthPerChild () {
+    move();
+    // note: reordering changes child indices, so we snapshot the children first
+    Layer[] kids = new Layer[children];
+    for (int ii = 0; ii < children; ii++) kids[ii] = group.childAt(ii);
+    for (Layer kid : kids) kid.setDepth(kid.ty());
+    return group;
+  }
+
+  @Benchmark public GroupLayer setDepths () {
+    move();
+    for (int ii = 0; ii < children; ii++) depths[ii] = group.childAt(ii).ty();
+    group.setDepths(depths);
+    return group;
+  }
+
+  private void move () {
+    for (int ii = 0; ii < children; ii++) {
+      Layer child = group.childAt(ii);
+      child.setTy(child.ty() + rando.nextFloat()*8-4);
+    }
+  }
+}
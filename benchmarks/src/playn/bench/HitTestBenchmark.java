@@ -0,0 +1,69 @@
+/**
+ * Copyright 2010-2015 The PlayN Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package playn.bench;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+
+import pythagoras.f.Point;
+
+import playn.scene.GroupLayer;
+import playn.scene.ImageLayer;
+import playn.scene.Layer;
+import playn.scene.LayerUtil;
+
+/**
+ * Measures hit testing a group of interactive children scattered over a 1024x1024 area, with and
+ * without a hit grid (see {@link GroupLayer#setHitGrid}).
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class HitTestBenchmark {
+
+  static final float SIZE = 1024, CHILD_SIZE = 32;
+  static final int POINTS = 1024;
+
+  @Param({"100", "1000", "10000"}) public int children;
+  @Param({"false", "true"}) public boolean grid;
+
+  private GroupLayer group;
+  private final float[] xs = new float[POINTS], ys = new float[POINTS];
+  private final Point point = new Point();
+  private int next;
+
+  @Setup public void setup () {
+    Random rando = new Random(42);
+    group = new GroupLayer();
+    if (grid) group.setHitGrid(CHILD_SIZE*2);
+    for (int ii = 0; ii < children; ii++) {
+      Layer layer = new ImageLayer().setSize(CHILD_SIZE, CHILD_SIZE).setInteractive(true);
+      group.addAt(layer, rando.nextFloat()*(SIZE-CHILD_SIZE), rando.nextFloat()*(SIZE-CHILD_SIZE));
+    }
+    for (int ii = 0; ii < POINTS; ii++) {
+      xs[ii] = rando.nextFloat()*SIZE;
+      ys[ii] = rando.nextFloat()*SIZE;
+    }
+  }
+
+  @Benchmark public Layer hitTest () {
+    int idx = next++ & (POINTS-1);
+    return LayerUtil.getHitLayer(group, point.set(xs[idx], ys[idx]));
+  }
+}
@@ -0,0 +1,110 @@
+/**
+ * Copyright 2010-2015 The PlayN Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package playn.bench;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.infra.Control;
+
+import playn.core.Exec;
+import playn.core.StubPlatform;
+
+/**
+ * Measures {@link Exec#invokeLater} under contention: eight producer threads queue actions while
+ * the game thread dispatches them every "frame". Compares {@link Exec.Default} with the
+ * lock-based implementation that it replaced.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class InvokeLaterBenchmark {
+
+  /** The original implementation of {@link Exec.Default}, which locks to queue and dispatch. */
+  static class LockedExec {
+    private final List<Runnable> pending = new ArrayList<>();
+    private final List<Runnable> running = new ArrayList<>();
+
+    public synchronized void invokeLater (Runnable action) {
+      pending.add(action);
+    }
+
+    public void dispatch () {
+      synchronized (this) {
+        running.addAll(pending);
+        pending.clear();
+      }
+      for (int ii = 0, ll = running.size(); ii < ll; ii++) running.get(ii).run();
+      running.clear();
+    }
+  }
+
+  static class BenchPlatform extends StubPlatform {
+    public final Exec.Default exec = new Exec.Default(this) {
+      @Override public boolean isMainThread () { return true; }
+    };
+    public void dispatch () { emitFrame(); }
+  }
+
+  /** The action queued by each producer. Each producer stalls if the game thread falls too far
+    * behind, so that the queue doesn't grow without bound when the consumer is descheduled. */
+  @State(Scope.Thread) public static class Producer implements Runnable {
+    private static final int MAX_BACKLOG = 10000;
+    private volatile long consumed; // written only by the dispatching thread
+    private long produced;
+
+    public void run () { consumed++; }
+
+    public Producer next (Control control) {
+      while (produced - consumed > MAX_BACKLOG && !control.stopMeasurement) Thread.yield();
+      produced++;
+      return this;
+    }
+  }
+
+  @State(Scope.Group) public static class Locked {
+    public final LockedExec exec = new LockedExec();
+  }
+
+  @State(Scope.Group) public static class LockFree {
+    public final BenchPlatform plat = new BenchPlatform();
+  }
+
+  @Benchmark @Group("locked") @GroupThreads(8)
+  public void lockedProduce (Locked state, Producer producer, Control control) {
+    state.exec.invokeLater(producer.next(control));
+  }
+
+  @Benchmark @Group("locked") @GroupThreads(1)
+  public void lockedDispatch (Locked state) {
+    state.exec.dispatch();
+    Blackhole.consumeCPU(100); // the rest of the frame
+  }
+
+  @Benchmark @Group("lockFree") @GroupThreads(8)
+  public void lockFreeProduce (LockFree state, Producer producer, Control control) {
+    state.plat.exec.invokeLater(producer.next(control));
+  }
+
+  @Benchmark @Group("lockFree") @GroupThreads(1)
+  public void lockFreeDispatch (LockFree state) {
+    state.plat.dispatch();
+    Blackhole.consumeCPU(100); // the rest of the frame
+  }
+}
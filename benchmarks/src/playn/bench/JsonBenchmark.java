@@ -0,0 +1,181 @@
+/**
+ * Copyright 2010-2015 The PlayN Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package playn.bench;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPInputStream;
+
+import org.openjdk.jmh.annotations.*;
+
+import playn.core.Json;
+import playn.core.json.JsonImpl;
+
+/**
+ * Measures parsing and writing JSON via {@link JsonImpl} (which uses {@code JsonParser} and
+ * {@code JsonStringWriter}). The {@code doc} parameter selects the document: {@code torture} is
+ * the parser torture test from the core tests (deeply nested objects with unusual keys and
+ * strings), {@code numbers} is a generated level file which consists mostly of arrays of
+ * coordinates, and {@code records} is an array of 5000 item records of a dozen fields each.
+ *
+ * <p>{@code parseBytes} parses the UTF-8 encoding of the document, for comparison with {@code
+ * parseDecoded}, which decodes it to a string and parses that. {@code lookup} looks up every key
+ * of every object in the parsed document. {@code parseLazy} parses the document lazily and
+ * accesses its first value, for comparison with the time to a first access after {@code parse}.
+ * {@code writeBytes} writes the document as UTF-8 to a stream, for comparison with {@code
+ * writeEncoded}, which writes it to a string and encodes that. {@code parseBinary} and {@code
+ * writeBinary} read and write the document as CBOR.</p>
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class JsonBenchmark {
+
+  @Param({"torture", "numbers", "records"}) public String doc;
+
+  private final Json json = new JsonImpl();
+  private String text;
+  private byte[] bytes;
+  private Json.Object parsed;
+  private ByteBuffer binary;
+  private final ByteArrayOutputStream out = new ByteArrayOutputStream();
+  private final List<Json.Object> lookupObjs = new ArrayList<Json.Object>();
+  private final List<String> lookupKeys = new ArrayList<String>();
+
+  @Setup public void setup () throws IOException {
+    text = "torture".equals(doc) ? readTortureTest() :
+      "numbers".equals(doc) ? createNumbers() : createRecords();
+    bytes = text.getBytes("UTF-8");
+    parsed = json.parse(text);
+    binary = json.newBinaryWriter().object(parsed).write();
+    collectLookups(parsed);
+  }
+
+  @Benchmark public Json.Object parse () {
+    return json.parse(text);
+  }
+
+  @Benchmark public Json.Object parseBytes () {
+    return json.parse(bytes, 0, bytes.length);
+  }
+
+  @Benchmark public Json.Object parseDecoded () throws IOException {
+    return json.parse(new String(bytes, "UTF-8"));
+  }
+
+  @Benchmark public Object parseLazy () {
+    Json.Object obj = json.parseLazy(text);
+    String key = obj.keys().get(0);
+    return obj.isArray(key) ? obj.getArray(key) : obj.getObject(key);
+  }
+
+  @Benchmark public Json.Object parseBinary () {
+    binary.rewind();
+    return json.parseBinary(binary);
+  }
+
+  @Benchmark public ByteBuffer writeBinary () {
+    return json.newBinaryWriter().object(parsed).write();
+  }
+
+  @Benchmark public double lookup () {
+    // looks up every key of every object in the document
+    double sum = 0;
+    for (int ii = 0, ll = lookupKeys.size(); ii < ll; ii++) {
+      sum += lookupObjs.get(ii).getDouble(lookupKeys.get(ii));
+    }
+    return sum;
+  }
+
+  @Benchmark public String write () {
+    return json.newWriter().object(parsed).write();
+  }
+
+  @Benchmark public int writeBytes () {
+    out.reset();
+    json.newWriter(out).object(parsed).done();
+    return out.size();
+  }
+
+  @Benchmark public int writeEncoded () throws IOException {
+    out.reset();
+    out.write(json.newWriter().object(parsed).write().getBytes("UTF-8"));
+    return out.size();
+  }
+
+  private void collectLookups (Json.Object obj) {
+    for (String key : obj.keys()) {
+      // use a copy of the key, as a game would look up with its own constants
+      lookupObjs.add(obj);
+      lookupKeys.add(new String(key));
+      if (obj.isObject(key)) collectLookups(obj.getObject(key));
+      else if (obj.isArray(key)) collectLookups(obj.getArray(key));
+    }
+  }
+
+  private void collectLookups (Json.Array arr) {
+    for (int ii = 0, ll = arr.length(); ii < ll; ii++) {
+      if (arr.isObject(ii)) collectLookups(arr.getObject(ii));
+      else if (arr.isArray(ii)) collectLookups(arr.getArray(ii));
+    }
+  }
+
+  static String readTortureTest () throws IOException {
+    InputStream in = new GZIPInputStream(
+      JsonBenchmark.class.getResourceAsStream("/playn/core/json/torturetest.json.gz"));
+    try {
+      ByteArrayOutputStream out = new ByteArrayOutputStream();
+      byte[] buf = new byte[65536];
+      for (int read; (read = in.read(buf)) > 0; ) out.write(buf, 0, read);
+      return new String(out.toByteArray(), "UTF-8");
+    } finally {
+      in.close();
+    }
+  }
+
+  static String createNumbers () {
+    Random rando = new Random(42);
+    Json.Writer out = new JsonImpl().newWriter().object().array("entities");
+    for (int ee = 0; ee < 1000; ee++) {
+      out.object().value("id", ee).value("name", "entity" + ee).
+        value("x", rando.nextFloat()*1024).value("y", rando.nextFloat()*768).array("path");
+      for (int pp = 0; pp < 32; pp++) out.value(rando.nextFloat()*1024);
+      out.end().end();
+    }
+    return out.end().end().write();
+  }
+
+  static String createRecords () {
+    Random rando = new Random(42);
+    Json.Writer out = new JsonImpl().newWriter().object().array("items");
+    for (int ii = 0; ii < 5000; ii++) {
+      out.object().value("id", ii).value("name", "item" + ii).value("type", "weapon").
+        value("level", rando.nextInt(100)).value("weight", rando.nextFloat()*10).
+        value("value", rando.nextInt(10000)).value("stackable", rando.nextBoolean()).
+        value("damage", rando.nextFloat()*50).value("speed", rando.nextFloat()).
+        value("icon", "icons/item" + (ii % 64) + ".png").value("rarity", rando.nextInt(5)).
+        value("durability", rando.nextInt(1000)).end();
+    }
+    return out.end().end().write();
+  }
+}
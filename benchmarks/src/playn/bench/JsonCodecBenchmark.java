@@ -0,0 +1,148 @@
+/**
+ * Copyright 2010-2015 The PlayN Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package playn.bench;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+
+import playn.core.Json;
+import playn.core.json.JsonCodec;
+import playn.core.json.JsonImpl;
+
+/**
+ * Measures reading and writing the {@code records} document of {@link JsonBenchmark} as a list of
+ * {@link Item}s. {@code readCodec} and {@code writeCodec} use the generated {@code JsonCodec},
+ * {@code readTree} parses a {@link Json.Object} and copies its values out via getters, and {@code
+ * readByHand} and {@code writeByHand} use hand-written code against the streaming reader and
+ * writer, which is what the generated codec should match.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class JsonCodecBenchmark {
+
+  @JsonCodec.Mapped public static class Item {
+    public int id;
+    public String name, type;
+    public int level;
+    public float weight;
+    public int value;
+    public boolean stackable;
+    public float damage, speed;
+    public String icon;
+    public int rarity, durability;
+  }
+
+  @JsonCodec.Mapped public static class Items {
+    public List<Item> items;
+  }
+
+  private final Json json = new JsonImpl();
+  private String text;
+  private Items items;
+
+  @Setup public void setup () {
+    text = JsonBenchmark.createRecords();
+    items = JsonCodecBenchmark_ItemsJsonCodec.INSTANCE.parse(json.newReader(text));
+  }
+
+  @Benchmark public Items readCodec () {
+    return JsonCodecBenchmark_ItemsJsonCodec.INSTANCE.parse(json.newReader(text));
+  }
+
+  @Benchmark public Items readTree () {
+    Json.Array array = json.parse(text).getArray("items");
+    Items items = new Items();
+    items.items = new ArrayList<Item>(array.length());
+    for (int ii = 0, ll = array.length(); ii < ll; ii++) {
+      Json.Object obj = array.getObject(ii);
+      Item item = new Item();
+      item.id = obj.getInt("id");
+      item.name = obj.getString("name");
+      item.type = obj.getString("type");
+      item.level = obj.getInt("level");
+      item.weight = obj.getNumber("weight");
+      item.value = obj.getInt("value");
+      item.stackable = obj.getBoolean("stackable");
+      item.damage = obj.getNumber("damage");
+      item.speed = obj.getNumber("speed");
+      item.icon = obj.getString("icon");
+      item.rarity = obj.getInt("rarity");
+      item.durability = obj.getInt("durability");
+      items.items.add(item);
+    }
+    return items;
+  }
+
+  @Benchmark public Items readByHand () {
+    Json.Reader in = json.newReader(text);
+    Items items = new Items();
+    items.items = new ArrayList<Item>();
+    in.next(); // START_OBJECT
+    while (in.next() == Json.Reader.Event.KEY) {
+      if (!in.getString().equals("items")) {
+        in.next();
+        in.skipValue();
+        continue;
+      }
+      in.next(); // START_ARRAY
+      while (in.next() == Json.Reader.Event.START_OBJECT) {
+        Item item = new Item();
+        while (in.next() == Json.Reader.Event.KEY) {
+          String key = in.getString();
+          in.next();
+          switch (key) {
+          case "id": item.id = in.getInt(); break;
+          case "name": item.name = in.getString(); break;
+          case "type": item.type = in.getString(); break;
+          case "level": item.level = in.getInt(); break;
+          case "weight": item.weight = in.getFloat(); break;
+          case "value": item.value = in.getInt(); break;
+          case "stackable": item.stackable = in.getBoolean(); break;
+          case "damage": item.damage = in.getFloat(); break;
+          case "speed": item.speed = in.getFloat(); break;
+          case "icon": item.icon = in.getString(); break;
+          case "rarity": item.rarity = in.getInt(); break;
+          case "durability": item.durability = in.getInt(); break;
+          default: in.skipValue(); break;
+          }
+        }
+        items.items.add(item);
+      }
+    }
+    return items;
+  }
+
+  @Benchmark public String writeCodec () {
+    return JsonCodecBenchmark_ItemsJsonCodec.INSTANCE.write(json.newWriter(), items).write();
+  }
+
+  @Benchmark public String writeByHand () {
+    Json.Writer out = json.newWriter().object().array("items");
+    for (Item item : items.items) {
+      out.object().value("id", item.id).value("name", item.name).value("type", item.type).
+        value("level", item.level).value("weight", item.weight).value("value", item.value).
+        value("stackable", item.stackable).value("damage", item.damage).
+        value("speed", item.speed).value("icon", item.icon).value("rarity", item.rarity).
+        value("durability", item.durability).end();
+    }
+    return out.end().end().write();
+  }
+}
@@ -0,0 +1,99 @@
+/**
+ * Copyright 2010-2015 The PlayN Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package playn.bench;
+
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+
+import react.RFuture;
+
+import playn.core.Exec;
+import playn.core.Json;
+import playn.core.json.JsonImpl;
+
+/**
+ * Measures {@link Json#parseArrayAsync} on a level file which is a top-level array of 20000
+ * entity records (about 3MB), with an async pool of {@code threads} threads. {@code parseArray}
+ * parses the same document on one thread, for comparison.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class JsonParallelBenchmark {
+
+  @Param({"1", "2", "4", "8"}) public int threads;
+
+  /** Runs async actions on a pool, and deferred actions when the benchmark waits for them. */
+  static class PoolExec extends Exec {
+    final ExecutorService pool;
+    final LinkedBlockingQueue<Runnable> pending = new LinkedBlockingQueue<Runnable>();
+
+    PoolExec (int threads) {
+      pool = Executors.newFixedThreadPool(threads);
+    }
+
+    @Override public boolean isMainThread () { return true; }
+    @Override public void invokeNextFrame (Runnable action) { pending.add(action); }
+    @Override public void invokeLater (Runnable action) { pending.add(action); }
+    @Override public boolean isAsyncSupported () { return true; }
+    @Override public void invokeAsync (Runnable action) { pool.execute(action); }
+
+    <T> T await (RFuture<T> future) throws InterruptedException {
+      while (!future.isCompleteNow()) pending.take().run();
+      return future.result().get();
+    }
+  }
+
+  private final Json json = new JsonImpl();
+  private String text;
+  private PoolExec exec;
+
+  @Setup public void setup () {
+    text = createEntities();
+    exec = new PoolExec(threads);
+  }
+
+  @TearDown public void tearDown () {
+    exec.pool.shutdown();
+  }
+
+  @Benchmark public Json.Array parseArray () {
+    return json.parseArray(text);
+  }
+
+  @Benchmark public Json.Array parseArrayAsync () throws InterruptedException {
+    return exec.await(json.parseArrayAsync(text, exec));
+  }
+
+  static String createEntities () {
+    Random rando = new Random(42);
+    Json.Writer out = new JsonImpl().newWriter().array();
+    for (int ee = 0; ee < 20000; ee++) {
+      out.object().value("id", ee).value("type", "monster").value("name", "entity \"" + ee + "\"").
+        value("x", rando.nextFloat()*1024).value("y", rando.nextFloat()*768).
+        value("hp", rando.nextInt(100)).value("hostile", rando.nextBoolean()).
+        array("loot").value(rando.nextInt(500)).value(rando.nextInt(500)).end().
+        object("ai").value("state", "idle").value("range", rando.nextFloat()*10).end().end();
+    }
+    return out.end().write();
+  }
+}
@@ -0,0 +1,73 @@
+/**
+ * Copyright 2010-2015 The PlayN Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package playn.bench;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+
+import playn.core.Surface;
+import playn.core.Texture;
+import playn.scene.GroupLayer;
+import playn.scene.ImageLayer;
+
+/**
+ * Measures the CPU cost of painting a scene graph of 100 groups of 100 image layers each (10k
+ * leaves) into a {@link VertexQuadBatch}. The {@code leaves} parameter configures the leaves:
+ * {@code plain} leaves have no tint and no custom batch, {@code tinted} leaves have an alpha, and
+ * {@code batched} leaves have a custom batch (the same one the surface uses).
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PaintBenchmark {
+
+  static final int GROUPS = 100, LEAVES = 100, WIDTH = 1024, HEIGHT = 768;
+
+  @Param({"plain", "tinted", "batched"}) public String leaves;
+
+  private final VertexQuadBatch batch = new VertexQuadBatch();
+  private Surface surf;
+  private GroupLayer root;
+
+  @Setup public void setup () {
+    Random rando = new Random(42);
+    Texture tex = VertexQuadBatch.createTexture(256, 256);
+    surf = BenchSurface.create(batch, WIDTH, HEIGHT);
+    root = new GroupLayer();
+    for (int gg = 0; gg < GROUPS; gg++) {
+      GroupLayer group = new GroupLayer();
+      root.addAt(group, rando.nextFloat()*WIDTH, rando.nextFloat()*HEIGHT);
+      for (int ll = 0; ll < LEAVES; ll++) {
+        ImageLayer leaf = new ImageLayer(tex.tile(0, 0, 16, 16));
+        if ("tinted".equals(leaves)) leaf.setAlpha(0.5f);
+        else if ("batched".equals(leaves)) leaf.setBatch(batch);
+        group.addAt(leaf, rando.nextFloat()*100, rando.nextFloat()*100);
+      }
+    }
+  }
+
+  @Benchmark public int paint () {
+    batch.reset();
+    surf.tx().setTransform(1, 0, 0, 1, 0, 0);
+    batch.begin(WIDTH, HEIGHT, false);
+    root.paint(surf);
+    surf.end();
+    return batch.quads();
+  }
+}
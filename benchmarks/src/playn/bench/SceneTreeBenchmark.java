@@ -0,0 +1,100 @@
+/**
+ * Copyright 2010-2015 The PlayN Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package playn.bench;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+
+import pythagoras.f.Point;
+
+import playn.core.Surface;
+import playn.core.Texture;
+import playn.scene.GroupLayer;
+import playn.scene.ImageLayer;
+import playn.scene.Layer;
+
+/**
+ * Measures {@link GroupLayer#paint} and {@link GroupLayer#hitTestDefault} over synthetic trees
+ * of about 4k leaves with differing shapes: {@code flat} is a single group, {@code wide} is two
+ * levels of 64 children each, and {@code deep} is a binary tree twelve levels deep. Every layer
+ * is rotated slightly so that the full transform path is exercised, and every leaf is
+ * interactive.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SceneTreeBenchmark {
+
+  static final int WIDTH = 1024, HEIGHT = 768, POINTS = 1024;
+
+  @Param({"flat", "wide", "deep"}) public String shape;
+
+  private final VertexQuadBatch batch = new VertexQuadBatch();
+  private final float[] xs = new float[POINTS], ys = new float[POINTS];
+  private final Point point = new Point();
+  private Random rando;
+  private Texture tex;
+  private Surface surf;
+  private GroupLayer root;
+  private int next;
+
+  @Setup public void setup () {
+    rando = new Random(42);
+    tex = VertexQuadBatch.createTexture(256, 256);
+    surf = BenchSurface.create(batch, WIDTH, HEIGHT);
+    root = new GroupLayer();
+    if ("flat".equals(shape)) populate(root, 1, 4096);
+    else if ("wide".equals(shape)) populate(root, 2, 64);
+    else populate(root, 12, 2);
+    for (int ii = 0; ii < POINTS; ii++) {
+      xs[ii] = rando.nextFloat()*WIDTH;
+      ys[ii] = rando.nextFloat()*HEIGHT;
+    }
+  }
+
+  @Benchmark @OutputTimeUnit(TimeUnit.MICROSECONDS) public int paint () {
+    batch.reset();
+    surf.tx().setTransform(1, 0, 0, 1, 0, 0);
+    batch.begin(WIDTH, HEIGHT, false);
+    root.paint(surf);
+    surf.end();
+    return batch.quads();
+  }
+
+  @Benchmark @OutputTimeUnit(TimeUnit.NANOSECONDS) public Layer hitTest () {
+    int idx = next++ & (POINTS-1);
+    return root.hitTestDefault(point.set(xs[idx], ys[idx]));
+  }
+
+  private void populate (GroupLayer group, int depth, int fanout) {
+    // spread the children of the top level groups over the screen, and cluster deeper children
+    float spread = (group == root) ? WIDTH : 64;
+    for (int ii = 0; ii < fanout; ii++) {
+      Layer child;
+      if (depth > 1) {
+        GroupLayer cgroup = new GroupLayer();
+        populate(cgroup, depth-1, fanout);
+        child = cgroup;
+      } else {
+        child = new ImageLayer(tex.tile(0, 0, 16, 16)).setInteractive(true);
+      }
+      child.setRotation(rando.nextFloat()*0.1f);
+      group.addAt(child, rando.nextFloat()*spread, rando.nextFloat()*spread*HEIGHT/WIDTH);
+    }
+  }
+}
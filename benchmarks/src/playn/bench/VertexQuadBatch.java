@@ -0,0 +1,75 @@
+/**
+ * Copyright 2010-2015 The PlayN Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package playn.bench;
+
+import playn.core.QuadBatch;
+import playn.core.Scale;
+import playn.core.Texture;
+
+/**
+ * A quad batch which writes vertex data into an array, like {@code TriangleBatch}, but never talks
+ * to GL. This allows the CPU side of rendering to be benchmarked without a GL context.
+ */
+public class VertexQuadBatch extends QuadBatch {
+
+  // six "stable" attributes (the transform), tint, then position and texture coords
+  static final int VERTEX_SIZE = 6 + 1 + 4;
+
+  private float[] verts = new float[4 * VERTEX_SIZE * 1024];
+  private int pos;
+
+  /** Returns a texture which can be used with this batch. */
+  public static Texture createTexture (int width, int height) {
+    return new Texture(null, 1, Texture.Config.UNMANAGED, width, height, Scale.ONE, width, height);
+  }
+
+  public VertexQuadBatch () {
+    super(null);
+  }
+
+  /** Returns the number of quads added since the last {@link #reset}. */
+  public int quads () {
+    return pos / (4 * VERTEX_SIZE);
+  }
+
+  /** Discards any accumulated vertex data. */
+  public void reset () {
+    pos = 0;
+  }
+
+  @Override public void addQuad (int tint,
+                                 float m00, float m01, float m10, float m11, float tx, float ty,
+                                 float x1, float y1, float sx1, float sy1,
+                                 float x2, float y2, float sx2, float sy2,
+                                 float x3, float y3, float sx3, float sy3,
+                                 float x4, float y4, float sx4, float sy4) {
+    if (pos + 4 * VERTEX_SIZE > verts.length) {
+      verts = java.util.Arrays.copyOf(verts, verts.length*2);
+    }
+    float ftint = Float.intBitsToFloat(tint);
+    pos = add(pos, m00, m01, m10, m11, tx, ty, ftint, x1, y1, sx1, sy1);
+    pos = add(pos, m00, m01, m10, m11, tx, ty, ftint, x2, y2, sx2, sy2);
+    pos = add(pos, m00, m01, m10, m11, tx, ty, ftint, x3, y3, sx3, sy3);
+    pos = add(pos, m00, m01, m10, m11, tx, ty, ftint, x4, y4, sx4, sy4);
+  }
+
+  private int add (int pos, float m00, float m01, float m10, float m11, float tx, float ty,
+                   float tint, float x, float y, float sx, float sy) {
+    float[] verts = this.verts;
+    verts[pos++] = m00; verts[pos++] = m01; verts[pos++] = m10; verts[pos++] = m11;
+    verts[pos++] = tx; verts[pos++] = ty; verts[pos++] = tint;
+    verts[pos++] = x; verts[pos++] = y; verts[pos++] = sx; verts[pos++] = sy;
+    return pos;
+  }
+}
@@ -0,0 +1,127 @@
+/**
+ * Copyright 2010-2015 The PlayN Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package playn.core;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * A lock-free queue of actions, to which any number of threads may add, and from which a single
+ * thread (the game thread) drains. Actions are stored in a preallocated block of slots: adding an
+ * action claims the next slot with a single atomic increment and fills it. Draining swaps in a
+ * second, empty block and copies the actions out of the first, in the order in which their slots
+ * were claimed, into a reusable buffer; the first block is then reused for the next drain.
+ *
+ * <p>Adding does not allocate unless a block fills up, in which case further actions overflow into
+ * a chained block of twice the size, and the next drain replaces the block with one large enough
+ * for the whole frame's actions, so that later frames do not overflow.</p>
+ *
+ * <p>The HTML backend, which has only one thread, substitutes a simpler implementation.</p>
+ */
+class ActionQueue {
+
+  private static final int INITIAL_CAPACITY = 64;
+  // the claim count of a block which is not accepting actions; adds which see a negative claim
+  // count retry with the current block
+  private static final int CLOSED = Integer.MIN_VALUE;
+
+  static final class Block {
+    public final AtomicReferenceArray<Runnable> slots;
+    public final AtomicInteger claimed = new AtomicInteger(CLOSED);
+    // the block into which adds overflow when this one is full
+    public final AtomicReference<Block> next = new AtomicReference<>();
+    public Block (int capacity) { slots = new AtomicReferenceArray<>(capacity); }
+  }
+
+  volatile Block current = open(new Block(INITIAL_CAPACITY));
+  private Block spare = new Block(INITIAL_CAPACITY);
+  private Runnable[] buffer = new Runnable[16];
+
+  /** Adds {@code action} to the queue. May be called from any thread. */
+  public void add (Runnable action) {
+    Block block = current;
+    while (true) {
+      int index = block.claimed.getAndIncrement();
+      // the block was drained before we could claim a slot, so use the block that replaced it
+      if (index < 0) block = current;
+      else if (index < block.slots.length()) {
+        block.slots.lazySet(index, action);
+        return;
+      }
+      else {
+        Block next = block.next.get();
+        if (next == null) {
+          Block nblock = open(new Block(block.slots.length()*2));
+          next = block.next.compareAndSet(null, nblock) ? nblock : block.next.get();
+        }
+        block = next;
+      }
+    }
+  }
+
+  /** Removes all queued actions and places them, in the order they were added, at the start of
+    * {@link #buffer}. Must only be called by the consuming thread.
+    * @return the number of actions drained into the buffer. */
+  public int drain () {
+    Block first = current;
+    // adds which start from here on go into the spare block; those which already claimed a slot
+    // in the current block (or one of its overflow blocks) will fill it shortly; we open the spare
+    // only once it is current, so that an add which held onto it since it was last drained can't
+    // claim a slot in it while later adds from the same thread still go into the current block
+    current = spare;
+    open(spare);
+    int count = 0;
+    boolean overflowed = false;
+    for (Block block = first; ; ) {
+      int claimed = block.claimed.getAndSet(CLOSED), capacity = block.slots.length();
+      overflowed |= (block == first && claimed > capacity);
+      int filled = Math.min(claimed, capacity);
+      if (count + filled > buffer.length) {
+        Runnable[] nbuffer = new Runnable[Integer.highestOneBit(count + filled) << 1];
+        System.arraycopy(buffer, 0, nbuffer, 0, count);
+        buffer = nbuffer;
+      }
+      for (int ii = 0; ii < filled; ii++) {
+        Runnable action;
+        while ((action = block.slots.get(ii)) == null) Thread.yield();
+        block.slots.lazySet(ii, null);
+        buffer[count++] = action;
+      }
+      if (claimed <= capacity) break;
+      // some add overflowed, so it is creating (or has created) the next block
+      Block next;
+      while ((next = block.next.get()) == null) Thread.yield();
+      block = next;
+    }
+    // if the first block overflowed, it links to a (now closed) next block, which an add would
+    // follow forever were the block reused, so we replace it with one big enough to hold
+    // everything drained this time; whether it overflowed is a matter of how many slots were
+    // claimed in it, not how many actions we drained, as the overflowing add may not yet have
+    // claimed a slot in the next block
+    spare = overflowed ? new Block(Integer.highestOneBit(count) << 1) : first;
+    return count;
+  }
+
+  /** Returns the buffer filled by {@link #drain}. The consumer should clear each slot once it has
+    * processed the action therein, so that the action can be garbage collected. */
+  public Runnable[] buffer () {
+    return buffer;
+  }
+
+  static Block open (Block block) {
+    block.claimed.set(0);
+    return block;
+  }
+}
@@ -54,7 +54,7 @@ public abstract class Assets {
    */
   public Image getImage (final String path) {
     final ImageImpl image = createImage(true, 0, 0, path);
-    exec.invokeAsync(new Runnable() {
+    exec.invokeAsync(Exec.Lane.CPU, new Runnable() {
       public void run () {
         try {
           image.succeed(load(path));
@@ -134,7 +134,7 @@ public abstract class Assets {
    */
   public RFuture<String> getText (final String path) {
     final RPromise<String> result = exec.deferredPromise();
-    exec.invokeAsync(new Runnable() {
+    exec.invokeAsync(Exec.Lane.IO, new Runnable() {
       public void run () {
         try {
           result.succeed(getTextSync(path));
@@ -164,7 +164,7 @@ public abstract class Assets {
    */
   public RFuture<ByteBuffer> getBytes (final String path) {
     final RPromise<ByteBuffer> result = exec.deferredPromise();
-    exec.invokeAsync(new Runnable() {
+    exec.invokeAsync(Exec.Lane.IO, new Runnable() {
       public void run () {
         try {
           result.succeed(getBytesSync(path));
@@ -26,6 +26,10 @@ public class Clock {
   /** The number of milliseconds that have elapsed since the last signal. */
   public int dt;
 
+  /** The number of nanoseconds that have elapsed since the last signal. This is more precise than
+    * {@link #dt}, which is truncated to whole milliseconds (at 120Hz, a frame lasts 8.33ms). */
+  public long dtNanos;
+
   /** If this clock is used by a game with separate simulation and paint schedules, this value
     * represents the fraction of time between the last simulation update and the next scheduled
     * update. This value is only provided for the paint clock.
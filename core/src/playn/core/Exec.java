@@ -13,9 +13,9 @@
  */
 package playn.core;
 
-import java.util.ArrayList;
-import java.util.List;
+import java.util.Arrays;
 
+import react.Closeable;
 import react.RPromise;
 import react.Signal;
 import react.Slot;
@@ -26,12 +26,30 @@ import react.Slot;
  */
 public abstract class Exec {
 
-  /** A default exec implementation which processes {@link #invokeLater} via the frame tick. */
+  /**
+   * Identifies the kind of work done by an action passed to {@link #invokeAsync(Lane,Runnable)}.
+   * Platforms may run each kind on its own threads, so that slow network requests do not hold up
+   * image decoding, and vice versa.
+   */
+  public static enum Lane {
+    /** Work that spends most of its time waiting on I/O, like network requests. */
+    IO,
+    /** Work that spends most of its time computing, like decoding images and sounds. */
+    CPU
+  }
+
+  /** A default exec implementation which processes {@link #invokeLater} via the frame tick.
+    * Actions may be queued from any thread without locking. */
   public static abstract class Default extends Exec {
-    private final List<Runnable> pending = new ArrayList<>();
-    private final List<Runnable> running = new ArrayList<>();
+    private final ActionQueue pending = new ActionQueue(), urgent = new ActionQueue();
     protected final Platform plat;
 
+    // actions deferred to a later frame by our budget, oldest at backlogStart
+    private Runnable[] backlog = new Runnable[16];
+    private int backlogStart, backlogEnd;
+    private int maxActions;
+    private long maxNanos;
+
     public Default (Platform plat) {
       this.plat = plat;
       plat.frame.connect(new Slot<Object>() {
@@ -39,29 +57,98 @@ public abstract class Exec {
       }).atPrio(Short.MAX_VALUE);
     }
 
-    @Override public synchronized void invokeNextFrame (Runnable action) {
+    /**
+     * Limits the work done on each frame to run {@link #invokeLater} and {@link #invokeNextFrame}
+     * actions. Once either limit is reached, the remaining actions are deferred to the next frame
+     * (where they run, in order, before any newly queued actions). At least one action is run on
+     * every frame. Actions queued via {@link #invokeUrgent} are not subject to the budget.
+     *
+     * @param maxActions the maximum number of actions to run on one frame, or zero for no limit.
+     * @param maxMillis the time after which no more actions will be started on a frame, measured
+     * by {@link Platform#tickNanos}, or zero for no limit.
+     */
+    public void setFrameBudget (int maxActions, float maxMillis) {
+      this.maxActions = Math.max(0, maxActions);
+      this.maxNanos = Math.max(0, (long)(maxMillis * 1000000));
+    }
+
+    /** Returns the number of actions that were deferred to the next frame by the {@link
+      * #setFrameBudget frame budget}. This should only be called from the game thread. */
+    public int backlog () {
+      return backlogEnd - backlogStart;
+    }
+
+    @Override public void invokeNextFrame (Runnable action) {
       pending.add(action);
     }
 
-    @Override public synchronized void invokeLater (Runnable action) {
+    @Override public void invokeLater (Runnable action) {
       pending.add(action);
     }
 
+    @Override public void invokeUrgent (Runnable action) {
+      urgent.add(action);
+    }
+
     private void dispatch () {
-      synchronized (this) {
-        running.addAll(pending);
-        pending.clear();
+      Profiler profiler = plat.profiler();
+      profiler.start(Profiler.EXEC);
+      try { dispatchActions(); }
+      finally { profiler.end(Profiler.EXEC); }
+    }
+
+    private void dispatchActions () {
+      // actions queued while we're running these will be run on the next frame; we must drain
+      // before fetching the buffer, as draining may replace it
+      int urgents = urgent.drain();
+      run(urgent.buffer(), 0, urgents);
+
+      int count = pending.drain();
+      Runnable[] queued = pending.buffer();
+      if (maxActions == 0 && maxNanos == 0 && backlog() == 0) {
+        run(queued, 0, count);
+        return;
+      }
+
+      // append the newly queued actions to our backlog, then run as much of it as we can afford
+      appendBacklog(queued, count);
+      int end = (maxActions == 0) ? backlogEnd : Math.min(backlogEnd, backlogStart + maxActions);
+      long deadline = plat.tickNanos() + maxNanos;
+      while (backlogStart < end) {
+        backlogStart = run(backlog, backlogStart, backlogStart+1);
+        if (maxNanos > 0 && plat.tickNanos() >= deadline) break;
       }
+      if (backlogStart == backlogEnd) backlogStart = backlogEnd = 0;
+    }
 
-      for (int ii = 0, ll = running.size(); ii < ll; ii++) {
-        Runnable action = running.get(ii);
+    private void appendBacklog (Runnable[] actions, int count) {
+      int size = backlog();
+      if (backlogEnd + count > backlog.length) {
+        // move the backlog to the start of the array, growing it if needed
+        Runnable[] nbacklog = (size + count > backlog.length) ?
+          new Runnable[Integer.highestOneBit(size + count) << 1] : backlog;
+        System.arraycopy(backlog, backlogStart, nbacklog, 0, size);
+        if (nbacklog == backlog) Arrays.fill(backlog, size, backlogEnd, null);
+        backlog = nbacklog;
+        backlogStart = 0;
+        backlogEnd = size;
+      }
+      System.arraycopy(actions, 0, backlog, backlogEnd, count);
+      Arrays.fill(actions, 0, count, null);
+      backlogEnd += count;
+    }
+
+    private int run (Runnable[] actions, int start, int end) {
+      for (int ii = start; ii < end; ii++) {
+        Runnable action = actions[ii];
+        actions[ii] = null;
         try {
           action.run();
         } catch (Throwable e) {
           plat.reportError("invokeLater Runnable failed: " + action, e);
         }
       }
-      running.clear();
+      return end;
     }
   }
 
@@ -92,6 +179,19 @@ public abstract class Exec {
    */
   public abstract void invokeLater (Runnable action);
 
+  /**
+   * Invokes {@code action} on the next {@link Platform#frame} signal, like {@link #invokeLater},
+   * but ahead of any actions queued via {@link #invokeLater} or {@link #invokeNextFrame}, and
+   * regardless of any limit on the number of such actions run per frame (see {@link
+   * Default#setFrameBudget}). Use this for the few actions that must not be delayed, like input
+   * handling, when a burst of async completions is being spread across frames.
+   *
+   * <p>The default implementation simply calls {@link #invokeLater}.</p>
+   */
+  public void invokeUrgent (Runnable action) {
+    invokeLater(action);
+  }
+
   /**
    * Creates a promise which defers notification of success or failure to the game thread,
    * regardless of what thread on which it is completed. Note that even if it is completed on the
@@ -129,4 +229,25 @@ public abstract class Exec {
   public void invokeAsync (Runnable action) {
     throw new UnsupportedOperationException();
   }
+
+  /**
+   * Invokes the supplied action on a separate thread suited to the kind of work identified by
+   * {@code lane}. The returned handle can be closed to cancel the action, which will prevent it
+   * from running if it has not yet started. An action that is already running is not interrupted.
+   *
+   * <p>The default implementation ignores the lane and passes the action to {@link
+   * #invokeAsync(Runnable)}.</p>
+   *
+   * @throws UnsupportedOperationException if the platform does not support async operations.
+   */
+  public Closeable invokeAsync (Lane lane, final Runnable action) {
+    class Task implements Runnable, Closeable {
+      private volatile boolean canceled;
+      public void run () { if (!canceled) action.run(); }
+      public void close () { canceled = true; }
+    }
+    Task task = new Task();
+    invokeAsync(task);
+    return task;
+  }
 }
@@ -427,6 +427,10 @@ public abstract class GL20 {
   public final Buffers bufs;
   public final boolean checkErrors;
 
+  /** The profiler to which batches report their flushes, if any. This is configured by {@link
+    * Graphics}. */
+  public Profiler profiler;
+
   protected GL20 (Buffers buffers, boolean checkErrors) {
     this.bufs = buffers;
     this.checkErrors = checkErrors;
@@ -45,13 +45,15 @@ public abstract class Game {
   private final Clock updateClock = new Clock();
   private final Clock paintClock = new Clock();
   private final int updateRate;
-  private int nextUpdate;
+  private final long updateNanos;
+  private long nextUpdate, paintNanos;
 
   /** Creates a clocked game with the desired simulation update rate, in ms. */
   public Game (Platform plat, int updateRate) {
     assert updateRate > 0 : "updateRate must be greater than zero.";
     this.plat = plat;
     this.updateRate = updateRate;
+    this.updateNanos = updateRate * 1000000L;
     plat.frame.connect(new Slot<Platform>() {
       public void onEmit (Platform plat) { onFrame(); }
     });
@@ -74,26 +76,34 @@ public abstract class Game {
   }
 
   private void onFrame () {
-    int nextUpdate = this.nextUpdate;
-    int updateTick = plat.tick();
+    long nextUpdate = this.nextUpdate;
+    long updateTick = plat.tickNanos();
     if (updateTick >= nextUpdate) {
-      int updateRate = this.updateRate;
-      int updates = 0;
-      while (updateTick >= nextUpdate) {
-        nextUpdate += updateRate;
-        updates++;
-      }
+      long updateNanos = this.updateNanos;
+      int updates = (int)((updateTick - nextUpdate) / updateNanos) + 1;
+      nextUpdate += updates*updateNanos;
       this.nextUpdate = nextUpdate;
       int updateDt = updates*updateRate;
       updateClock.tick += updateDt;
       updateClock.dt = updateDt;
-      update(updateClock);
+      updateClock.dtNanos = updates*updateNanos;
+      Profiler profiler = plat.profiler();
+      profiler.start(Profiler.UPDATE);
+      try { update(updateClock); }
+      finally { profiler.end(Profiler.UPDATE); }
     }
 
-    int paintTick = plat.tick();
-    paintClock.dt = paintTick - paintClock.tick;
-    paintClock.tick = paintTick;
-    paintClock.alpha = 1 - (nextUpdate - paintTick) / (float)updateRate;
-    paint(paintClock);
+    long paintTick = plat.tickNanos();
+    paintClock.dtNanos = paintTick - paintNanos;
+    paintNanos = paintTick;
+    // derive the millisecond values from the nanosecond tick so that the dts sum to the tick
+    int paintMillis = (int)(paintTick / 1000000L);
+    paintClock.dt = paintMillis - paintClock.tick;
+    paintClock.tick = paintMillis;
+    paintClock.alpha = 1 - (float)((nextUpdate - paintTick) / (double)updateNanos);
+    Profiler profiler = plat.profiler();
+    profiler.start(Profiler.PAINT);
+    try { paint(paintClock); }
+    finally { profiler.end(Profiler.PAINT); }
   }
 }
@@ -167,18 +167,26 @@ public abstract class Graphics {
   }
 
   Texture colorTex () {
-    if (colorTex == null) {
-      Canvas canvas = createCanvas(1, 1);
-      canvas.setFillColor(0xFFFFFFFF).fillRect(0, 0, canvas.width, canvas.height);
-      colorTex = canvas.toTexture(Texture.Config.UNMANAGED);
-    }
+    if (colorTex == null) colorTex = createColorTex();
     return colorTex;
   }
 
+  /**
+   * Creates the 1x1 solid white texture with which surfaces fill shapes of a solid color. This is
+   * called when the texture is first needed. By default it is drawn with a canvas, but a
+   * specialized graphics (such as one used without a GL context) may supply it some other way.
+   */
+  protected Texture createColorTex () {
+    Canvas canvas = createCanvas(1, 1);
+    canvas.setFillColor(0xFFFFFFFF).fillRect(0, 0, canvas.width, canvas.height);
+    return canvas.toTexture(Texture.Config.UNMANAGED);
+  }
+
   protected Graphics (Platform plat, GL20 gl, Scale scale) {
     this.plat = plat;
     this.gl = gl;
     this.scale = scale;
+    if (gl != null && plat != null) gl.profiler = plat.profiler();
   }
 
   /**
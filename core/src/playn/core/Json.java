@@ -13,10 +13,15 @@
  */
 package playn.core;
 
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
 import java.util.Arrays;
 import java.util.Iterator;
 import java.util.List;
 
+import react.RFuture;
+
 import playn.core.json.JsonParserException;
 import playn.core.json.JsonSink;
 
@@ -42,6 +47,157 @@ public interface Json {
     Writer useVerboseFormat(boolean verbose);
   }
 
+  /**
+   * A {@link JsonSink} that writes UTF-8 encoded JSON to an {@link OutputStream} or {@link
+   * WritableByteChannel}. The JSON is encoded into a fixed size buffer, which is written out each
+   * time it fills, so no intermediate {@link String} or byte array of the whole document is built.
+   */
+  interface ByteWriter extends JsonSink<ByteWriter> {
+
+    /**
+     * Completes this JSON writing session and writes any buffered bytes to the underlying stream
+     * or channel (flushing it, if it is a stream). The stream or channel is not closed.
+     */
+    void done();
+
+    /**
+     * Tells the writer whether to use a verbose, more human-readable representation.
+     */
+    ByteWriter useVerboseFormat(boolean verbose);
+  }
+
+  /**
+   * A {@link JsonSink} that encodes JSON in the binary CBOR format (RFC 8949), which is more
+   * compact than JSON text and much faster to read. Read it back with {@link Json#parseBinary} or
+   * {@link Json#newBinaryReader}.
+   */
+  interface BinaryWriter extends JsonSink<BinaryWriter> {
+
+    /**
+     * Completes this writing session and returns the encoded value, in a buffer positioned at its
+     * start.
+     */
+    ByteBuffer write();
+  }
+
+  /**
+   * Reads JSON a token at a time, without building a tree of {@link Object}s and {@link Array}s.
+   * This allows large documents to be deserialized directly into game data structures. For
+   * example:
+   *
+   * <pre>{@code
+   * Json.Reader in = json.newReader(text);
+   * in.next(); // START_OBJECT
+   * while (in.next() == Json.Reader.Event.KEY) {
+   *   if (in.getString().equals("x")) { in.next(); x = in.getFloat(); }
+   *   else { in.next(); in.skipValue(); }
+   * }
+   * }</pre>
+   *
+   * <p>The reader checks that the JSON is well formed as it goes, and throws {@link
+   * JsonParserException} from {@link #next} if it is not.</p>
+   */
+  interface Reader {
+
+    /** The events reported by {@link Reader#next}. */
+    enum Event {
+      /** The start of an object. Keys and values follow until the matching {@link #END_OBJECT}. */
+      START_OBJECT,
+      /** The end of an object. */
+      END_OBJECT,
+      /** The start of an array. Values follow until the matching {@link #END_ARRAY}. */
+      START_ARRAY,
+      /** The end of an array. */
+      END_ARRAY,
+      /** A key in an object, available via {@link Reader#getString}. The value follows. */
+      KEY,
+      /** A string value, available via {@link Reader#getString}. */
+      STRING,
+      /** A number value, available via {@link Reader#getInt}, {@link Reader#getDouble}, etc. */
+      NUMBER,
+      /** A {@code true} or {@code false} value, available via {@link Reader#getBoolean}. */
+      BOOLEAN,
+      /** A {@code null} value. */
+      NULL,
+      /** The end of the input, which is reported after the single top-level value. */
+      EOF
+    }
+
+    /**
+     * Reads the next token and returns the event that it represents.
+     *
+     * @throws JsonParserException if the JSON is malformed.
+     */
+    Event next() throws JsonParserException;
+
+    /**
+     * Returns the event last returned by {@link #next}, or {@code null} if it has not yet been
+     * called.
+     */
+    Event event();
+
+    /**
+     * Returns the current key or string value.
+     *
+     * @throws IllegalStateException if the current event is not {@link Event#KEY} or {@link
+     * Event#STRING}.
+     */
+    String getString();
+
+    /**
+     * Returns the current boolean value.
+     *
+     * @throws IllegalStateException if the current event is not {@link Event#BOOLEAN}.
+     */
+    boolean getBoolean();
+
+    /**
+     * Returns the current number value, truncated to an int if it is not integral.
+     *
+     * @throws IllegalStateException if the current event is not {@link Event#NUMBER}.
+     */
+    int getInt();
+
+    /**
+     * Returns the current number value, truncated to a long if it is not integral.
+     *
+     * @throws IllegalStateException if the current event is not {@link Event#NUMBER}.
+     */
+    long getLong();
+
+    /**
+     * Returns the current number value as a float.
+     *
+     * @throws IllegalStateException if the current event is not {@link Event#NUMBER}.
+     */
+    float getFloat();
+
+    /**
+     * Returns the current number value as a double.
+     *
+     * @throws IllegalStateException if the current event is not {@link Event#NUMBER}.
+     */
+    double getDouble();
+
+    /**
+     * Returns the current number value as the type that would be used for it in a parsed {@link
+     * Object} or {@link Array}: an {@link Integer}, {@link Long}, {@link Double} or (for integers
+     * too large for a long) {@link java.math.BigInteger}.
+     *
+     * @throws IllegalStateException if the current event is not {@link Event#NUMBER}.
+     */
+    Number getNumber();
+
+    /**
+     * Skips the value that was just started. If the current event is {@link Event#START_OBJECT}
+     * or {@link Event#START_ARRAY}, the contents are read up to and including the matching end,
+     * otherwise this does nothing.
+     *
+     * @throws JsonParserException if the skipped JSON is malformed.
+     */
+    void skipValue() throws JsonParserException;
+  }
+
   /**
    * A JSON array that assumes all values are of a uniform JSON type.
    */
@@ -283,6 +439,20 @@ public interface Json {
      */
     boolean isObject(int index);
 
+    /**
+     * Copies the values of this array into {@code into}, as by {@link #getNumber(int)}, and
+     * returns it. If {@code into} is null or is shorter than this array, a new array of this
+     * array's length is created and returned instead. Parsed arrays which contain only numbers are
+     * stored unboxed, so this is much cheaper than calling {@link #getNumber(int)} for each value.
+     */
+    float[] toFloatArray(float[] into);
+
+    /**
+     * Copies the values of this array into {@code into}, as by {@link #getInt(int)}, and returns
+     * it. See {@link #toFloatArray}.
+     */
+    int[] toIntArray(int[] into);
+
     /**
      * Appends a JSON boolean, null, number, object, or array value.
      *
@@ -551,6 +721,19 @@ public interface Json {
    */
   Writer newWriter();
 
+  /**
+   * Creates a new {@link ByteWriter}, which serializes data as UTF-8 encoded JSON directly to the
+   * supplied stream. This avoids building a string and then encoding it when writing large
+   * documents to storage or the network. See {@link #newWriter()}.
+   */
+  ByteWriter newWriter(OutputStream out);
+
+  /**
+   * Creates a new {@link ByteWriter}, which serializes data as UTF-8 encoded JSON directly to the
+   * supplied channel. See {@link #newWriter(OutputStream)}.
+   */
+  ByteWriter newWriter(WritableByteChannel out);
+
   /**
    * Parses the given JSON string into an {@link Object} that can be dynamically introspected.
    */
@@ -560,4 +743,76 @@ public interface Json {
    * Parses the given JSON string into an {@link Array} that can be dynamically introspected.
    */
   Array parseArray(String json) throws JsonParserException;
+
+  /**
+   * Parses the given JSON string into an {@link Array} on {@code exec}'s async threads, and
+   * completes the returned future with it on the game thread (see {@link Exec#deferredPromise}).
+   * Large arrays are split between their top-level elements into pieces which are parsed in
+   * parallel, which helps with level files that are long lists of records. The result is the
+   * same as that of {@link #parseArray}. On platforms which do not support async operations, the
+   * array is parsed on the calling thread.
+   */
+  RFuture<Array> parseArrayAsync(String json, Exec exec);
+
+  /**
+   * Parses the given JSON string lazily. This scans the top level of the document to find where
+   * each value starts and ends, but parses a value (and scans its own members, if it is an
+   * object or array) only when it is first accessed. This is much faster than {@link #parse}
+   * when only a few values of a large document are used.
+   *
+   * <p>Note that values which are never accessed are not fully validated, and that malformed
+   * values are reported (by throwing {@link JsonParserException}) when they are accessed.</p>
+   */
+  Object parseLazy(String json) throws JsonParserException;
+
+  /**
+   * Parses the UTF-8 encoded JSON in the remaining bytes of the supplied buffer into an {@link
+   * Object}. The bytes are tokenized directly, so this avoids decoding the whole document into a
+   * string first. The buffer's position is advanced to its limit.
+   */
+  Object parse(ByteBuffer json) throws JsonParserException;
+
+  /**
+   * Parses {@code length} bytes of UTF-8 encoded JSON, starting at {@code offset} in the supplied
+   * array, into an {@link Object}. See {@link #parse(ByteBuffer)}.
+   */
+  Object parse(byte[] json, int offset, int length) throws JsonParserException;
+
+  /**
+   * Creates a new {@link BinaryWriter}, which encodes data as CBOR. The values that can be written
+   * are the same as for {@link #newWriter()}.
+   */
+  BinaryWriter newBinaryWriter();
+
+  /**
+   * Parses the CBOR encoded value in the remaining bytes of the supplied buffer (as written by a
+   * {@link BinaryWriter}) into an {@link Object}. Integers are read as {@link Integer}s where they
+   * fit, and {@link Long}s or {@link java.math.BigInteger}s otherwise. The buffer's position is
+   * advanced to its limit.
+   */
+  Object parseBinary(ByteBuffer data) throws JsonParserException;
+
+  /**
+   * Creates a {@link Reader} which reads the CBOR encoded value in the remaining bytes of the
+   * supplied buffer, reporting the same events as for the equivalent JSON text. The buffer's
+   * position is advanced to its limit.
+   */
+  Reader newBinaryReader(ByteBuffer data);
+
+  /**
+   * Creates a {@link Reader} which reads the given JSON string a token at a time.
+   */
+  Reader newReader(String json);
+
+  /**
+   * Creates a {@link Reader} which reads JSON from the supplied character stream. The stream is
+   * read in chunks, as needed, and is not closed by the reader.
+   */
+  Reader newReader(java.io.Reader json);
+
+  /**
+   * Creates a {@link Reader} which reads UTF-8 encoded JSON from the remaining bytes of the
+   * supplied buffer. The buffer's position is advanced as it is read.
+   */
+  Reader newReader(ByteBuffer json);
 }
@@ -61,6 +61,19 @@ public abstract class Platform {
   /** Returns the number of milliseconds that have elapsed since the game started. */
   public abstract int tick ();
 
+  /** Returns the number of nanoseconds that have elapsed since the game started. This is used by
+    * {@link Game} to schedule updates and compute {@link Clock#dtNanos}. The default
+    * implementation is derived from {@link #tick}, but backends with a high-resolution clock
+    * provide the full precision of that clock. */
+  public long tickNanos () { return tick() * 1000000L; }
+
+  /** Returns the {@link Profiler} which records the time spent in each phase of the frame. It is
+    * disabled until {@link Profiler#setEnabled} is called. */
+  public Profiler profiler () {
+    if (profiler == null) profiler = createProfiler();
+    return profiler;
+  }
+
   /** Opens the given URL in the default browser. */
   public abstract void openURL (String url);
 
@@ -123,5 +136,17 @@ public abstract class Platform {
   protected void emitFrame () {
     try { frame.emit(this); }
     catch (Throwable e) { reportError("Frame tick exception", e); }
+    profiler().endFrame();
   }
+
+  /** Creates the profiler returned by {@link #profiler}. By default it measures real time, via
+    * the system's monotonic clock, rather than the game time reported by {@link #tickNanos},
+    * which may be virtual, may skip time lost to a stall, or may be only millisecond precise. */
+  protected Profiler createProfiler () {
+    return new Profiler(new TimeSource() {
+      public long nanoTime () { return System.nanoTime(); }
+    }, 300);
+  }
+
+  private Profiler profiler; // created on demand
 }
@@ -0,0 +1,261 @@
+/**
+ * Copyright 2010-2015 The PlayN Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package playn.core;
+
+import java.util.Arrays;
+
+/**
+ * Records where the time goes in each frame. The time spent in each of a fixed set of phases
+ * (input processing, {@link Exec#invokeLater} dispatch, simulation update, paint, rendering and
+ * GPU batch flushes), and the number of draw calls, quads and bytes of texture data uploaded, are
+ * accumulated over a frame and then recorded in ring buffers which hold the most recent frames.
+ * Nothing is allocated per frame.
+ *
+ * <p>The profiler is disabled by default, in which case it records nothing. Enable it via {@link
+ * #setEnabled}. The platform's profiler is available via {@link Platform#profiler}.</p>
+ *
+ * <p>Phases may nest (a flush happens during rendering, which happens during paint), in which case
+ * each phase's time includes the time spent in the phases nested within it.</p>
+ */
+public class Profiler {
+
+  /** Time spent processing input events. */
+  public static final int INPUT = 0;
+  /** Time spent running {@link Exec#invokeLater} actions. */
+  public static final int EXEC = 1;
+  /** Time spent in {@link Game#update}. */
+  public static final int UPDATE = 2;
+  /** Time spent in {@link Game#paint}. */
+  public static final int PAINT = 3;
+  /** Time spent between {@link Surface#begin} and {@link Surface#end}. */
+  public static final int RENDER = 4;
+  /** Time spent sending batches of geometry to the GPU. */
+  public static final int FLUSH = 5;
+  /** The total duration of the frame. This is recorded automatically. */
+  public static final int FRAME = 6;
+
+  /** The number of GL draw calls issued. */
+  public static final int DRAW_CALLS = 0;
+  /** The number of quads (or pairs of triangles) drawn. */
+  public static final int QUADS = 1;
+  /** The number of bytes of texture data uploaded to the GPU. */
+  public static final int UPLOAD_BYTES = 2;
+
+  /** The names of the phases, indexed by phase. */
+  public static final String[] PHASES = {
+    "input", "exec", "update", "paint", "render", "flush", "frame" };
+
+  /** The names of the counters, indexed by counter. */
+  public static final String[] COUNTERS = { "drawCalls", "quads", "uploadBytes" };
+
+  private final TimeSource time;
+  private final int capacity;
+  private boolean enabled;
+
+  // the current frame's accumulators
+  private final long[] starts = new long[PHASES.length];
+  private final int[] depths = new int[PHASES.length];
+  private final long[] phaseNanos = new long[PHASES.length];
+  private final long[] counts = new long[COUNTERS.length];
+  private long frameStart;
+
+  // ring buffers of recorded frames, phase (or counter) major
+  private final long[] phaseSamples, counterSamples;
+  private final long[] scratch;
+  private int next, frames;
+
+  /**
+   * Creates a profiler which measures time using {@code time} and retains the most recent {@code
+   * capacity} frames.
+   */
+  public Profiler (TimeSource time, int capacity) {
+    if (capacity <= 0) throw new IllegalArgumentException("Capacity must be > 0: " + capacity);
+    this.time = time;
+    this.capacity = capacity;
+    phaseSamples = new long[PHASES.length * capacity];
+    counterSamples = new long[COUNTERS.length * capacity];
+    scratch = new long[capacity];
+  }
+
+  /** Returns whether this profiler is recording. */
+  public boolean isEnabled () {
+    return enabled;
+  }
+
+  /** Starts or stops recording. Starting discards any partially accumulated frame. */
+  public void setEnabled (boolean enabled) {
+    if (enabled && !this.enabled) {
+      Arrays.fill(depths, 0);
+      Arrays.fill(phaseNanos, 0);
+      Arrays.fill(counts, 0);
+      frameStart = time.nanoTime();
+    }
+    this.enabled = enabled;
+  }
+
+  /** Notes the start of {@code phase} on the current frame. Must be paired with {@link #end}. */
+  public void start (int phase) {
+    if (enabled && depths[phase]++ == 0) starts[phase] = time.nanoTime();
+  }
+
+  /** Notes the end of {@code phase} on the current frame. */
+  public void end (int phase) {
+    if (enabled && depths[phase] > 0 && --depths[phase] == 0) {
+      phaseNanos[phase] += time.nanoTime() - starts[phase];
+    }
+  }
+
+  /** Adds {@code amount} to {@code counter} for the current frame. */
+  public void count (int counter, long amount) {
+    if (enabled) counts[counter] += amount;
+  }
+
+  /** Records the current frame and starts accumulating the next. This is called by the platform
+    * after the {@link Platform#frame} signal has been emitted. */
+  public void endFrame () {
+    if (!enabled) return;
+    long now = time.nanoTime();
+    phaseNanos[FRAME] = now - frameStart;
+    frameStart = now;
+    for (int pp = 0; pp < PHASES.length; pp++) {
+      phaseSamples[pp*capacity + next] = phaseNanos[pp];
+      phaseNanos[pp] = 0;
+    }
+    for (int cc = 0; cc < COUNTERS.length; cc++) {
+      counterSamples[cc*capacity + next] = counts[cc];
+      counts[cc] = 0;
+    }
+    next = (next + 1) % capacity;
+    if (frames < capacity) frames++;
+  }
+
+  /** Discards all recorded frames. */
+  public void reset () {
+    next = frames = 0;
+  }
+
+  /** Returns the number of frames recorded (at most the capacity of this profiler). */
+  public int frames () {
+    return frames;
+  }
+
+  /** Returns the time spent in {@code phase} on the {@code frame}th most recent recorded frame
+    * (zero is the most recent), in milliseconds. */
+  public float phaseTime (int phase, int frame) {
+    return phaseSamples[phase*capacity + index(frame)] / 1e6f;
+  }
+
+  /** Returns the value of {@code counter} on the {@code frame}th most recent recorded frame (zero
+    * is the most recent). */
+  public long counter (int counter, int frame) {
+    return counterSamples[counter*capacity + index(frame)];
+  }
+
+  /** Returns the time, in milliseconds, which the time spent in {@code phase} did not exceed on
+    * {@code percent} percent of the recorded frames. */
+  public float phasePercentile (int phase, float percent) {
+    return percentile(phaseSamples, phase, percent) / 1e6f;
+  }
+
+  /** Returns the value which {@code counter} did not exceed on {@code percent} percent of the
+    * recorded frames. */
+  public long counterPercentile (int counter, float percent) {
+    return percentile(counterSamples, counter, percent);
+  }
+
+  /** Returns the mean time spent in {@code phase} over the recorded frames, in milliseconds. */
+  public float phaseMean (int phase) {
+    return mean(phaseSamples, phase) / 1e6f;
+  }
+
+  /** Returns the mean value of {@code counter} over the recorded frames. */
+  public float counterMean (int counter) {
+    return mean(counterSamples, counter);
+  }
+
+  /** Returns the recorded frames as CSV, oldest frame first, with a header row. Times are in
+    * milliseconds. */
+  public String toCSV () {
+    StringBuilder buf = new StringBuilder();
+    for (int pp = 0; pp < PHASES.length; pp++) buf.append(pp == 0 ? "" : ",").append(PHASES[pp]);
+    for (String counter : COUNTERS) buf.append(",").append(counter);
+    buf.append("\n");
+    for (int ff = frames-1; ff >= 0; ff--) {
+      for (int pp = 0; pp < PHASES.length; pp++) {
+        if (pp > 0) buf.append(",");
+        buf.append(phaseTime(pp, ff));
+      }
+      for (int cc = 0; cc < COUNTERS.length; cc++) buf.append(",").append(counter(cc, ff));
+      buf.append("\n");
+    }
+    return buf.toString();
+  }
+
+  /** Returns the p50, p95 and p99 of each phase and counter, and the recorded frames (oldest
+    * first), as JSON. Times are in milliseconds. */
+  public String toJSON () {
+    StringBuilder buf = new StringBuilder("{\n  \"frames\": ").append(frames);
+    buf.append(",\n  \"phases\": {");
+    for (int pp = 0; pp < PHASES.length; pp++) {
+      buf.append(pp == 0 ? "\n" : ",\n").append("    \"").append(PHASES[pp]).append("\": {").
+        append("\"mean\": ").append(phaseMean(pp)).
+        append(", \"p50\": ").append(phasePercentile(pp, 50)).
+        append(", \"p95\": ").append(phasePercentile(pp, 95)).
+        append(", \"p99\": ").append(phasePercentile(pp, 99)).append("}");
+    }
+    buf.append("\n  },\n  \"counters\": {");
+    for (int cc = 0; cc < COUNTERS.length; cc++) {
+      buf.append(cc == 0 ? "\n" : ",\n").append("    \"").append(COUNTERS[cc]).append("\": {").
+        append("\"mean\": ").append(counterMean(cc)).
+        append(", \"p50\": ").append(counterPercentile(cc, 50)).
+        append(", \"p95\": ").append(counterPercentile(cc, 95)).
+        append(", \"p99\": ").append(counterPercentile(cc, 99)).append("}");
+    }
+    buf.append("\n  },\n  \"trace\": [");
+    for (int ff = frames-1; ff >= 0; ff--) {
+      buf.append(ff == frames-1 ? "\n" : ",\n").append("    {");
+      for (int pp = 0; pp < PHASES.length; pp++) {
+        buf.append(pp == 0 ? "\"" : ", \"").append(PHASES[pp]).append("\": ").
+          append(phaseTime(pp, ff));
+      }
+      for (int cc = 0; cc < COUNTERS.length; cc++) {
+        buf.append(", \"").append(COUNTERS[cc]).append("\": ").append(counter(cc, ff));
+      }
+      buf.append("}");
+    }
+    return buf.append("\n  ]\n}\n").toString();
+  }
+
+  private int index (int frame) {
+    if (frame < 0 || frame >= frames) throw new IndexOutOfBoundsException(
+      "Frame " + frame + " not in [0, " + frames + ")");
+    return (next - 1 - frame + capacity) % capacity;
+  }
+
+  private long percentile (long[] samples, int row, float percent) {
+    if (frames == 0) return 0;
+    // if we haven't wrapped, the samples are at the start of the row, otherwise they fill it
+    System.arraycopy(samples, row*capacity, scratch, 0, frames);
+    Arrays.sort(scratch, 0, frames);
+    int rank = Math.max(1, (int)Math.ceil(frames * percent / 100));
+    return scratch[Math.min(frames, rank) - 1];
+  }
+
+  private float mean (long[] samples, int row) {
+    if (frames == 0) return 0;
+    long total = 0;
+    for (int ii = 0; ii < frames; ii++) total += samples[row*capacity + ii];
+    return total / (float)frames;
+  }
+}
@@ -84,7 +84,22 @@ public class StubPlatform extends Platform {
     @Override public void invokeNextFrame (Runnable action) { action.run(); }
     @Override public void invokeLater (Runnable action) { action.run(); } // now is later!
   };
-  private final long start = System.currentTimeMillis();
+  private final TimeSource timeSource;
+  private final long start;
+
+  /** Creates a stub platform whose time is provided by the system clock. */
+  public StubPlatform () {
+    this(new TimeSource() {
+      public long nanoTime () { return System.currentTimeMillis() * 1000000L; }
+    });
+  }
+
+  /** Creates a stub platform whose time is provided by {@code timeSource}. Supply a {@link
+    * VirtualTimeSource} to control the passage of time in tests. */
+  public StubPlatform (TimeSource timeSource) {
+    this.timeSource = timeSource;
+    this.start = timeSource.nanoTime();
+  }
 
   @Override public Platform.Type type () {
     return Platform.Type.STUB;
@@ -94,7 +109,10 @@ public class StubPlatform extends Platform {
     return (double)System.currentTimeMillis();
   }
   @Override public int tick () {
-    return (int)(System.currentTimeMillis() - start);
+    return (int)(tickNanos() / 1000000L);
+  }
+  @Override public long tickNanos () {
+    return timeSource.nanoTime() - start;
   }
 
   @Override public void openURL (String url) { throw new UnsupportedOperationException(); }
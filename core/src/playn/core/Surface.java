@@ -41,6 +41,7 @@ public class Surface implements Closeable {
   private final List<AffineTransform> transformStack = new ArrayList<>();
   private final Texture colorTex;
   protected final RenderTarget target;
+  private final Profiler profiler;
 
   private final List<Rectangle> scissors = new ArrayList<Rectangle>();
   private int scissorDepth;
@@ -62,6 +63,7 @@ public class Surface implements Closeable {
   public Surface (Graphics gfx, RenderTarget target, QuadBatch defaultBatch) {
     this.target = target;
     this.batch = defaultBatch;
+    this.profiler = (gfx.plat == null) ? null : gfx.plat.profiler();
     lastTrans = new AffineTransform();
     colorTex = gfx.colorTex();
     scale(target.xscale(), target.yscale());
@@ -76,8 +78,15 @@ public class Surface implements Closeable {
     this.checkIntersection = checkIntersection;
   }
 
+  /** Returns whether this surface checks that drawn things intersect its visible bounds. See
+    * {@link #setCheckIntersection}. */
+  public boolean checkIntersection () {
+    return checkIntersection;
+  }
+
   /** Starts a series of drawing commands to this surface. */
   public Surface begin () {
+    if (profiler != null) profiler.start(Profiler.RENDER);
     target.bind();
     beginBatch(batch);
     return this;
@@ -85,21 +94,30 @@ public class Surface implements Closeable {
 
   /** Completes a series of drawing commands to this surface. */
   public Surface end () {
-    batch.end();
+    try { batch.end(); }
+    finally { if (profiler != null) profiler.end(Profiler.RENDER); }
     return this;
   }
 
-  /** Configures this surface to use {@code batch}, if non-null. NOOPs otherwise.
+  /** Configures this surface to use {@code batch}, if non-null. NOOPs otherwise, or if {@code
+    * batch} is already the current batch.
     * @return a batch which should be passed to {@link #popBatch} when rendering is done with this
     * batch. */
   public QuadBatch pushBatch (QuadBatch newBatch) {
-    if (newBatch == null) return null;
+    if (newBatch == null || newBatch == batch) return null;
     QuadBatch oldBatch = batch;
     batch.end();
     batch = beginBatch(newBatch);
     return oldBatch;
   }
 
+  /** Returns the batch into which this surface is currently rendering. This allows code which
+    * renders many quads in bulk to add them to the batch directly, bypassing this surface's
+    * transform and tint, which the caller must then apply itself. */
+  public QuadBatch batch () {
+    return batch;
+  }
+
   /** Restores the batch that was in effect prior to a {@link #pushBatch} call. */
   public void popBatch (QuadBatch oldBatch) {
     if (oldBatch != null) {
@@ -270,6 +288,12 @@ public class Surface implements Closeable {
     return (ix + iw > 0) && (ix < tw) && (iy + ih > 0) && (iy < th);
   }
 
+  /** Returns whether the given rectangle, in render target pixels (i.e. already transformed by
+    * {@link #tx}), intersects the render target area of this surface. */
+  public boolean intersectsTarget (float x, float y, float w, float h) {
+    return (x + w > 0) && (x < target.width()) && (y + h > 0) && (y < target.height());
+  }
+
   /** Clears the entire surface to transparent blackness. */
   public Surface clear () { return clear(0, 0, 0, 0); }
 
@@ -167,6 +167,8 @@ public class Texture extends Tile implements Closeable {
     }
     else image.upload(gfx, this); // fast path, woo!
     if (config.mipmaps) gfx.gl.glGenerateMipmap(GL_TEXTURE_2D);
+    Profiler profiler = gfx.gl.profiler;
+    if (profiler != null) profiler.count(Profiler.UPLOAD_BYTES, pixelWidth*pixelHeight*4);
   }
 
   /**
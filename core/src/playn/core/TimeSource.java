@@ -0,0 +1,26 @@
+/**
+ * Copyright 2010-2015 The PlayN Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package playn.core;
+
+/**
+ * Provides high-resolution time to a platform, for use in {@link Platform#tickNanos}. Backends
+ * normally use the system's monotonic clock, but a {@link VirtualTimeSource} can be supplied to
+ * run a game deterministically (for tests, benchmarks or replays).
+ */
+public interface TimeSource {
+
+  /** Returns the current time in nanoseconds, relative to some arbitrary fixed point. The value
+    * must never decrease. */
+  long nanoTime ();
+}
@@ -300,23 +300,33 @@ public class TriangleBatch extends QuadBatch {
   @Override public void flush () {
     super.flush();
     if (vertPos > 0) {
-      bindTexture();
-
-      if (delayedBinding) {
-        bindAttribsBufs(); // see comments in activate()
-        gl.checkError("TriangleBatch.flush bind");
+      Profiler profiler = gl.profiler;
+      if (profiler != null) profiler.start(Profiler.FLUSH);
+      try {
+        bindTexture();
+
+        if (delayedBinding) {
+          bindAttribsBufs(); // see comments in activate()
+          gl.checkError("TriangleBatch.flush bind");
+        }
+
+        gl.bufs.setFloatBuffer(vertices, 0, vertPos);
+        gl.glBufferData(GL_ARRAY_BUFFER, vertPos*4, gl.bufs.floatBuffer, GL_STREAM_DRAW);
+
+        gl.bufs.setShortBuffer(elements, 0, elemPos);
+        gl.glBufferData(GL_ELEMENT_ARRAY_BUFFER, elemPos*2, gl.bufs.shortBuffer, GL_STREAM_DRAW);
+        gl.checkError("TriangleBatch.flush BufferData");
+
+        gl.glDrawElements(GL_TRIANGLES, elemPos, GL_UNSIGNED_SHORT, 0);
+        gl.checkError("TriangleBatch.flush DrawElements");
+        if (profiler != null) {
+          profiler.count(Profiler.DRAW_CALLS, 1);
+          profiler.count(Profiler.QUADS, elemPos/6);
+        }
+      } finally {
+        if (profiler != null) profiler.end(Profiler.FLUSH);
       }
 
-      gl.bufs.setFloatBuffer(vertices, 0, vertPos);
-      gl.glBufferData(GL_ARRAY_BUFFER, vertPos*4, gl.bufs.floatBuffer, GL_STREAM_DRAW);
-
-      gl.bufs.setShortBuffer(elements, 0, elemPos);
-      gl.glBufferData(GL_ELEMENT_ARRAY_BUFFER, elemPos*2, gl.bufs.shortBuffer, GL_STREAM_DRAW);
-      gl.checkError("TriangleBatch.flush BufferData");
-
-      gl.glDrawElements(GL_TRIANGLES, elemPos, GL_UNSIGNED_SHORT, 0);
-      gl.checkError("TriangleBatch.flush DrawElements");
-
       vertPos = 0;
       elemPos = 0;
     }
@@ -221,10 +221,20 @@ public class UniformQuadBatch extends QuadBatch {
   @Override public void flush () {
     super.flush();
     if (quadCounter > 0) {
-      bindTexture();
-      gl.glUniform4fv(uData, quadCounter * vec4sPerQuad(), data, 0);
-      gl.glDrawElements(GL_TRIANGLES, quadCounter*ELEMENTS_PER_QUAD, GL_UNSIGNED_SHORT, 0);
-      gl.checkError("UniformQuadBatch flush");
+      Profiler profiler = gl.profiler;
+      if (profiler != null) profiler.start(Profiler.FLUSH);
+      try {
+        bindTexture();
+        gl.glUniform4fv(uData, quadCounter * vec4sPerQuad(), data, 0);
+        gl.glDrawElements(GL_TRIANGLES, quadCounter*ELEMENTS_PER_QUAD, GL_UNSIGNED_SHORT, 0);
+        gl.checkError("UniformQuadBatch flush");
+        if (profiler != null) {
+          profiler.count(Profiler.DRAW_CALLS, 1);
+          profiler.count(Profiler.QUADS, quadCounter);
+        }
+      } finally {
+        if (profiler != null) profiler.end(Profiler.FLUSH);
+      }
       quadCounter = 0;
     }
   }
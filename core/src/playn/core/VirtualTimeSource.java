@@ -0,0 +1,48 @@
+/**
+ * Copyright 2010-2015 The PlayN Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package playn.core;
+
+/**
+ * A time source whose time advances only when {@link #advance} is called. A game running on a
+ * virtual time source sees exactly the same sequence of times on every run, regardless of how long
+ * its frames actually take, so it can be replayed deterministically, or run as fast as the CPU
+ * allows.
+ */
+public class VirtualTimeSource implements TimeSource {
+
+  private long nanos;
+
+  /** Creates a time source whose time starts at zero. */
+  public VirtualTimeSource () {}
+
+  /** Creates a time source whose time starts at {@code nanos}. */
+  public VirtualTimeSource (long nanos) {
+    this.nanos = nanos;
+  }
+
+  /** Advances this time source by {@code nanos} nanoseconds. */
+  public void advance (long nanos) {
+    if (nanos < 0) throw new IllegalArgumentException("Time cannot run backwards: " + nanos);
+    this.nanos += nanos;
+  }
+
+  /** Advances this time source by {@code millis} milliseconds, which may be fractional. */
+  public void advanceMillis (double millis) {
+    advance(Math.round(millis * 1000000));
+  }
+
+  @Override public long nanoTime () {
+    return nanos;
+  }
+}
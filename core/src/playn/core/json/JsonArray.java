@@ -22,10 +22,19 @@ import playn.core.Json.TypedArray;
 
 /**
  * Extends an {@link ArrayList} with helper methods to determine the underlying JSON type of the list element.
+ *
+ * <p>Parsed arrays which contain only numbers are held unboxed, in an {@code int[]} or {@code
+ * double[]}, until they are modified. They report the same values (and boxed types) as they would
+ * have if they were boxed.</p>
  */
 class JsonArray implements Json.Array {
-  private final ArrayList<Object> list;
-  
+  // our contents; or null if we hold only numbers, in ints or doubles
+  private ArrayList<Object> list;
+  private int[] ints;
+  private double[] doubles;
+  // bits marking the doubles which were written as integers (and so are Integers), or null
+  private int[] intBits;
+
   /**
    * Creates an empty {@link JsonArray} with the default capacity.
    */
@@ -40,6 +49,24 @@ class JsonArray implements Json.Array {
     list = new ArrayList<Object>(collection);
   }
 
+  /**
+   * Creates a {@link JsonArray} which holds the supplied integers, without boxing them.
+   */
+  JsonArray(int[] values) {
+    ints = values;
+  }
+
+  /**
+   * Creates a {@link JsonArray} which holds the supplied numbers, without boxing them.
+   *
+   * @param intBits a bit for each value, set if it was written as an integer, or null if none
+   * were.
+   */
+  JsonArray(double[] values, int[] intBits) {
+    doubles = values;
+    this.intBits = intBits;
+  }
+
   /**
    * Creates a {@link JsonArray} from an array of contents.
    */
@@ -47,6 +74,62 @@ class JsonArray implements Json.Array {
     return new JsonArray(Arrays.asList(contents));
   }
 
+  /**
+   * Creates a {@link JsonArray} of the values of {@code parts}, in order, keeping them unboxed if
+   * every part holds only numbers. The parts must not be used afterwards.
+   */
+  static JsonArray concat(JsonArray[] parts) {
+    int length = 0;
+    boolean allInts = true, allNumbers = true;
+    for (JsonArray part : parts) {
+      length += part.length();
+      allInts &= part.ints != null;
+      allNumbers &= part.list == null;
+    }
+
+    if (allInts) {
+      int[] values = new int[length];
+      int offset = 0;
+      for (JsonArray part : parts) {
+        System.arraycopy(part.ints, 0, values, offset, part.ints.length);
+        offset += part.ints.length;
+      }
+      return new JsonArray(values);
+    }
+
+    if (allNumbers) {
+      double[] values = new double[length];
+      int[] intBits = null;
+      int offset = 0;
+      for (JsonArray part : parts) {
+        int partLength = part.length();
+        for (int i = 0; i < partLength; i++) {
+          boolean isInt;
+          if (part.ints != null) {
+            values[offset + i] = part.ints[i];
+            isInt = true;
+          } else {
+            values[offset + i] = part.doubles[i];
+            isInt = part.intBits != null && (part.intBits[i >> 5] & (1 << (i & 31))) != 0;
+          }
+          if (isInt) {
+            if (intBits == null)
+              intBits = new int[(length + 31) >> 5];
+            intBits[(offset + i) >> 5] |= 1 << ((offset + i) & 31);
+          }
+        }
+        offset += partLength;
+      }
+      return new JsonArray(values, intBits);
+    }
+
+    JsonArray joined = new JsonArray();
+    joined.list.ensureCapacity(length);
+    for (JsonArray part : parts)
+      joined.list.addAll(part.list());
+    return joined;
+  }
+
   /**
    * Creates a {@link JsonBuilder} for a {@link JsonArray}.
    */
@@ -56,12 +139,20 @@ class JsonArray implements Json.Array {
   
   public JsonArray add(java.lang.Object value) {
     JsonImpl.checkJsonType(value);
-    list.add(value);
+    return addValue(value);
+  }
+
+  /**
+   * Adds a value without checking its type, which allows {@link JsonLazyValue}s.
+   */
+  JsonArray addValue(java.lang.Object value) {
+    list().add(value);
     return this;
   }
   
   public JsonArray add(int index, java.lang.Object value) {
     JsonImpl.checkJsonType(value);
+    ArrayList<Object> list = list();
     // TODO(mmastrac): Use an array rather than ArrayList to make this more efficient
     while (list.size() < index)
       list.add(null);
@@ -116,6 +207,8 @@ class JsonArray implements Json.Array {
    * Returns the {@link Double} at the given index, or the default if it does not exist or is the wrong type.
    */
   public double getDouble(int key, double default_) {
+    if (list == null && key >= 0 && key < length())
+      return ints != null ? ints[key] : doubles[key];
     Object o = get(key);
     return o instanceof Number ? ((Number)o).doubleValue() : default_;
   }
@@ -131,6 +224,8 @@ class JsonArray implements Json.Array {
    * Returns the {@link Float} at the given index, or the default if it does not exist or is the wrong type.
    */
   public float getNumber(int key, float default_) {
+    if (list == null && key >= 0 && key < length())
+      return ints != null ? ints[key] : (float)doubles[key];
     Object o = get(key);
     return o instanceof Number ? ((Number)o).floatValue() : default_;
   }
@@ -146,6 +241,8 @@ class JsonArray implements Json.Array {
    * Returns the {@link Integer} at the given index, or the default if it does not exist or is the wrong type.
    */
   public int getInt(int key, int default_) {
+    if (list == null && key >= 0 && key < length())
+      return ints != null ? ints[key] : (int)doubles[key];
     Object o = get(key);
     return o instanceof Number ? ((Number)o).intValue() : default_;
   }
@@ -162,6 +259,8 @@ class JsonArray implements Json.Array {
    * wrong type.
    */
   public long getLong(int key, long default_) {
+    if (list == null && key >= 0 && key < length())
+      return ints != null ? ints[key] : (long)doubles[key];
     Object o = get(key);
     return o instanceof Number ? ((Number)o).longValue() : default_;
   }
@@ -238,22 +337,56 @@ class JsonArray implements Json.Array {
     return get(key) instanceof Json.Object;
   }
 
+  @Override
+  public float[] toFloatArray(float[] into) {
+    int length = length();
+    if (into == null || into.length < length)
+      into = new float[length];
+    if (ints != null)
+      for (int i = 0; i < length; i++)
+        into[i] = ints[i];
+    else if (doubles != null)
+      for (int i = 0; i < length; i++)
+        into[i] = (float)doubles[i];
+    else
+      for (int i = 0; i < length; i++)
+        into[i] = getNumber(i);
+    return into;
+  }
+
+  @Override
+  public int[] toIntArray(int[] into) {
+    int length = length();
+    if (into == null || into.length < length)
+      into = new int[length];
+    if (ints != null)
+      System.arraycopy(ints, 0, into, 0, length);
+    else if (doubles != null)
+      for (int i = 0; i < length; i++)
+        into[i] = (int)doubles[i];
+    else
+      for (int i = 0; i < length; i++)
+        into[i] = getInt(i);
+    return into;
+  }
+
   @Override
   public int length() {
-    return list.size();
+    return list != null ? list.size() : ints != null ? ints.length : doubles.length;
   }
 
   @Override
   public JsonArray remove(int index) {
-    if (index < 0 || index >= list.size())
+    if (index < 0 || index >= length())
       return this;
-    list.remove(index);
+    list().remove(index);
     return this;
   }
   
   @Override
   public JsonArray set(int index, java.lang.Object value) {
     JsonImpl.checkJsonType(value);
+    ArrayList<Object> list = list();
     // TODO(mmastrac): Use an array rather than ArrayList to make this more efficient
     while (list.size() <= index)
       list.add(null);
@@ -263,13 +396,19 @@ class JsonArray implements Json.Array {
 
   @Override
   public String toString() {
-    return list.toString();
+    StringBuilder buf = new StringBuilder("[");
+    for (int i = 0, length = length(); i < length; i++) {
+      if (i > 0)
+        buf.append(", ");
+      buf.append(get(i));
+    }
+    return buf.append(']').toString();
   }
   
   @Override
   public <T extends JsonSink<T>> JsonSink<T> write(JsonSink<T> sink) {
-    for (int i = 0; i < list.size(); i++)
-      sink.value(list.get(i));
+    for (int i = 0, length = length(); i < length; i++)
+      sink.value(get(i));
     return sink;
   }
   
@@ -278,7 +417,37 @@ class JsonArray implements Json.Array {
    * bounds (to match the HTML implementation).
    */
   Object get(int key) {
-    return (key >= 0 && key < list.size()) ? list.get(key) : null;
+    if (key < 0 || key >= length())
+      return null;
+    if (list != null) {
+      Object value = list.get(key);
+      if (value instanceof JsonLazyValue)
+        list.set(key, value = ((JsonLazyValue)value).materialize());
+      return value;
+    }
+    if (ints != null)
+      return ints[key];
+    double value = doubles[key];
+    if (intBits != null && (intBits[key >> 5] & (1 << (key & 31))) != 0)
+      return (int)value;
+    return value;
+  }
+
+  /**
+   * Returns our contents as a list, first boxing them if we hold only numbers.
+   */
+  private ArrayList<Object> list() {
+    if (list == null) {
+      int length = length();
+      ArrayList<Object> list = new ArrayList<Object>(length);
+      for (int i = 0; i < length; i++)
+        list.add(get(i));
+      this.list = list;
+      ints = null;
+      doubles = null;
+      intBits = null;
+    }
+    return list;
   }
  
 }
@@ -0,0 +1,273 @@
+/**
+ * Copyright 2011 The PlayN Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package playn.core.json;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+
+import playn.core.Json;
+
+/**
+ * Writes JSON as UTF-8 to an {@link OutputStream} or {@link WritableByteChannel}. Chars are
+ * encoded into a fixed size chunk as they are emitted, and the chunk is written out whenever it
+ * fills. Integers, and most floating point numbers, are formatted straight into the chunk rather
+ * than via {@link String#valueOf}.
+ */
+final class JsonByteWriter extends JsonWriterBase<Json.ByteWriter> implements Json.ByteWriter {
+  static final int CHUNK_SIZE = 8192;
+
+  private static final double[] POWERS_OF_TEN = {
+    1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11, 1e12, 1e13, 1e14, 1e15, 1e16,
+    1e17
+  };
+  private static final long[] LONG_POWERS_OF_TEN = {
+    1L, 10L, 100L, 1000L, 10000L, 100000L, 1000000L, 10000000L, 100000000L, 1000000000L,
+    10000000000L, 100000000000L, 1000000000000L, 10000000000000L, 100000000000000L,
+    1000000000000000L, 10000000000000000L, 100000000000000000L, 1000000000000000000L
+  };
+
+  private final Utf8Output output;
+
+  JsonByteWriter(OutputStream out) {
+    this(new Utf8Output(out, null, CHUNK_SIZE));
+  }
+
+  JsonByteWriter(WritableByteChannel out) {
+    this(new Utf8Output(null, out, CHUNK_SIZE));
+  }
+
+  /**
+   * Used for testing, to write in small chunks.
+   */
+  JsonByteWriter(OutputStream out, int chunkSize) {
+    this(new Utf8Output(out, null, chunkSize));
+  }
+
+  /**
+   * Used for testing, to write in small chunks.
+   */
+  JsonByteWriter(WritableByteChannel out, int chunkSize) {
+    this(new Utf8Output(null, out, chunkSize));
+  }
+
+  private JsonByteWriter(Utf8Output output) {
+    super(output);
+    this.output = output;
+  }
+
+  @Override
+  public void done() {
+    super.doneInternal();
+    output.finish();
+  }
+
+  @Override
+  void number(Number n) {
+    if (n instanceof Integer || n instanceof Long || n instanceof Short || n instanceof Byte)
+      output.appendLong(n.longValue());
+    else if (!(n instanceof Double && output.appendDecimal(n.doubleValue(), false)) &&
+             !(n instanceof Float && output.appendDecimal(n.floatValue(), true)))
+      output.append(n.toString());
+  }
+
+  /**
+   * Encodes chars as UTF-8 into a chunk, writing it out when full. On platforms where byte
+   * buffers are backed by arrays, the chunk is the array behind the buffer passed to the channel.
+   */
+  private static final class Utf8Output implements Appendable {
+    private final OutputStream stream;
+    private final WritableByteChannel channel;
+    private final ByteBuffer buffer;
+    private final byte[] chunk;
+    private int pos;
+    // a high surrogate awaiting the low surrogate that completes its code point, or 0 (strings
+    // always end with a quote, so this is resolved before any number or the end of the document)
+    private char highSurrogate;
+
+    Utf8Output(OutputStream stream, WritableByteChannel channel, int chunkSize) {
+      this.stream = stream;
+      this.channel = channel;
+      // allow for the longest encoding of a char or number, so that appends need to check for
+      // space only once
+      chunkSize = Math.max(chunkSize, 32);
+      if (channel == null) {
+        buffer = null;
+        chunk = new byte[chunkSize];
+      } else {
+        buffer = ByteBuffer.allocate(chunkSize);
+        chunk = buffer.hasArray() && buffer.arrayOffset() == 0 ? buffer.array() : new byte[chunkSize];
+      }
+    }
+
+    @Override
+    public Utf8Output append(CharSequence csq) {
+      return append(csq, 0, csq.length());
+    }
+
+    @Override
+    public Utf8Output append(CharSequence csq, int start, int end) {
+      for (int i = start; i < end; i++)
+        append(csq.charAt(i));
+      return this;
+    }
+
+    @Override
+    public Utf8Output append(char c) {
+      if (pos > chunk.length - 4)
+        writeChunk();
+      if (highSurrogate != 0) {
+        char high = highSurrogate;
+        highSurrogate = 0;
+        if (c >= '\uDC00' && c <= '\uDFFF') {
+          int cp = 0x10000 + ((high - '\uD800') << 10) + (c - '\uDC00');
+          chunk[pos++] = (byte) (0xF0 | (cp >> 18));
+          chunk[pos++] = (byte) (0x80 | ((cp >> 12) & 0x3F));
+          chunk[pos++] = (byte) (0x80 | ((cp >> 6) & 0x3F));
+          chunk[pos++] = (byte) (0x80 | (cp & 0x3F));
+          return this;
+        }
+        // unpaired surrogates are replaced, as String.getBytes does
+        chunk[pos++] = '?';
+      }
+
+      if (c < 0x80) {
+        chunk[pos++] = (byte) c;
+      } else if (c < 0x800) {
+        chunk[pos++] = (byte) (0xC0 | (c >> 6));
+        chunk[pos++] = (byte) (0x80 | (c & 0x3F));
+      } else if (c >= '\uD800' && c <= '\uDBFF') {
+        highSurrogate = c;
+      } else if (c >= '\uDC00' && c <= '\uDFFF') {
+        chunk[pos++] = '?';
+      } else {
+        chunk[pos++] = (byte) (0xE0 | (c >> 12));
+        chunk[pos++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+        chunk[pos++] = (byte) (0x80 | (c & 0x3F));
+      }
+      return this;
+    }
+
+    /**
+     * Appends the decimal digits of {@code value}, as {@link Long#toString} would.
+     */
+    void appendLong(long value) {
+      if (value == Long.MIN_VALUE) {
+        append("-9223372036854775808");
+        return;
+      }
+      if (pos > chunk.length - 20)
+        writeChunk();
+      if (value < 0) {
+        chunk[pos++] = '-';
+        value = -value;
+      }
+      int digits = 1;
+      while (digits < 19 && value >= LONG_POWERS_OF_TEN[digits])
+        digits++;
+      int p = pos += digits;
+      for (; value > Integer.MAX_VALUE; value /= 10)
+        chunk[--p] = (byte) ('0' + (int) (value % 10));
+      // most numbers fit in an int, whose arithmetic is cheaper
+      int v = (int) value;
+      do {
+        chunk[--p] = (byte) ('0' + v % 10);
+        v /= 10;
+      } while (v != 0);
+    }
+
+    /**
+     * Appends {@code value} as {@link Double#toString} (or {@link Float#toString}, if {@code
+     * isFloat}) would, if it lies in the range those print in plain notation and has at most 15 (or
+     * 7) significant digits. Otherwise appends nothing and returns false.
+     */
+    boolean appendDecimal(double value, boolean isFloat) {
+      double abs = Math.abs(value);
+      if (!(abs >= 1e-3 && abs < 1e7))
+        return false;
+      // find the fewest fractional digits that read back as the same value; scaling a float by a
+      // power of ten is exact, so rounding yields the nearest such decimal, as toString prints
+      double maxMantissa = isFloat ? 1 << 24 : 1e15;
+      for (int k = 0; k < POWERS_OF_TEN.length; k++) {
+        double scaled = abs * POWERS_OF_TEN[k];
+        if (scaled >= maxMantissa)
+          return false;
+        double mantissa = Math.rint(scaled);
+        double back = mantissa / POWERS_OF_TEN[k];
+        if (isFloat ? (float) back != (float) abs || isFloatMidpoint(back) : back != abs)
+          continue;
+
+        if (pos > chunk.length - 24)
+          writeChunk();
+        if (value < 0)
+          chunk[pos++] = '-';
+        long digits = (long) mantissa, unit = LONG_POWERS_OF_TEN[k];
+        appendLong(digits / unit);
+        chunk[pos++] = '.';
+        if (k == 0) {
+          chunk[pos++] = '0';
+        } else {
+          long fraction = digits % unit;
+          for (int p = pos += k; p > pos - k; fraction /= 10)
+            chunk[--p] = (byte) ('0' + (int) (fraction % 10));
+        }
+        return true;
+      }
+      return false;
+    }
+
+    /**
+     * Returns true if {@code value} lies exactly halfway between two floats, in which case
+     * converting it to a float may round differently to reading the decimal it came from.
+     */
+    private static boolean isFloatMidpoint(double value) {
+      return (Double.doubleToRawLongBits(value) & 0x1FFFFFFFL) == 0x10000000L;
+    }
+
+    /**
+     * Writes out everything appended so far, and flushes the stream.
+     */
+    void finish() {
+      writeChunk();
+      if (stream != null) {
+        try {
+          stream.flush();
+        } catch (IOException e) {
+          throw new JsonWriterException(e);
+        }
+      }
+    }
+
+    private void writeChunk() {
+      try {
+        if (stream != null) {
+          stream.write(chunk, 0, pos);
+        } else {
+          buffer.clear();
+          if (buffer.hasArray() && buffer.array() == chunk)
+            buffer.position(pos);
+          else
+            buffer.put(chunk, 0, pos);
+          buffer.flip();
+          while (buffer.hasRemaining())
+            channel.write(buffer);
+        }
+      } catch (IOException e) {
+        throw new JsonWriterException(e);
+      }
+      pos = 0;
+    }
+  }
+}
@@ -0,0 +1,515 @@
+/**
+ * Copyright 2011 The PlayN Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package playn.core.json;
+
+import static playn.core.json.JsonCborWriter.*;
+
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Streaming CBOR (RFC 8949) reader. Reports the items of a CBOR encoded value as the same {@link
+ * Event}s that {@link JsonReader} reports for JSON text, so that {@link JsonParser} can build
+ * trees from either.
+ *
+ * <p>Definite and indefinite length items are both accepted, as are half, single and double
+ * precision floats and bignums. Object keys must be text strings. Other tags are ignored, and the
+ * item they enclose is read in their place. Byte strings and simple values other than booleans,
+ * null and undefined (which is read as null) have no JSON equivalent, and are reported as errors.
+ * Positions in errors are byte offsets.</p>
+ */
+final class JsonCborReader implements JsonParser.Source {
+  private final byte[] bytes;
+  private final int offset, end;
+  private int index, itemIndex;
+  private char[] chars = new char[64];
+  // recently read keys, by hash, so that repeated keys share (and don't reallocate) a string
+  private String[] keyCache;
+
+  // the current event and its value
+  private Event event;
+  private String stringValue;
+  private boolean booleanValue;
+  private int numberType;
+  private long longValue;
+  private double doubleValue;
+  private BigInteger bigValue;
+
+  // the containers we're in: whether each is an object, whether a key is expected next in it, and
+  // how many items (keys and values) remain in it, or -1 for an indefinite length
+  private boolean[] objects = new boolean[16];
+  private boolean[] keyNext = new boolean[16];
+  private int[] remaining = new int[16];
+  private int depth;
+  private boolean started;
+
+  private static final int INT = 0, LONG = 1, DOUBLE = 2, BIG = 3;
+  private static final int KEY_CACHE_SIZE = 256, MAX_INTERNED_KEY = 32;
+
+  /**
+   * Creates a reader of the remaining bytes of {@code data}. The buffer's position is advanced to
+   * its limit.
+   */
+  JsonCborReader(ByteBuffer data) {
+    if (data.hasArray()) {
+      bytes = data.array();
+      offset = data.arrayOffset() + data.position();
+      end = data.arrayOffset() + data.limit();
+      data.position(data.limit());
+    } else {
+      bytes = new byte[data.remaining()];
+      data.get(bytes);
+      offset = 0;
+      end = bytes.length;
+    }
+    index = offset;
+  }
+
+  JsonCborReader(byte[] data, int offset, int length) {
+    this.bytes = data;
+    this.offset = offset;
+    this.end = offset + length;
+    this.index = offset;
+  }
+
+  @Override
+  public Event next() throws JsonParserException {
+    if (event == Event.EOF)
+      return event;
+    if (depth == 0 && started) {
+      if (index < end)
+        throw createParseException(null, "Expected end of input", false);
+      return event = Event.EOF;
+    }
+    started = true;
+
+    itemIndex = index;
+    if (depth > 0) {
+      int level = depth - 1;
+      if (remaining[level] == 0 || (remaining[level] < 0 && peek() == BREAK)) {
+        if (remaining[level] < 0)
+          index++;
+        if (objects[level] && !keyNext[level])
+          throw createParseException(null, "Object ended without a value for its last key", true);
+        depth--;
+        valueEnded();
+        return event = objects[level] ? Event.END_OBJECT : Event.END_ARRAY;
+      }
+      if (remaining[level] > 0)
+        remaining[level]--;
+    }
+
+    boolean key = depth > 0 && keyNext[depth - 1];
+    while (true) {
+      int initial = readByte(), major = initial >>> 5, info = initial & 0x1F;
+      if (key && major != MAJOR_TEXT && major != MAJOR_TAG)
+        throw createParseException(null, "Object keys must be strings", true);
+
+      switch (major) {
+      case MAJOR_UNSIGNED:
+        readUnsigned(readArgument(info));
+        return scalar(Event.NUMBER);
+
+      case MAJOR_NEGATIVE:
+        readNegative(readArgument(info));
+        return scalar(Event.NUMBER);
+
+      case MAJOR_TEXT:
+        stringValue = readString(info, key);
+        if (key) {
+          keyNext[depth - 1] = false;
+          return event = Event.KEY;
+        }
+        return scalar(Event.STRING);
+
+      case MAJOR_ARRAY:
+      case MAJOR_MAP:
+        startContainer(major == MAJOR_MAP, info);
+        return event = major == MAJOR_MAP ? Event.START_OBJECT : Event.START_ARRAY;
+
+      case MAJOR_TAG:
+        long tag = readArgument(info);
+        if ((tag == TAG_POSITIVE_BIGNUM || tag == TAG_NEGATIVE_BIGNUM) && !key &&
+            (peek() >>> 5) == MAJOR_BYTES) {
+          readBignum(tag == TAG_NEGATIVE_BIGNUM);
+          return scalar(Event.NUMBER);
+        }
+        // read the tagged item as if it were untagged
+        continue;
+
+      case MAJOR_SIMPLE:
+        switch (initial) {
+        case FALSE:
+        case TRUE:
+          booleanValue = initial == TRUE;
+          return scalar(Event.BOOLEAN);
+        case NULL:
+        case UNDEFINED:
+          return scalar(Event.NULL);
+        case FLOAT16:
+          setDouble(halfToDouble((int) readBits(2)));
+          return scalar(Event.NUMBER);
+        case FLOAT32:
+          setDouble(Float.intBitsToFloat((int) readBits(4)));
+          return scalar(Event.NUMBER);
+        case FLOAT64:
+          setDouble(Double.longBitsToDouble(readBits(8)));
+          return scalar(Event.NUMBER);
+        case BREAK:
+          throw createParseException(null, "Unexpected break", true);
+        default:
+          throw createParseException(null, "Unsupported simple value: " + info, true);
+        }
+
+      default: // MAJOR_BYTES
+        throw createParseException(null, "Byte strings are not supported", true);
+      }
+    }
+  }
+
+  @Override
+  public Event event() {
+    return event;
+  }
+
+  @Override
+  public String getString() {
+    if (event != Event.STRING && event != Event.KEY)
+      throw new IllegalStateException("Current event is not a string or key: " + event);
+    return stringValue;
+  }
+
+  @Override
+  public boolean getBoolean() {
+    if (event != Event.BOOLEAN)
+      throw new IllegalStateException("Current event is not a boolean: " + event);
+    return booleanValue;
+  }
+
+  @Override
+  public int getInt() {
+    checkNumber();
+    switch (numberType) {
+    case DOUBLE:
+      return (int)doubleValue;
+    case BIG:
+      return bigValue.intValue();
+    default:
+      return (int)longValue;
+    }
+  }
+
+  @Override
+  public long getLong() {
+    checkNumber();
+    switch (numberType) {
+    case DOUBLE:
+      return (long)doubleValue;
+    case BIG:
+      return bigValue.longValue();
+    default:
+      return longValue;
+    }
+  }
+
+  @Override
+  public float getFloat() {
+    return (float)getDouble();
+  }
+
+  @Override
+  public double getDouble() {
+    checkNumber();
+    switch (numberType) {
+    case DOUBLE:
+      return doubleValue;
+    case BIG:
+      return bigValue.doubleValue();
+    default:
+      return longValue;
+    }
+  }
+
+  @Override
+  public Number getNumber() {
+    checkNumber();
+    switch (numberType) {
+    case INT:
+      return (int)longValue;
+    case LONG:
+      return longValue;
+    case DOUBLE:
+      return doubleValue;
+    default:
+      return bigValue;
+    }
+  }
+
+  @Override
+  public void skipValue() throws JsonParserException {
+    if (event != Event.START_OBJECT && event != Event.START_ARRAY)
+      return;
+    int target = depth - 1;
+    while (depth > target)
+      next();
+  }
+
+  @Override
+  public boolean isIntNumber() {
+    return numberType == INT;
+  }
+
+  @Override
+  public boolean isDoubleNumber() {
+    return numberType == DOUBLE;
+  }
+
+  /**
+   * Creates a {@link JsonParserException} which reports a byte offset into the input.
+   *
+   * @param tokenPos if true, the offset of the start of the current item is reported, otherwise
+   * the offset of the next byte to be read is reported.
+   */
+  @Override
+  public JsonParserException createParseException(Exception e, String message, boolean tokenPos) {
+    int pos = (tokenPos ? itemIndex : index) - offset;
+    return new JsonParserException(e, message + " at byte " + pos, 1, pos + 1, pos);
+  }
+
+  private Event scalar(Event event) {
+    valueEnded();
+    return this.event = event;
+  }
+
+  /**
+   * Notes that a value was completed in the current container, so a key is next if it's an object.
+   */
+  private void valueEnded() {
+    if (depth > 0 && objects[depth - 1])
+      keyNext[depth - 1] = true;
+  }
+
+  private void startContainer(boolean object, int info) throws JsonParserException {
+    int count = -1;
+    if (info != INDEFINITE) {
+      long size = readArgument(info);
+      // each item takes at least a byte, which bounds the sizes we can be given
+      if (size < 0 || size > end - index)
+        throw createParseException(null, "Object or array is larger than the input", true);
+      count = object ? (int)size * 2 : (int)size;
+    }
+    if (depth == objects.length) {
+      objects = Arrays.copyOf(objects, depth * 2);
+      keyNext = Arrays.copyOf(keyNext, depth * 2);
+      remaining = Arrays.copyOf(remaining, depth * 2);
+    }
+    objects[depth] = object;
+    keyNext[depth] = object;
+    remaining[depth++] = count;
+  }
+
+  private void readUnsigned(long value) {
+    if (value >= 0) {
+      longValue = value;
+      numberType = value <= Integer.MAX_VALUE ? INT : LONG;
+    } else {
+      // the argument is at least 2^63
+      bigValue = BigInteger.valueOf(value & Long.MAX_VALUE).setBit(63);
+      numberType = BIG;
+    }
+  }
+
+  private void readNegative(long value) {
+    if (value >= 0) {
+      longValue = -1 - value;
+      numberType = longValue >= Integer.MIN_VALUE ? INT : LONG;
+    } else {
+      bigValue = BigInteger.valueOf(value & Long.MAX_VALUE).setBit(63).add(BigInteger.ONE).negate();
+      numberType = BIG;
+    }
+  }
+
+  private void readBignum(boolean negative) throws JsonParserException {
+    int length = checkLength(readArgument(readByte() & 0x1F));
+    byte[] magnitude = new byte[length + 1];
+    System.arraycopy(bytes, index, magnitude, 1, length);
+    index += length;
+    bigValue = new BigInteger(magnitude);
+    if (negative)
+      bigValue = bigValue.add(BigInteger.ONE).negate();
+    numberType = BIG;
+    if (bigValue.bitLength() < 64) {
+      // normalize to the type we'd use for the same number written without a tag
+      longValue = bigValue.longValue();
+      numberType = longValue >= Integer.MIN_VALUE && longValue <= Integer.MAX_VALUE ? INT : LONG;
+    }
+  }
+
+  private void setDouble(double value) {
+    doubleValue = value;
+    numberType = DOUBLE;
+  }
+
+  private String readString(int info, boolean key) throws JsonParserException {
+    if (info != INDEFINITE) {
+      int length = checkLength(readArgument(info));
+      String s = decodeUtf8(index, index + length, key);
+      index += length;
+      return s;
+    }
+    // an indefinite length string is a sequence of definite length chunks
+    StringBuilder buf = new StringBuilder();
+    while (peek() != BREAK) {
+      int initial = readByte();
+      if ((initial >>> 5) != MAJOR_TEXT || (initial & 0x1F) == INDEFINITE)
+        throw createParseException(null, "Expected a definite length string chunk", false);
+      buf.append(readString(initial & 0x1F, false));
+    }
+    index++;
+    return buf.toString();
+  }
+
+  private String decodeUtf8(int from, int to, boolean key) throws JsonParserException {
+    if (chars.length < to - from)
+      chars = new char[Math.max(to - from, chars.length * 2)];
+    char[] chars = this.chars;
+    int count = 0;
+    for (int i = from; i < to; ) {
+      int b = bytes[i++];
+      if (b >= 0) {
+        chars[count++] = (char) b;
+        continue;
+      }
+      int cp, extra;
+      if ((b & 0xE0) == 0xC0) {
+        cp = b & 0x1F;
+        extra = 1;
+      } else if ((b & 0xF0) == 0xE0) {
+        cp = b & 0x0F;
+        extra = 2;
+      } else if ((b & 0xF8) == 0xF0) {
+        cp = b & 0x07;
+        extra = 3;
+      } else {
+        throw createParseException(null, "Invalid UTF-8 byte: 0x" + Integer.toString(b & 0xFF, 16), true);
+      }
+      if (i + extra > to)
+        throw createParseException(null, "Invalid UTF-8 sequence", true);
+      for (; extra > 0; extra--) {
+        int c = bytes[i++];
+        if ((c & 0xC0) != 0x80)
+          throw createParseException(null, "Invalid UTF-8 sequence", true);
+        cp = (cp << 6) | (c & 0x3F);
+      }
+      if (cp >= 0x10000) {
+        chars[count++] = (char) (0xD800 + ((cp - 0x10000) >> 10));
+        chars[count++] = (char) (0xDC00 + ((cp - 0x10000) & 0x3FF));
+      } else {
+        chars[count++] = (char) cp;
+      }
+    }
+    return (key && count <= MAX_INTERNED_KEY) ? internKey(count) : new String(chars, 0, count);
+  }
+
+  /**
+   * Returns a string of the first {@code count} decoded chars, reusing the string from a recent
+   * key with the same chars if there is one, as {@link JsonReader} does.
+   */
+  private String internKey(int count) {
+    int hash = 0;
+    for (int i = 0; i < count; i++)
+      hash = 31 * hash + chars[i];
+    if (keyCache == null)
+      keyCache = new String[KEY_CACHE_SIZE];
+    int slot = (hash ^ (hash >>> 16)) & (KEY_CACHE_SIZE - 1);
+    String cached = keyCache[slot];
+    if (cached != null && cached.length() == count && cached.hashCode() == hash) {
+      int i = 0;
+      while (i < count && cached.charAt(i) == chars[i])
+        i++;
+      if (i == count)
+        return cached;
+    }
+    return keyCache[slot] = new String(chars, 0, count);
+  }
+
+  /**
+   * Reads the argument of an item whose initial byte had the additional info {@code info}. Eight
+   * byte arguments are unsigned, so may be negative when returned as a long.
+   */
+  private long readArgument(int info) throws JsonParserException {
+    if (info < 24)
+      return info;
+    switch (info) {
+    case 24:
+      return readByte();
+    case 25:
+      return readBits(2);
+    case 26:
+      return readBits(4);
+    case 27:
+      return readBits(8);
+    default:
+      throw createParseException(null, "Invalid additional info: " + info, true);
+    }
+  }
+
+  /**
+   * Checks that a string of {@code length} bytes fits in the remaining input.
+   */
+  private int checkLength(long length) throws JsonParserException {
+    if (length < 0 || length > end - index)
+      throw createParseException(null, "Unexpected end of input", false);
+    return (int) length;
+  }
+
+  private long readBits(int count) throws JsonParserException {
+    if (index + count > end)
+      throw createParseException(null, "Unexpected end of input", false);
+    long bits = 0;
+    for (int i = 0; i < count; i++)
+      bits = (bits << 8) | (bytes[index++] & 0xFF);
+    return bits;
+  }
+
+  private int readByte() throws JsonParserException {
+    if (index >= end)
+      throw createParseException(null, "Unexpected end of input", false);
+    return bytes[index++] & 0xFF;
+  }
+
+  private int peek() throws JsonParserException {
+    if (index >= end)
+      throw createParseException(null, "Unexpected end of input", false);
+    return bytes[index] & 0xFF;
+  }
+
+  private void checkNumber() {
+    if (event != Event.NUMBER)
+      throw new IllegalStateException("Current event is not a number: " + event);
+  }
+
+  private static double halfToDouble(int half) {
+    int exponent = (half >> 10) & 0x1F, mantissa = half & 0x3FF;
+    double value;
+    if (exponent == 0)
+      value = mantissa * Math.pow(2, -24);
+    else if (exponent == 31)
+      value = mantissa == 0 ? Double.POSITIVE_INFINITY : Double.NaN;
+    else
+      value = (mantissa + 1024) * Math.pow(2, exponent - 25);
+    return (half & 0x8000) == 0 ? value : -value;
+  }
+}
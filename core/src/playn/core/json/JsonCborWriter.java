@@ -0,0 +1,434 @@
+/**
+ * Copyright 2011 The PlayN Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package playn.core.json;
+
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Map;
+
+import playn.core.Json;
+
+/**
+ * Encodes JSON values as CBOR (RFC 8949). Objects and arrays whose size is known up front (those
+ * passed as a {@link Json.Object}, {@link Json.Array}, {@link Map} or {@link Collection}) are
+ * written with a definite length, and those started with {@link #object()} or {@link #array()}
+ * with an indefinite length. Doubles which are exactly representable as floats are written in
+ * single precision.
+ */
+final class JsonCborWriter implements Json.BinaryWriter {
+  static final int MAJOR_UNSIGNED = 0, MAJOR_NEGATIVE = 1, MAJOR_BYTES = 2, MAJOR_TEXT = 3;
+  static final int MAJOR_ARRAY = 4, MAJOR_MAP = 5, MAJOR_TAG = 6, MAJOR_SIMPLE = 7;
+  static final int FALSE = 0xF4, TRUE = 0xF5, NULL = 0xF6, UNDEFINED = 0xF7;
+  static final int FLOAT16 = 0xF9, FLOAT32 = 0xFA, FLOAT64 = 0xFB;
+  static final int INDEFINITE = 31, BREAK = 0xFF;
+  static final int TAG_POSITIVE_BIGNUM = 2, TAG_NEGATIVE_BIGNUM = 3;
+
+  private static final BigInteger MAX_UNSIGNED = BigInteger.ONE.shiftLeft(64);
+
+  private byte[] bytes = new byte[256];
+  private int length;
+  private boolean written;
+
+  // the containers we're in: whether each is an object, and how many items remain in those of a
+  // definite length (or -1 for an indefinite length)
+  private boolean[] objects = new boolean[16];
+  private int[] remaining = new int[16];
+  private int depth;
+
+  @Override
+  public ByteBuffer write() {
+    if (depth > 0)
+      throw new JsonWriterException("Unclosed JSON objects and/or arrays when closing writer");
+    if (!written)
+      throw new JsonWriterException("Nothing was written to the JSON writer");
+    ByteBuffer buffer = ByteBuffer.allocate(length);
+    buffer.put(bytes, 0, length);
+    buffer.flip();
+    return buffer;
+  }
+
+  @Override
+  public Json.BinaryWriter array(Collection<?> c) {
+    return array(null, c);
+  }
+
+  @Override
+  public Json.BinaryWriter array(Json.Array c) {
+    return array(null, c);
+  }
+
+  @Override
+  public Json.BinaryWriter array(String key, Collection<?> c) {
+    start(key, false, c.size());
+    for (Object o : c)
+      value(o);
+    return finish();
+  }
+
+  @Override
+  public Json.BinaryWriter array(String key, Json.Array c) {
+    start(key, false, c.length());
+    c.write(this);
+    return finish();
+  }
+
+  @Override
+  public Json.BinaryWriter object(Map<?, ?> map) {
+    return object(null, map);
+  }
+
+  @Override
+  public Json.BinaryWriter object(Json.Object map) {
+    return object(null, map);
+  }
+
+  @Override
+  public Json.BinaryWriter object(String key, Map<?, ?> map) {
+    start(key, true, map.size());
+    for (Map.Entry<?, ?> entry : map.entrySet()) {
+      if (!(entry.getKey() instanceof String))
+        throw new JsonWriterException("Invalid key type for map: "
+            + (entry.getKey() == null ? "null" : entry.getKey().getClass()));
+      value((String) entry.getKey(), entry.getValue());
+    }
+    return finish();
+  }
+
+  @Override
+  public Json.BinaryWriter object(String key, Json.Object obj) {
+    start(key, true, obj.keys().length());
+    obj.write(this);
+    return finish();
+  }
+
+  @Override
+  public Json.BinaryWriter nul() {
+    preValue(null);
+    writeByte(NULL);
+    return this;
+  }
+
+  @Override
+  public Json.BinaryWriter nul(String key) {
+    preValue(key);
+    writeByte(NULL);
+    return this;
+  }
+
+  @Override
+  public Json.BinaryWriter value(Object o) {
+    return value(null, o);
+  }
+
+  @Override
+  public Json.BinaryWriter value(String key, Object o) {
+    if (o == null)
+      return key == null ? nul() : nul(key);
+    else if (o instanceof String)
+      return key == null ? value((String) o) : value(key, (String) o);
+    else if (o instanceof Number)
+      return key == null ? value((Number) o) : value(key, (Number) o);
+    else if (o instanceof Boolean)
+      return key == null ? value((boolean) (Boolean) o) : value(key, (boolean) (Boolean) o);
+    else if (o instanceof Collection)
+      return array(key, (Collection<?>) o);
+    else if (o instanceof Map)
+      return object(key, (Map<?, ?>) o);
+    else if (JsonTypes.isArray(o))
+      return array(key, (Json.Array) o);
+    else if (JsonTypes.isObject(o))
+      return object(key, (Json.Object) o);
+    else
+      throw new JsonWriterException("Unable to handle type: " + o.getClass());
+  }
+
+  @Override
+  public Json.BinaryWriter value(String s) {
+    if (s == null)
+      return nul();
+    preValue(null);
+    writeString(s);
+    return this;
+  }
+
+  @Override
+  public Json.BinaryWriter value(boolean b) {
+    preValue(null);
+    writeByte(b ? TRUE : FALSE);
+    return this;
+  }
+
+  @Override
+  public Json.BinaryWriter value(Number n) {
+    if (n == null)
+      return nul();
+    preValue(null);
+    writeNumber(n);
+    return this;
+  }
+
+  @Override
+  public Json.BinaryWriter value(String key, String s) {
+    if (s == null)
+      return nul(key);
+    preValue(key);
+    writeString(s);
+    return this;
+  }
+
+  @Override
+  public Json.BinaryWriter value(String key, boolean b) {
+    preValue(key);
+    writeByte(b ? TRUE : FALSE);
+    return this;
+  }
+
+  @Override
+  public Json.BinaryWriter value(String key, Number n) {
+    if (n == null)
+      return nul(key);
+    preValue(key);
+    writeNumber(n);
+    return this;
+  }
+
+  @Override
+  public Json.BinaryWriter array() {
+    start(null, false, -1);
+    return this;
+  }
+
+  @Override
+  public Json.BinaryWriter object() {
+    start(null, true, -1);
+    return this;
+  }
+
+  @Override
+  public Json.BinaryWriter array(String key) {
+    start(key, false, -1);
+    return this;
+  }
+
+  @Override
+  public Json.BinaryWriter object(String key) {
+    start(key, true, -1);
+    return this;
+  }
+
+  @Override
+  public Json.BinaryWriter end() {
+    if (depth == 0 || remaining[depth - 1] >= 0)
+      throw new JsonWriterException("Invalid call to end()");
+    depth--;
+    writeByte(BREAK);
+    return this;
+  }
+
+  /**
+   * Starts an object or array, of {@code size} items or of indefinite length if {@code size} is
+   * negative.
+   */
+  private void start(String key, boolean object, int size) {
+    preValue(key);
+    if (size < 0)
+      writeByte(((object ? MAJOR_MAP : MAJOR_ARRAY) << 5) | INDEFINITE);
+    else
+      writeHead(object ? MAJOR_MAP : MAJOR_ARRAY, size);
+    if (depth == objects.length) {
+      objects = Arrays.copyOf(objects, depth * 2);
+      remaining = Arrays.copyOf(remaining, depth * 2);
+    }
+    objects[depth] = object;
+    remaining[depth++] = size;
+  }
+
+  /**
+   * Finishes an object or array of definite length, which must have been given all its items.
+   */
+  private Json.BinaryWriter finish() {
+    if (remaining[--depth] != 0)
+      throw new JsonWriterException("Object or array changed size while it was being written");
+    return this;
+  }
+
+  private void preValue(String key) {
+    if (depth == 0) {
+      if (written)
+        throw new JsonWriterException("Invalid call to emit a value in a finished JSON writer");
+      if (key != null)
+        throw new JsonWriterException("Invalid call to emit a key value while not writing an object");
+      written = true;
+      return;
+    }
+
+    if (objects[depth - 1]) {
+      if (key == null)
+        throw new JsonWriterException("Invalid call to emit a keyless value while writing an object");
+    } else if (key != null) {
+      throw new JsonWriterException("Invalid call to emit a key value while not writing an object");
+    }
+    if (remaining[depth - 1] == 0)
+      throw new JsonWriterException("Object or array changed size while it was being written");
+    if (remaining[depth - 1] > 0)
+      remaining[depth - 1]--;
+    if (key != null)
+      writeString(key);
+  }
+
+  private void writeNumber(Number n) {
+    if (n instanceof Integer || n instanceof Long || n instanceof Short || n instanceof Byte) {
+      writeLong(n.longValue());
+    } else if (n instanceof BigInteger) {
+      BigInteger big = (BigInteger) n;
+      if (big.bitLength() < 64) {
+        writeLong(big.longValue());
+      } else {
+        // a negative n is encoded as -1 - n
+        boolean negative = big.signum() < 0;
+        BigInteger magnitude = negative ? big.negate().subtract(BigInteger.ONE) : big;
+        if (magnitude.compareTo(MAX_UNSIGNED) < 0) {
+          writeHead(negative ? MAJOR_NEGATIVE : MAJOR_UNSIGNED, magnitude.longValue());
+        } else {
+          writeHead(MAJOR_TAG, negative ? TAG_NEGATIVE_BIGNUM : TAG_POSITIVE_BIGNUM);
+          byte[] data = magnitude.toByteArray();
+          // drop the sign byte that toByteArray may add
+          int skip = data[0] == 0 ? 1 : 0;
+          writeHead(MAJOR_BYTES, data.length - skip);
+          ensure(data.length);
+          System.arraycopy(data, skip, bytes, length, data.length - skip);
+          length += data.length - skip;
+        }
+      }
+    } else {
+      // floats (and NaN) need only single precision to round trip
+      double d = n.doubleValue();
+      float f = (float) d;
+      if (f == d || d != d) {
+        writeByte(FLOAT32);
+        writeBits(Float.floatToIntBits(f), 4);
+      } else {
+        writeByte(FLOAT64);
+        writeBits(Double.doubleToLongBits(d), 8);
+      }
+    }
+  }
+
+  private void writeLong(long value) {
+    if (value >= 0)
+      writeHead(MAJOR_UNSIGNED, value);
+    else
+      writeHead(MAJOR_NEGATIVE, -1 - value);
+  }
+
+  /**
+   * Writes an item's initial byte and its argument, in the fewest bytes that will hold it. The
+   * argument is unsigned.
+   */
+  private void writeHead(int major, long argument) {
+    int type = major << 5;
+    if (argument >= 0 && argument < 24) {
+      writeByte(type | (int) argument);
+    } else if (argument >= 0 && argument < 0x100) {
+      writeByte(type | 24);
+      writeByte((int) argument);
+    } else if (argument >= 0 && argument < 0x10000) {
+      writeByte(type | 25);
+      writeBits(argument, 2);
+    } else if (argument >= 0 && argument < 0x100000000L) {
+      writeByte(type | 26);
+      writeBits(argument, 4);
+    } else {
+      writeByte(type | 27);
+      writeBits(argument, 8);
+    }
+  }
+
+  /**
+   * Writes {@code count} bytes of {@code bits}, big-endian.
+   */
+  private void writeBits(long bits, int count) {
+    ensure(count);
+    for (int shift = (count - 1) * 8; shift >= 0; shift -= 8)
+      bytes[length++] = (byte) (bits >>> shift);
+  }
+
+  /**
+   * Writes a text string, encoding unpaired surrogates as '?' as {@link String#getBytes} does.
+   */
+  private void writeString(String s) {
+    int chars = s.length(), size = 0;
+    for (int i = 0; i < chars; i++) {
+      char c = s.charAt(i);
+      if (c < 0x80)
+        size++;
+      else if (c < 0x800)
+        size += 2;
+      else if (isSurrogatePair(s, i)) {
+        size += 4;
+        i++;
+      } else if (c >= '\uD800' && c <= '\uDFFF')
+        size++;
+      else
+        size += 3;
+    }
+    writeHead(MAJOR_TEXT, size);
+    ensure(size);
+
+    byte[] bytes = this.bytes;
+    int pos = length;
+    for (int i = 0; i < chars; i++) {
+      char c = s.charAt(i);
+      if (c < 0x80) {
+        bytes[pos++] = (byte) c;
+      } else if (c < 0x800) {
+        bytes[pos++] = (byte) (0xC0 | (c >> 6));
+        bytes[pos++] = (byte) (0x80 | (c & 0x3F));
+      } else if (isSurrogatePair(s, i)) {
+        int cp = 0x10000 + ((c - '\uD800') << 10) + (s.charAt(++i) - '\uDC00');
+        bytes[pos++] = (byte) (0xF0 | (cp >> 18));
+        bytes[pos++] = (byte) (0x80 | ((cp >> 12) & 0x3F));
+        bytes[pos++] = (byte) (0x80 | ((cp >> 6) & 0x3F));
+        bytes[pos++] = (byte) (0x80 | (cp & 0x3F));
+      } else if (c >= '\uD800' && c <= '\uDFFF') {
+        bytes[pos++] = '?';
+      } else {
+        bytes[pos++] = (byte) (0xE0 | (c >> 12));
+        bytes[pos++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+        bytes[pos++] = (byte) (0x80 | (c & 0x3F));
+      }
+    }
+    length = pos;
+  }
+
+  private static boolean isSurrogatePair(String s, int i) {
+    char c = s.charAt(i);
+    if (c < '\uD800' || c > '\uDBFF' || i + 1 == s.length())
+      return false;
+    char d = s.charAt(i + 1);
+    return d >= '\uDC00' && d <= '\uDFFF';
+  }
+
+  private void writeByte(int b) {
+    ensure(1);
+    bytes[length++] = (byte) b;
+  }
+
+  private void ensure(int count) {
+    if (length + count > bytes.length)
+      bytes = Arrays.copyOf(bytes, Math.max(bytes.length * 2, length + count));
+  }
+}
@@ -0,0 +1,557 @@
+/**
+ * Copyright 2011 The PlayN Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package playn.core.json;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import playn.core.Json;
+import playn.core.Json.Reader.Event;
+
+/**
+ * Reads values of type {@code T} from a {@link Json.Reader} and writes them to a {@link JsonSink},
+ * without building an intermediate {@link Json.Object} tree.
+ *
+ * <p>Codecs for classes annotated with {@link Mapped} are generated at compile time by the {@code
+ * playn-processor} annotation processor, as {@code <Class>JsonCodec} (with nested class names
+ * joined by {@code _}) in the same package, and accessed via its static {@code INSTANCE} field:
+ *
+ * <pre>
+ * Item item = ItemJsonCodec.INSTANCE.parse(json.newReader(text));
+ * String text = ItemJsonCodec.INSTANCE.write(json.newWriter(), item).write();
+ * </pre>
+ *
+ * <p>The generated code reads and writes fields directly, so it uses no reflection and works on
+ * all platforms. For GWT, include the generated sources in the module's source path.
+ */
+public abstract class JsonCodec<T> {
+
+  /**
+   * Marks a class for which a codec is generated. Its non-static, non-transient fields are mapped
+   * to the keys of a JSON object of the same names. Fields must be neither private nor final, and
+   * the class must have a non-private no argument constructor. Keys that are missing when reading
+   * leave the field as the constructor left it, and unknown keys are skipped.
+   *
+   * <p>Fields may be primitives (other than {@code char}), their boxes, {@code String}s, enums
+   * (written by name), other mapped classes, arrays of any of these, {@code List}s of these and
+   * {@code Map}s from {@code String} to these.
+   */
+  @Retention(RetentionPolicy.CLASS)
+  @Target(ElementType.TYPE)
+  public @interface Mapped {
+  }
+
+  /**
+   * Maps a field to a key other than its name.
+   */
+  @Retention(RetentionPolicy.CLASS)
+  @Target(ElementType.FIELD)
+  public @interface Key {
+    String value();
+  }
+
+  /** Reads and writes {@link Integer}s, or null. */
+  public static final JsonCodec<Integer> INT = new JsonCodec<Integer>() {
+    @Override
+    public Integer read(Json.Reader in) throws JsonParserException {
+      return isNull(in) ? null : readInt(in);
+    }
+
+    @Override
+    public void write(JsonSink<?> out, String key, Integer value) {
+      writeNumber(out, key, value);
+    }
+  };
+
+  /** Reads and writes {@link Long}s, or null. */
+  public static final JsonCodec<Long> LONG = new JsonCodec<Long>() {
+    @Override
+    public Long read(Json.Reader in) throws JsonParserException {
+      return isNull(in) ? null : readLong(in);
+    }
+
+    @Override
+    public void write(JsonSink<?> out, String key, Long value) {
+      writeNumber(out, key, value);
+    }
+  };
+
+  /** Reads and writes {@link Float}s, or null. */
+  public static final JsonCodec<Float> FLOAT = new JsonCodec<Float>() {
+    @Override
+    public Float read(Json.Reader in) throws JsonParserException {
+      return isNull(in) ? null : readFloat(in);
+    }
+
+    @Override
+    public void write(JsonSink<?> out, String key, Float value) {
+      writeNumber(out, key, value);
+    }
+  };
+
+  /** Reads and writes {@link Double}s, or null. */
+  public static final JsonCodec<Double> DOUBLE = new JsonCodec<Double>() {
+    @Override
+    public Double read(Json.Reader in) throws JsonParserException {
+      return isNull(in) ? null : readDouble(in);
+    }
+
+    @Override
+    public void write(JsonSink<?> out, String key, Double value) {
+      writeNumber(out, key, value);
+    }
+  };
+
+  /** Reads and writes {@link Boolean}s, or null. */
+  public static final JsonCodec<Boolean> BOOLEAN = new JsonCodec<Boolean>() {
+    @Override
+    public Boolean read(Json.Reader in) throws JsonParserException {
+      return isNull(in) ? null : readBoolean(in);
+    }
+
+    @Override
+    public void write(JsonSink<?> out, String key, Boolean value) {
+      if (value == null)
+        writeNull(out, key);
+      else if (key == null)
+        out.value(value.booleanValue());
+      else
+        out.value(key, value.booleanValue());
+    }
+  };
+
+  /** Reads and writes {@link String}s, or null. */
+  public static final JsonCodec<String> STRING = new JsonCodec<String>() {
+    @Override
+    public String read(Json.Reader in) throws JsonParserException {
+      return readString(in);
+    }
+
+    @Override
+    public void write(JsonSink<?> out, String key, String value) {
+      if (key == null)
+        out.value(value);
+      else
+        out.value(key, value);
+    }
+  };
+
+  /** Reads and writes arrays of ints, or null. */
+  public static final JsonCodec<int[]> INT_ARRAY = new JsonCodec<int[]>() {
+    @Override
+    public int[] read(Json.Reader in) throws JsonParserException {
+      if (isNull(in))
+        return null;
+      expect(in, Event.START_ARRAY);
+      int[] values = new int[8];
+      int count = 0;
+      while (in.next() != Event.END_ARRAY) {
+        if (count == values.length)
+          values = Arrays.copyOf(values, count * 2);
+        values[count++] = readInt(in);
+      }
+      return Arrays.copyOf(values, count);
+    }
+
+    @Override
+    public void write(JsonSink<?> out, String key, int[] values) {
+      if (values == null) {
+        writeNull(out, key);
+        return;
+      }
+      startArray(out, key);
+      for (int value : values)
+        out.value(value);
+      out.end();
+    }
+  };
+
+  /** Reads and writes arrays of longs, or null. */
+  public static final JsonCodec<long[]> LONG_ARRAY = new JsonCodec<long[]>() {
+    @Override
+    public long[] read(Json.Reader in) throws JsonParserException {
+      if (isNull(in))
+        return null;
+      expect(in, Event.START_ARRAY);
+      long[] values = new long[8];
+      int count = 0;
+      while (in.next() != Event.END_ARRAY) {
+        if (count == values.length)
+          values = Arrays.copyOf(values, count * 2);
+        values[count++] = readLong(in);
+      }
+      return Arrays.copyOf(values, count);
+    }
+
+    @Override
+    public void write(JsonSink<?> out, String key, long[] values) {
+      if (values == null) {
+        writeNull(out, key);
+        return;
+      }
+      startArray(out, key);
+      for (long value : values)
+        out.value(value);
+      out.end();
+    }
+  };
+
+  /** Reads and writes arrays of floats, or null. */
+  public static final JsonCodec<float[]> FLOAT_ARRAY = new JsonCodec<float[]>() {
+    @Override
+    public float[] read(Json.Reader in) throws JsonParserException {
+      if (isNull(in))
+        return null;
+      expect(in, Event.START_ARRAY);
+      float[] values = new float[8];
+      int count = 0;
+      while (in.next() != Event.END_ARRAY) {
+        if (count == values.length)
+          values = Arrays.copyOf(values, count * 2);
+        values[count++] = readFloat(in);
+      }
+      return Arrays.copyOf(values, count);
+    }
+
+    @Override
+    public void write(JsonSink<?> out, String key, float[] values) {
+      if (values == null) {
+        writeNull(out, key);
+        return;
+      }
+      startArray(out, key);
+      for (float value : values)
+        out.value(value);
+      out.end();
+    }
+  };
+
+  /** Reads and writes arrays of doubles, or null. */
+  public static final JsonCodec<double[]> DOUBLE_ARRAY = new JsonCodec<double[]>() {
+    @Override
+    public double[] read(Json.Reader in) throws JsonParserException {
+      if (isNull(in))
+        return null;
+      expect(in, Event.START_ARRAY);
+      double[] values = new double[8];
+      int count = 0;
+      while (in.next() != Event.END_ARRAY) {
+        if (count == values.length)
+          values = Arrays.copyOf(values, count * 2);
+        values[count++] = readDouble(in);
+      }
+      return Arrays.copyOf(values, count);
+    }
+
+    @Override
+    public void write(JsonSink<?> out, String key, double[] values) {
+      if (values == null) {
+        writeNull(out, key);
+        return;
+      }
+      startArray(out, key);
+      for (double value : values)
+        out.value(value);
+      out.end();
+    }
+  };
+
+  /** Reads and writes arrays of booleans, or null. */
+  public static final JsonCodec<boolean[]> BOOLEAN_ARRAY = new JsonCodec<boolean[]>() {
+    @Override
+    public boolean[] read(Json.Reader in) throws JsonParserException {
+      if (isNull(in))
+        return null;
+      expect(in, Event.START_ARRAY);
+      boolean[] values = new boolean[8];
+      int count = 0;
+      while (in.next() != Event.END_ARRAY) {
+        if (count == values.length)
+          values = Arrays.copyOf(values, count * 2);
+        values[count++] = readBoolean(in);
+      }
+      return Arrays.copyOf(values, count);
+    }
+
+    @Override
+    public void write(JsonSink<?> out, String key, boolean[] values) {
+      if (values == null) {
+        writeNull(out, key);
+        return;
+      }
+      startArray(out, key);
+      for (boolean value : values)
+        out.value(value);
+      out.end();
+    }
+  };
+
+  /**
+   * Returns a codec for enums of the type whose {@code values()} are supplied, which are written
+   * by name.
+   */
+  public static <E extends Enum<E>> JsonCodec<E> enumOf(final E[] values) {
+    return new JsonCodec<E>() {
+      @Override
+      public E read(Json.Reader in) throws JsonParserException {
+        String name = readString(in);
+        if (name == null)
+          return null;
+        for (E value : values)
+          if (value.name().equals(name))
+            return value;
+        throw error(in, "Unknown enum constant " + name);
+      }
+
+      @Override
+      public void write(JsonSink<?> out, String key, E value) {
+        STRING.write(out, key, value == null ? null : value.name());
+      }
+    };
+  }
+
+  /**
+   * Returns a codec for arrays of the values handled by {@code codec}.
+   *
+   * @param empty an empty array of the desired type, from which larger ones are created.
+   */
+  public static <E> JsonCodec<E[]> arrayOf(final JsonCodec<E> codec, final E[] empty) {
+    final JsonCodec<List<E>> list = listOf(codec);
+    return new JsonCodec<E[]>() {
+      @Override
+      public E[] read(Json.Reader in) throws JsonParserException {
+        List<E> values = list.read(in);
+        return values == null ? null : values.toArray(empty);
+      }
+
+      @Override
+      public void write(JsonSink<?> out, String key, E[] values) {
+        list.write(out, key, values == null ? null : Arrays.asList(values));
+      }
+    };
+  }
+
+  /**
+   * Returns a codec for lists of the values handled by {@code codec}. Lists are read as {@link
+   * ArrayList}s.
+   */
+  public static <E> JsonCodec<List<E>> listOf(final JsonCodec<E> codec) {
+    return new JsonCodec<List<E>>() {
+      @Override
+      public List<E> read(Json.Reader in) throws JsonParserException {
+        if (isNull(in))
+          return null;
+        expect(in, Event.START_ARRAY);
+        List<E> values = new ArrayList<E>();
+        while (in.next() != Event.END_ARRAY)
+          values.add(codec.read(in));
+        return values;
+      }
+
+      @Override
+      public void write(JsonSink<?> out, String key, List<E> values) {
+        if (values == null) {
+          writeNull(out, key);
+          return;
+        }
+        startArray(out, key);
+        for (int i = 0, n = values.size(); i < n; i++)
+          codec.write(out, null, values.get(i));
+        out.end();
+      }
+    };
+  }
+
+  /**
+   * Returns a codec for maps from strings to the values handled by {@code codec}. Maps are read
+   * as {@link LinkedHashMap}s, so they keep the order of their keys.
+   */
+  public static <V> JsonCodec<Map<String, V>> mapOf(final JsonCodec<V> codec) {
+    return new JsonCodec<Map<String, V>>() {
+      @Override
+      public Map<String, V> read(Json.Reader in) throws JsonParserException {
+        if (isNull(in))
+          return null;
+        expect(in, Event.START_OBJECT);
+        Map<String, V> values = new LinkedHashMap<String, V>();
+        while (nextKey(in)) {
+          String key = in.getString();
+          in.next();
+          values.put(key, codec.read(in));
+        }
+        return values;
+      }
+
+      @Override
+      public void write(JsonSink<?> out, String key, Map<String, V> values) {
+        if (values == null) {
+          writeNull(out, key);
+          return;
+        }
+        startObject(out, key);
+        for (Map.Entry<String, V> entry : values.entrySet())
+          codec.write(out, entry.getKey(), entry.getValue());
+        out.end();
+      }
+    };
+  }
+
+  /**
+   * Reads a value whose first event, {@link Event#START_OBJECT} for an object for instance, has
+   * just been returned by {@link Json.Reader#next}. On return, the value's last event has been
+   * read.
+   *
+   * @throws JsonParserException if the JSON is malformed or does not match this codec's type.
+   */
+  public abstract T read(Json.Reader in) throws JsonParserException;
+
+  /**
+   * Writes {@code value} to {@code out}, with {@code key} if it is within an object, or with a
+   * null key if it is within an array or is the top-level value.
+   */
+  public abstract void write(JsonSink<?> out, String key, T value);
+
+  /**
+   * Reads a document consisting of a single value from a fresh reader.
+   *
+   * @throws JsonParserException if the JSON is malformed or does not match this codec's type.
+   */
+  public T parse(Json.Reader in) throws JsonParserException {
+    in.next();
+    T value = read(in);
+    // checks that nothing follows the value
+    in.next();
+    return value;
+  }
+
+  /**
+   * Writes {@code value} as the top-level value of {@code out}, and returns {@code out}.
+   */
+  public <S extends JsonSink<S>> S write(S out, T value) {
+    write(out, null, value);
+    return out;
+  }
+
+  /**
+   * Returns true if the current event is {@link Event#NULL}.
+   */
+  protected static boolean isNull(Json.Reader in) {
+    return in.event() == Event.NULL;
+  }
+
+  /**
+   * Throws an exception unless the current event is {@code expected}.
+   */
+  protected static void expect(Json.Reader in, Event expected) throws JsonParserException {
+    if (in.event() != expected)
+      throw error(in, "Expected " + expected + " but was " + in.event());
+  }
+
+  /**
+   * Reads the next event within an object, and returns true if it is a key or false if it is the
+   * end of the object.
+   */
+  protected static boolean nextKey(Json.Reader in) throws JsonParserException {
+    return in.next() == Event.KEY;
+  }
+
+  protected static int readInt(Json.Reader in) throws JsonParserException {
+    expect(in, Event.NUMBER);
+    return in.getInt();
+  }
+
+  protected static long readLong(Json.Reader in) throws JsonParserException {
+    expect(in, Event.NUMBER);
+    return in.getLong();
+  }
+
+  protected static float readFloat(Json.Reader in) throws JsonParserException {
+    expect(in, Event.NUMBER);
+    return in.getFloat();
+  }
+
+  protected static double readDouble(Json.Reader in) throws JsonParserException {
+    expect(in, Event.NUMBER);
+    return in.getDouble();
+  }
+
+  protected static boolean readBoolean(Json.Reader in) throws JsonParserException {
+    expect(in, Event.BOOLEAN);
+    return in.getBoolean();
+  }
+
+  /**
+   * Reads the current string, or null.
+   */
+  protected static String readString(Json.Reader in) throws JsonParserException {
+    if (isNull(in))
+      return null;
+    expect(in, Event.STRING);
+    return in.getString();
+  }
+
+  /**
+   * Starts an object, with {@code key} unless it is null.
+   */
+  protected static void startObject(JsonSink<?> out, String key) {
+    if (key == null)
+      out.object();
+    else
+      out.object(key);
+  }
+
+  /**
+   * Starts an array, with {@code key} unless it is null.
+   */
+  protected static void startArray(JsonSink<?> out, String key) {
+    if (key == null)
+      out.array();
+    else
+      out.array(key);
+  }
+
+  /**
+   * Writes a null, with {@code key} unless it is null.
+   */
+  protected static void writeNull(JsonSink<?> out, String key) {
+    if (key == null)
+      out.nul();
+    else
+      out.nul(key);
+  }
+
+  /**
+   * Creates an exception reporting {@code message} at the reader's current position, if the
+   * reader is one that tracks it.
+   */
+  protected static JsonParserException error(Json.Reader in, String message) {
+    if (in instanceof JsonParser.Source)
+      return ((JsonParser.Source) in).createParseException(null, message, true);
+    return new JsonParserException(null, message, -1, -1, -1);
+  }
+
+  private static void writeNumber(JsonSink<?> out, String key, Number value) {
+    if (key == null)
+      out.value(value);
+    else
+      out.value(key, value);
+  }
+}
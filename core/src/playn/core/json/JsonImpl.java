@@ -13,6 +13,14 @@
  */
 package playn.core.json;
 
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+
+import react.RFuture;
+import react.RPromise;
+
+import playn.core.Exec;
 import playn.core.Json;
 
 /**
@@ -27,6 +35,16 @@ public class JsonImpl implements Json {
     return new JsonStringWriter();
   }
 
+  @Override
+  public ByteWriter newWriter(OutputStream out) {
+    return new JsonByteWriter(out);
+  }
+
+  @Override
+  public ByteWriter newWriter(WritableByteChannel out) {
+    return new JsonByteWriter(out);
+  }
+
   @Override
   public Array createArray() {
     return new JsonArray();
@@ -56,6 +74,70 @@ public class JsonImpl implements Json {
   public Array parseArray(String json) throws JsonParserException {
     return JsonParser.array().from(json);
   }
+
+  @Override
+  public RFuture<Array> parseArrayAsync(String json, Exec exec) {
+    RPromise<Array> result = exec.deferredPromise();
+    if (exec.isAsyncSupported()) {
+      JsonParallelParser.parse(json, exec, result);
+    } else {
+      try {
+        result.succeed(parseArray(json));
+      } catch (JsonParserException e) {
+        result.fail(e);
+      }
+    }
+    return result;
+  }
+
+  @Override
+  public Object parseLazy(String json) throws JsonParserException {
+    return JsonLazyValue.parseObject(json);
+  }
+
+  @Override
+  public Object parse(ByteBuffer json) throws JsonParserException {
+    if (!json.hasArray())
+      return JsonParser.object().from(new JsonReader(json));
+    int position = json.position(), length = json.remaining();
+    json.position(json.limit());
+    return parse(json.array(), json.arrayOffset() + position, length);
+  }
+
+  @Override
+  public Object parse(byte[] json, int offset, int length) throws JsonParserException {
+    return JsonParser.object().from(new JsonReader(json, offset, length));
+  }
+
+  @Override
+  public BinaryWriter newBinaryWriter() {
+    return new JsonCborWriter();
+  }
+
+  @Override
+  public Object parseBinary(ByteBuffer data) throws JsonParserException {
+    return JsonParser.object().from(new JsonCborReader(data));
+  }
+
+  @Override
+  public Reader newBinaryReader(ByteBuffer data) {
+    return new JsonCborReader(data);
+  }
+
+  @Override
+  public Reader newReader(String json) {
+    return new JsonReader(json);
+  }
+
+  @Override
+  public Reader newReader(java.io.Reader json) {
+    return new JsonReader(json);
+  }
+
+  @Override
+  public Reader newReader(ByteBuffer json) {
+    return new JsonReader(json);
+  }
   
   static void checkJsonType(java.lang.Object value) {
     if (value == null || value instanceof String || value instanceof Json.Object || value instanceof Json.Array || value instanceof Boolean || value instanceof Number)
@@ -0,0 +1,224 @@
+/**
+ * Copyright 2011 The PlayN Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package playn.core.json;
+
+/**
+ * A value in a lazily parsed JSON document, which records where the value lies in the source and
+ * is parsed when it is first accessed. {@link JsonObject} and {@link JsonArray} hold these in
+ * place of their values, and replace them with the parsed values on access.
+ *
+ * <p>Objects and arrays are parsed one level at a time: a structural scan finds the start and
+ * end of each of their members, and the members become lazy values in turn. The scan checks that
+ * strings are terminated and brackets are balanced, but members which are never accessed are not
+ * otherwise validated.</p>
+ */
+final class JsonLazyValue {
+  private final String source;
+  private final int start, end;
+
+  /**
+   * Lazily parses a {@link JsonObject} from a source.
+   */
+  static JsonObject parseObject(String source) throws JsonParserException {
+    int start = skipWhitespace(source, 0, source.length());
+    if (start == source.length() || source.charAt(start) != '{')
+      throw error(source, "JSON did not contain the correct type, expected " + JsonObject.class.getName() + ".",
+          start);
+    // the object must run to the end of the source (bar whitespace), which we check as we scan it
+    int end = source.length();
+    while (end > start && isWhitespace(source.charAt(end - 1)))
+      end--;
+    return object(source, start, end);
+  }
+
+  JsonLazyValue(String source, int start, int end) {
+    this.source = source;
+    this.start = start;
+    this.end = end;
+  }
+
+  /**
+   * Parses this value. Objects and arrays are themselves parsed lazily.
+   */
+  Object materialize() throws JsonParserException {
+    char c = source.charAt(start);
+    if (c == '{')
+      return object(source, start, end);
+    if (c == '[')
+      return array(source, start, end);
+    if (c == '"' && isPlain(source, start + 1, end - 1))
+      return source.substring(start + 1, end - 1);
+    try {
+      return new JsonParser(new JsonReader(source, start, end - start)).parse(Object.class);
+    } catch (JsonParserException e) {
+      // report the error relative to the whole document rather than this value (the reader
+      // reports the offset just past the offending char)
+      String message = e.getMessage();
+      int pos = message.lastIndexOf(" on line ");
+      throw error(source, pos < 0 ? message : message.substring(0, pos), Math.max(start, e.getCharOffset() - 1));
+    }
+  }
+
+  @Override
+  public String toString() {
+    return source.substring(start, end);
+  }
+
+  private static JsonObject object(String source, int start, int end) throws JsonParserException {
+    JsonObject object = new JsonObject();
+    int i = skipWhitespace(source, start + 1, end);
+    if (i < end && source.charAt(i) == '}')
+      return checkEnd(source, object, i, end);
+    while (true) {
+      if (i >= end || source.charAt(i) != '"')
+        throw error(source, "Expected STRING", i);
+      int keyEnd = skipString(source, i, end);
+      String key = (String)new JsonLazyValue(source, i, keyEnd).materialize();
+      i = skipWhitespace(source, keyEnd, end);
+      if (i >= end || source.charAt(i) != ':')
+        throw error(source, "Expected COLON", i);
+      i = skipWhitespace(source, i + 1, end);
+      int valueEnd = skipValue(source, i, end);
+      object.putValue(key, new JsonLazyValue(source, i, valueEnd));
+      i = skipWhitespace(source, valueEnd, end);
+      char c = i < end ? source.charAt(i) : 0;
+      if (c == '}')
+        return checkEnd(source, object, i, end);
+      if (c != ',')
+        throw error(source, "Expected a comma or end of the object", i);
+      i = skipWhitespace(source, i + 1, end);
+    }
+  }
+
+  private static JsonArray array(String source, int start, int end) throws JsonParserException {
+    JsonArray array = new JsonArray();
+    int i = skipWhitespace(source, start + 1, end);
+    if (i < end && source.charAt(i) == ']')
+      return checkEnd(source, array, i, end);
+    while (true) {
+      int valueEnd = skipValue(source, i, end);
+      array.addValue(new JsonLazyValue(source, i, valueEnd));
+      i = skipWhitespace(source, valueEnd, end);
+      char c = i < end ? source.charAt(i) : 0;
+      if (c == ']')
+        return checkEnd(source, array, i, end);
+      if (c != ',')
+        throw error(source, "Expected a comma or end of the array", i);
+      i = skipWhitespace(source, i + 1, end);
+    }
+  }
+
+  /**
+   * Checks that the object or array which closed at {@code i} was expected to end there.
+   */
+  private static <T> T checkEnd(String source, T value, int i, int end) throws JsonParserException {
+    if (i != end - 1)
+      throw error(source, "Expected end of input", skipWhitespace(source, i + 1, end));
+    return value;
+  }
+
+  /**
+   * Returns the index just past the value which starts at {@code i}.
+   */
+  private static int skipValue(String source, int i, int end) throws JsonParserException {
+    if (i >= end)
+      throw error(source, "Expected JSON value", i);
+    char c = source.charAt(i);
+    if (c == '"')
+      return skipString(source, i, end);
+    if (c != '{' && c != '[') {
+      // a number or keyword, which runs up to the next delimiter
+      int start = i;
+      while (i < end && ",:]} \t\r\n".indexOf(source.charAt(i)) < 0)
+        i++;
+      if (i == start)
+        throw error(source, "Expected JSON value", i);
+      return i;
+    }
+
+    // skip the whole object or array, minding brackets in strings
+    int start = i, depth = 0;
+    while (i < end) {
+      c = source.charAt(i);
+      if (c == '"') {
+        i = skipString(source, i, end);
+        continue;
+      }
+      if (c == '{' || c == '[')
+        depth++;
+      else if ((c == '}' || c == ']') && --depth == 0)
+        return i + 1;
+      i++;
+    }
+    throw error(source, "Unterminated " + (source.charAt(start) == '{' ? "object" : "array"), start);
+  }
+
+  /**
+   * Returns the index just past the closing quote of the string which starts at {@code i}.
+   */
+  private static int skipString(String source, int i, int end) throws JsonParserException {
+    for (i++; i < end; i++) {
+      char c = source.charAt(i);
+      if (c == '\\')
+        i++;
+      else if (c == '"')
+        return i + 1;
+    }
+    throw error(source, "String was not terminated before end of input", i);
+  }
+
+  /**
+   * Returns true if the chars in {@code [start, end)} need no unescaping or checking.
+   */
+  private static boolean isPlain(String source, int start, int end) {
+    for (int i = start; i < end; i++) {
+      char c = source.charAt(i);
+      if (c == '\\' || c < 32)
+        return false;
+    }
+    return true;
+  }
+
+  private static int skipWhitespace(String source, int i, int end) {
+    while (i < end) {
+      char c = source.charAt(i);
+      if (!isWhitespace(c))
+        break;
+      i++;
+    }
+    return i;
+  }
+
+  private static boolean isWhitespace(char c) {
+    return c == ' ' || c == '\n' || c == '\r' || c == '\t';
+  }
+
+  /**
+   * Creates a {@link JsonParserException} for the given offset, working out its line and char
+   * position.
+   */
+  private static JsonParserException error(String source, String message, int offset) {
+    offset = Math.min(offset, source.length());
+    int line = 1, lineStart = 0;
+    for (int i = 0; i < offset; i++) {
+      if (source.charAt(i) == '\n') {
+        line++;
+        lineStart = i + 1;
+      }
+    }
+    int charPos = offset - lineStart + 1;
+    return new JsonParserException(null, message + " on line " + line + ", char " + charPos, line, charPos,
+        offset);
+  }
+}
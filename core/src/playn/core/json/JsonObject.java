@@ -13,27 +13,38 @@
  */
 package playn.core.json;
 
-import java.util.TreeMap;
-import java.util.Map;
+import java.util.Arrays;
 
 import playn.core.Json;
 import playn.core.Json.TypedArray;
 
 /**
- * Extends a {@link Map} with helper methods to determine the underlying JSON type of the map
- * element.
+ * A map from keys to JSON values, with helper methods to determine the underlying JSON type of
+ * each element.
+ *
+ * <p>The entries are stored in parallel key and value arrays. Small objects are searched linearly;
+ * larger ones are indexed by an open-addressing hash table of entry indices. Iteration is in sorted
+ * key order, so that written documents are stable, via a sorted copy of the keys which is made
+ * when first needed after the keys change.</p>
  */
 class JsonObject implements Json.Object {
-  private final Map<String, Object> map;
+  /** Objects with at most this many entries are searched linearly, without a hash table. */
+  private static final int LINEAR_MAX = 8;
+  private static final String[] NO_KEYS = {};
+  private static final Object[] NO_VALUES = {};
+
+  private String[] keys = NO_KEYS;
+  private Object[] values = NO_VALUES;
+  private int size;
+  // the index+1 of the entry for each slot (0 for empty), or null if we're small
+  private int[] table;
+  // the keys in sorted order, or null if they have changed since they were last sorted
+  private String[] sorted;
 
   /**
    * Creates an empty {@link JsonObject} with the default capacity.
    */
   public JsonObject() {
-    // we use a tree map here to ensure predictable iteration order; for better or worse we have a
-    // bunch of tests that rely on a specific iteration order and those broke when we moved from
-    // JDK7 to 8; now we use an API that guarantees iteration order
-    map = new TreeMap<String, Object>();
   }
 
   /**
@@ -178,7 +189,7 @@ class JsonObject implements Json.Object {
    * Returns true if the object has an element at that key (even if that element is null).
    */
   public boolean containsKey(String key) {
-    return map.containsKey(key);
+    return indexOf(key) >= 0;
   }
 
   /**
@@ -236,31 +247,69 @@ class JsonObject implements Json.Object {
 
   @Override
   public TypedArray<String> keys() {
-    return new JsonStringTypedArray(map.keySet());
+    return new JsonStringTypedArray(Arrays.asList(sortedKeys()));
   }
 
   @Override
   public JsonObject put(String key, Object value) {
     JsonImpl.checkJsonType(value);
-    map.put(key, value);
+    return putValue(key, value);
+  }
+
+  /**
+   * Puts a value without checking its type, which allows {@link JsonLazyValue}s.
+   */
+  JsonObject putValue(String key, Object value) {
+    int index = indexOf(key);
+    if (index >= 0) {
+      values[index] = value;
+      return this;
+    }
+    if (size == keys.length) {
+      int ncapacity = Math.max(4, size*2);
+      keys = Arrays.copyOf(keys, ncapacity);
+      values = Arrays.copyOf(values, ncapacity);
+    }
+    keys[size] = key;
+    values[size] = value;
+    size++;
+    sorted = null;
+    if (table != null) insert(size-1);
+    else if (size > LINEAR_MAX) rehash();
     return this;
   }
 
   @Override
   public JsonObject remove(String key) {
-    map.remove(key);
+    int index = indexOf(key);
+    if (index >= 0) {
+      // shift the later entries down to preserve order; removal is rare, so we just reindex
+      System.arraycopy(keys, index+1, keys, index, size-index-1);
+      System.arraycopy(values, index+1, values, index, size-index-1);
+      size--;
+      keys[size] = null;
+      values[size] = null;
+      sorted = null;
+      if (table != null) rehash();
+    }
     return this;
   }
 
   @Override
   public String toString() {
-    return map.toString();
+    StringBuilder buf = new StringBuilder("{");
+    String[] sorted = sortedKeys();
+    for (int ii = 0; ii < sorted.length; ii++) {
+      if (ii > 0) buf.append(", ");
+      buf.append(sorted[ii]).append('=').append(get(sorted[ii]));
+    }
+    return buf.append('}').toString();
   }
 
   @Override
   public <T extends JsonSink<T>> JsonSink<T> write(JsonSink<T> sink) {
-    for (Map.Entry<String, Object> entry : map.entrySet())
-      sink.value(entry.getKey(), entry.getValue());
+    for (String key : sortedKeys())
+      sink.value(key, get(key));
     return sink;
   }
 
@@ -268,6 +317,88 @@ class JsonObject implements Json.Object {
    * Gets the JSON value at the given key.
    */
   Object get(String key) {
-    return map.get(key);
+    int index = indexOf(key);
+    return index < 0 ? null : value(index);
+  }
+
+  /**
+   * Returns the keys in sorted order, sorting them if they have changed.
+   */
+  private String[] sortedKeys() {
+    if (sorted == null) {
+      String[] sorted = Arrays.copyOf(keys, size);
+      Arrays.sort(sorted);
+      this.sorted = sorted;
+    }
+    return sorted;
+  }
+
+  /**
+   * Returns the value of the entry at {@code index}, parsing it first if it is lazy.
+   */
+  private Object value(int index) {
+    Object value = values[index];
+    if (value instanceof JsonLazyValue)
+      values[index] = value = ((JsonLazyValue)value).materialize();
+    return value;
+  }
+
+  /**
+   * Returns the index of the entry for {@code key}, or -1.
+   */
+  private int indexOf(String key) {
+    String[] keys = this.keys;
+    if (table == null) {
+      for (int ii = 0; ii < size; ii++) {
+        String ekey = keys[ii];
+        if (ekey == key || ekey.equals(key)) return ii;
+      }
+      return -1;
+    }
+    int[] table = this.table;
+    int mask = table.length-1;
+    for (int slot = hash(key) & mask; ; slot = (slot+1) & mask) {
+      int entry = table[slot];
+      if (entry == 0) return -1;
+      String ekey = keys[entry-1];
+      if (ekey == key || ekey.equals(key)) return entry-1;
+    }
+  }
+
+  /**
+   * Adds the entry at {@code index} to the hash table, growing it if it is more than half full.
+   */
+  private void insert(int index) {
+    if (2*size > table.length) {
+      rehash();
+      return;
+    }
+    int mask = table.length-1, slot = hash(keys[index]) & mask;
+    while (table[slot] != 0) slot = (slot+1) & mask;
+    table[slot] = index+1;
+  }
+
+  /**
+   * Rebuilds the hash table from scratch, or drops it if we're small enough to search linearly.
+   */
+  private void rehash() {
+    if (size <= LINEAR_MAX) {
+      table = null;
+      return;
+    }
+    int capacity = Integer.highestOneBit(size-1) << 2; // keep the load below a half
+    if (table == null || table.length != capacity) table = new int[capacity];
+    else Arrays.fill(table, 0);
+    int mask = capacity-1;
+    for (int ii = 0; ii < size; ii++) {
+      int slot = hash(keys[ii]) & mask;
+      while (table[slot] != 0) slot = (slot+1) & mask;
+      table[slot] = ii+1;
+    }
+  }
+
+  private static int hash(String key) {
+    int h = key.hashCode();
+    return h ^ (h >>> 16);
   }
 }
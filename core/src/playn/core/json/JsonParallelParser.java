@@ -0,0 +1,190 @@
+/**
+ * Copyright 2011 The PlayN Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package playn.core.json;
+
+import java.util.Arrays;
+
+import react.RPromise;
+
+import playn.core.Exec;
+import playn.core.Json;
+
+/**
+ * Parses a large top-level JSON array in pieces on the {@link Exec#invokeAsync} threads. A quick
+ * scan of the text finds the commas between top-level elements (skipping those in strings and
+ * nested values) which split the array into pieces of about {@link #CHUNK_SIZE} chars, each of
+ * which is parsed by a {@link JsonReader#elements} reader, and the results are joined in order.
+ *
+ * <p>The scan does not validate the JSON. If it, or any piece, fails, the whole array is parsed
+ * again on one thread, so that errors are reported with the positions a sequential parse would
+ * report.</p>
+ */
+final class JsonParallelParser {
+  /** Arrays of fewer chars than this are parsed on one thread. */
+  static final int THRESHOLD = 128 * 1024;
+  /** The number of chars, roughly, in each piece. */
+  static final int CHUNK_SIZE = 64 * 1024;
+  /** The most pieces into which an array is split. */
+  static final int MAX_CHUNKS = 64;
+
+  private final String json;
+  private final RPromise<Json.Array> result;
+  private JsonArray[] parts;
+  private int remaining;
+  private boolean failed;
+
+  /**
+   * Parses {@code json} on {@code exec}'s async threads, and completes {@code result} with the
+   * array. {@code exec} must support async operations.
+   */
+  static void parse(String json, Exec exec, RPromise<Json.Array> result) {
+    new JsonParallelParser(json, result).start(exec);
+  }
+
+  /**
+   * Finds the top-level elements of the array in {@code json}, and returns the bounds of about
+   * {@code chunks} pieces of them, as a start and end offset for each piece. Returns null if
+   * {@code json} is not an array, or is malformed in a way the scan notices.
+   */
+  static int[] split(String json, int chunks) {
+    int length = json.length(), index = 0;
+    while (index < length && isWhitespace(json.charAt(index)))
+      index++;
+    if (index == length || json.charAt(index) != '[')
+      return null;
+
+    int[] bounds = new int[chunks * 2];
+    int count = 0, start = index + 1, depth = 1;
+    int chunkSize = (length - start) / chunks, nextSplit = start + chunkSize;
+    for (index = start; index < length; index++) {
+      switch (json.charAt(index)) {
+      case '"':
+        // skip to the closing quote, past any escaped quotes
+        do {
+          index = json.indexOf('"', index + 1);
+          if (index < 0)
+            return null;
+        } while (isEscaped(json, index));
+        break;
+      case '[':
+      case '{':
+        depth++;
+        break;
+      case '}':
+        if (--depth == 0)
+          return null;
+        break;
+      case ']':
+        if (--depth > 0)
+          break;
+        // the end of the array, after which there must be only whitespace
+        for (int i = index + 1; i < length; i++)
+          if (!isWhitespace(json.charAt(i)))
+            return null;
+        bounds[count++] = start;
+        bounds[count++] = index;
+        return count == 2 ? null : Arrays.copyOf(bounds, count);
+      case ',':
+        if (depth == 1 && index >= nextSplit && count < bounds.length - 2) {
+          bounds[count++] = start;
+          bounds[count++] = index;
+          start = index + 1;
+          nextSplit = index + chunkSize;
+        }
+        break;
+      default:
+        break;
+      }
+    }
+    // the array was not closed
+    return null;
+  }
+
+  private JsonParallelParser(String json, RPromise<Json.Array> result) {
+    this.json = json;
+    this.result = result;
+  }
+
+  private void start(final Exec exec) {
+    // the scan takes a few milliseconds for a large array, so it too is kept off the game thread
+    exec.invokeAsync(Exec.Lane.CPU, new Runnable() {
+      public void run() {
+        int[] bounds = json.length() < THRESHOLD ? null :
+          split(json, Math.min(MAX_CHUNKS, json.length() / CHUNK_SIZE));
+        if (bounds == null)
+          parseSequentially();
+        else
+          parsePieces(exec, bounds);
+      }
+    });
+  }
+
+  private void parsePieces(Exec exec, int[] bounds) {
+    parts = new JsonArray[bounds.length / 2];
+    remaining = parts.length;
+    for (int i = 0; i < parts.length; i++) {
+      final int part = i, start = bounds[i * 2], end = bounds[i * 2 + 1];
+      exec.invokeAsync(Exec.Lane.CPU, new Runnable() {
+        public void run() {
+          JsonArray array = null;
+          try {
+            array = JsonParser.array().from(JsonReader.elements(json, start, end - start));
+          } catch (RuntimeException e) {
+            // reported by the sequential parse
+          }
+          partDone(part, array);
+        }
+      });
+    }
+  }
+
+  private void partDone(int part, JsonArray array) {
+    synchronized (this) {
+      parts[part] = array;
+      failed |= array == null;
+      if (--remaining > 0)
+        return;
+    }
+    // the last piece to finish joins them all
+    if (failed)
+      parseSequentially();
+    else
+      result.succeed(JsonArray.concat(parts));
+  }
+
+  private void parseSequentially() {
+    JsonArray array;
+    try {
+      array = JsonParser.array().from(json);
+    } catch (RuntimeException e) {
+      result.fail(e);
+      return;
+    }
+    result.succeed(array);
+  }
+
+  /**
+   * Returns true if the char at {@code index} is escaped by an odd number of backslashes.
+   */
+  private static boolean isEscaped(String json, int index) {
+    int backslashes = 0;
+    while (json.charAt(index - backslashes - 1) == '\\')
+      backslashes++;
+    return (backslashes & 1) != 0;
+  }
+
+  private static boolean isWhitespace(char c) {
+    return c == ' ' || c == '\n' || c == '\r' || c == '\t';
+  }
+}
@@ -0,0 +1,983 @@
+/**
+ * Copyright 2011 The PlayN Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package playn.core.json;
+
+import java.io.IOException;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+
+import playn.core.Json;
+
+/**
+ * Streaming JSON reader. Tokenizes a {@link String}, a character stream or UTF-8 encoded bytes,
+ * and reports the tokens as {@link Json.Reader.Event}s, checking that they form well formed JSON
+ * as it goes. {@link JsonParser} builds its trees from these events.
+ *
+ * <pre>
+ * JsonReader in = new JsonReader("{\"a\":[true,false], \"b\":1}");
+ * in.next(); // START_OBJECT
+ * in.next(); // KEY (a)
+ * in.next(); // START_ARRAY
+ * </pre>
+ */
+final class JsonReader implements JsonParser.Source {
+  private static final int BUFFER_SIZE = 8192;
+  private static final int KEY_CACHE_SIZE = 256, MAX_INTERNED_KEY = 32;
+
+  private int linePos = 1, rowPos, charOffset, utf8adjust;
+  private int tokenLinePos, tokenCharPos, tokenCharOffset;
+  private StringBuilder reusableBuffer = new StringBuilder();
+
+  // exactly one of string, chars or bytes holds our input
+  private final String string;
+  private final java.io.Reader charSource;
+  private final ByteBuffer byteSource;
+  private final char[] chars;
+  private final byte[] bytes;
+  private boolean eof;
+  private int index;
+  private int bufferLength;
+  private char pendingLowSurrogate;
+  private char[] asciiBuffer;
+  // recently read keys, by hash, so that repeated keys share (and don't reallocate) a string
+  private String[] keyCache;
+
+  // the current event and its value
+  private Event event;
+  private String stringValue;
+  private boolean booleanValue;
+  private int numberType;
+  private long longValue;
+  private double doubleValue;
+  private BigInteger bigValue;
+
+  // what we expect next, and the containers we're in (true for arrays)
+  private int state = VALUE;
+  private boolean[] containers = new boolean[16];
+  private int depth;
+  // whether we read the elements of an array without its brackets (see elements())
+  private boolean elements;
+
+  private static final int VALUE = 0, ARRAY_FIRST = 1, ARRAY_NEXT = 2;
+  private static final int OBJECT_FIRST = 3, OBJECT_NEXT = 4, DONE = 5, ENDED = 6, ELEMENTS = 7;
+  private static final int INT = 0, LONG = 1, DOUBLE = 2, BIG = 3;
+
+  private static final int MAX_FAST_DIGITS = 15;
+  private static final double[] POWERS_OF_TEN = {
+    1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+    1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+  };
+
+  private static final char[] TRUE = { 'r', 'u', 'e' };
+  private static final char[] FALSE = { 'a', 'l', 's', 'e' };
+  private static final char[] NULL = { 'u', 'l', 'l' };
+
+  /**
+   * The tokens available in JSON.
+   */
+  private enum Token {
+    EOF(false), NULL(true), TRUE(true), FALSE(true), STRING(true), NUMBER(true), COMMA(false), COLON(false), //
+    OBJECT_START(true), OBJECT_END(false), ARRAY_START(true), ARRAY_END(false);
+    public boolean isValue;
+
+    Token(boolean isValue) {
+      this.isValue = isValue;
+    }
+  }
+
+  /**
+   * Creates a reader which reads the supplied string.
+   */
+  JsonReader(String s) {
+    this(s, 0, s.length());
+  }
+
+  /**
+   * Creates a reader which reads {@code length} chars of the supplied string, starting at {@code
+   * offset}. Char offsets are reported relative to the start of the string, but line and char
+   * positions are reported relative to {@code offset}.
+   */
+  JsonReader(String s, int offset, int length) {
+    this.string = s;
+    this.index = offset;
+    this.bufferLength = offset + length;
+    this.rowPos = offset;
+    this.charSource = null;
+    this.chars = null;
+    this.byteSource = null;
+    this.bytes = null;
+  }
+
+  /**
+   * Creates a reader which reads the comma separated elements of an array, without its brackets,
+   * from {@code length} chars of the supplied string starting at {@code offset}, and reports them
+   * as a complete array. Used to parse the pieces of a large array separately.
+   */
+  static JsonReader elements(String s, int offset, int length) {
+    JsonReader reader = new JsonReader(s, offset, length);
+    reader.elements = true;
+    reader.state = ELEMENTS;
+    return reader;
+  }
+
+  /**
+   * Creates a reader which reads the supplied character stream, a chunk at a time.
+   */
+  JsonReader(java.io.Reader source) {
+    this.string = null;
+    this.charSource = source;
+    this.chars = new char[BUFFER_SIZE];
+    this.byteSource = null;
+    this.bytes = null;
+  }
+
+  /**
+   * Creates a reader which reads UTF-8 encoded JSON from the remaining bytes of {@code source}, a
+   * chunk at a time.
+   */
+  JsonReader(ByteBuffer source) {
+    this.string = null;
+    this.charSource = null;
+    this.chars = null;
+    this.byteSource = source;
+    this.bytes = new byte[Math.min(BUFFER_SIZE, source.remaining())];
+  }
+
+  /**
+   * Creates a reader which reads UTF-8 encoded JSON directly from {@code length} bytes of {@code
+   * source}, starting at {@code offset}. The array is not copied, so it must not be changed while
+   * it is being read.
+   */
+  JsonReader(byte[] source, int offset, int length) {
+    this.string = null;
+    this.charSource = null;
+    this.chars = null;
+    this.byteSource = null;
+    this.bytes = source;
+    this.index = offset;
+    this.bufferLength = offset + length;
+    // report positions relative to offset
+    this.rowPos = offset;
+    this.charOffset = -offset;
+  }
+
+  @Override
+  public Event next() throws JsonParserException {
+    Token token;
+    switch (state) {
+    case VALUE:
+      return startValue(advanceToken());
+
+    case ARRAY_FIRST:
+      token = advanceToken();
+      if (token == Token.ARRAY_END)
+        return endContainer(Event.END_ARRAY);
+      return startValue(token);
+
+    case ARRAY_NEXT:
+      token = advanceToken();
+      if (token == Token.ARRAY_END)
+        return endContainer(Event.END_ARRAY);
+      if (token != Token.COMMA) {
+        // the end of the input ends the array whose elements we read
+        if (token == Token.EOF && elements && depth == 1)
+          return endContainer(Event.END_ARRAY);
+        throw createParseException(null, "Expected a comma or end of the array instead of " + token, true);
+      }
+      token = advanceToken();
+      if (token == Token.ARRAY_END)
+        throw createParseException(null, "Trailing comma found in array", true);
+      return startValue(token);
+
+    case OBJECT_FIRST:
+      token = advanceToken();
+      if (token == Token.OBJECT_END)
+        return endContainer(Event.END_OBJECT);
+      return key(token);
+
+    case OBJECT_NEXT:
+      token = advanceToken();
+      if (token == Token.OBJECT_END)
+        return endContainer(Event.END_OBJECT);
+      if (token != Token.COMMA)
+        throw createParseException(null, "Expected a comma or end of the object instead of " + token, true);
+      token = advanceToken();
+      if (token == Token.OBJECT_END)
+        throw createParseException(null, "Trailing comma found in object", true);
+      return key(token);
+
+    case ELEMENTS:
+      push(true);
+      state = ARRAY_FIRST;
+      return event = Event.START_ARRAY;
+
+    case DONE:
+      token = advanceToken();
+      if (token != Token.EOF)
+        throw createParseException(null, "Expected end of input, got " + token, true);
+      state = ENDED;
+      return event = Event.EOF;
+
+    default:
+      return event = Event.EOF;
+    }
+  }
+
+  @Override
+  public Event event() {
+    return event;
+  }
+
+  @Override
+  public String getString() {
+    if (event != Event.STRING && event != Event.KEY)
+      throw new IllegalStateException("Current event is not a string or key: " + event);
+    return stringValue;
+  }
+
+  @Override
+  public boolean getBoolean() {
+    if (event != Event.BOOLEAN)
+      throw new IllegalStateException("Current event is not a boolean: " + event);
+    return booleanValue;
+  }
+
+  @Override
+  public int getInt() {
+    checkNumber();
+    switch (numberType) {
+    case DOUBLE:
+      return (int)doubleValue;
+    case BIG:
+      return bigValue.intValue();
+    default:
+      return (int)longValue;
+    }
+  }
+
+  @Override
+  public long getLong() {
+    checkNumber();
+    switch (numberType) {
+    case DOUBLE:
+      return (long)doubleValue;
+    case BIG:
+      return bigValue.longValue();
+    default:
+      return longValue;
+    }
+  }
+
+  @Override
+  public float getFloat() {
+    return (float)getDouble();
+  }
+
+  @Override
+  public double getDouble() {
+    checkNumber();
+    switch (numberType) {
+    case DOUBLE:
+      return doubleValue;
+    case BIG:
+      return bigValue.doubleValue();
+    default:
+      return longValue;
+    }
+  }
+
+  @Override
+  public Number getNumber() {
+    checkNumber();
+    switch (numberType) {
+    case INT:
+      return (int)longValue;
+    case LONG:
+      return longValue;
+    case DOUBLE:
+      return doubleValue;
+    default:
+      return bigValue;
+    }
+  }
+
+  @Override
+  public void skipValue() throws JsonParserException {
+    if (event != Event.START_OBJECT && event != Event.START_ARRAY)
+      return;
+    int target = depth - 1;
+    while (depth > target)
+      next();
+  }
+
+  @Override
+  public boolean isIntNumber() {
+    return numberType == INT;
+  }
+
+  @Override
+  public boolean isDoubleNumber() {
+    return numberType == DOUBLE;
+  }
+
+  /**
+   * Creates a {@link JsonParserException} and fills it from the current line and char position.
+   *
+   * @param tokenPos if true, the position of the start of the current token is reported, otherwise
+   * the position of the most recently read character is reported.
+   */
+  @Override
+  public JsonParserException createParseException(Exception e, String message, boolean tokenPos) {
+    if (tokenPos)
+      return new JsonParserException(e, message + " on line " + tokenLinePos + ", char " + tokenCharPos,
+          tokenLinePos, tokenCharPos, tokenCharOffset);
+    else {
+      int charPos = Math.max(1, index - rowPos - utf8adjust);
+      return new JsonParserException(e, message + " on line " + linePos + ", char " + charPos, linePos, charPos,
+          index + charOffset);
+    }
+  }
+
+  private Event startValue(Token token) throws JsonParserException {
+    switch (token) {
+    case ARRAY_START:
+      push(true);
+      state = ARRAY_FIRST;
+      return event = Event.START_ARRAY;
+    case OBJECT_START:
+      push(false);
+      state = OBJECT_FIRST;
+      return event = Event.START_OBJECT;
+    case STRING:
+      return endValue(Event.STRING);
+    case NUMBER:
+      return endValue(Event.NUMBER);
+    case TRUE:
+    case FALSE:
+      return endValue(Event.BOOLEAN);
+    case NULL:
+      return endValue(Event.NULL);
+    default:
+      throw createParseException(null, "Expected JSON value, got " + token, true);
+    }
+  }
+
+  private Event key(Token token) throws JsonParserException {
+    if (token != Token.STRING)
+      throw createParseException(null, "Expected STRING, got " + token, true);
+    if (advanceToken() != Token.COLON)
+      throw createParseException(null, "Expected COLON, got " + currentToken, true);
+    state = VALUE;
+    return event = Event.KEY;
+  }
+
+  private Event endContainer(Event end) {
+    depth--;
+    return endValue(end);
+  }
+
+  private Event endValue(Event value) {
+    state = (depth == 0) ? DONE : containers[depth-1] ? ARRAY_NEXT : OBJECT_NEXT;
+    return event = value;
+  }
+
+  private void push(boolean array) {
+    if (depth == containers.length) {
+      boolean[] ncontainers = new boolean[depth*2];
+      System.arraycopy(containers, 0, ncontainers, 0, depth);
+      containers = ncontainers;
+    }
+    containers[depth++] = array;
+  }
+
+  private void checkNumber() {
+    if (event != Event.NUMBER)
+      throw new IllegalStateException("Current event is not a number: " + event);
+  }
+
+  private Token currentToken;
+
+  /**
+   * Consumes a token, first eating up any whitespace ahead of it. Note that number tokens are not necessarily valid
+   * numbers.
+   */
+  private Token advanceToken() throws JsonParserException {
+    int c = advanceChar();
+    while (isWhitespace(c))
+      c = advanceChar();
+
+    tokenLinePos = linePos;
+    tokenCharPos = index - rowPos - utf8adjust;
+    tokenCharOffset = charOffset + index;
+
+    switch (c) {
+    case -1:
+      return currentToken = Token.EOF;
+    case '[':
+      return currentToken = Token.ARRAY_START;
+    case ']':
+      return currentToken = Token.ARRAY_END;
+    case ',':
+      return currentToken = Token.COMMA;
+    case ':':
+      return currentToken = Token.COLON;
+    case '{':
+      return currentToken = Token.OBJECT_START;
+    case '}':
+      return currentToken = Token.OBJECT_END;
+    case 't':
+      consumeKeyword((char)c, TRUE);
+      booleanValue = true;
+      return currentToken = Token.TRUE;
+    case 'f':
+      consumeKeyword((char)c, FALSE);
+      booleanValue = false;
+      return currentToken = Token.FALSE;
+    case 'n':
+      consumeKeyword((char)c, NULL);
+      return currentToken = Token.NULL;
+    case '\"':
+      stringValue = consumeTokenString();
+      return currentToken = Token.STRING;
+    case '-':
+    case '0':
+    case '1':
+    case '2':
+    case '3':
+    case '4':
+    case '5':
+    case '6':
+    case '7':
+    case '8':
+    case '9':
+      consumeTokenNumber((char)c);
+      return currentToken = Token.NUMBER;
+    case '+':
+    case '.':
+      throw createParseException(null, "Numbers may not start with '" + (char)c + "'", true);
+    default:
+    }
+
+    if (isAsciiLetter(c))
+      throw createHelpfulException((char)c, null, 0);
+
+    throw createParseException(null, "Unexpected character: " + (char)c, true);
+  }
+
+  /**
+   * Expects a given string at the current position.
+   */
+  private void consumeKeyword(char first, char[] expected) throws JsonParserException {
+    for (int i = 0; i < expected.length; i++)
+      if (advanceChar() != expected[i])
+        throw createHelpfulException(first, expected, i);
+
+    // The token should end with something other than an ASCII letter
+    if (isAsciiLetter(peekChar()))
+      throw createHelpfulException(first, expected, expected.length);
+  }
+
+  /**
+   * Steps through to the end of the current number token (a non-digit token), and records its
+   * value.
+   */
+  private void consumeTokenNumber(char c) throws JsonParserException {
+    StringBuilder number = reusableBuffer;
+    number.setLength(0);
+    number.append(c);
+
+    boolean isDouble = false;
+    while (isDigitCharacter(peekChar())) {
+      char next = (char)advanceChar();
+      isDouble = next == '.' || next == 'e' || next == 'E' || isDouble;
+      number.append(next);
+    }
+
+    try {
+      if (isDouble) {
+        // Special zero handling to match JSON spec. Leading zero is only allowed if next character is . or e
+        if (number.charAt(0) == '0') {
+          if (number.charAt(1) == '.') {
+            if (number.length() == 2)
+              throw createParseException(null, "Malformed number: " + number, true);
+          } else if (number.charAt(1) != 'e' && number.charAt(1) != 'E')
+            throw createParseException(null, "Malformed number: " + number, true);
+        }
+        if (number.charAt(0) == '-') {
+          if (number.charAt(1) == '0') {
+            if (number.charAt(2) == '.') {
+              if (number.length() == 3)
+                throw createParseException(null, "Malformed number: " + number, true);
+            } else if (number.charAt(2) != 'e' && number.charAt(2) != 'E')
+              throw createParseException(null, "Malformed number: " + number, true);
+          } else if (number.charAt(1) == '.') {
+            throw createParseException(null, "Malformed number: " + number, true);
+          }
+        }
+
+        numberType = DOUBLE;
+        doubleValue = parseDouble(number);
+        return;
+      }
+
+      // Special zero handling to match JSON spec. No leading zeros allowed for integers.
+      if (number.charAt(0) == '0') {
+        if (number.length() == 1) {
+          numberType = INT;
+          longValue = 0;
+          return;
+        }
+        throw createParseException(null, "Malformed number: " + number, true);
+      }
+      if (number.length() > 1 && number.charAt(0) == '-' && number.charAt(1) == '0') {
+        if (number.length() == 2) {
+          numberType = DOUBLE;
+          doubleValue = -0.0;
+          return;
+        }
+        throw createParseException(null, "Malformed number: " + number, true);
+      }
+
+      // HACK: Attempt to parse using the approximate best type for this
+      int length = number.charAt(0) == '-' ? number.length() - 1 : number.length();
+      if (length < 19) { // 9 223 372 036 854 775 807
+        numberType = (length < 10) ? INT : LONG; // 2 147 483 647
+        longValue = parseLong(number);
+        return;
+      }
+      numberType = BIG;
+      bigValue = new BigInteger(number.toString());
+    } catch (NumberFormatException e) {
+      throw createParseException(e, "Malformed number: " + number, true);
+    }
+  }
+
+  /**
+   * Parses an integer of at most 18 digits, which cannot overflow a long.
+   */
+  private static long parseLong(CharSequence number) {
+    boolean negative = number.charAt(0) == '-';
+    int start = negative ? 1 : 0, length = number.length();
+    if (start == length)
+      throw new NumberFormatException();
+    long value = 0;
+    for (int i = start; i < length; i++) {
+      int digit = number.charAt(i) - '0';
+      if (digit < 0 || digit > 9)
+        throw new NumberFormatException();
+      value = value * 10 + digit;
+    }
+    return negative ? -value : value;
+  }
+
+  /**
+   * Parses a double. Numbers with at most 15 significant digits and a small exponent are computed
+   * directly from their digits, with a single exactly rounded multiplication or division by a
+   * power of ten (Clinger's fast path); anything else is left to {@link Double#parseDouble}.
+   */
+  static double parseDouble(CharSequence number) {
+    int length = number.length(), i = 0;
+    boolean negative = number.charAt(0) == '-';
+    if (negative)
+      i++;
+
+    // gather the significant digits into an exact integer and a power of ten scale
+    long mantissa = 0;
+    int digits = 0, scale = 0;
+    boolean point = false, sawDigit = false;
+    for (; i < length; i++) {
+      char c = number.charAt(i);
+      if (c >= '0' && c <= '9') {
+        sawDigit = true;
+        if (mantissa != 0 || c != '0') {
+          if (++digits > MAX_FAST_DIGITS)
+            return Double.parseDouble(number.toString());
+          mantissa = mantissa * 10 + (c - '0');
+        }
+        if (point)
+          scale--;
+      } else if (c == '.' && !point)
+        point = true;
+      else
+        break;
+    }
+    if (!sawDigit)
+      return Double.parseDouble(number.toString());
+
+    if (i < length) {
+      char c = number.charAt(i++);
+      if ((c != 'e' && c != 'E') || i == length)
+        return Double.parseDouble(number.toString());
+      boolean negativeExp = false;
+      c = number.charAt(i);
+      if (c == '-' || c == '+') {
+        negativeExp = c == '-';
+        if (++i == length)
+          return Double.parseDouble(number.toString());
+      }
+      int exp = 0;
+      for (; i < length; i++) {
+        c = number.charAt(i);
+        if (c < '0' || c > '9' || exp > 1000)
+          return Double.parseDouble(number.toString());
+        exp = exp * 10 + (c - '0');
+      }
+      scale += negativeExp ? -exp : exp;
+    }
+
+    // both the mantissa and powers of ten up to 1e22 are exact doubles, so a single operation
+    // rounds correctly; a mantissa with spare digits can absorb larger powers exactly, first
+    double value = mantissa;
+    if (scale > 22) {
+      if (scale > 22 + MAX_FAST_DIGITS - digits)
+        return Double.parseDouble(number.toString());
+      value *= POWERS_OF_TEN[scale - 22];
+      scale = 22;
+    }
+    if (scale >= 0)
+      value *= POWERS_OF_TEN[scale];
+    else if (scale >= -22)
+      value /= POWERS_OF_TEN[-scale];
+    else
+      return Double.parseDouble(number.toString());
+    return negative ? -value : value;
+  }
+
+  /**
+   * Steps through to the end of the current string token (the unescaped double quote).
+   */
+  private String consumeTokenString() throws JsonParserException {
+    // most strings (and nearly all keys) contain no escapes and no non-ASCII bytes, and end in the
+    // current buffer, so we copy those straight out of the buffer
+    int start = index, end = scanPlainChars(start);
+    if (end < bufferLength && charAt(end) == '"') {
+      index = end + 1;
+      // a string read where we expect a key is a key (or an error)
+      boolean key = state == OBJECT_FIRST || state == OBJECT_NEXT;
+      return (key && end - start <= MAX_INTERNED_KEY) ? internKey(start, end) : substring(start, end);
+    }
+    reusableBuffer.setLength(0);
+    appendChars(start, end);
+    index = end;
+
+    while (true) {
+      // copy the runs of plain chars between escapes and multibyte chars in bulk as well
+      if (pendingLowSurrogate == 0) {
+        start = index;
+        end = scanPlainChars(start);
+        appendChars(start, end);
+        index = end;
+      }
+      char c = stringChar();
+
+      switch (c) {
+      case '\"':
+        return reusableBuffer.toString();
+      case '\\':
+        int escape = advanceChar();
+        switch (escape) {
+        case -1:
+          throw createParseException(null, "EOF encountered in the middle of a string escape", false);
+        case 'b':
+          reusableBuffer.append('\b');
+          break;
+        case 'f':
+          reusableBuffer.append('\f');
+          break;
+        case 'n':
+          reusableBuffer.append('\n');
+          break;
+        case 'r':
+          reusableBuffer.append('\r');
+          break;
+        case 't':
+          reusableBuffer.append('\t');
+          break;
+        case '"':
+        case '/':
+        case '\\':
+          reusableBuffer.append((char)escape);
+          break;
+        case 'u':
+          reusableBuffer.append((char)(stringHexChar() << 12 | stringHexChar() << 8 //
+              | stringHexChar() << 4 | stringHexChar()));
+          break;
+        default:
+          throw createParseException(null, "Invalid escape: \\" + (char)escape, false);
+        }
+        break;
+      default:
+        reusableBuffer.append(c);
+      }
+    }
+  }
+
+  /**
+   * Returns the index of the first char (or byte) at or after {@code index} in the current buffer
+   * which terminates, escapes or must be decoded in a string, or {@code bufferLength}.
+   */
+  private int scanPlainChars(int index) {
+    int end = bufferLength;
+    if (string != null) {
+      String string = this.string;
+      for (; index < end; index++) {
+        char c = string.charAt(index);
+        if (c < 32 || c == '"' || c == '\\')
+          break;
+      }
+    } else if (bytes != null) {
+      byte[] bytes = this.bytes;
+      for (; index < end; index++) {
+        byte b = bytes[index]; // non-ASCII bytes are negative
+        if (b < 32 || b == '"' || b == '\\')
+          break;
+      }
+    } else {
+      char[] chars = this.chars;
+      for (; index < end; index++) {
+        char c = chars[index];
+        if (c < 32 || c == '"' || c == '\\')
+          break;
+      }
+    }
+    return index;
+  }
+
+  /**
+   * Returns the plain chars in {@code [start, end)} of the current buffer as a string.
+   */
+  private String substring(int start, int end) {
+    if (string != null)
+      return string.substring(start, end);
+    if (chars != null)
+      return new String(chars, start, end - start);
+    int length = end - start;
+    if (asciiBuffer == null || asciiBuffer.length < length)
+      asciiBuffer = new char[Math.max(length, 64)];
+    for (int i = 0; i < length; i++)
+      asciiBuffer[i] = (char)bytes[start + i];
+    return new String(asciiBuffer, 0, length);
+  }
+
+  /**
+   * Returns the plain chars in {@code [start, end)} of the current buffer as a string, reusing the
+   * string from the last time they were read if they were read recently. Documents tend to repeat
+   * the same few keys many times, so this saves allocating and hashing them over and over.
+   */
+  private String internKey(int start, int end) {
+    // this matches String.hashCode, so the map gets the hash for free when we reuse a string
+    int hash = 0;
+    for (int i = start; i < end; i++)
+      hash = 31 * hash + charAt(i);
+    if (keyCache == null)
+      keyCache = new String[KEY_CACHE_SIZE];
+    int slot = (hash ^ (hash >>> 16)) & (KEY_CACHE_SIZE - 1);
+    String cached = keyCache[slot];
+    if (cached != null && cached.length() == end - start && cached.hashCode() == hash) {
+      int i = start;
+      while (i < end && cached.charAt(i - start) == charAt(i))
+        i++;
+      if (i == end)
+        return cached;
+    }
+    return keyCache[slot] = substring(start, end);
+  }
+
+  /**
+   * Appends the plain chars in {@code [start, end)} of the current buffer to our reusable buffer.
+   */
+  private void appendChars(int start, int end) {
+    if (string != null)
+      reusableBuffer.append(string, start, end);
+    else if (chars != null)
+      reusableBuffer.append(chars, start, end - start);
+    else
+      for (int i = start; i < end; i++)
+        reusableBuffer.append((char)bytes[i]);
+  }
+
+  /**
+   * Advances a character, throwing if it is illegal in the context of a JSON string.
+   */
+  private char stringChar() throws JsonParserException {
+    if (pendingLowSurrogate != 0) {
+      char c = pendingLowSurrogate;
+      pendingLowSurrogate = 0;
+      return c;
+    }
+    int c = advanceChar();
+    if (c == -1)
+      throw createParseException(null, "String was not terminated before end of input", true);
+    if (c < 32)
+      throw createParseException(null,
+          "Strings may not contain control characters: 0x" + Integer.toString(c, 16), false);
+    if (c >= 0x80 && bytes != null)
+      return utf8Char(c);
+    return (char)c;
+  }
+
+  /**
+   * Decodes the rest of the UTF-8 sequence started by {@code lead}. If the sequence encodes a
+   * supplementary character, the high surrogate is returned and the low surrogate is returned by
+   * the next call to {@link #stringChar}.
+   */
+  private char utf8Char(int lead) throws JsonParserException {
+    int codePoint, extra;
+    if ((lead & 0xE0) == 0xC0) {
+      codePoint = lead & 0x1F;
+      extra = 1;
+    } else if ((lead & 0xF0) == 0xE0) {
+      codePoint = lead & 0x0F;
+      extra = 2;
+    } else if ((lead & 0xF8) == 0xF0) {
+      codePoint = lead & 0x07;
+      extra = 3;
+    } else
+      throw createParseException(null, "Invalid UTF-8 byte: 0x" + Integer.toString(lead, 16), false);
+
+    for (int i = 0; i < extra; i++) {
+      int c = advanceChar();
+      if ((c & 0xC0) != 0x80)
+        throw createParseException(null, "Invalid UTF-8 sequence", false);
+      codePoint = codePoint << 6 | (c & 0x3F);
+    }
+
+    // positions are reported in UTF-16 chars, not bytes
+    utf8adjust += extra;
+    if (codePoint < 0x10000)
+      return (char)codePoint;
+    utf8adjust--;
+    codePoint -= 0x10000;
+    pendingLowSurrogate = (char)(0xDC00 | (codePoint & 0x3FF));
+    return (char)(0xD800 | (codePoint >> 10));
+  }
+
+  /**
+   * Advances a character, throwing if it is illegal in the context of a JSON string hex unicode escape.
+   */
+  private int stringHexChar() throws JsonParserException {
+    // GWT-compatible Character.digit(char, int)
+    int c = "0123456789abcdef0123456789ABCDEF".indexOf(advanceChar()) % 16;
+    if (c == -1)
+      throw createParseException(null, "Expected unicode hex escape character", false);
+    return c;
+  }
+
+  /**
+   * Quick test for digit characters.
+   */
+  private boolean isDigitCharacter(int c) {
+    return (c >= '0' && c <= '9') || c == 'e' || c == 'E' || c == '.' || c == '+' || c == '-';
+  }
+
+  /**
+   * Quick test for whitespace characters.
+   */
+  private boolean isWhitespace(int c) {
+    return c == ' ' || c == '\n' || c == '\r' || c == '\t';
+  }
+
+  /**
+   * Quick test for ASCII letter characters.
+   */
+  private boolean isAsciiLetter(int c) {
+    return (c >= 'A' && c <= 'Z') || (c >= 'a' && c <= 'z');
+  }
+
+  /**
+   * Peek one char ahead, don't advance, returns {@link Token#EOF} on end of input.
+   */
+  private int peekChar() throws JsonParserException {
+    if (index >= bufferLength && !refill())
+      return -1;
+    return charAt(index);
+  }
+
+  /**
+   * Advance one character ahead, or return {@link Token#EOF} on end of input.
+   */
+  private int advanceChar() throws JsonParserException {
+    if (index >= bufferLength && !refill())
+      return -1;
+    int c = charAt(index);
+    if (c == '\n') {
+      linePos++;
+      rowPos = index + 1;
+      utf8adjust = 0;
+    }
+
+    index++;
+    return c;
+  }
+
+  /**
+   * Returns the character (or byte, for UTF-8 input) at the given index of the buffer.
+   */
+  private int charAt(int index) {
+    if (string != null)
+      return string.charAt(index);
+    if (bytes != null)
+      return bytes[index] & 0xFF;
+    return chars[index];
+  }
+
+  /**
+   * Reads the next chunk of input into our buffer.
+   *
+   * @return false if there is no more input.
+   */
+  private boolean refill() throws JsonParserException {
+    if (eof)
+      return false;
+    int read = -1;
+    if (charSource != null) {
+      try {
+        read = charSource.read(chars, 0, chars.length);
+      } catch (IOException e) {
+        throw createParseException(e, "IOException while reading", false);
+      }
+    } else if (byteSource != null && byteSource.hasRemaining()) {
+      read = Math.min(bytes.length, byteSource.remaining());
+      byteSource.get(bytes, 0, read);
+    }
+    if (read <= 0) {
+      eof = true;
+      return false;
+    }
+
+    // positions are relative to the start of the buffer, so shift them to the new chunk
+    charOffset += bufferLength;
+    rowPos -= bufferLength;
+    index = 0;
+    bufferLength = read;
+    return true;
+  }
+
+  /**
+   * Throws a helpful exception based on the current alphanumeric token.
+   */
+  private JsonParserException createHelpfulException(char first, char[] expected, int failurePosition)
+      throws JsonParserException {
+    // Build the first part of the token
+    StringBuilder errorToken = new StringBuilder(first
+        + (expected == null ? "" : new String(expected, 0, failurePosition)));
+
+    // Consume the whole pseudo-token to make a better error message
+    while (isAsciiLetter(peekChar()) && errorToken.length() < 15)
+      errorToken.append((char)advanceChar());
+
+    return createParseException(null, "Unexpected token '" + errorToken + "'"
+        + (expected == null ? "" : ". Did you mean '" + first + new String(expected) + "'?"), true);
+  }
+}
@@ -225,7 +225,7 @@ class JsonWriterBase<SELF extends JsonSink<SELF>> implements JsonSink<SELF> {
     if (n == null)
       raw("null");
     else
-      raw(n.toString());
+      number(n);
     return castThis();
   }
 
@@ -250,7 +250,7 @@ class JsonWriterBase<SELF extends JsonSink<SELF>> implements JsonSink<SELF> {
     if (n == null)
       return nul(key);
     preValue(key);
-    raw(n.toString());
+    number(n);
     return castThis();
   }
 
@@ -346,6 +346,14 @@ class JsonWriterBase<SELF extends JsonSink<SELF>> implements JsonSink<SELF> {
     }
   }
 
+  /**
+   * Emits a number. Subclasses override this to format numbers without first converting them to
+   * a {@link String}, and must produce the same output as {@link Number#toString}.
+   */
+  void number(Number n) {
+    raw(n.toString());
+  }
+
   private void raw(String s) {
     try {
       appendable.append(s);
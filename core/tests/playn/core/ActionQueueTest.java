@@ -0,0 +1,70 @@
+/**
+ * Copyright 2010-2015 The PlayN Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package playn.core;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * Tests {@link ActionQueue}.
+ */
+public class ActionQueueTest {
+
+  static final Runnable NOOP = new Runnable() {
+    public void run () {}
+  };
+
+  @Test(timeout=10000) public void testOverflowDrainedBeforeClaim () {
+    ActionQueue queue = new ActionQueue();
+    ActionQueue.Block first = queue.current;
+    int capacity = first.slots.length();
+    for (int ii = 0; ii < capacity; ii++) queue.add(NOOP);
+
+    // replay an add which overflows the full block, claiming a slot past its end and linking the
+    // next block, but which is descheduled before it claims a slot in that next block
+    assertEquals(capacity, first.claimed.getAndIncrement());
+    first.next.set(ActionQueue.open(new ActionQueue.Block(capacity*2)));
+    // the drain closes both blocks, finding only the actions in the first
+    assertEquals(capacity, queue.drain());
+    // the add resumes, finds the next block closed, and retries with the current block
+    queue.add(NOOP);
+    assertEquals(1, queue.drain());
+
+    // the block that overflowed must not be reused with its stale link, else an add that fills
+    // it follows the link to the closed block and back to it forever
+    for (int ii = 0; ii <= capacity; ii++) queue.add(NOOP);
+    assertEquals(capacity+1, queue.drain());
+    for (int ii = 0; ii < 3*capacity; ii++) queue.add(NOOP);
+    assertEquals(3*capacity, queue.drain());
+  }
+
+  @Test public void testOrderAcrossOverflow () {
+    ActionQueue queue = new ActionQueue();
+    final int[] next = { 0 };
+    for (int round = 1; round <= 4; round++) {
+      int count = round * 100;
+      for (int ii = 0; ii < count; ii++) {
+        final int id = ii;
+        queue.add(new Runnable() {
+          public void run () { assertEquals(next[0]++, id); }
+        });
+      }
+      next[0] = 0;
+      assertEquals(count, queue.drain());
+      Runnable[] buffer = queue.buffer();
+      for (int ii = 0; ii < count; ii++) buffer[ii].run();
+      assertEquals(count, next[0]);
+    }
+  }
+}
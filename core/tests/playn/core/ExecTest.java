@@ -0,0 +1,195 @@
+/**
+ * Copyright 2010-2015 The PlayN Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package playn.core;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * Tests {@link Exec.Default}.
+ */
+public class ExecTest {
+
+  static class TestPlatform extends StubPlatform {
+    public TestPlatform () {}
+    public TestPlatform (TimeSource time) { super(time); }
+    public final Exec.Default exec = new Exec.Default(this) {
+      @Override public boolean isMainThread () { return true; }
+    };
+    public void frame () { emitFrame(); }
+    @Override public Exec exec () { return exec; }
+  }
+
+  @Test public void testOrdering () {
+    final TestPlatform plat = new TestPlatform();
+    final List<Integer> ran = new ArrayList<>();
+    for (int ii = 0; ii < 100; ii++) {
+      final int id = ii;
+      plat.exec.invokeLater(new Runnable() {
+        public void run () {
+          ran.add(id);
+          // actions queued by an action run on the next frame
+          if (id == 0) plat.exec.invokeNextFrame(new Runnable() {
+            public void run () { ran.add(-1); }
+          });
+        }
+      });
+    }
+    plat.frame();
+    assertEquals(100, ran.size());
+    for (int ii = 0; ii < 100; ii++) assertEquals(ii, (int)ran.get(ii));
+    plat.frame();
+    assertEquals(101, ran.size());
+    assertEquals(-1, (int)ran.get(100));
+    plat.frame();
+    assertEquals(101, ran.size());
+  }
+
+  @Test public void testConcurrentProducers () throws Exception {
+    final TestPlatform plat = new TestPlatform();
+    final int producers = 8, actions = 20000;
+    final List<int[]> ran = new ArrayList<>();
+    Thread[] threads = new Thread[producers];
+    for (int pp = 0; pp < producers; pp++) {
+      final int producer = pp;
+      threads[pp] = new Thread() {
+        @Override public void run () {
+          for (int ii = 0; ii < actions; ii++) {
+            final int[] action = { producer, ii };
+            plat.exec.invokeLater(new Runnable() {
+              public void run () { ran.add(action); }
+            });
+          }
+        }
+      };
+      threads[pp].start();
+    }
+    // drain concurrently with the producers, as the game thread would
+    boolean alive = true;
+    while (alive) {
+      plat.frame();
+      alive = false;
+      for (Thread thread : threads) alive |= thread.isAlive();
+    }
+    for (Thread thread : threads) thread.join();
+    plat.frame();
+
+    // every action ran exactly once, and each producer's actions ran in the order it queued them
+    assertEquals(producers * actions, ran.size());
+    int[] next = new int[producers];
+    for (int[] action : ran) assertEquals(next[action[0]]++, action[1]);
+  }
+
+  @Test public void testCountBudget () {
+    TestPlatform plat = new TestPlatform();
+    plat.exec.setFrameBudget(10, 0);
+    List<Integer> ran = queue(plat, 0, 25);
+    plat.frame();
+    assertEquals(10, ran.size());
+    assertEquals(15, plat.exec.backlog());
+
+    // deferred actions run before newly queued ones
+    queue(plat, 25, 5, ran);
+    plat.frame();
+    assertEquals(20, ran.size());
+    assertEquals(10, plat.exec.backlog());
+    plat.frame();
+    plat.frame();
+    assertEquals(30, ran.size());
+    assertEquals(0, plat.exec.backlog());
+    for (int ii = 0; ii < 30; ii++) assertEquals(ii, (int)ran.get(ii));
+  }
+
+  @Test public void testTimeBudget () {
+    final VirtualTimeSource time = new VirtualTimeSource();
+    TestPlatform plat = new TestPlatform(time);
+    plat.exec.setFrameBudget(0, 4);
+    // each action takes 1ms, so we expect four per frame
+    final List<Integer> ran = new ArrayList<>();
+    for (int ii = 0; ii < 10; ii++) {
+      final int id = ii;
+      plat.exec.invokeLater(new Runnable() {
+        public void run () { ran.add(id); time.advance(1000000L); }
+      });
+    }
+    plat.frame();
+    assertEquals(4, ran.size());
+    assertEquals(6, plat.exec.backlog());
+    plat.frame();
+    plat.frame();
+    assertEquals(10, ran.size());
+    assertEquals(0, plat.exec.backlog());
+
+    // a single action that blows the budget still runs, but nothing after it
+    plat.exec.invokeLater(new Runnable() {
+      public void run () { ran.add(10); time.advance(50000000L); }
+    });
+    queue(plat, 11, 1, ran);
+    plat.frame();
+    assertEquals(11, ran.size());
+    assertEquals(1, plat.exec.backlog());
+  }
+
+  @Test public void testUrgent () {
+    TestPlatform plat = new TestPlatform();
+    plat.exec.setFrameBudget(1, 0);
+    final List<Integer> ran = queue(plat, 0, 3);
+    plat.exec.invokeUrgent(new Runnable() {
+      public void run () { ran.add(-1); }
+    });
+    plat.exec.invokeUrgent(new Runnable() {
+      public void run () { ran.add(-2); }
+    });
+    plat.frame();
+    // urgent actions run first, in order, and don't count against the budget
+    assertEquals(3, ran.size());
+    assertEquals(-1, (int)ran.get(0));
+    assertEquals(-2, (int)ran.get(1));
+    assertEquals(0, (int)ran.get(2));
+    assertEquals(2, plat.exec.backlog());
+
+    // more urgent actions than fit in the initial drain buffer all run, twice over to be sure
+    // that the buffer in which they're drained is reused correctly
+    for (int round = 0; round < 2; round++) {
+      ran.clear();
+      for (int ii = 0; ii < 100; ii++) {
+        final int id = -ii-1;
+        plat.exec.invokeUrgent(new Runnable() {
+          public void run () { ran.add(id); }
+        });
+      }
+      plat.frame();
+      assertEquals(101, ran.size());
+      for (int ii = 0; ii < 100; ii++) assertEquals(-ii-1, (int)ran.get(ii));
+    }
+  }
+
+  protected static List<Integer> queue (TestPlatform plat, int first, int count) {
+    return queue(plat, first, count, new ArrayList<Integer>());
+  }
+
+  protected static List<Integer> queue (TestPlatform plat, int first, int count,
+                                        final List<Integer> ran) {
+    for (int ii = first; ii < first+count; ii++) {
+      final int id = ii;
+      plat.exec.invokeLater(new Runnable() {
+        public void run () { ran.add(id); }
+      });
+    }
+    return ran;
+  }
+}
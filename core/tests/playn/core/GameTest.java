@@ -0,0 +1,86 @@
+/**
+ * Copyright 2010-2015 The PlayN Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package playn.core;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * Tests the timing provided by {@link Game}, driven by a {@link VirtualTimeSource}.
+ */
+public class GameTest {
+
+  static class TestGame extends Game {
+    public final List<Long> updates = new ArrayList<>();
+    public final List<Long> paints = new ArrayList<>();
+    public final List<Float> alphas = new ArrayList<>();
+    public int paintTick, paintDts;
+
+    public TestGame (Platform plat, int updateRate) { super(plat, updateRate); }
+
+    @Override public void update (Clock clock) { updates.add(clock.dtNanos); }
+    @Override public void paint (Clock clock) {
+      paints.add(clock.dtNanos);
+      alphas.add(clock.alpha);
+      paintTick = clock.tick;
+      paintDts += clock.dt;
+    }
+  }
+
+  @Test public void testHighRefreshRate () {
+    VirtualTimeSource time = new VirtualTimeSource();
+    StubPlatform plat = new StubPlatform(time);
+    TestGame game = new TestGame(plat, 25);
+    // paint at 120Hz, which is not a whole number of milliseconds
+    long frameNanos = 1000000000L / 120;
+    for (int ii = 0; ii < 120; ii++) {
+      time.advance(frameNanos);
+      plat.emitFrame();
+    }
+    // every frame after the first sees the precise frame duration
+    for (int ii = 1; ii < game.paints.size(); ii++) {
+      assertEquals(frameNanos, (long)game.paints.get(ii));
+    }
+    // the millisecond dts don't accumulate rounding error
+    assertEquals(120 * frameNanos / 1000000L, game.paintTick);
+    assertEquals(game.paintTick, game.paintDts);
+    // we advanced 999.99996ms, so the updates scheduled at t=0, 25, ..., 975ms have all run
+    assertEquals(40, game.updates.size());
+    for (long dt : game.updates) assertEquals(25000000L, dt);
+    // alpha is computed precisely from the nanosecond tick: the final frame is at 999.99996ms
+    // and the next update is scheduled at 1000ms
+    assertEquals(1 - (1000000000L - 120*frameNanos) / 25e6, game.alphas.get(119), 1e-7);
+  }
+
+  @Test public void testDeterministic () {
+    // two runs with the same virtual times produce exactly the same clocks
+    List<Long> first = null;
+    for (int run = 0; run < 2; run++) {
+      VirtualTimeSource time = new VirtualTimeSource();
+      StubPlatform plat = new StubPlatform(time);
+      TestGame game = new TestGame(plat, 16);
+      for (int ii = 0; ii < 100; ii++) {
+        time.advanceMillis(ii % 7 == 0 ? 33.3 : 16.7);
+        plat.emitFrame();
+      }
+      List<Long> results = new ArrayList<>(game.updates);
+      results.addAll(game.paints);
+      if (first == null) first = results;
+      else assertEquals(first, results);
+    }
+  }
+}
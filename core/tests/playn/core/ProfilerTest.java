@@ -0,0 +1,101 @@
+/**
+ * Copyright 2010-2015 The PlayN Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package playn.core;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * Tests {@link Profiler}, driven by a {@link VirtualTimeSource}.
+ */
+public class ProfilerTest {
+
+  @Test public void testGamePhases () {
+    final VirtualTimeSource time = new VirtualTimeSource();
+    // the platform profiler measures real time by default, but we want it to see our virtual time
+    StubPlatform plat = new StubPlatform(time) {
+      @Override protected Profiler createProfiler () { return new Profiler(time, 300); }
+    };
+    new Game(plat, 20) {
+      @Override public void update (Clock clock) { time.advance(2000000); }
+      @Override public void paint (Clock clock) { time.advance(5000000); }
+    };
+    plat.profiler().setEnabled(true);
+    for (int ii = 0; ii < 10; ii++) {
+      time.advance(3000000);
+      plat.emitFrame();
+    }
+    Profiler prof = plat.profiler();
+    assertEquals(10, prof.frames());
+    assertEquals(5, prof.phaseTime(Profiler.PAINT, 0), 1e-6);
+    assertEquals(5, prof.phasePercentile(Profiler.PAINT, 99), 1e-6);
+    assertEquals(0, prof.phasePercentile(Profiler.RENDER, 99), 1e-6);
+    // every frame is 3ms of idle time, plus the paint, plus an update if one was due
+    int updates = 0;
+    for (int ii = 0; ii < prof.frames(); ii++) {
+      float update = prof.phaseTime(Profiler.UPDATE, ii);
+      if (update > 0) updates++;
+      assertEquals(8 + update, prof.phaseTime(Profiler.FRAME, ii), 1e-6);
+    }
+    assertTrue(updates > 0 && updates < 10);
+    assertEquals(2, prof.phasePercentile(Profiler.UPDATE, 100), 1e-6);
+  }
+
+  @Test public void testNestingAndCounters () {
+    VirtualTimeSource time = new VirtualTimeSource();
+    Profiler prof = new Profiler(time, 4);
+    prof.count(Profiler.QUADS, 10); // ignored while disabled
+    prof.setEnabled(true);
+    for (int ff = 1; ff <= 6; ff++) {
+      prof.start(Profiler.RENDER);
+      for (int ii = 0; ii < ff; ii++) {
+        prof.start(Profiler.FLUSH);
+        prof.start(Profiler.FLUSH); // nested starts of the same phase are not double counted
+        time.advance(1000000);
+        prof.end(Profiler.FLUSH);
+        prof.end(Profiler.FLUSH);
+        prof.count(Profiler.DRAW_CALLS, 1);
+        prof.count(Profiler.QUADS, 100);
+      }
+      time.advance(1000000);
+      prof.end(Profiler.RENDER);
+      prof.endFrame();
+    }
+    // we only retain the last four frames
+    assertEquals(4, prof.frames());
+    for (int ii = 0; ii < 4; ii++) {
+      int ff = 6 - ii;
+      assertEquals(ff, prof.phaseTime(Profiler.FLUSH, ii), 1e-6);
+      assertEquals(ff+1, prof.phaseTime(Profiler.RENDER, ii), 1e-6);
+      assertEquals(ff, prof.counter(Profiler.DRAW_CALLS, ii));
+      assertEquals(ff*100, prof.counter(Profiler.QUADS, ii));
+    }
+    assertEquals(3, prof.counterPercentile(Profiler.DRAW_CALLS, 0));
+    assertEquals(4, prof.counterPercentile(Profiler.DRAW_CALLS, 50));
+    assertEquals(6, prof.counterPercentile(Profiler.DRAW_CALLS, 99));
+    assertEquals(450, prof.counterMean(Profiler.QUADS), 1e-6);
+
+    String[] csv = prof.toCSV().split("\n");
+    assertEquals(5, csv.length);
+    assertEquals("input,exec,update,paint,render,flush,frame,drawCalls,quads,uploadBytes", csv[0]);
+    assertEquals("0.0,0.0,0.0,0.0,4.0,3.0,4.0,3,300,0", csv[1]);
+    String json = prof.toJSON();
+    assertTrue(json, json.contains("\"flush\": {\"mean\": 4.5, \"p50\": 4.0"));
+    assertTrue(json, json.contains("\"drawCalls\": 6, \"quads\": 600"));
+
+    prof.reset();
+    assertEquals(0, prof.frames());
+    assertEquals(0, prof.phasePercentile(Profiler.FLUSH, 50), 0);
+  }
+}
@@ -0,0 +1,268 @@
+/**
+ * Copyright 2011 The PlayN Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package playn.core.json;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+import org.junit.Test;
+
+import playn.core.Json;
+import playn.core.Json.Reader.Event;
+
+public class InternalJsonCborTest {
+  private static final Charset UTF8 = Charset.forName("UTF8");
+
+  /**
+   * Decodes examples from appendix A of RFC 8949.
+   */
+  @Test
+  public void testRfcExamples() throws JsonParserException {
+    String[] cases = {
+      "00", "0", "17", "23", "1818", "24", "1903e8", "1000", "1a000f4240", "1000000",
+      "1b000000e8d4a51000", "1000000000000", "1bffffffffffffffff", "18446744073709551615",
+      "c249010000000000000000", "18446744073709551616", "3bffffffffffffffff",
+      "-18446744073709551616", "c349010000000000000000", "-18446744073709551617", "20", "-1",
+      "3903e7", "-1000", "f90000", "0.0", "f98000", "-0.0", "f93c00", "1.0", "fb3ff199999999999a",
+      "1.1", "f93e00", "1.5", "f97bff", "65504.0", "fa47c35000", "100000.0", "f90400",
+      "6.103515625E-5", "f9c400", "-4.0", "fbc010666666666666", "-4.1", "f4", "false", "f5",
+      "true", "f6", "null", "f7", "null", "60", "\"\"", "6161", "\"a\"", "6449455446", "\"IETF\"",
+      "62225c", "\"\\\"\\\\\"", "62c3bc", "\"\u00fc\"", "63e6b0b4", "\"\u6c34\"",
+      "64f0908591", "\"\ud800\udd51\"", "80", "[]", "83010203", "[1,2,3]",
+      "8301820203820405", "[1,[2,3],[4,5]]", "a0", "{}", "a201020304", null,
+      "a26161016162820203", "{\"a\":1,\"b\":[2,3]}", "826161a161626163", "[\"a\",{\"b\":\"c\"}]",
+      "7f657374726561646d696e67ff", "\"streaming\"", "9fff", "[]",
+      "9f018202039f0405ffff", "[1,[2,3],[4,5]]", "83018202039f0405ff", "[1,[2,3],[4,5]]",
+      "bf61610161629f0203ffff", "{\"a\":1,\"b\":[2,3]}", "bf6346756ef563416d7421ff",
+      "{\"Amt\":-2,\"Fun\":true}", "c11a514b67b0", "1363896240",
+    };
+    for (int i = 0; i < cases.length; i += 2) {
+      String expect = cases[i + 1];
+      try {
+        Object value = JsonParser.any().from(new JsonCborReader(ByteBuffer.wrap(hex(cases[i]))));
+        assertEquals(cases[i], expect, JsonStringWriter.toString(value));
+      } catch (JsonParserException e) {
+        // a map with integer keys has no JSON equivalent
+        if (expect != null)
+          throw e;
+      }
+    }
+  }
+
+  @Test
+  public void testEncoding() {
+    assertEncoding("00", new JsonCborWriter().value(0));
+    assertEncoding("1818", new JsonCborWriter().value(24));
+    assertEncoding("3903e7", new JsonCborWriter().value(-1000));
+    assertEncoding("1b000000e8d4a51000", new JsonCborWriter().value(1000000000000L));
+    assertEncoding("1bffffffffffffffff",
+                   new JsonCborWriter().value(new BigInteger("18446744073709551615")));
+    assertEncoding("c349010000000000000000",
+                   new JsonCborWriter().value(new BigInteger("-18446744073709551617")));
+    assertEncoding("fa3fc00000", new JsonCborWriter().value(1.5));
+    assertEncoding("fa3fc00000", new JsonCborWriter().value(1.5f));
+    assertEncoding("fb3ff199999999999a", new JsonCborWriter().value(1.1));
+    assertEncoding("f5", new JsonCborWriter().value(true));
+    assertEncoding("f6", new JsonCborWriter().nul());
+    assertEncoding("62c3bc", new JsonCborWriter().value("\u00fc"));
+    assertEncoding("64f0908591", new JsonCborWriter().value("\ud800\udd51"));
+    assertEncoding("633f613f", new JsonCborWriter().value("\ud800a\udd51"));
+    assertEncoding("83010203", new JsonCborWriter().value(Arrays.asList(1, 2, 3)));
+    assertEncoding("9f01820203ff",
+                   new JsonCborWriter().array().value(1).array(Arrays.asList(2, 3)).end());
+    assertEncoding("bf616101ff", new JsonCborWriter().object().value("a", 1).end());
+  }
+
+  @Test
+  public void testTortureRoundTrip() throws JsonParserException, IOException {
+    String json = readAsUtf8(new GZIPInputStream(getClass().getResourceAsStream("torturetest.json.gz")));
+    JsonObject o = JsonParser.object().from(json);
+    ByteBuffer cbor = new JsonCborWriter().object(o).write();
+    assertTrue(cbor.remaining() < json.getBytes(UTF8).length);
+    Json.Object o2 = new JsonImpl().parseBinary(cbor);
+    assertEquals(0, cbor.remaining());
+    assertEquals(new JsonStringWriter().object(o).write(), new JsonStringWriter().object(o2).write());
+  }
+
+  /**
+   * Round trips the passing tests from json.org: http://www.json.org/JSON_checker/
+   */
+  @Test
+  public void testJsonOrgRoundTrip() throws IOException, JsonParserException {
+    ZipInputStream zip = new ZipInputStream(getClass().getResourceAsStream("json_org_test.zip"));
+    ZipEntry ze;
+    int count = 0;
+    while ((ze = zip.getNextEntry()) != null) {
+      if (ze.isDirectory() || !ze.getName().startsWith("test/pass"))
+        continue;
+      Object value = JsonParser.any().from(readAsUtf8(zip));
+      ByteBuffer cbor = new JsonCborWriter().value(value).write();
+      Object value2 = JsonParser.any().from(new JsonCborReader(cbor));
+      assertEquals(ze.getName(), JsonStringWriter.toString(value), JsonStringWriter.toString(value2));
+      count++;
+    }
+    assertTrue(count > 0);
+  }
+
+  @Test
+  public void testNumbersRoundTrip() throws JsonParserException {
+    Number[] numbers = { 0, 23, 24, 255, 256, 65535, 65536, Integer.MAX_VALUE, Integer.MIN_VALUE,
+                         -24, -25, -256, -257, 4294967296L, Long.MAX_VALUE, Long.MIN_VALUE, -0.0,
+                         0.5, 1e300, -1e-300, Double.MIN_VALUE, 3.4028234663852886E38,
+                         new BigInteger("123456789012345678901234567890"),
+                         new BigInteger("-123456789012345678901234567890") };
+    for (Number n : numbers) {
+      JsonArray array = new JsonArray();
+      array.add(n);
+      array.add("x"); // keeps the numbers boxed
+      JsonArray read = JsonParser.array().from(new JsonCborReader(new JsonCborWriter().value(array).write()));
+      assertEquals(n.toString(), JsonStringWriter.toString(array), JsonStringWriter.toString(read));
+      if (n instanceof Integer || n instanceof Double || n instanceof BigInteger)
+        assertEquals(n.getClass(), read.get(0).getClass());
+    }
+  }
+
+  @Test
+  public void testEvents() throws JsonParserException {
+    ByteBuffer cbor = new JsonCborWriter().object().value("a", 1).array("b").value("c").nul().end().
+      object("d", new JsonObject()).value("e", 2.5).end().write();
+    Json.Reader in = new JsonImpl().newBinaryReader(cbor);
+    Event[] events = { Event.START_OBJECT, Event.KEY, Event.NUMBER, Event.KEY, Event.START_ARRAY,
+                       Event.STRING, Event.NULL, Event.END_ARRAY, Event.KEY, Event.START_OBJECT,
+                       Event.END_OBJECT, Event.KEY, Event.NUMBER, Event.END_OBJECT, Event.EOF,
+                       Event.EOF };
+    for (Event event : events) {
+      assertEquals(event, in.next());
+      if (event == Event.NUMBER)
+        assertEquals(in.getInt() == 1 ? 1 : 2.5, in.getDouble(), 0);
+    }
+
+    in = new JsonImpl().newBinaryReader(new JsonCborWriter().value(Arrays.asList(
+      Arrays.asList(1, 2), "x", new JsonObject().put("y", new JsonArray().add(3)))).write());
+    in.next();
+    in.next();
+    in.skipValue();
+    assertEquals(Event.STRING, in.next());
+    assertEquals("x", in.getString());
+    in.next();
+    in.skipValue();
+    assertEquals(Event.END_ARRAY, in.next());
+    assertEquals(Event.EOF, in.next());
+  }
+
+  @Test
+  public void testFailures() {
+    String[] cases = {
+      "", "18", "1900", "62c3", "62c328", "61", "8201", "a16161", "bf6161ff", "a10102", "9f01",
+      "ff", "4161", "1c", "f8ff", "0000", "9fff00", "7f6161", "7f01ff", "9b0fffffffffffffff",
+    };
+    for (String json : cases) {
+      try {
+        JsonParser.any().from(new JsonCborReader(ByteBuffer.wrap(hex(json))));
+        fail("Should have failed: " + json);
+      } catch (JsonParserException e) {
+        // expected
+      }
+    }
+  }
+
+  @Test
+  public void testFailurePosition() {
+    try {
+      JsonParser.any().from(new JsonCborReader(ByteBuffer.wrap(hex("a2616101016162"))));
+      fail();
+    } catch (JsonParserException e) {
+      assertEquals(4, e.getCharOffset());
+    }
+  }
+
+  @Test
+  public void testWriterFailures() {
+    try {
+      new JsonCborWriter().object().value(1);
+      fail();
+    } catch (JsonWriterException e) {
+      // expected
+    }
+    try {
+      new JsonCborWriter().array().value("a", 1);
+      fail();
+    } catch (JsonWriterException e) {
+      // expected
+    }
+    try {
+      new JsonCborWriter().array().write();
+      fail();
+    } catch (JsonWriterException e) {
+      // expected
+    }
+    try {
+      new JsonCborWriter().write();
+      fail();
+    } catch (JsonWriterException e) {
+      // expected
+    }
+    try {
+      new JsonCborWriter().value(1).value(2);
+      fail();
+    } catch (JsonWriterException e) {
+      // expected
+    }
+    try {
+      new JsonCborWriter().end();
+      fail();
+    } catch (JsonWriterException e) {
+      // expected
+    }
+  }
+
+  private static void assertEncoding(String expect, Json.BinaryWriter writer) {
+    ByteBuffer buffer = writer.write();
+    StringBuilder hex = new StringBuilder();
+    while (buffer.hasRemaining())
+      hex.append(String.format("%02x", buffer.get() & 0xFF));
+    assertEquals(expect, hex.toString());
+  }
+
+  private static byte[] hex(String hex) {
+    byte[] bytes = new byte[hex.length() / 2];
+    for (int i = 0; i < bytes.length; i++)
+      bytes[i] = (byte) Integer.parseInt(hex.substring(i * 2, i * 2 + 2), 16);
+    return bytes;
+  }
+
+  private static String readAsUtf8(InputStream input) throws IOException {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    byte[] b = new byte[1024 * 1024];
+    while (true) {
+      int r = input.read(b);
+      if (r <= 0)
+        break;
+      out.write(b, 0, r);
+    }
+    return new String(out.toByteArray(), UTF8);
+  }
+}
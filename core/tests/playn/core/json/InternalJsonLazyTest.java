@@ -0,0 +1,103 @@
+/**
+ * Copyright 2011 The PlayN Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package playn.core.json;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+import java.util.zip.GZIPInputStream;
+
+import org.junit.Test;
+
+import playn.core.Json;
+
+public class InternalJsonLazyTest {
+  @Test
+  public void testBasics() throws JsonParserException {
+    JsonObject o = JsonLazyValue.parseObject(
+      " {\"a\": [1, 2.5, \"x\"], \"b\": {\"c\": \"d]}\\\"\", \"e\": null},\n \"f\": true, \"g\\u0041\": -1e3 } ");
+    assertEquals(2.5, o.getArray("a").getDouble(1), 0);
+    assertEquals("x", o.getArray("a").getString(2));
+    assertEquals("d]}\"", o.getObject("b").getString("c"));
+    assertTrue(o.getObject("b").isNull("e"));
+    assertTrue(o.getBoolean("f"));
+    assertEquals(-1000, o.getInt("gA"));
+    assertFalse(o.containsKey("h"));
+    assertEquals("{a=[1, 2.5, x], b={c=d]}\", e=null}, f=true, gA=-1000.0}", o.toString());
+  }
+
+  @Test
+  public void testEmpty() throws JsonParserException {
+    JsonObject o = JsonLazyValue.parseObject("{\"a\":{}, \"b\":[ ]}");
+    assertEquals(0, o.getObject("a").keys().length());
+    assertEquals(0, o.getArray("b").length());
+    assertEquals("{}", JsonLazyValue.parseObject(" { } ").toString());
+  }
+
+  @Test
+  public void testMalformedValuesAreLazy() throws JsonParserException {
+    // the structure is fine, but the value at b is not
+    JsonObject o = JsonLazyValue.parseObject("{\"a\": 1,\n \"b\": [1, tru]}");
+    assertEquals(1, o.getInt("a"));
+    Json.Array b = o.getArray("b");
+    assertEquals(1, b.getInt(0));
+    try {
+      b.getBoolean(1);
+      fail();
+    } catch (JsonParserException e) {
+      assertEquals(2, e.getLinePosition());
+      assertEquals(11, e.getCharPosition());
+    }
+  }
+
+  @Test
+  public void testMalformedStructure() {
+    String[] cases = { "", "[]", "{", "{\"a\"}", "{\"a\":}", "{\"a\":1,}", "{\"a\":1 \"b\":2}",
+                       "{\"a\":\"b}", "{\"a\":[1, 2}", "{\"a\":1} {}", "{\"a\":1}}", "{a:1}" };
+    for (String json : cases) {
+      try {
+        JsonLazyValue.parseObject(json).toString();
+        fail("Should have failed: " + json);
+      } catch (JsonParserException e) {
+        // expected
+      }
+    }
+  }
+
+  @Test
+  public void tortureTest() throws JsonParserException, IOException {
+    // a lazily parsed document must write out just as an eagerly parsed one does
+    String json = readAsUtf8(new GZIPInputStream(getClass().getResourceAsStream("torturetest.json.gz")));
+    String expect = new JsonStringWriter().object(JsonParser.object().from(json)).write();
+    assertEquals(expect, new JsonStringWriter().object(JsonLazyValue.parseObject(json)).write());
+  }
+
+  private String readAsUtf8(InputStream input) throws IOException {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    byte[] b = new byte[1024 * 1024];
+    while (true) {
+      int r = input.read(b);
+      if (r <= 0)
+        break;
+      out.write(b, 0, r);
+    }
+    return new String(out.toByteArray(), Charset.forName("UTF8"));
+  }
+}
@@ -16,6 +16,7 @@ import static org.junit.Assert.*;
  * the License.
  */
 import java.math.BigInteger;
+import java.util.Random;
 
 import org.junit.Test;
 
@@ -97,4 +98,40 @@ public class InternalJsonNumberTest {
     String json2 = new JsonStringWriter().array(array2).write();
     assertEquals(json, json2);
   }
+
+  /**
+   * Checks that the fast path for parsing doubles agrees exactly with {@link Double#parseDouble}.
+   */
+  @Test
+  public void testDoubleRead() {
+    String[] cases = { "0.0", "-0.0", "1.5", "0.1", "0.3", "1e22", "1e23", "9007199254740993.0",
+                       "123456789012345.6", "1.7976931348623157e308", "4.9e-324", "2.2250738585072014E-308",
+                       "1e-22", "1e-23", "0.000001", "12345e-27", "123.456e10", "1.E5", "5e+3" };
+    for (String number : cases)
+      checkDouble(number);
+
+    Random rando = new Random(42);
+    for (int i = 0; i < 20000; i++) {
+      checkDouble(Double.toString(rando.nextDouble() * Math.pow(10, rando.nextInt(40) - 20)));
+      checkDouble(Float.toString(rando.nextFloat() * 1024));
+      // random digit strings with random exponents, across the fast path's limits
+      StringBuilder number = new StringBuilder();
+      int digits = 1 + rando.nextInt(18);
+      number.append((char)('1' + rando.nextInt(9)));
+      for (int d = 1; d < digits; d++)
+        number.append((char)('0' + rando.nextInt(10)));
+      number.insert(1 + rando.nextInt(digits), '.');
+      if (rando.nextBoolean())
+        number.insert(0, '-');
+      number.append('e').append(rando.nextInt(70) - 35);
+      checkDouble(number.toString());
+    }
+  }
+
+  private void checkDouble(String number) {
+    assertEquals(number, Double.doubleToLongBits(Double.parseDouble(number)),
+                 Double.doubleToLongBits(JsonReader.parseDouble(number)));
+    double parsed = ((Number)JsonParser.any().from(number)).doubleValue();
+    assertEquals(number, Double.doubleToLongBits(Double.parseDouble(number)), Double.doubleToLongBits(parsed));
+  }
 }
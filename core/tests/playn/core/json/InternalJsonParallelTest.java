@@ -0,0 +1,209 @@
+/**
+ * Copyright 2011 The PlayN Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package playn.core.json;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+import react.RFuture;
+import react.Try;
+
+import playn.core.Exec;
+import playn.core.Json;
+
+public class InternalJsonParallelTest {
+  /**
+   * Runs async actions on their own threads, and deferred actions when the test waits for them,
+   * as the game thread would.
+   */
+  static class TestExec extends Exec {
+    private final List<Runnable> pending = new ArrayList<Runnable>();
+    private final boolean async;
+
+    TestExec(boolean async) {
+      this.async = async;
+    }
+
+    @Override
+    public boolean isMainThread() {
+      return true;
+    }
+
+    @Override
+    public void invokeNextFrame(Runnable action) {
+      invokeLater(action);
+    }
+
+    @Override
+    public void invokeLater(Runnable action) {
+      synchronized (pending) {
+        pending.add(action);
+        pending.notifyAll();
+      }
+    }
+
+    @Override
+    public boolean isAsyncSupported() {
+      return async;
+    }
+
+    @Override
+    public void invokeAsync(Runnable action) {
+      new Thread(action).start();
+    }
+
+    <T> Try<T> await(RFuture<T> future) throws InterruptedException {
+      while (!future.isCompleteNow()) {
+        Runnable action;
+        synchronized (pending) {
+          long timeout = System.currentTimeMillis() + 30000;
+          while (pending.isEmpty()) {
+            if (System.currentTimeMillis() > timeout)
+              throw new AssertionError("Timed out");
+            pending.wait(1000);
+          }
+          action = pending.remove(0);
+        }
+        action.run();
+      }
+      return future.result();
+    }
+  }
+
+  @Test
+  public void testSplit() {
+    String json = " [\"a,]\\\"\", [1, [2, \"]\"]], {\"b\": \"\\\\\", \"c\": [3, 4]}, 5, \"}\" ] ";
+    // asking for as many pieces as chars splits at every top-level comma
+    int[] bounds = JsonParallelParser.split(json, json.length());
+    assertEquals(10, bounds.length);
+    String[] expect = { "\"a,]\\\"\"", " [1, [2, \"]\"]]", " {\"b\": \"\\\\\", \"c\": [3, 4]}", " 5",
+                        " \"}\" " };
+    for (int i = 0; i < expect.length; i++)
+      assertEquals(expect[i], json.substring(bounds[i * 2], bounds[i * 2 + 1]));
+
+    // pieces are of the requested size, as near as the elements allow
+    bounds = JsonParallelParser.split(json, 2);
+    assertEquals(4, bounds.length);
+    assertEquals(" 5, \"}\" ", json.substring(bounds[2], bounds[3]));
+
+    String[] unsplittable = { "", "{\"a\": [1, 2]}", "[1]", "[1, 2", "[1, 2] 3", "[1, 2}", "[\"1, 2]" };
+    for (String s : unsplittable)
+      assertNull(s, JsonParallelParser.split(s, 2));
+  }
+
+  @Test
+  public void testEqualsSequential() throws InterruptedException {
+    String json = createRecords(5000);
+    assertTrue(json.length() > JsonParallelParser.THRESHOLD * 4);
+    assertParallel(json);
+    // the join keeps arrays of numbers unboxed, as the sequential parse does
+    assertParallel(createNumbers(100000, false));
+    assertParallel(createNumbers(100000, true));
+    // and small arrays are parsed in one piece
+    assertParallel("[1, \"2\", [3]]");
+    assertParallel("[]");
+  }
+
+  @Test
+  public void testMalformed() throws InterruptedException {
+    String json = createRecords(5000);
+    String[] cases = {
+      json.substring(0, json.length() - 1), // unclosed
+      json.replace("\"id\":4000,", "\"id\":4000,,"), // malformed within a piece
+      json.replace("\"id\":4000", "\"id\":4000]"), // mismatched brackets
+      json + "{}", // trailing content
+      json.substring(0, json.length() - 1) + ",]", // trailing comma
+    };
+    for (String malformed : cases) {
+      String expect = null;
+      try {
+        JsonParser.array().from(malformed);
+        fail();
+      } catch (JsonParserException e) {
+        expect = e.getMessage();
+      }
+      TestExec exec = new TestExec(true);
+      Try<Json.Array> result = exec.await(new JsonImpl().parseArrayAsync(malformed, exec));
+      assertTrue(result.isFailure());
+      assertEquals(expect, result.getFailure().getMessage());
+    }
+  }
+
+  @Test
+  public void testWithoutAsync() throws InterruptedException {
+    TestExec exec = new TestExec(false);
+    String json = createRecords(5000);
+    Try<Json.Array> result = exec.await(new JsonImpl().parseArrayAsync(json, exec));
+    assertEquals(JsonStringWriter.toString(JsonParser.array().from(json)),
+                 JsonStringWriter.toString(result.get()));
+  }
+
+  private static void assertParallel(String json) throws InterruptedException {
+    TestExec exec = new TestExec(true);
+    Json.Array parallel = exec.await(new JsonImpl().parseArrayAsync(json, exec)).get();
+    JsonArray sequential = JsonParser.array().from(json);
+    assertEquals(sequential.length(), parallel.length());
+    assertEquals(JsonStringWriter.toString(sequential), JsonStringWriter.toString(parallel));
+    for (int i = 0; i < sequential.length(); i++) {
+      Object value = sequential.get(i);
+      if (value != null)
+        assertEquals(value.getClass(), ((JsonArray)parallel).get(i).getClass());
+    }
+
+    // check that large arrays are split, and that the pieces parse, rather than falling back
+    if (json.length() >= JsonParallelParser.THRESHOLD) {
+      int[] bounds = JsonParallelParser.split(json, json.length() / JsonParallelParser.CHUNK_SIZE);
+      assertTrue(bounds.length > 2);
+      JsonArray[] parts = new JsonArray[bounds.length / 2];
+      for (int i = 0; i < parts.length; i++)
+        parts[i] = JsonParser.array().from(
+          JsonReader.elements(json, bounds[i * 2], bounds[i * 2 + 1] - bounds[i * 2]));
+      assertEquals(JsonStringWriter.toString(sequential),
+                   JsonStringWriter.toString(JsonArray.concat(parts)));
+    }
+  }
+
+  private static String createRecords(int count) {
+    Random random = new Random(42);
+    Json.Writer out = new JsonStringWriter().array();
+    for (int i = 0; i < count; i++) {
+      out.object().value("id", i).value("name", "item " + i + (i % 7 == 0 ? ", \"quoted\" ]}" : "")).
+        value("path", i % 3 == 0 ? "C:\\items\\" : "items/").value("weight", random.nextDouble()).
+        array("tags").value("a,b").value("[c]").end().
+        object("stats").value("level", random.nextInt(100)).nul("owner").end().end();
+    }
+    return out.end().write();
+  }
+
+  private static String createNumbers(int count, boolean doubles) {
+    Random random = new Random(42);
+    Json.Writer out = new JsonStringWriter().array();
+    for (int i = 0; i < count; i++) {
+      // doubles are interspersed with runs of ints, so that some pieces hold only ints
+      if (doubles && (i / 20000) % 2 == 1)
+        out.value(random.nextDouble() * 1000);
+      else
+        out.value(random.nextInt());
+    }
+    return out.end().write();
+  }
+}
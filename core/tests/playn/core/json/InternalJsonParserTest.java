@@ -17,6 +17,7 @@ import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
@@ -76,6 +77,45 @@ public class InternalJsonParserTest {
     assertEquals("[1, 1]", JsonParser.array().from("[1,1]").toString());
   }
 
+  @Test
+  public void testNumberArrays() throws JsonParserException {
+    // arrays of numbers are stored unboxed, but look just as they would boxed
+    JsonArray ints = JsonParser.array().from("[1, -2, 300]");
+    assertEquals("[1, -2, 300]", ints.toString());
+    assertEquals(Integer.valueOf(-2), ints.get(1));
+    assertEquals(300L, ints.getLong(2));
+    assertNull(ints.get(3));
+    assertEquals(7f, ints.getNumber(3, 7f), 0);
+
+    JsonArray mixed = JsonParser.array().from("[1.5, 2, -0, 1e2]");
+    assertEquals("[1.5, 2, -0.0, 100.0]", mixed.toString());
+    assertEquals(Integer.valueOf(2), mixed.get(1));
+    assertEquals(Double.valueOf(1.5), mixed.get(0));
+    assertEquals(1, mixed.getInt(0));
+    assertEquals("[1.5,2,-0.0,100.0]", JsonStringWriter.toString(mixed));
+
+    float[] floats = mixed.toFloatArray(null);
+    assertEquals(4, floats.length);
+    assertEquals(1.5f, floats[0], 0);
+    assertEquals(100f, floats[3], 0);
+    int[] into = new int[5];
+    assertSame(into, ints.toIntArray(into));
+    assertEquals(300, into[2]);
+
+    // modifications box the numbers
+    mixed.add("abc").set(0, 3);
+    assertEquals("[3, 2, -0.0, 100.0, abc]", mixed.toString());
+    assertEquals(0f, mixed.toFloatArray(null)[4], 0);
+
+    // arrays with anything other than ints and doubles are stored boxed
+    JsonArray other = JsonParser.array().from("[1, 2.5, 12345678901, 3]");
+    assertEquals(Long.valueOf(12345678901L), other.get(2));
+    assertEquals("[1, 2.5, 12345678901, 3]", other.toString());
+    other = JsonParser.array().from("[1, [2, 3], 4]");
+    assertEquals("[1, [2, 3], 4]", other.toString());
+    assertEquals(3, other.getArray(1).toIntArray(null)[1]);
+  }
+
   @Test
   public void testBasicTypes() throws JsonParserException {
     assertEquals("true", JsonParser.any().from("true").toString());
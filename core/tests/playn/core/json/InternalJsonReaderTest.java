@@ -0,0 +1,230 @@
+/**
+ * Copyright 2011 The PlayN Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package playn.core.json;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.StringReader;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.zip.GZIPInputStream;
+
+import org.junit.Test;
+
+import playn.core.Json.Reader.Event;
+
+public class InternalJsonReaderTest {
+  private static final Charset UTF8 = Charset.forName("UTF8");
+
+  @Test
+  public void testEvents() throws JsonParserException {
+    JsonReader in = new JsonReader("{\"a\":[true,false,null], \"b\":{\"c\":\"d\"}, \"e\":1.5}");
+    assertEquals(Event.START_OBJECT, in.next());
+    assertEquals(Event.KEY, in.next());
+    assertEquals("a", in.getString());
+    assertEquals(Event.START_ARRAY, in.next());
+    assertEquals(Event.BOOLEAN, in.next());
+    assertTrue(in.getBoolean());
+    assertEquals(Event.BOOLEAN, in.next());
+    assertFalse(in.getBoolean());
+    assertEquals(Event.NULL, in.next());
+    assertEquals(Event.END_ARRAY, in.next());
+    assertEquals(Event.KEY, in.next());
+    assertEquals("b", in.getString());
+    assertEquals(Event.START_OBJECT, in.next());
+    assertEquals(Event.KEY, in.next());
+    assertEquals(Event.STRING, in.next());
+    assertEquals("d", in.getString());
+    assertEquals(Event.END_OBJECT, in.next());
+    assertEquals(Event.KEY, in.next());
+    assertEquals(Event.NUMBER, in.next());
+    assertEquals(1.5, in.getDouble(), 0);
+    assertEquals(Event.END_OBJECT, in.next());
+    assertEquals(Event.EOF, in.next());
+    assertEquals(Event.EOF, in.next());
+    assertEquals(Event.EOF, in.event());
+  }
+
+  @Test
+  public void testNumbers() throws JsonParserException {
+    JsonReader in = new JsonReader("[0, -0, 12, -12, 12345678901, 1234567890123456789, 2.5e3, -0.25]");
+    in.next();
+    in.next();
+    assertEquals(0, in.getInt());
+    assertEquals(Integer.valueOf(0), in.getNumber());
+    in.next();
+    assertEquals(-0.0, in.getDouble(), 0);
+    assertEquals(Double.valueOf(-0.0), in.getNumber());
+    in.next();
+    assertEquals(12, in.getInt());
+    assertEquals(12f, in.getFloat(), 0);
+    assertEquals(Integer.valueOf(12), in.getNumber());
+    in.next();
+    assertEquals(-12L, in.getLong());
+    in.next();
+    assertEquals(12345678901L, in.getLong());
+    assertEquals(Long.valueOf(12345678901L), in.getNumber());
+    in.next();
+    assertEquals(new BigInteger("1234567890123456789"), in.getNumber());
+    assertEquals(1234567890123456789L, in.getLong());
+    in.next();
+    assertEquals(2500, in.getInt());
+    assertEquals(2500.0, in.getDouble(), 0);
+    in.next();
+    assertEquals(-0.25f, in.getFloat(), 0);
+    assertEquals(0, in.getInt());
+    assertEquals(Event.END_ARRAY, in.next());
+  }
+
+  @Test
+  public void testSkipValue() throws JsonParserException {
+    JsonReader in = new JsonReader("{\"a\":{\"b\":[1,[2,{}]],\"c\":3},\"d\":[],\"e\":4}");
+    in.next();
+    in.next();
+    in.next();
+    in.skipValue();
+    assertEquals(Event.KEY, in.next());
+    assertEquals("d", in.getString());
+    in.next();
+    in.skipValue();
+    assertEquals(Event.KEY, in.next());
+    in.next();
+    in.skipValue(); // no-op on a scalar
+    assertEquals(4, in.getInt());
+    assertEquals(Event.END_OBJECT, in.next());
+    assertEquals(Event.EOF, in.next());
+  }
+
+  @Test
+  public void testWrongEvent() throws JsonParserException {
+    JsonReader in = new JsonReader("[1]");
+    try {
+      in.getInt();
+      fail();
+    } catch (IllegalStateException e) {
+      // expected
+    }
+    in.next();
+    in.next();
+    try {
+      in.getString();
+      fail();
+    } catch (IllegalStateException e) {
+      // expected
+    }
+  }
+
+  @Test
+  public void testFailTrailingContent() {
+    JsonReader in = new JsonReader("[1] 2");
+    in.next();
+    in.next();
+    in.next();
+    try {
+      in.next();
+      fail();
+    } catch (JsonParserException e) {
+      assertEquals(1, e.getLinePosition());
+      assertEquals(5, e.getCharPosition());
+    }
+  }
+
+  @Test
+  public void testUtf8() throws JsonParserException {
+    String json = "{\"k\u00e9y\":[\"\u00e9\u4e2d\ud83d\ude00\", \"a\\u00e9\"],\n\"\ud83d\ude00\":1}";
+    JsonReader in = new JsonReader(ByteBuffer.wrap(json.getBytes(UTF8)));
+    in.next();
+    in.next();
+    assertEquals("k\u00e9y", in.getString());
+    in.next();
+    in.next();
+    assertEquals("\u00e9\u4e2d\ud83d\ude00", in.getString());
+    in.next();
+    assertEquals("a\u00e9", in.getString());
+    in.next();
+    in.next();
+    assertEquals("\ud83d\ude00", in.getString());
+  }
+
+  @Test
+  public void testUtf8ErrorPosition() {
+    // positions are reported in chars, regardless of the source
+    String json = "[\"\u00e9\u4e2d\ud83d\ude00\", x]";
+    int[] pos = null;
+    for (JsonReader in : readers(json)) {
+      try {
+        JsonParser.any().from(in);
+        fail();
+      } catch (JsonParserException e) {
+        int[] epos = { e.getLinePosition(), e.getCharPosition(), e.getCharOffset() };
+        if (pos == null) pos = epos;
+        else for (int i = 0; i < 2; i++) assertEquals(pos[i], epos[i]);
+      }
+    }
+    assertEquals(10, pos[1]);
+  }
+
+  @Test
+  public void failureTestsFromYui() throws IOException {
+    String[] failCases = readAsUtf8(getClass().getResourceAsStream("yui_fail_cases.txt")).split("\n");
+    for (String failCase : failCases) {
+      for (JsonReader in : readers(failCase)) {
+        try {
+          JsonParser.object().from(in);
+          fail("Should have failed, but didn't: " + failCase);
+        } catch (JsonParserException e) {
+          // expected
+        }
+      }
+    }
+  }
+
+  @Test
+  public void tortureTest() throws JsonParserException, IOException {
+    // the torture test spans many buffers, which exercises refilling in the middle of tokens
+    String json = readAsUtf8(new GZIPInputStream(getClass().getResourceAsStream("torturetest.json.gz")));
+    String expect = new JsonStringWriter().object(JsonParser.object().from(json)).write();
+    for (JsonReader in : readers(json))
+      assertEquals(expect, new JsonStringWriter().object(JsonParser.object().from(in)).write());
+  }
+
+  private static JsonReader[] readers(String json) {
+    byte[] bytes = (" " + json + " ").getBytes(UTF8);
+    return new JsonReader[] {
+      new JsonReader(json),
+      new JsonReader(new StringReader(json)),
+      new JsonReader(ByteBuffer.wrap(json.getBytes(UTF8))),
+      new JsonReader(bytes, 1, bytes.length - 2),
+    };
+  }
+
+  private static String readAsUtf8(InputStream input) throws IOException {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    byte[] b = new byte[1024 * 1024];
+    while (true) {
+      int r = input.read(b);
+      if (r <= 0)
+        break;
+      out.write(b, 0, r);
+    }
+    return new String(out.toByteArray(), UTF8);
+  }
+}
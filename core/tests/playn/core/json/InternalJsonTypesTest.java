@@ -60,6 +60,33 @@ public class InternalJsonTypesTest {
     assertTrue(o.isNull("key"));
   }
 
+  @Test
+  public void testObjectOrder() {
+    // enough keys that the object switches to its hash table, and then back
+    JsonObject o = new JsonObject();
+    for (int i = 0; i < 100; i++)
+      o.put("k" + (100 + i), i);
+    for (int i = 0; i < 100; i++)
+      assertEquals(i, o.getInt("k" + (100 + i)));
+    // keys are listed in sorted order, whatever order they were added in
+    o.put("k050", -1);
+    assertEquals("k050", o.keys().get(0));
+    assertEquals("k100", o.keys().get(1));
+    assertEquals("k199", o.keys().get(100));
+
+    o.put("k150", "replaced");
+    assertEquals("replaced", o.getString("k150"));
+    assertEquals("k150", o.keys().get(51));
+    for (int i = 0; i < 95; i++)
+      o.remove("k" + (100 + i));
+    assertFalse(o.containsKey("k100"));
+    assertEquals(6, o.keys().length());
+    assertEquals("{k050=-1, k195=95, k196=96, k197=97, k198=98, k199=99}", o.toString());
+    o.put("k000", 0);
+    assertEquals("k000", o.keys().get(0));
+    assertEquals(0, o.getInt("k000"));
+  }
+
   @Test
   public void testArrayInt() {
     JsonArray o = new JsonArray(Arrays.asList((String)null, null, null, null));
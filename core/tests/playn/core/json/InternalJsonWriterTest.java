@@ -13,12 +13,16 @@
  */
 package playn.core.json;
 
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.fail;
 
 import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
 import java.io.PrintStream;
 import java.io.StringWriter;
+import java.nio.channels.Channels;
 import java.nio.charset.Charset;
 import java.util.Arrays;
 import java.util.Collections;
@@ -26,6 +30,8 @@ import java.util.Collections;
 import org.junit.Ignore;
 import org.junit.Test;
 
+import playn.core.Json;
+
 public class InternalJsonWriterTest {
   /**
    * Test emitting simple values.
@@ -104,6 +110,96 @@ public class InternalJsonWriterTest {
     assertEquals("{\"a\":1,\"b\":2}", new String(bytes.toByteArray(), Charset.forName("UTF-8")));
   }
 
+  @Test
+  public void testByteWriterNumbers() {
+    Number[] numbers = { 0, -0.0, 0.0f, -0.0f, 1, -1, 9, 10, 99, 100, Integer.MAX_VALUE,
+                         Integer.MIN_VALUE, Long.MAX_VALUE, Long.MIN_VALUE, (short)-7, (byte)12,
+                         1.0, 1.5, -2.0, 9999999.0, 10000000.0, -9999999.0, 1e20, 1e-5, 0.1f,
+                         123.0f, 16777216f, Double.NaN, Double.MIN_VALUE,
+                         new java.math.BigInteger("123456789012345678901234567890") };
+    for (Number n : numbers) {
+      assertByteWriter(new JsonStringWriter().value(n), writer(32).value(n));
+      assertByteWriter(new JsonStringWriter().array().value(n).end(), writer(32).array().value(n).end());
+      assertByteWriter(new JsonStringWriter().object().value("n", n).end(),
+                       writer(32).object().value("n", n).end());
+    }
+  }
+
+  @Test
+  public void testByteWriterDecimals() {
+    // numbers with few digits are formatted directly, so check that they match toString
+    java.util.Random random = new java.util.Random(42);
+    for (int i = 0; i < 20000; i++) {
+      double d = Math.floor(random.nextDouble() * Math.pow(10, random.nextInt(16))) /
+        Math.pow(10, random.nextInt(18)) * (random.nextBoolean() ? 1 : -1);
+      float f = (float) d, g = random.nextFloat() * (1 << random.nextInt(24));
+      double e = random.nextDouble() * Math.pow(10, random.nextInt(10) - 3);
+      for (Number n : new Number[] { d, f, g, e, (double) g })
+        assertByteWriter(new JsonStringWriter().value(n), writer(32).value(n));
+    }
+  }
+
+  @Test
+  public void testByteWriterUtf8() {
+    String[] strings = { "abc", "\u00e9t\u00e9", "\u4e2d\u6587", "\ud83d\ude00!\ud83d\ude00",
+                         "lone \ud83d high", "lone \ude00 low", "\u0080\u07ff\u0800\uffff",
+                         "\n\t\"\\</" };
+    for (String s : strings) {
+      assertByteWriter(new JsonStringWriter().value(s), writer(32).value(s));
+      assertByteWriter(new JsonStringWriter().object().value(s, s).end(),
+                       writer(32).object().value(s, s).end());
+    }
+  }
+
+  @Test
+  public void testByteWriterTorture() throws IOException, JsonParserException {
+    // the torture test spans many chunks, so this exercises writing them out
+    InputStream in = new java.util.zip.GZIPInputStream(getClass().getResourceAsStream("torturetest.json.gz"));
+    ByteArrayOutputStream raw = new ByteArrayOutputStream();
+    byte[] buf = new byte[65536];
+    for (int read; (read = in.read(buf)) > 0; ) raw.write(buf, 0, read);
+    JsonObject o = JsonParser.object().from(new String(raw.toByteArray(), Charset.forName("UTF-8")));
+
+    byte[] expect = new JsonStringWriter().object(o).write().getBytes(Charset.forName("UTF-8"));
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    new JsonByteWriter(bytes).object(o).done();
+    assertArrayEquals(expect, bytes.toByteArray());
+    bytes.reset();
+    new JsonByteWriter(Channels.newChannel(bytes), 100).object(o).done();
+    assertArrayEquals(expect, bytes.toByteArray());
+  }
+
+  @Test
+  public void testByteWriterVerbose() {
+    assertByteWriter(new JsonStringWriter().useVerboseFormat(true).object().value("a", 1).array("b").
+                     value(2.5).end().end(),
+                     writer(32).useVerboseFormat(true).object().value("a", 1).array("b").value(2.5).
+                     end().end());
+  }
+
+  @Test
+  public void testByteWriterUnclosed() {
+    try {
+      new JsonByteWriter(new ByteArrayOutputStream()).object().value("a", 1).done();
+      fail();
+    } catch (JsonWriterException e) {
+      // OK
+    }
+  }
+
+  private ByteArrayOutputStream written = new ByteArrayOutputStream();
+
+  private Json.ByteWriter writer(int chunkSize) {
+    written.reset();
+    return new JsonByteWriter(written, chunkSize);
+  }
+
+  private void assertByteWriter(Json.Writer expect, Json.ByteWriter actual) {
+    actual.done();
+    // compare the encodings, as unpaired surrogates are replaced when encoding
+    assertArrayEquals(expect.write().getBytes(Charset.forName("UTF-8")), written.toByteArray());
+  }
+
   /**
    * Test escaping of / when following < to handle &lt;/script&gt;.
    */
@@ -35,6 +35,19 @@ public class JsonImplArrayTest extends AbstractJsonTest {
     assertEquals(1, a.length());
   }
 
+  @Test
+  public void testArrayConversion() {
+    Json.Array a = json().parseArray("[1, 2.5, \"x\", -3]");
+    float[] floats = a.toFloatArray(null);
+    assertEquals(4, floats.length);
+    assertEquals(2.5f, floats[1], 0);
+    assertEquals(0f, floats[2], 0);
+    int[] ints = a.toIntArray(new int[8]);
+    assertEquals(8, ints.length);
+    assertEquals(2, ints[1]);
+    assertEquals(-3, ints[3]);
+  }
+
   @Test
   public void testArrayTypeChecks() {
     Json.Array a = json().parseArray("[[], true, 1, null, \"\", {}]");
@@ -13,6 +13,8 @@
  */
 package playn.shared.json;
 
+import java.nio.ByteBuffer;
+
 import org.junit.Test;
 import static org.junit.Assert.*;
 
@@ -52,4 +54,21 @@ public class JsonImplParseTest extends AbstractJsonTest {
 
     assertEquals(true, a.getBoolean(2));
   }
+
+  @Test
+  public void testParseBytes() throws Exception {
+    byte[] bytes = "xx{\"a\":\"b\\u00e9\u00e9\", \"b\": [1]}yy".getBytes("UTF-8");
+    Json.Object o = json().parse(bytes, 2, bytes.length-4);
+    assertEquals("b\u00e9\u00e9", o.getString("a"));
+    assertEquals(1, o.getArray("b").getInt(0));
+
+    ByteBuffer buf = ByteBuffer.wrap(bytes, 2, bytes.length-4);
+    o = json().parse(buf);
+    assertEquals("b\u00e9\u00e9", o.getString("a"));
+    assertEquals(bytes.length-2, buf.position());
+
+    ByteBuffer direct = ByteBuffer.allocateDirect(bytes.length-4);
+    direct.put(bytes, 2, bytes.length-4).flip();
+    assertEquals("b\u00e9\u00e9", json().parse(direct).getString("a"));
+  }
 }
@@ -13,6 +13,9 @@
  */
 package playn.html;
 
+import java.io.UnsupportedEncodingException;
+import java.nio.ByteBuffer;
+
 import playn.core.Json;
 import playn.core.json.JsonImpl;
 import playn.core.json.JsonParserException;
@@ -54,6 +57,26 @@ public class HtmlJson extends JsonImpl implements Json {
       return getArray(index, (Json.Array) null);
     }
 
+    @Override
+    public final float[] toFloatArray(float[] into) {
+      int length = length();
+      if (into == null || into.length < length)
+        into = new float[length];
+      for (int i = 0; i < length; i++)
+        into[i] = getNumber(i);
+      return into;
+    }
+
+    @Override
+    public final int[] toIntArray(int[] into) {
+      int length = length();
+      if (into == null || into.length < length)
+        into = new int[length];
+      for (int i = 0; i < length; i++)
+        into[i] = getInt(i);
+      return into;
+    }
+
     @Override
     public final Json.Array getArray(int index, Json.Array dflt) {
       return isValueArray(get0(index)) ? (Json.Array) unwrap0(get0(index)) : dflt;
@@ -455,6 +478,40 @@ public class HtmlJson extends JsonImpl implements Json {
     }
   }
 
+  @Override
+  public Object parseLazy(String json) throws JsonParserException {
+    // the browser's parser is fast enough that laziness doesn't pay
+    return parse(json);
+  }
+
+  @Override
+  public Object parse(ByteBuffer json) throws JsonParserException {
+    byte[] bytes = new byte[json.remaining()];
+    json.get(bytes);
+    return parse(bytes, 0, bytes.length);
+  }
+
+  @Override
+  public Object parse(byte[] json, int offset, int length) throws JsonParserException {
+    // the browser's parser beats tokenizing the bytes ourselves, and yields native objects
+    try {
+      return parse(new String(json, offset, length, "UTF-8"));
+    } catch (UnsupportedEncodingException e) {
+      throw new JsonParserException(e, "Failed to decode JSON", -1, -1, -1);
+    }
+  }
+
+  @Override
+  public Object parseBinary(ByteBuffer data) throws JsonParserException {
+    // build native objects, so the result can be used like any other parsed object
+    Json.Reader in = newBinaryReader(data);
+    java.lang.Object value = readValue(in, in.next());
+    in.next(); // checks that nothing follows the value
+    if (!isObjectAnObject(value))
+      throw new JsonParserException(null, "Input was not an object", -1, -1, -1);
+    return (Json.Object) value;
+  }
+
   @Override
   public boolean isArray(java.lang.Object o) {
     return isObjectAnArray(o);
@@ -465,6 +522,32 @@ public class HtmlJson extends JsonImpl implements Json {
     return isObjectAnObject(o);
   }
 
+  private java.lang.Object readValue(Json.Reader in, Json.Reader.Event event)
+      throws JsonParserException {
+    switch (event) {
+    case START_ARRAY:
+      Json.Array array = createArray();
+      while ((event = in.next()) != Json.Reader.Event.END_ARRAY)
+        array.add(readValue(in, event));
+      return array;
+    case START_OBJECT:
+      Json.Object object = createObject();
+      while (in.next() != Json.Reader.Event.END_OBJECT) {
+        String key = in.getString();
+        object.put(key, readValue(in, in.next()));
+      }
+      return object;
+    case STRING:
+      return in.getString();
+    case NUMBER:
+      return in.getDouble();
+    case BOOLEAN:
+      return in.getBoolean();
+    default:
+      return null;
+    }
+  }
+
   /**
    * Static method for use from JsonTypes.
    */
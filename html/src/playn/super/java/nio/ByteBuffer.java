@@ -540,6 +540,20 @@ public final class ByteBuffer extends Buffer implements Comparable<ByteBuffer>,
         return false;
     }
 
+    /** Throws {@link UnsupportedOperationException}, as this buffer is not based on a byte array.
+     * This exists so that code which checks {@link #hasArray} first will compile.
+     */
+    public final byte[] array () {
+        throw new UnsupportedOperationException();
+    }
+
+    /** Throws {@link UnsupportedOperationException}, as this buffer is not based on a byte array.
+     * This exists so that code which checks {@link #hasArray} first will compile.
+     */
+    public final int arrayOffset () {
+        throw new UnsupportedOperationException();
+    }
+
     /** Calculates this buffer's hash code from the remaining chars. The position, limit, capacity
      * and mark don't affect the hash code.
      *
@@ -0,0 +1,46 @@
+/**
+ * Copyright 2010-2015 The PlayN Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package playn.core;
+
+/**
+ * The browser is single threaded, so this version of the action queue simply appends to the
+ * buffer, and swaps buffers when drained.
+ */
+class ActionQueue {
+
+  private Runnable[] pending = new Runnable[16], buffer = new Runnable[16];
+  private int count;
+
+  public void add (Runnable action) {
+    if (count == pending.length) {
+      Runnable[] npending = new Runnable[count*2];
+      System.arraycopy(pending, 0, npending, 0, count);
+      pending = npending;
+    }
+    pending[count++] = action;
+  }
+
+  public int drain () {
+    Runnable[] drained = pending;
+    pending = (buffer.length >= drained.length) ? buffer : new Runnable[drained.length];
+    buffer = drained;
+    int drainedCount = count;
+    count = 0;
+    return drainedCount;
+  }
+
+  public Runnable[] buffer () {
+    return buffer;
+  }
+}
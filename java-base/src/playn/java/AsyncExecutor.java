@@ -0,0 +1,193 @@
+/**
+ * Copyright 2010-2015 The PlayN Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package playn.java;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import playn.core.Exec;
+import react.Closeable;
+
+/**
+ * Runs the {@link Exec#invokeAsync} actions of the Java platform. Each {@link Exec.Lane} has its
+ * own threads: CPU-bound work runs on a work-stealing pool with a thread per available processor
+ * (less one for the game thread), and I/O-bound work runs on a larger pool of threads (or on
+ * virtual threads, on JVMs which support them) so that blocked requests do not hold up decoding.
+ * The pools are sized by {@link JavaPlatform.Config#cpuThreads} and {@link
+ * JavaPlatform.Config#ioThreads}.
+ */
+public class AsyncExecutor {
+
+  /** Metrics for a single lane. All times are in milliseconds. */
+  public static class Metrics {
+    private final AtomicInteger queued = new AtomicInteger();
+    private final AtomicLong started = new AtomicLong(), completed = new AtomicLong();
+    private final AtomicLong canceled = new AtomicLong();
+    private final AtomicLong totalWait = new AtomicLong(), maxWait = new AtomicLong();
+
+    /** Returns the number of actions that are waiting to start. */
+    public int queueDepth () { return queued.get(); }
+
+    /** Returns the number of actions that have been started. */
+    public long started () { return started.get(); }
+
+    /** Returns the number of actions that have run to completion (successfully or not). */
+    public long completed () { return completed.get(); }
+
+    /** Returns the number of actions that were canceled before they started. */
+    public long canceled () { return canceled.get(); }
+
+    /** Returns the mean time that actions waited between being queued and being started. */
+    public float meanLatency () {
+      long count = started.get();
+      return count == 0 ? 0 : (float)(totalWait.get() / 1e6 / count);
+    }
+
+    /** Returns the longest time that any action waited between being queued and being started. */
+    public float maxLatency () { return maxWait.get() / 1e6f; }
+
+    @Override public String toString () {
+      return String.format("queued=%d started=%d completed=%d canceled=%d " +
+                           "latency(mean=%.2fms max=%.2fms)", queueDepth(), started(),
+                           completed(), canceled(), meanLatency(), maxLatency());
+    }
+
+    void noteStarted (long waitNanos) {
+      queued.decrementAndGet();
+      started.incrementAndGet();
+      totalWait.addAndGet(waitNanos);
+      long max;
+      while ((max = maxWait.get()) < waitNanos && !maxWait.compareAndSet(max, waitNanos)) {}
+    }
+  }
+
+  private static final int PENDING = 0, RUNNING = 1, CANCELED = 2;
+
+  private class Task extends AtomicInteger implements Runnable, Closeable {
+    private final Runnable action;
+    private final Metrics metrics;
+    private final long queued = System.nanoTime();
+
+    public Task (Runnable action, Metrics metrics) {
+      this.action = action;
+      this.metrics = metrics;
+    }
+
+    @Override public void run () {
+      if (!compareAndSet(PENDING, RUNNING)) return; // canceled
+      metrics.noteStarted(System.nanoTime() - queued);
+      try {
+        action.run();
+      } catch (Throwable t) {
+        plat.reportError("Async action failed: " + action, t);
+      } finally {
+        metrics.completed.incrementAndGet();
+      }
+    }
+
+    @Override public void close () {
+      if (compareAndSet(PENDING, CANCELED)) {
+        metrics.queued.decrementAndGet();
+        metrics.canceled.incrementAndGet();
+      }
+    }
+  }
+
+  private final JavaPlatform plat;
+  private final ExecutorService cpuPool, ioPool;
+  private final Metrics cpuMetrics = new Metrics(), ioMetrics = new Metrics();
+  private final boolean virtualIO;
+
+  public AsyncExecutor (JavaPlatform plat, JavaPlatform.Config config) {
+    this.plat = plat;
+    int procs = Runtime.getRuntime().availableProcessors();
+    int cpuThreads = (config.cpuThreads > 0) ? config.cpuThreads : Math.max(1, procs-1);
+    cpuPool = new ForkJoinPool(cpuThreads, new ForkJoinPool.ForkJoinWorkerThreadFactory() {
+      private final AtomicInteger count = new AtomicInteger();
+      public ForkJoinWorkerThread newThread (ForkJoinPool pool) {
+        ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.
+          newThread(pool);
+        thread.setName("playn-cpu-" + count.incrementAndGet());
+        return thread;
+      }
+    }, null, true); // async mode: process queued actions in FIFO order
+
+    ExecutorService vpool = config.virtualIOThreads ? createVirtualThreadExecutor() : null;
+    virtualIO = (vpool != null);
+    if (vpool != null) ioPool = vpool;
+    else {
+      int ioThreads = (config.ioThreads > 0) ? config.ioThreads : Math.max(4, procs*2);
+      ThreadPoolExecutor pool = new ThreadPoolExecutor(
+        ioThreads, ioThreads, 30, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(),
+        new ThreadFactory() {
+          private final AtomicInteger count = new AtomicInteger();
+          public Thread newThread (Runnable r) {
+            Thread thread = new Thread(r, "playn-io-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+          }
+        });
+      pool.allowCoreThreadTimeOut(true);
+      ioPool = pool;
+    }
+  }
+
+  /** Queues {@code action} to run on the threads for {@code lane}.
+    * @return a handle which cancels the action if it is closed before the action starts. */
+  public Closeable invoke (Exec.Lane lane, Runnable action) {
+    Metrics metrics = metrics(lane);
+    Task task = new Task(action, metrics);
+    metrics.queued.incrementAndGet();
+    (lane == Exec.Lane.CPU ? cpuPool : ioPool).execute(task);
+    return task;
+  }
+
+  /** Returns the metrics for {@code lane}. */
+  public Metrics metrics (Exec.Lane lane) {
+    return (lane == Exec.Lane.CPU) ? cpuMetrics : ioMetrics;
+  }
+
+  /** Returns whether I/O actions are being run on virtual threads. */
+  public boolean isVirtualIO () {
+    return virtualIO;
+  }
+
+  /** Stops accepting actions and waits up to {@code millis} for queued actions to complete. */
+  public void shutdown (long millis) throws InterruptedException {
+    cpuPool.shutdown();
+    ioPool.shutdown();
+    long deadline = System.currentTimeMillis() + millis;
+    cpuPool.awaitTermination(millis, TimeUnit.MILLISECONDS);
+    ioPool.awaitTermination(Math.max(0, deadline - System.currentTimeMillis()),
+                            TimeUnit.MILLISECONDS);
+  }
+
+  // virtual threads were added in Java 21, but we are compiled for Java 8, so we go reflective
+  private static ExecutorService createVirtualThreadExecutor () {
+    try {
+      return (ExecutorService)Executors.class.getMethod("newVirtualThreadPerTaskExecutor").
+        invoke(null);
+    } catch (Exception e) {
+      return null; // not supported by this JVM
+    }
+  }
+}
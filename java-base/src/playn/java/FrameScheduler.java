@@ -0,0 +1,211 @@
+/**
+ * Copyright 2010-2015 The PlayN Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package playn.java;
+
+import java.util.Arrays;
+
+import playn.core.TimeSource;
+import playn.core.VirtualTimeSource;
+
+/**
+ * Paces the frames of the Java game loop and maintains the game clock reported by {@link
+ * JavaPlatform#tick}. The behavior is configured by {@link JavaPlatform.Config#targetFPS}, {@link
+ * JavaPlatform.Config#maxCatchUpFrames}, {@link JavaPlatform.Config#spinMicros} and {@link
+ * JavaPlatform.Config#frameTimeSmoothing}.
+ *
+ * <p>A game loop calls {@link #beginFrame} before processing each frame and {@link
+ * #awaitNextFrame} after presenting it.</p>
+ */
+public class FrameScheduler {
+
+  /** Provides the time to a scheduler, and a means of waiting for time to pass. */
+  public interface Timer extends TimeSource {
+    /** Blocks the calling thread for roughly {@code nanos} nanoseconds. May return early. */
+    void sleep (long nanos);
+
+    /** Called repeatedly while busy-waiting for the final moments before a frame. */
+    void spin ();
+  }
+
+  /** A timer which uses the system's high-resolution clock. */
+  public static final Timer SYSTEM = new Timer() {
+    public long nanoTime () { return System.nanoTime(); }
+    public void sleep (long nanos) {
+      try { Thread.sleep(nanos / 1000000L, (int)(nanos % 1000000L)); }
+      catch (InterruptedException ie) { Thread.currentThread().interrupt(); }
+    }
+    public void spin () { Thread.yield(); }
+  };
+
+  /**
+   * A timer whose time advances only when {@link #advance}d, or when the scheduler waits on it. This
+   * allows frame pacing to be tested deterministically, and headless games to run as fast as the
+   * CPU allows.
+   */
+  public static class VirtualTimer extends VirtualTimeSource implements Timer {
+    @Override public void sleep (long nanos) { advance(nanos); }
+    @Override public void spin () { advance(1000); }
+  }
+
+  /**
+   * Records a distribution of frame times in a fixed-size histogram with a bucket for each tenth
+   * of a millisecond. Frames longer than {@link #MAX_MILLIS} are counted in the last bucket.
+   */
+  public static class Distribution {
+
+    /** The longest frame time that is recorded precisely, in milliseconds. */
+    public static final int MAX_MILLIS = 250;
+
+    private final int[] buckets = new int[MAX_MILLIS*10+1];
+    private int count;
+    private long min = Long.MAX_VALUE, max, total;
+
+    /** Returns the number of frames recorded. */
+    public int count () { return count; }
+
+    /** Returns the shortest frame time recorded, in milliseconds. */
+    public float min () { return count == 0 ? 0 : min / 1e6f; }
+
+    /** Returns the longest frame time recorded, in milliseconds. */
+    public float max () { return max / 1e6f; }
+
+    /** Returns the mean frame time, in milliseconds. */
+    public float mean () { return count == 0 ? 0 : (float)(total / 1e6 / count); }
+
+    /**
+     * Returns the frame time, in milliseconds, below which {@code percent} percent of the recorded
+     * frame times fall (to the nearest tenth of a millisecond).
+     */
+    public float percentile (float percent) {
+      if (count == 0) return 0;
+      int rank = Math.max(1, (int)Math.ceil(count * percent / 100));
+      for (int ii = 0, seen = 0; ii < buckets.length; ii++) {
+        seen += buckets[ii];
+        if (seen >= rank) return ii / 10f;
+      }
+      return MAX_MILLIS; // not reached
+    }
+
+    /** Clears all recorded frame times. */
+    public void reset () {
+      Arrays.fill(buckets, 0);
+      count = 0;
+      min = Long.MAX_VALUE;
+      max = total = 0;
+    }
+
+    void record (long nanos) {
+      buckets[(int)Math.min(buckets.length-1, (nanos + 50000) / 100000)]++;
+      count++;
+      min = Math.min(min, nanos);
+      max = Math.max(max, nanos);
+      total += nanos;
+    }
+
+    @Override public String toString () {
+      return String.format("n=%d mean=%.2fms min=%.2fms p50=%.1fms p95=%.1fms p99=%.1fms max=%.2fms",
+                           count, mean(), min(), percentile(50), percentile(95), percentile(99),
+                           max());
+    }
+  }
+
+  private final Timer timer;
+  private final long frameNanos, spinNanos, maxElapsedNanos;
+  private final float smoothing;
+  private final Distribution frameTimes = new Distribution();
+
+  private final long start;
+  private long frameStart, lastNanos, nextFrame, dropped;
+  private float smoothedNanos;
+  private boolean started;
+
+  public FrameScheduler (JavaPlatform.Config config, Timer timer) {
+    this.timer = timer;
+    frameNanos = (config.targetFPS > 0) ? 1000000000L / config.targetFPS : 0;
+    spinNanos = config.spinMicros * 1000L;
+    // if we're not pacing frames, assume we're being paced by vsync at (at least) 60Hz
+    long nominalNanos = (frameNanos > 0) ? frameNanos : 1000000000L / 60;
+    maxElapsedNanos = (config.maxCatchUpFrames > 0) ?
+      config.maxCatchUpFrames * nominalNanos : Long.MAX_VALUE;
+    smoothing = Math.max(0, Math.min(1, config.frameTimeSmoothing));
+    start = timer.nanoTime();
+  }
+
+  /** Returns the timer used by this scheduler. */
+  public Timer timer () { return timer; }
+
+  /**
+   * Returns the number of nanoseconds of game time that have elapsed since this scheduler was
+   * created. This is the time elapsed on our {@link #timer} less any time dropped because a frame
+   * exceeded the maximum catch-up time.
+   */
+  public long tickNanos () {
+    return timer.nanoTime() - start - dropped;
+  }
+
+  /** Returns {@link #tickNanos} in whole milliseconds. */
+  public int tick () {
+    return (int)(tickNanos() / 1000000L);
+  }
+
+  /** Returns the duration of the most recent frame (from the start of the previous frame to the
+    * start of the current frame), in milliseconds. */
+  public float frameTime () { return lastNanos / 1e6f; }
+
+  /** Returns the exponentially smoothed frame time, in milliseconds. This changes gradually in
+    * response to variation in frame times, which makes it suitable for display, or for adjusting
+    * rendering quality. */
+  public float smoothedFrameTime () { return smoothedNanos / 1e6f; }
+
+  /** Returns the distribution of frame times measured since this scheduler was created (or since
+    * the distribution was last {@link Distribution#reset}). */
+  public Distribution frameTimes () { return frameTimes; }
+
+  /**
+   * Notes the start of a frame. This measures the time elapsed since the start of the previous
+   * frame and, if that exceeds the maximum catch-up time, drops the excess from the game clock so
+   * that the game does not attempt to simulate it all in the coming frame.
+   */
+  public void beginFrame () {
+    long now = timer.nanoTime();
+    if (started) {
+      long elapsed = now - frameStart;
+      lastNanos = elapsed;
+      frameTimes.record(elapsed);
+      smoothedNanos = (smoothedNanos == 0) ? elapsed :
+        smoothedNanos + smoothing * (elapsed - smoothedNanos);
+      if (elapsed > maxElapsedNanos) dropped += elapsed - maxElapsedNanos;
+    }
+    started = true;
+    frameStart = now;
+  }
+
+  /**
+   * Waits until it is time to start the next frame, if a target frame rate is configured. Most
+   * of the wait is spent sleeping, and the remainder (configured by {@link
+   * JavaPlatform.Config#spinMicros}) is spent spinning, as sleeps often overshoot. If we have
+   * fallen more than a frame behind schedule, the schedule is reset rather than running frames
+   * back to back until it is caught up.
+   */
+  public void awaitNextFrame () {
+    if (frameNanos == 0) return;
+    long now = timer.nanoTime();
+    nextFrame = (nextFrame == 0) ? frameStart + frameNanos : nextFrame + frameNanos;
+    if (now - nextFrame > frameNanos) nextFrame = now;
+    long remain;
+    while ((remain = nextFrame - timer.nanoTime()) > spinNanos) timer.sleep(remain - spinNanos);
+    while (nextFrame - timer.nanoTime() > 0) timer.spin();
+  }
+
+}
@@ -34,6 +34,7 @@ import javax.sound.sampled.AudioSystem;
 import pythagoras.f.MathUtil;
 
 import playn.core.Assets;
+import playn.core.Exec;
 import playn.core.Image;
 import playn.core.ImageImpl;
 import playn.core.Scale;
@@ -116,7 +117,7 @@ public class JavaAssets extends Assets {
 
   @Override public Image getRemoteImage(final String url, int width, int height) {
     final JavaImage image = new JavaImage(plat, true, width, height, url);
-    exec.invokeAsync(new Runnable() {
+    exec.invokeAsync(Exec.Lane.IO, new Runnable() {
       public void run () {
         try {
           BufferedImage bmp = ImageIO.read(new URL(url));
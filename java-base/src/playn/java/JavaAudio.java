@@ -42,7 +42,7 @@ public class JavaAudio extends Audio {
    */
   public JavaSound createSound(final JavaAssets.Resource rsrc, final boolean music) {
     final JavaSound sound = new JavaSound(exec);
-    exec.invokeAsync(new Runnable() {
+    exec.invokeAsync(Exec.Lane.CPU, new Runnable() {
       public void run () {
         try {
           AudioInputStream ais = rsrc.openAudioStream();
@@ -27,6 +27,7 @@ import java.util.Map;
 
 import javax.imageio.ImageIO;
 
+import playn.core.Exec;
 import playn.core.Image;
 import playn.core.Net;
 import playn.core.Scale;
@@ -47,7 +48,7 @@ public class JavaNet extends Net {
 
   @Override protected RFuture<Response> execute(final Builder req) {
     final RPromise<Response> result = plat.exec().deferredPromise();
-    plat.exec().invokeAsync(new Runnable() {
+    plat.exec().invokeAsync(Exec.Lane.IO, new Runnable() {
       @Override
       public void run() {
         try {
@@ -18,14 +18,12 @@ package playn.java;
 import java.awt.Desktop;
 import java.awt.image.BufferedImage;
 import java.net.URI;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
-import java.util.concurrent.TimeUnit;
 
 import playn.core.*;
 import playn.core.json.JsonImpl;
 import pythagoras.f.Dimension;
 import pythagoras.f.IDimension;
+import react.Closeable;
 import react.Slot;
 
 /**
@@ -73,19 +71,71 @@ public abstract class JavaPlatform extends Platform {
 
     /** Stop processing frames while the app is "inactive", to better emulate iOS. */
     public boolean truePause;
+
+    /** The frame rate at which the game loop aims to run. If zero, frames are not paced by PlayN
+     * and run as fast as the backend allows, which is usually the display refresh rate (assuming
+     * vsync is enabled). Not supported by the SWT backend, whose loop is driven by SWT. */
+    public int targetFPS;
+
+    /** The maximum number of frames' worth of time (at {@link #targetFPS}, or at 60 FPS if no
+     * target is set) that the game clock will advance between two frames. If a frame takes longer
+     * than this (due to a slow load, a long GC pause or a debugger), the excess time is dropped
+     * rather than making the game simulate all of it before the next paint. Zero (the default)
+     * means no limit.
+     *
+     * <p>Enabling a limit is opt-in because the dropped time is dropped from {@link
+     * Platform#tick} as well, which then lags "milliseconds since the game started" after each
+     * stall, so a game that sets this should not use {@code tick} to measure wall-clock time.</p>
+     */
+    public int maxCatchUpFrames;
+
+    /** When waiting for the next frame, the final portion of the wait (in microseconds) that is
+     * spent spinning rather than sleeping. Sleeps often overshoot by a millisecond or more, so
+     * spinning yields more accurate frame pacing at the cost of CPU. Zero means always sleep. */
+    public int spinMicros = 1000;
+
+    /** The weight given to the most recent frame time when computing {@link
+     * FrameScheduler#smoothedFrameTime}, between 0 (never changes) and 1 (no smoothing). */
+    public float frameTimeSmoothing = 0.1f;
+
+    /** The number of threads used to run CPU-bound {@link Exec#invokeAsync} actions (like image
+     * and sound decoding). If zero, one less than the number of available processors is used. */
+    public int cpuThreads;
+
+    /** The number of threads used to run I/O-bound {@link Exec#invokeAsync} actions (like network
+     * requests). If zero, twice the number of available processors (but at least four) is used.
+     * Ignored if virtual threads are in use. */
+    public int ioThreads;
+
+    /** If set, and the JVM supports them (Java 21 and newer), I/O-bound actions are each run on
+     * their own virtual thread, instead of on a pool of {@link #ioThreads}. */
+    public boolean virtualIOThreads;
+
+    /** The maximum number of {@link Exec#invokeLater} actions run per frame, or zero for no
+     * limit. The remainder are deferred to subsequent frames. See {@link
+     * Exec.Default#setFrameBudget}. */
+    public int maxActionsPerFrame;
+
+    /** The maximum time spent running {@link Exec#invokeLater} actions per frame, in
+     * milliseconds, or zero for no limit. See {@link Exec.Default#setFrameBudget}. */
+    public float maxActionMillisPerFrame;
   }
 
   protected final Config config;
-  private final long start = System.nanoTime();
+  protected final FrameScheduler scheduler;
 
   private Thread mainThread;
   private boolean active = true;
 
-  private final ExecutorService pool = Executors.newFixedThreadPool(4);
-  private final Exec exec = new Exec.Default(this) {
+  private final AsyncExecutor async;
+  private final Exec.Default exec = new Exec.Default(this) {
     @Override public boolean isMainThread () { return Thread.currentThread() == mainThread; }
     @Override public boolean isAsyncSupported () { return true; }
-    @Override public void invokeAsync (Runnable action) { pool.execute(action); }
+    // actions of unknown type may block, so they go in the I/O lane
+    @Override public void invokeAsync (Runnable action) { async.invoke(Lane.IO, action); }
+    @Override public Closeable invokeAsync (Lane lane, Runnable action) {
+      return async.invoke(lane, action);
+    }
   };
 
   private final JavaLog log = new JavaLog();
@@ -109,16 +159,45 @@ public abstract class JavaPlatform extends Platform {
     };
     private JavaInput input = new JavaInput(this);
     public Headless (Config config) { super(config); }
+    /** Creates a headless platform whose time is provided by {@code timer}. Supply a {@link
+      * FrameScheduler.VirtualTimer} to run frames deterministically, as fast as possible. */
+    public Headless (Config config, FrameScheduler.Timer timer) { super(config, timer); }
     @Override public JavaGraphics graphics () { return graphics; }
     @Override public JavaInput input () { return input; }
     @Override protected void loop () {} // noop!
+
+    /** Processes a single frame and then waits (per {@link Config#targetFPS}) until it is time
+      * for the next. Headless platforms have no game loop, so tests call this to run frames. */
+    public void runFrame () {
+      processFrame();
+      scheduler.awaitNextFrame();
+    }
   }
 
   public JavaPlatform(final Config config) {
+    this(config, FrameScheduler.SYSTEM);
+  }
+
+  protected JavaPlatform(Config config, FrameScheduler.Timer timer) {
     this.config = config;
+    this.scheduler = new FrameScheduler(config, timer);
+    this.async = new AsyncExecutor(this, config);
+    exec.setFrameBudget(config.maxActionsPerFrame, config.maxActionMillisPerFrame);
     storage = new JavaStorage(log, config.storageFileName);
   }
 
+  /** Returns the scheduler which paces this platform's frames, and which reports the measured
+    * frame times. */
+  public FrameScheduler scheduler () {
+    return scheduler;
+  }
+
+  /** Returns the executor which runs this platform's async actions, and which reports metrics
+    * on their queueing and latency. */
+  public AsyncExecutor async () {
+    return async;
+  }
+
   /** Sets the title of the window to {@code title}. */
   public void setTitle(String title) {
     graphics().setTitle(title);
@@ -150,10 +229,9 @@ public abstract class JavaPlatform extends Platform {
     // let the game run any of its exit hooks
     dispatchEvent(lifecycle, Lifecycle.EXIT);
 
-    // shutdown our thread pool
+    // shutdown our thread pools
     try {
-      pool.shutdown();
-      pool.awaitTermination(1, TimeUnit.SECONDS);
+      async.shutdown(1000);
     } catch (InterruptedException ie) {
       // nothing to do here except go ahead and exit
     }
@@ -164,11 +242,12 @@ public abstract class JavaPlatform extends Platform {
 
   @Override public double time () { return System.currentTimeMillis(); }
   @Override public Type type () { return Type.JAVA; }
-  @Override public int tick () { return (int)((System.nanoTime() - start) / 1000000L); }
+  @Override public int tick () { return scheduler.tick(); }
+  @Override public long tickNanos () { return scheduler.tickNanos(); }
 
   @Override public JavaAssets assets () { return assets; }
   @Override public JavaAudio audio () { return audio; }
-  @Override public Exec exec () { return exec; }
+  @Override public Exec.Default exec () { return exec; }
   @Override public abstract JavaGraphics graphics ();
   @Override public abstract JavaInput input ();
   @Override public Json json () { return json; }
@@ -188,7 +267,10 @@ public abstract class JavaPlatform extends Platform {
   protected abstract void loop ();
 
   protected void processFrame () {
-    input().update(); // event handling
+    scheduler.beginFrame();
+    profiler().start(Profiler.INPUT);
+    try { input().update(); } // event handling
+    finally { profiler().end(Profiler.INPUT); }
     emitFrame();
   }
 
@@ -0,0 +1,111 @@
+/**
+ * Copyright 2010-2015 The PlayN Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package playn.java;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+import playn.core.Exec;
+import react.Closeable;
+
+/**
+ * Tests {@link AsyncExecutor}.
+ */
+public class AsyncExecutorTest {
+
+  @Test public void testLanes () throws Exception {
+    JavaPlatform.Config config = new JavaPlatform.Config();
+    JavaPlatform.Headless plat = new JavaPlatform.Headless(config);
+    final AtomicReference<String> cpu = new AtomicReference<>(), io = new AtomicReference<>();
+    final CountDownLatch done = new CountDownLatch(2);
+    plat.exec().invokeAsync(Exec.Lane.CPU, new Runnable() {
+      public void run () { cpu.set(Thread.currentThread().getName()); done.countDown(); }
+    });
+    plat.exec().invokeAsync(Exec.Lane.IO, new Runnable() {
+      public void run () { io.set(Thread.currentThread().getName()); done.countDown(); }
+    });
+    assertTrue(done.await(5, TimeUnit.SECONDS));
+    assertTrue(cpu.get(), cpu.get().startsWith("playn-cpu-"));
+    assertTrue(io.get(), io.get().startsWith("playn-io-"));
+    plat.async().shutdown(1000);
+    assertEquals(1, plat.async().metrics(Exec.Lane.CPU).started());
+    assertEquals(1, plat.async().metrics(Exec.Lane.IO).completed());
+  }
+
+  @Test public void testCancelAndMetrics () throws Exception {
+    JavaPlatform.Config config = new JavaPlatform.Config();
+    config.ioThreads = 1;
+    JavaPlatform.Headless plat = new JavaPlatform.Headless(config);
+    AsyncExecutor async = plat.async();
+
+    // block our only I/O thread so that subsequent actions queue up behind it
+    final CountDownLatch started = new CountDownLatch(1), release = new CountDownLatch(1);
+    async.invoke(Exec.Lane.IO, new Runnable() {
+      public void run () {
+        started.countDown();
+        try { release.await(); } catch (InterruptedException ie) {}
+      }
+    });
+    assertTrue(started.await(5, TimeUnit.SECONDS));
+
+    final AtomicBoolean ranCanceled = new AtomicBoolean(), ranKept = new AtomicBoolean();
+    Closeable canceled = async.invoke(Exec.Lane.IO, new Runnable() {
+      public void run () { ranCanceled.set(true); }
+    });
+    async.invoke(Exec.Lane.IO, new Runnable() {
+      public void run () { ranKept.set(true); }
+    });
+    AsyncExecutor.Metrics metrics = async.metrics(Exec.Lane.IO);
+    assertEquals(2, metrics.queueDepth());
+    canceled.close();
+    assertEquals(1, metrics.queueDepth());
+    assertEquals(1, metrics.canceled());
+
+    Thread.sleep(20); // so that the queued action has a measurable latency
+    release.countDown();
+    async.shutdown(5000);
+    assertFalse(ranCanceled.get());
+    assertTrue(ranKept.get());
+    assertEquals(0, metrics.queueDepth());
+    assertEquals(2, metrics.completed());
+    assertTrue(metrics.maxLatency() >= 20);
+    assertTrue(metrics.meanLatency() <= metrics.maxLatency());
+  }
+
+  @Test public void testVirtualThreadsFallBack () throws Exception {
+    JavaPlatform.Config config = new JavaPlatform.Config();
+    config.virtualIOThreads = true;
+    JavaPlatform.Headless plat = new JavaPlatform.Headless(config);
+    // on JVMs without virtual threads, we fall back to a normal thread pool
+    boolean haveVirtual;
+    try {
+      Thread.class.getMethod("ofVirtual");
+      haveVirtual = true;
+    } catch (NoSuchMethodException e) {
+      haveVirtual = false;
+    }
+    assertEquals(haveVirtual, plat.async().isVirtualIO());
+    final CountDownLatch done = new CountDownLatch(1);
+    plat.exec().invokeAsync(new Runnable() {
+      public void run () { done.countDown(); }
+    });
+    assertTrue(done.await(5, TimeUnit.SECONDS));
+    plat.async().shutdown(1000);
+  }
+}
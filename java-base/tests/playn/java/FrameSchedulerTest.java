@@ -0,0 +1,137 @@
+/**
+ * Copyright 2010-2015 The PlayN Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package playn.java;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+import playn.core.Clock;
+import playn.core.Game;
+import playn.core.Platform;
+import react.Slot;
+
+/**
+ * Tests {@link FrameScheduler}, driven by a virtual timer on the headless platform.
+ */
+public class FrameSchedulerTest {
+
+  static final long MS = 1000000L;
+
+  @Test public void testPacing () {
+    JavaPlatform.Config config = new JavaPlatform.Config();
+    config.targetFPS = 50;
+    final FrameScheduler.VirtualTimer timer = new FrameScheduler.VirtualTimer();
+    JavaPlatform.Headless plat = new JavaPlatform.Headless(config, timer);
+
+    // each frame records its start time and then "works" for the configured time
+    final List<Integer> ticks = new ArrayList<>();
+    final long[] work = { 0 };
+    plat.frame.connect(new Slot<Platform>() {
+      public void onEmit (Platform p) {
+        ticks.add(p.tick());
+        timer.advance(work[0]);
+      }
+    });
+    // frames that take less than the target time are started exactly on schedule
+    for (int ii = 0; ii < 10; ii++) {
+      work[0] = (ii % 3 + 1) * 5 * MS;
+      plat.runFrame();
+    }
+    for (int ii = 0; ii < 10; ii++) assertEquals(ii * 20, (int)ticks.get(ii));
+    FrameScheduler.Distribution times = plat.scheduler().frameTimes();
+    assertEquals(9, times.count());
+    assertEquals(20, times.percentile(50), 0);
+    assertEquals(20, times.max(), 0);
+
+    // a slow frame delays the next, but the schedule doesn't then try to run frames back to back
+    ticks.clear();
+    work[0] = 45 * MS;
+    plat.runFrame();
+    work[0] = 0;
+    plat.runFrame();
+    plat.runFrame();
+    assertEquals(200, (int)ticks.get(0));
+    assertEquals(245, (int)ticks.get(1));
+    assertEquals(265, (int)ticks.get(2));
+    assertEquals(45, times.max(), 0);
+    assertEquals(20, plat.scheduler().frameTime(), 0);
+  }
+
+  @Test public void testMaxCatchUp () {
+    JavaPlatform.Config config = new JavaPlatform.Config();
+    config.targetFPS = 50;
+    config.maxCatchUpFrames = 3;
+    FrameScheduler.VirtualTimer timer = new FrameScheduler.VirtualTimer();
+    JavaPlatform.Headless plat = new JavaPlatform.Headless(config, timer);
+
+    final List<Integer> dts = new ArrayList<>();
+    new Game(plat, 20) {
+      @Override public void update (Clock clock) { dts.add(clock.dt); }
+    };
+    for (int ii = 0; ii < 5; ii++) plat.runFrame();
+    dts.clear();
+    // stall for a second; the game should only be asked to catch up on three frames' worth
+    timer.advance(1000 * MS);
+    plat.runFrame();
+    assertEquals(1, dts.size());
+    assertEquals(60, (int)dts.get(0));
+    // thereafter we return to the normal schedule
+    for (int ii = 0; ii < 3; ii++) plat.runFrame();
+    for (int ii = 1; ii < dts.size(); ii++) assertEquals(20, (int)dts.get(ii));
+    // the stall is still reflected in the measured frame times
+    assertEquals(1020, plat.scheduler().frameTimes().max(), 0);
+  }
+
+  @Test public void testNoCatchUpLimitByDefault () {
+    JavaPlatform.Config config = new JavaPlatform.Config();
+    config.targetFPS = 50;
+    final FrameScheduler.VirtualTimer timer = new FrameScheduler.VirtualTimer();
+    final long start = timer.nanoTime();
+    JavaPlatform.Headless plat = new JavaPlatform.Headless(config, timer);
+    final List<Integer> drift = new ArrayList<>();
+    plat.frame.connect(new Slot<Platform>() {
+      public void onEmit (Platform p) {
+        drift.add((int)((timer.nanoTime() - start) / MS) - p.tick());
+      }
+    });
+    for (int ii = 0; ii < 5; ii++) plat.runFrame();
+    // after a stall, tick still reports the time since the game started
+    timer.advance(1000 * MS);
+    plat.runFrame();
+    plat.runFrame();
+    assertEquals(7, drift.size());
+    for (int d : drift) assertEquals(0, d);
+  }
+
+  @Test public void testSmoothing () {
+    JavaPlatform.Config config = new JavaPlatform.Config();
+    config.frameTimeSmoothing = 0.5f;
+    FrameScheduler.VirtualTimer timer = new FrameScheduler.VirtualTimer();
+    FrameScheduler sched = new FrameScheduler(config, timer);
+    sched.beginFrame();
+    timer.advance(10 * MS);
+    sched.beginFrame();
+    assertEquals(10, sched.smoothedFrameTime(), 0);
+    timer.advance(20 * MS);
+    sched.beginFrame();
+    assertEquals(15, sched.smoothedFrameTime(), 0);
+    assertEquals(20, sched.frameTime(), 0);
+    // with no target frame rate, we don't wait at all
+    sched.awaitNextFrame();
+    assertEquals(30, sched.tick());
+  }
+}
@@ -126,6 +126,8 @@ public class LWJGLPlatform extends JavaPlatform {
       }
       // sleep until it's time for the next frame
       glfwSwapBuffers(window);
+      // and additionally wait if we're configured with a target frame rate
+      scheduler.awaitNextFrame();
     }
     input.shutdown();
     graphics.shutdown();
@@ -65,7 +65,8 @@ public class LWJGLPlatform extends JavaPlatform {
       if (newActive || !config.truePause) processFrame();
       Display.update();
       // sleep until it's time for the next frame
-      Display.sync(60);
+      if (config.targetFPS > 0) scheduler.awaitNextFrame();
+      else Display.sync(60);
     }
   }
 
@@ -69,6 +69,7 @@ public class SWTPlatform extends JavaPlatform {
     display.asyncExec(new Runnable() {
       public void run() {
         if (!shell.isDisposed()) {
+          scheduler.beginFrame();
           graphics.onBeforeFrame();
           emitFrame();
           graphics.onAfterFrame();
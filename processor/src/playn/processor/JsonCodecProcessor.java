@@ -0,0 +1,396 @@
+/**
+ * Copyright 2011 The PlayN Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package playn.processor;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.AnnotationMirror;
+import javax.lang.model.element.AnnotationValue;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.NestingKind;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.VariableElement;
+import javax.lang.model.type.ArrayType;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.ElementFilter;
+import javax.tools.Diagnostic;
+
+/**
+ * Generates a {@code playn.core.json.JsonCodec} for each class annotated with {@code
+ * JsonCodec.Mapped}. The generated codec for {@code Item} is {@code ItemJsonCodec}, in the same
+ * package, which reads and writes the fields of {@code Item} directly against a JSON reader and
+ * sink. See {@code JsonCodec.Mapped} for the fields that are supported.
+ *
+ * <p>This processor refers to the core classes only by name, so it has no dependencies, and it is
+ * found by {@code javac} via its service registration when it is on the compile class path.
+ */
+@SupportedAnnotationTypes({ JsonCodecProcessor.MAPPED, JsonCodecProcessor.KEY })
+public class JsonCodecProcessor extends AbstractProcessor {
+
+  static final String CODEC = "playn.core.json.JsonCodec";
+  static final String MAPPED = CODEC + ".Mapped";
+  static final String KEY = CODEC + ".Key";
+
+  @Override public SourceVersion getSupportedSourceVersion () {
+    return SourceVersion.latestSupported();
+  }
+
+  @Override public boolean process (Set<? extends TypeElement> annotations, RoundEnvironment env) {
+    TypeElement mapped = processingEnv.getElementUtils().getTypeElement(MAPPED);
+    if (mapped == null) return false;
+    for (Element elem : env.getElementsAnnotatedWith(mapped)) {
+      if (elem.getKind() != ElementKind.CLASS) error(elem, "Only classes may be JSON mapped");
+      else generate((TypeElement)elem);
+    }
+    return true;
+  }
+
+  /** A field of a mapped class, and how to read and write it. */
+  protected static class Field {
+    public final VariableElement elem;
+    public final String name, key;
+    /** The expression for the codec that handles the field, or null if it is read inline. */
+    public final String codec;
+
+    public Field (VariableElement elem, String key, String codec) {
+      this.elem = elem;
+      this.name = elem.getSimpleName().toString();
+      this.key = key;
+      this.codec = codec;
+    }
+
+    public String codecField () { return name + "Codec"; }
+  }
+
+  protected void generate (TypeElement type) {
+    boolean ok = true;
+    if (type.getModifiers().contains(Modifier.ABSTRACT)) {
+      error(type, "JSON mapped classes must not be abstract");
+      ok = false;
+    }
+    if (type.getModifiers().contains(Modifier.PRIVATE)) {
+      error(type, "JSON mapped classes must not be private");
+      ok = false;
+    }
+    if (type.getNestingKind() != NestingKind.TOP_LEVEL &&
+        !type.getModifiers().contains(Modifier.STATIC)) {
+      error(type, "JSON mapped classes must be top-level or static");
+      ok = false;
+    }
+    if (!type.getTypeParameters().isEmpty()) {
+      error(type, "JSON mapped classes must not be generic");
+      ok = false;
+    }
+    if (!hasDefaultConstructor(type)) {
+      error(type, "JSON mapped classes must have a non-private no argument constructor");
+      ok = false;
+    }
+
+    String pkg = processingEnv.getElementUtils().getPackageOf(type).getQualifiedName().toString();
+    List<Field> fields = new ArrayList<>();
+    Set<String> keys = new HashSet<>();
+    for (VariableElement elem : fields(type)) {
+      Set<Modifier> mods = elem.getModifiers();
+      if (mods.contains(Modifier.STATIC) || mods.contains(Modifier.TRANSIENT)) continue;
+      if (mods.contains(Modifier.PRIVATE) || mods.contains(Modifier.FINAL)) {
+        error(elem, "JSON mapped fields must be neither private nor final");
+        ok = false;
+        continue;
+      }
+      String owner = processingEnv.getElementUtils().getPackageOf(elem).getQualifiedName().toString();
+      if (!owner.equals(pkg) && !mods.contains(Modifier.PUBLIC)) {
+        error(elem, "JSON mapped fields inherited from another package must be public");
+        ok = false;
+        continue;
+      }
+
+      String key = keyOf(elem);
+      if (!keys.add(key)) {
+        error(elem, "Duplicate JSON key: " + key);
+        ok = false;
+        continue;
+      }
+
+      TypeMirror ftype = elem.asType();
+      if (isInline(ftype)) fields.add(new Field(elem, key, null));
+      else {
+        String codec = codecFor(ftype);
+        if (codec == null) {
+          error(elem, "Unsupported type for a JSON mapped field: " + ftype);
+          ok = false;
+        } else fields.add(new Field(elem, key, codec));
+      }
+    }
+    if (!ok) return;
+
+    String name = codecName(type), typeName = type.getQualifiedName().toString();
+    try (PrintWriter out = new PrintWriter(processingEnv.getFiler().createSourceFile(
+           pkg.isEmpty() ? name : pkg + "." + name, type).openWriter())) {
+      writeCodec(out, pkg, name, typeName, fields);
+    } catch (IOException e) {
+      error(type, "Failed to write " + name + ": " + e);
+    }
+  }
+
+  protected void writeCodec (PrintWriter out, String pkg, String name, String typeName,
+                             List<Field> fields) {
+    out.println("// Generated by " + getClass().getName() + " from " + typeName + "; do not edit.");
+    if (!pkg.isEmpty()) out.println("package " + pkg + ";");
+    out.println();
+    out.println("import playn.core.Json;");
+    out.println("import playn.core.json.JsonCodec;");
+    out.println("import playn.core.json.JsonParserException;");
+    out.println("import playn.core.json.JsonSink;");
+    out.println();
+    out.println("/**");
+    out.println(" * Reads and writes {@link " + typeName + "} as JSON.");
+    out.println(" */");
+    out.println("public final class " + name + " extends JsonCodec<" + typeName + "> {");
+    out.println();
+    out.println("  /** The sole instance of this codec. */");
+    out.println("  public static final " + name + " INSTANCE = new " + name + "();");
+    out.println();
+    // these are initialized after INSTANCE, so that codecs of classes that refer to one another
+    // see each other's instances
+    for (Field field : fields) {
+      if (field.codec == null) continue;
+      out.println("  private static final JsonCodec<" + field.elem.asType() + "> " +
+                  field.codecField() + " = " + field.codec + ";");
+    }
+
+    out.println();
+    out.println("  @Override public " + typeName + " read (Json.Reader in) throws JsonParserException {");
+    out.println("    if (isNull(in)) return null;");
+    out.println("    expect(in, Json.Reader.Event.START_OBJECT);");
+    out.println("    " + typeName + " value = new " + typeName + "();");
+    out.println("    while (nextKey(in)) {");
+    out.println("      switch (in.getString()) {");
+    for (Field field : fields) {
+      out.println("      case " + quote(field.key) + ":");
+      out.println("        in.next();");
+      out.println("        value." + field.name + " = " + readExpr(field) + ";");
+      out.println("        break;");
+    }
+    out.println("      default:");
+    out.println("        in.next();");
+    out.println("        in.skipValue();");
+    out.println("        break;");
+    out.println("      }");
+    out.println("    }");
+    out.println("    return value;");
+    out.println("  }");
+
+    out.println();
+    out.println("  @Override public void write (JsonSink<?> out, String key, " + typeName + " value) {");
+    out.println("    if (value == null) {");
+    out.println("      writeNull(out, key);");
+    out.println("      return;");
+    out.println("    }");
+    out.println("    startObject(out, key);");
+    for (Field field : fields) {
+      if (field.codec == null)
+        out.println("    out.value(" + quote(field.key) + ", value." + field.name + ");");
+      else out.println("    " + field.codecField() + ".write(out, " + quote(field.key) + ", value." +
+                       field.name + ");");
+    }
+    out.println("    out.end();");
+    out.println("  }");
+
+    out.println();
+    out.println("  private " + name + " () {}");
+    out.println("}");
+  }
+
+  /** Returns whether fields of {@code type} are read and written directly, without a codec. */
+  protected boolean isInline (TypeMirror type) {
+    switch (type.getKind()) {
+    case BOOLEAN: case BYTE: case SHORT: case INT: case LONG: case FLOAT: case DOUBLE: return true;
+    case DECLARED: return qualifiedName(type).equals("java.lang.String");
+    default: return false;
+    }
+  }
+
+  protected String readExpr (Field field) {
+    if (field.codec != null) return field.codecField() + ".read(in)";
+    switch (field.elem.asType().getKind()) {
+    case BOOLEAN: return "readBoolean(in)";
+    case BYTE: return "(byte)readInt(in)";
+    case SHORT: return "(short)readInt(in)";
+    case INT: return "readInt(in)";
+    case LONG: return "readLong(in)";
+    case FLOAT: return "readFloat(in)";
+    case DOUBLE: return "readDouble(in)";
+    default: return "readString(in)";
+    }
+  }
+
+  /**
+   * Returns an expression that creates or refers to a codec for {@code type}, or null if the type
+   * is not supported.
+   */
+  protected String codecFor (TypeMirror type) {
+    switch (type.getKind()) {
+    case ARRAY:
+      TypeMirror comp = ((ArrayType)type).getComponentType();
+      switch (comp.getKind()) {
+      case BOOLEAN: return "BOOLEAN_ARRAY";
+      case INT: return "INT_ARRAY";
+      case LONG: return "LONG_ARRAY";
+      case FLOAT: return "FLOAT_ARRAY";
+      case DOUBLE: return "DOUBLE_ARRAY";
+      case ARRAY: case DECLARED:
+        // arrays of generic types can't be created
+        if (comp.getKind() == TypeKind.DECLARED && !((DeclaredType)comp).getTypeArguments().isEmpty())
+          return null;
+        String codec = codecFor(comp);
+        if (codec == null) return null;
+        // new int[0][] for arrays of int[], for instance
+        String name = comp.toString();
+        int dims = name.indexOf('[');
+        String empty = dims < 0 ? name + "[0]" : name.substring(0, dims) + "[0]" + name.substring(dims);
+        return "arrayOf(" + codec + ", new " + empty + ")";
+      default: return null;
+      }
+
+    case DECLARED:
+      DeclaredType dtype = (DeclaredType)type;
+      TypeElement elem = (TypeElement)dtype.asElement();
+      List<? extends TypeMirror> args = dtype.getTypeArguments();
+      switch (qualifiedName(type)) {
+      case "java.lang.String": return "STRING";
+      case "java.lang.Boolean": return "BOOLEAN";
+      case "java.lang.Integer": return "INT";
+      case "java.lang.Long": return "LONG";
+      case "java.lang.Float": return "FLOAT";
+      case "java.lang.Double": return "DOUBLE";
+      case "java.util.List":
+        if (args.size() != 1) return null;
+        String ecodec = codecFor(args.get(0));
+        return ecodec == null ? null : "listOf(" + ecodec + ")";
+      case "java.util.Map":
+        if (args.size() != 2 || !qualifiedName(args.get(0)).equals("java.lang.String")) return null;
+        String vcodec = codecFor(args.get(1));
+        return vcodec == null ? null : "mapOf(" + vcodec + ")";
+      default:
+        if (elem.getKind() == ElementKind.ENUM) return "enumOf(" + elem.getQualifiedName() + ".values())";
+        if (isMapped(elem) && args.isEmpty()) {
+          String pkg = processingEnv.getElementUtils().getPackageOf(elem).getQualifiedName().toString();
+          return (pkg.isEmpty() ? "" : pkg + ".") + codecName(elem) + ".INSTANCE";
+        }
+        return null;
+      }
+
+    default:
+      return null;
+    }
+  }
+
+  /** Returns the fields of {@code type} and its superclasses, those of superclasses first. */
+  protected List<VariableElement> fields (TypeElement type) {
+    List<VariableElement> fields = new ArrayList<>();
+    TypeMirror sup = type.getSuperclass();
+    if (sup.getKind() == TypeKind.DECLARED) {
+      TypeElement supElem = (TypeElement)((DeclaredType)sup).asElement();
+      if (!supElem.getQualifiedName().contentEquals("java.lang.Object"))
+        fields.addAll(fields(supElem));
+    }
+    fields.addAll(ElementFilter.fieldsIn(type.getEnclosedElements()));
+    return fields;
+  }
+
+  protected boolean hasDefaultConstructor (TypeElement type) {
+    for (ExecutableElement ctor : ElementFilter.constructorsIn(type.getEnclosedElements())) {
+      if (ctor.getParameters().isEmpty() && !ctor.getModifiers().contains(Modifier.PRIVATE))
+        return true;
+    }
+    return false;
+  }
+
+  protected String keyOf (VariableElement field) {
+    AnnotationMirror key = annotation(field, KEY);
+    if (key != null) {
+      for (Map.Entry<? extends ExecutableElement, ? extends AnnotationValue> entry :
+             key.getElementValues().entrySet()) {
+        if (entry.getKey().getSimpleName().contentEquals("value"))
+          return String.valueOf(entry.getValue().getValue());
+      }
+    }
+    return field.getSimpleName().toString();
+  }
+
+  protected boolean isMapped (TypeElement type) {
+    return annotation(type, MAPPED) != null;
+  }
+
+  protected void error (Element elem, String message) {
+    processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR, message, elem);
+  }
+
+  /** Returns the codec name for {@code type}: {@code Outer_InnerJsonCodec} for a nested class. */
+  protected static String codecName (TypeElement type) {
+    StringBuilder name = new StringBuilder(type.getSimpleName());
+    for (Element outer = type.getEnclosingElement(); outer instanceof TypeElement;
+         outer = outer.getEnclosingElement()) {
+      name.insert(0, outer.getSimpleName() + "_");
+    }
+    return name.append("JsonCodec").toString();
+  }
+
+  protected static AnnotationMirror annotation (Element elem, String name) {
+    for (AnnotationMirror mirror : elem.getAnnotationMirrors()) {
+      TypeElement atype = (TypeElement)mirror.getAnnotationType().asElement();
+      if (atype.getQualifiedName().contentEquals(name)) return mirror;
+    }
+    return null;
+  }
+
+  protected static String qualifiedName (TypeMirror type) {
+    if (type.getKind() != TypeKind.DECLARED) return "";
+    return ((TypeElement)((DeclaredType)type).asElement()).getQualifiedName().toString();
+  }
+
+  /** Returns {@code text} as a Java string literal. */
+  protected static String quote (String text) {
+    StringBuilder buf = new StringBuilder("\"");
+    for (int ii = 0, ll = text.length(); ii < ll; ii++) {
+      char c = text.charAt(ii);
+      switch (c) {
+      case '"': buf.append("\\\""); break;
+      case '\\': buf.append("\\\\"); break;
+      case '\n': buf.append("\\n"); break;
+      case '\r': buf.append("\\r"); break;
+      case '\t': buf.append("\\t"); break;
+      default:
+        if (c < 0x20 || c > 0x7E) buf.append(String.format("\\u%04x", (int)c));
+        else buf.append(c);
+      }
+    }
+    return buf.append('"').toString();
+  }
+}
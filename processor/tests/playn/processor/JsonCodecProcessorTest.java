@@ -0,0 +1,244 @@
+/**
+ * Copyright 2011 The PlayN Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package playn.processor;
+
+import java.io.IOException;
+import java.net.URI;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import javax.tools.Diagnostic;
+import javax.tools.DiagnosticCollector;
+import javax.tools.JavaCompiler;
+import javax.tools.JavaFileObject;
+import javax.tools.SimpleJavaFileObject;
+import javax.tools.ToolProvider;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+import playn.core.Json;
+import playn.core.json.JsonCodec;
+import playn.core.json.JsonImpl;
+import playn.core.json.JsonParserException;
+
+/**
+ * Tests the codecs generated by {@link JsonCodecProcessor}, which runs on this class when it is
+ * compiled.
+ */
+public class JsonCodecProcessorTest {
+
+  public enum Rarity { COMMON, RARE }
+
+  @JsonCodec.Mapped public static class Base {
+    public int id = -1;
+  }
+
+  @JsonCodec.Mapped public static class Item extends Base {
+    String name;
+    @JsonCodec.Key("kind") String type = "junk";
+    boolean stackable;
+    byte b;
+    short s;
+    long big;
+    float weight;
+    double price;
+    Integer count;
+    Double ratio;
+    Rarity rarity;
+    int[] levels;
+    float[] xy;
+    String[] tags;
+    int[][] grid;
+    List<Rarity> drops;
+    Map<String, Item> parts;
+    transient int ignored = 7;
+    static int alsoIgnored = 8;
+  }
+
+  @JsonCodec.Mapped public static class Node {
+    String name;
+    List<Node> children;
+  }
+
+  private final Json json = new JsonImpl();
+
+  @Test public void testRoundTrip () {
+    Item item = createItem();
+    String text = JsonCodecProcessorTest_ItemJsonCodec.INSTANCE.write(json.newWriter(), item).write();
+    // the codec writes what the tree writer would for the same values
+    Json.Object tree = json.parse(text);
+    assertEquals(42, tree.getInt("id"));
+    assertEquals("sword", tree.getString("kind"));
+    assertEquals("RARE", tree.getString("rarity"));
+    assertEquals(3, tree.getArray("grid").getArray(1).getInt(0));
+    assertEquals("gem", tree.getObject("parts").getObject("hilt").getString("name"));
+    assertTrue(tree.isNull("ratio"));
+    assertFalse(tree.containsKey("ignored"));
+    assertFalse(tree.containsKey("alsoIgnored"));
+    // the codec writes fields in declaration order, where the tree writes its keys sorted, but
+    // otherwise the documents are the same
+    assertTrue(text.startsWith("{\"id\":42,\"name\":"));
+    assertEquals(text.length(), json.newWriter().object(tree).write().length());
+
+    assertItemEquals(item, JsonCodecProcessorTest_ItemJsonCodec.INSTANCE.parse(json.newReader(text)));
+    Item binary = JsonCodecProcessorTest_ItemJsonCodec.INSTANCE.parse(json.newBinaryReader(
+      JsonCodecProcessorTest_ItemJsonCodec.INSTANCE.write(json.newBinaryWriter(), item).write()));
+    assertItemEquals(item, binary);
+  }
+
+  @Test public void testMissingAndUnknownKeys () {
+    Item item = JsonCodecProcessorTest_ItemJsonCodec.INSTANCE.parse(json.newReader(
+      "{\"extra\": {\"a\": [1, {\"b\": null}]}, \"name\": \"x\", \"type\": \"y\", \"more\": [[]]}"));
+    assertEquals("x", item.name);
+    // keys of renamed fields are not matched by field name
+    assertEquals("junk", item.type);
+    assertEquals(-1, item.id);
+    assertEquals(7, item.ignored);
+    assertNull(item.levels);
+  }
+
+  @Test public void testNulls () {
+    Item item = JsonCodecProcessorTest_ItemJsonCodec.INSTANCE.parse(json.newReader(
+      "{\"name\": null, \"count\": null, \"rarity\": null, \"tags\": null, \"parts\": null}"));
+    assertNull(item.name);
+    assertNull(item.count);
+    assertNull(item.rarity);
+    assertNull(item.tags);
+    assertNull(item.parts);
+    assertNull(JsonCodecProcessorTest_ItemJsonCodec.INSTANCE.parse(json.newReader("null")));
+    assertEquals("null", JsonCodecProcessorTest_ItemJsonCodec.INSTANCE.write(json.newWriter(), null).write());
+  }
+
+  @Test public void testRecursive () {
+    Node root = JsonCodecProcessorTest_NodeJsonCodec.INSTANCE.parse(json.newReader(
+      "{\"name\": \"a\", \"children\": [{\"name\": \"b\"}, {\"name\": \"c\", \"children\": []}]}"));
+    assertEquals(2, root.children.size());
+    assertNull(root.children.get(0).children);
+    assertEquals("c", root.children.get(1).name);
+    assertEquals("{\"name\":\"a\",\"children\":[{\"name\":\"b\",\"children\":null}," +
+                 "{\"name\":\"c\",\"children\":[]}]}",
+                 JsonCodecProcessorTest_NodeJsonCodec.INSTANCE.write(json.newWriter(), root).write());
+  }
+
+  @Test public void testMismatches () {
+    String[] cases = { "[]", "{\"id\": \"1\"}", "{\"name\": 1}", "{\"stackable\": 1}",
+                       "{\"rarity\": \"EPIC\"}", "{\"levels\": [1, null]}", "{\"levels\": {}}",
+                       "{\"parts\": {\"a\": 1}}", "{\"drops\": [true]}", "{} {}", "{\"id\": 1" };
+    for (String text : cases) {
+      try {
+        JsonCodecProcessorTest_ItemJsonCodec.INSTANCE.parse(json.newReader(text));
+        fail("Should have failed: " + text);
+      } catch (JsonParserException e) {
+        // expected
+      }
+    }
+  }
+
+  @Test public void testProcessorErrors () throws IOException {
+    assertEquals(Collections.emptyList(), compile(
+      "@JsonCodec.Mapped public class A { int a; B b; List<Map<String, B[]>> bs; }",
+      "@JsonCodec.Mapped public class B { A a; String s; }"));
+    assertEquals(Arrays.asList("JSON mapped fields must be neither private nor final"),
+                 compile("@JsonCodec.Mapped public class A { private int a; }"));
+    assertEquals(Arrays.asList("Unsupported type for a JSON mapped field: char"),
+                 compile("@JsonCodec.Mapped public class A { char c; }"));
+    assertEquals(Arrays.asList("Unsupported type for a JSON mapped field: java.util.List<?>"),
+                 compile("@JsonCodec.Mapped public class A { List<?> c; }"));
+    assertEquals(Arrays.asList("Unsupported type for a JSON mapped field: java.lang.Object"),
+                 compile("@JsonCodec.Mapped public class A { Object o; }"));
+    assertEquals(Arrays.asList("JSON mapped classes must have a non-private no argument constructor"),
+                 compile("@JsonCodec.Mapped public class A { A (int a) {} }"));
+    assertEquals(Arrays.asList("Duplicate JSON key: a"),
+                 compile("@JsonCodec.Mapped public class A { int a; @JsonCodec.Key(\"a\") int b; }"));
+  }
+
+  /** Compiles {@code sources}, each a class in package {@code test}, and returns the errors. */
+  protected List<String> compile (String... sources) throws IOException {
+    List<JavaFileObject> files = new ArrayList<>();
+    for (final String source : sources) {
+      String name = source.replaceAll(".* class (\\w+).*", "$1");
+      files.add(new SimpleJavaFileObject(URI.create("string:///test/" + name + ".java"),
+                                         JavaFileObject.Kind.SOURCE) {
+        @Override public CharSequence getCharContent (boolean ignoreEncodingErrors) {
+          return "package test; import java.util.*; import playn.core.json.JsonCodec; " + source;
+        }
+      });
+    }
+    Path out = Files.createTempDirectory("codecs");
+    JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+    DiagnosticCollector<JavaFileObject> diags = new DiagnosticCollector<>();
+    compiler.getTask(null, null, diags, Arrays.asList(
+      "-classpath", System.getProperty("java.class.path"), "-d", out.toString(),
+      "-processor", JsonCodecProcessor.class.getName()), null, files).call();
+    List<String> errors = new ArrayList<>();
+    for (Diagnostic<? extends JavaFileObject> diag : diags.getDiagnostics())
+      if (diag.getKind() == Diagnostic.Kind.ERROR) errors.add(diag.getMessage(null));
+    return errors;
+  }
+
+  protected static Item createItem () {
+    Item item = new Item();
+    item.id = 42;
+    item.name = "Sword \"of\" über";
+    item.type = "sword";
+    item.stackable = true;
+    item.b = -3;
+    item.s = 1000;
+    item.big = Long.MAX_VALUE;
+    item.weight = 2.5f;
+    item.price = 0.1;
+    item.count = 12;
+    item.rarity = Rarity.RARE;
+    item.levels = new int[] { 1, 2, 3, 4, 5, 6, 7, 8, 9, 10 };
+    item.xy = new float[] { 0.5f, -1 };
+    item.tags = new String[] { "a", null, "c" };
+    item.grid = new int[][] { { 1, 2 }, { 3 } };
+    item.drops = Arrays.asList(Rarity.COMMON, Rarity.RARE);
+    item.parts = new LinkedHashMap<>();
+    Item hilt = new Item();
+    hilt.name = "gem";
+    item.parts.put("hilt", hilt);
+    item.parts.put("none", null);
+    return item;
+  }
+
+  protected static void assertItemEquals (Item expect, Item got) {
+    assertEquals(expect.id, got.id);
+    assertEquals(expect.name, got.name);
+    assertEquals(expect.type, got.type);
+    assertEquals(expect.stackable, got.stackable);
+    assertEquals(expect.b, got.b);
+    assertEquals(expect.s, got.s);
+    assertEquals(expect.big, got.big);
+    assertEquals(expect.weight, got.weight, 0);
+    assertEquals(expect.price, got.price, 0);
+    assertEquals(expect.count, got.count);
+    assertEquals(expect.ratio, got.ratio);
+    assertEquals(expect.rarity, got.rarity);
+    assertArrayEquals(expect.levels, got.levels);
+    assertArrayEquals(expect.xy, got.xy, 0);
+    assertArrayEquals(expect.tags, got.tags);
+    assertArrayEquals(expect.grid, got.grid);
+    assertEquals(expect.drops, got.drops);
+    assertEquals(expect.parts.keySet(), got.parts.keySet());
+    assertEquals(expect.parts.get("hilt").name, got.parts.get("hilt").name);
+    assertNull(got.parts.get("none"));
+  }
+}
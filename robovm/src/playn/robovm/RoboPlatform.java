@@ -136,7 +136,8 @@ public class RoboPlatform extends Platform {
 
   @Override public Type type() { return Type.IOS; }
   @Override public double time() { return System.currentTimeMillis(); }
-  @Override public int tick() { return (int)((System.nanoTime() - gameStart) / 1000000); }
+  @Override public int tick() { return (int)(tickNanos() / 1000000); }
+  @Override public long tickNanos() { return System.nanoTime() - gameStart; }
 
   @Override public void openURL(String url) {
     if (!UIApplication.getSharedApplication().openURL(new NSURL(url))) {
@@ -71,6 +71,7 @@ public class CanvasLayer extends ImageLayer {
   public void resize (float width, float height) {
     if (canvas != null) canvas.close();
     canvas = gfx.createCanvas(width, height);
+    invalidateBounds();
   }
 
   /** Starts a drawing operation on this layer's backing canvas. Thus must be follwed by a call to
@@ -86,7 +87,10 @@ public class CanvasLayer extends ImageLayer {
     Image image = canvas.image;
     // if our texture is already the right size, just update it
     if (tex != null && tex.pixelWidth == image.pixelWidth() &&
-        tex.pixelHeight == image.pixelHeight()) tex.update(image);
+        tex.pixelHeight == image.pixelHeight()) {
+      tex.update(image);
+      invalidate();
+    }
     // otherwise we need to create a new texture (setTexture will unreference the old texture which
     // will cause it to be destroyed)
     else super.setTile(canvas.image.createTexture(Texture.Config.DEFAULT));
@@ -51,6 +51,7 @@ public abstract class ClippedLayer extends Layer {
     this.width = width;
     this.height = height;
     checkOrigin();
+    invalidateBounds();
     return this;
   }
 
@@ -63,6 +64,7 @@ public abstract class ClippedLayer extends Layer {
   public ClippedLayer setWidth(float width) {
     this.width = width;
     checkOrigin();
+    invalidateBounds();
     return this;
   }
 
@@ -70,6 +72,7 @@ public abstract class ClippedLayer extends Layer {
   public ClippedLayer setHeight(float height) {
     this.height = height;
     checkOrigin();
+    invalidateBounds();
     return this;
   }
 
@@ -77,6 +80,10 @@ public abstract class ClippedLayer extends Layer {
     return false;
   }
 
+  @Override protected boolean paintsWithinBounds () {
+    return !disableClip();
+  }
+
   @Override protected final void paintImpl (Surface surf) {
     if (disableClip()) paintClipped(surf);
     else {
@@ -16,12 +16,15 @@
 package playn.scene;
 
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.Iterator;
 import java.util.List;
 
 import pythagoras.f.AffineTransform;
 import pythagoras.f.MathUtil;
 import pythagoras.f.Point;
+import pythagoras.f.Rectangle;
 import pythagoras.util.NoninvertibleTransformException;
 
 import playn.core.Surface;
@@ -34,6 +37,7 @@ public class GroupLayer extends ClippedLayer implements Iterable<Layer> {
   private final List<Layer> children = new ArrayList<>();
   private final AffineTransform paintTx = new AffineTransform();
   private final boolean disableClip;
+  private HitGrid hitGrid;
 
   /** Creates an unclipped group layer. Unclipped groups have no defined size. */
   public GroupLayer () {
@@ -84,7 +88,10 @@ public class GroupLayer extends ClippedLayer implements Iterable<Layer> {
     if (parent != null) parent.remove(child);
     children.add(index, child);
     child.setParent(this);
+    markBoundsDirty();
+    if (hitGrid != null) hitGrid.add(child);
     if (state.get() == State.ADDED) child.onAdd();
+    child.invalidate();
 
     // if this child is active, we need to become active
     if (child.interactive()) setInteractive(true);
@@ -170,6 +177,47 @@ public class GroupLayer extends ClippedLayer implements Iterable<Layer> {
     for (Layer child : toDispose) child.close();
   }
 
+  /**
+   * Updates the depths of all of this group's children at once: {@code depths[ii]} becomes the
+   * depth of {@link #childAt}{@code (ii)}. The children are then reordered with a single stable
+   * sort, so children with equal depths retain their relative order. This is much cheaper than
+   * calling {@link Layer#setDepth} on each child when many children change depth at once, for
+   * example when sorting children by their y coordinate every frame.
+   *
+   * @throws IllegalArgumentException if {@code depths} does not contain one depth per child.
+   */
+  public void setDepths (float[] depths) {
+    int count = children.size();
+    if (depths.length != count) throw new IllegalArgumentException(
+      "Must supply one depth per child [children=" + count + ", depths=" + depths.length + "]");
+    boolean sorted = true;
+    for (int ii = 0; ii < count; ii++) {
+      children.get(ii).applyDepth(depths[ii]);
+      if (ii > 0 && depths[ii] < depths[ii-1]) sorted = false;
+    }
+    if (!sorted) {
+      Collections.sort(children, BY_DEPTH);
+      if (hitGrid != null) hitGrid.reorder();
+    }
+  }
+
+  /**
+   * Configures this group to maintain a spatial index of its children, which allows hit testing
+   * to skip children whose bounds do not contain the hit point. This is worthwhile for groups with
+   * many (hundreds or more) interactive children. The index is a uniform grid with cells of size
+   * {@code cellSize} (in this layer's coordinates), which should be roughly the size of a typical
+   * child. Children whose bounds are unknown, or which have a custom {@link HitTester}, are always
+   * checked. Children which override {@link #hitTestDefault} must not report hits outside the
+   * bounds they report.
+   *
+   * @param cellSize the size of a grid cell, or zero to discard any existing index.
+   * @return a reference to this layer for call chaining.
+   */
+  public GroupLayer setHitGrid (float cellSize) {
+    hitGrid = (cellSize <= 0) ? null : new HitGrid(cellSize, children);
+    return this;
+  }
+
   @Override public Iterator<Layer> iterator () {
     return children.iterator();
   }
@@ -180,6 +228,7 @@ public class GroupLayer extends ClippedLayer implements Iterable<Layer> {
   }
 
   @Override public Layer hitTestDefault(Point point) {
+    if (hitGrid != null) return hitTestIndexed(point);
     float x = point.x, y = point.y;
     boolean sawInteractiveChild = false;
     // we check back to front as children are ordered "lowest" first
@@ -208,6 +257,28 @@ public class GroupLayer extends ClippedLayer implements Iterable<Layer> {
     return super.hitTestDefault(point);
   }
 
+  private Layer hitTestIndexed (Point point) {
+    float x = point.x, y = point.y;
+    // candidates are ordered topmost first, just like our normal back to front search
+    List<Layer> cands = hitGrid.candidates(x, y);
+    for (int ii = 0, ll = cands.size(); ii < ll; ii++) {
+      Layer child = cands.get(ii);
+      if (!child.interactive() || !child.visible()) continue;
+      try {
+        child.transform().inverseTransform(point.set(x, y), point);
+        point.x += child.originX();
+        point.y += child.originY();
+        Layer l = child.hitTest(point);
+        if (l != null)
+          return l;
+      } catch (NoninvertibleTransformException nte) {
+        // Degenerate transform means no hit
+        continue;
+      }
+    }
+    return super.hitTestDefault(point.set(x, y));
+  }
+
   @Override protected void visit(Visitor visitor, int depth) {
     super.visit(visitor, depth);
     int childDepth = depth+1;
@@ -256,9 +327,14 @@ public class GroupLayer extends ClippedLayer implements Iterable<Layer> {
     children.remove(oldIndex);
     int newIndex = findInsertion(newDepth);
     children.add(newIndex, child);
+    if (hitGrid != null) hitGrid.reorder();
     return newIndex;
   }
 
+  void childChanged (Layer child) {
+    if (hitGrid != null) hitGrid.markDirty(child);
+  }
+
   @Override void onAdd() {
     super.onAdd();
     for (int ii = 0, ll = children.size(); ii < ll; ii++) children.get(ii).onAdd();
@@ -269,6 +345,32 @@ public class GroupLayer extends ClippedLayer implements Iterable<Layer> {
     for (int ii = 0, ll = children.size(); ii < ll; ii++) children.get(ii).onRemove();
   }
 
+  @Override boolean localBounds (Rectangle into) {
+    // we compute our children's bounds even if we're clipped, so that they are all up to date;
+    // this ensures that changes to our children will be propagated up to us
+    boolean known = true;
+    into.setBounds(0, 0, 0, 0);
+    for (int ii = 0, ll = children.size(); ii < ll; ii++) {
+      Rectangle cbounds = children.get(ii).parentBounds();
+      if (cbounds == null) known = false;
+      else union(into, cbounds);
+    }
+    return disableClip ? known : super.localBounds(into);
+  }
+
+  @Override void updateDamageBounds (RootLayer root, AffineTransform ltx, int level,
+                                     Rectangle into) {
+    // our children's bounds must be updated even if we're clipped, as any of them may later be
+    // changed, at which point we'll need to know where they were last painted
+    if (disableClip) into.setBounds(0, 0, 0, 0);
+    else transformBounds(ltx, 0, 0, width(), height(), into);
+    for (int ii = 0, ll = children.size(); ii < ll; ii++) {
+      Layer child = children.get(ii);
+      child.updateDamage(root, ltx, level+1);
+      if (disableClip) union(into, child.damageBounds);
+    }
+  }
+
   // group layers do not deactivate when their last event listener is removed; they may still have
   // interactive children to which events need to be dispatched; when a hit test is performed on a
   // group layer and it discovers that it has no interactive children, it will deactivate itself
@@ -276,6 +378,9 @@ public class GroupLayer extends ClippedLayer implements Iterable<Layer> {
 
   private void remove(int index) {
     Layer child = children.remove(index);
+    markBoundsDirty();
+    if (hitGrid != null) hitGrid.remove(child);
+    child.invalidate();
     child.onRemove();
     child.setParent(null);
   }
@@ -307,6 +412,10 @@ public class GroupLayer extends ClippedLayer implements Iterable<Layer> {
     return -1;
   }
 
+  private static final Comparator<Layer> BY_DEPTH = new Comparator<Layer>() {
+    public int compare (Layer a, Layer b) { return Float.compare(a.depth(), b.depth()); }
+  };
+
   // who says you never have to write binary search?
   private int findInsertion(float depth) {
     int low = 0, high = children.size()-1;
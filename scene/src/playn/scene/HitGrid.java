@@ -0,0 +1,251 @@
+/**
+ * Copyright 2010-2015 The PlayN Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package playn.scene;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import pythagoras.f.MathUtil;
+import pythagoras.f.Rectangle;
+
+/**
+ * A uniform grid which indexes the children of a {@link GroupLayer} by their bounds, so that hit
+ * testing need only consider the children whose bounds overlap the cell containing the hit point.
+ * Children are re-indexed lazily (on the next query) after their bounds change or they are
+ * reordered.
+ */
+class HitGrid {
+
+  /** The maximum number of cells a child may occupy before we stop trying to index it. */
+  static final int MAX_CELLS = 64;
+
+  private static class Entry {
+    public final Layer layer;
+    public int x0, y0, x1, y1; // the (inclusive) range of cells we occupy
+    public boolean indexed; // whether we're in the cells, or in the unindexed list
+    public boolean dirty;
+    public int order; // our index in the group's child list
+    public Entry (Layer layer) { this.layer = layer; }
+  }
+
+  /** The entries in a cell, and the key of that cell. */
+  private static class Cell extends ArrayList<Entry> {
+    public int key;
+  }
+
+  private static final Comparator<Entry> TOPMOST_FIRST = new Comparator<Entry>() {
+    public int compare (Entry a, Entry b) { return Integer.compare(b.order, a.order); }
+  };
+
+  private final float cellSize;
+  private final List<Layer> children;
+  private boolean reorder;
+  private final Map<Layer,Entry> entries = new IdentityHashMap<>();
+  // an open-addressing (linear probing) table of the non-empty cells, keyed on their (unboxed)
+  // keys so that queries don't allocate; emptied cells are kept for reuse
+  private Cell[] cells = new Cell[16];
+  private int cellCount;
+  private final List<Cell> spareCells = new ArrayList<>();
+  private final List<Entry> unindexed = new ArrayList<>();
+  private final List<Entry> dirty = new ArrayList<>();
+  private final List<Entry> hits = new ArrayList<>();
+  private final List<Layer> candidates = new ArrayList<>();
+
+  /** Creates a grid which indexes {@code children}, the (live) child list of a group layer. */
+  public HitGrid (float cellSize, List<Layer> children) {
+    assert cellSize > 0 : "cellSize must be greater than zero.";
+    this.cellSize = cellSize;
+    this.children = children;
+    for (int ii = 0, ll = children.size(); ii < ll; ii++) add(children.get(ii));
+  }
+
+  /** Adds {@code layer} to this grid. It will be indexed on the next query. */
+  public void add (Layer layer) {
+    Entry entry = new Entry(layer);
+    entries.put(layer, entry);
+    unindexed.add(entry);
+    markDirty(entry);
+    reorder = true;
+  }
+
+  /** Removes {@code layer} from this grid. */
+  public void remove (Layer layer) {
+    Entry entry = entries.remove(layer);
+    if (entry == null) return;
+    unlink(entry);
+    if (entry.dirty) dirty.remove(entry);
+    reorder = true;
+  }
+
+  /** Notes that the order of the group's children has changed. */
+  public void reorder () {
+    reorder = true;
+  }
+
+  /** Notes that the bounds (or hit tester) of {@code layer} have changed. */
+  public void markDirty (Layer layer) {
+    Entry entry = entries.get(layer);
+    if (entry != null) markDirty(entry);
+  }
+
+  /** Returns the layers that may contain the point {@code (x, y)}, which is in the coordinate
+    * system of the grouplayer that owns this grid. The layers are ordered topmost first, as they
+    * should be checked for hits. The returned list is reused by subsequent calls. */
+  public List<Layer> candidates (float x, float y) {
+    update();
+    hits.clear();
+    Cell cell = findCell(key(cell(x), cell(y)));
+    if (cell != null) hits.addAll(cell);
+    hits.addAll(unindexed);
+    // there are usually only a handful of candidates, in which case insertion sort does the job
+    int count = hits.size();
+    if (count > 16) Collections.sort(hits, TOPMOST_FIRST);
+    else for (int ii = 1; ii < count; ii++) {
+      Entry entry = hits.get(ii);
+      int jj = ii;
+      for (; jj > 0 && hits.get(jj-1).order < entry.order; jj--) hits.set(jj, hits.get(jj-1));
+      hits.set(jj, entry);
+    }
+    candidates.clear();
+    for (int ii = 0, ll = hits.size(); ii < ll; ii++) candidates.add(hits.get(ii).layer);
+    return candidates;
+  }
+
+  private void markDirty (Entry entry) {
+    if (!entry.dirty) {
+      entry.dirty = true;
+      dirty.add(entry);
+    }
+  }
+
+  private void update () {
+    if (reorder) {
+      reorder = false;
+      for (int ii = 0, ll = children.size(); ii < ll; ii++) entries.get(children.get(ii)).order = ii;
+    }
+    for (int ii = 0, ll = dirty.size(); ii < ll; ii++) {
+      Entry entry = dirty.get(ii);
+      entry.dirty = false;
+      // layers with custom hit testers can claim hits anywhere, so they always have to be checked
+      Rectangle bounds = entry.layer.hasHitTester() ? null : entry.layer.parentBounds();
+      int x0 = 0, y0 = 0, x1 = -1, y1 = -1; // empty bounds occupy no cells
+      boolean index = (bounds != null);
+      if (index && bounds.width > 0 && bounds.height > 0) {
+        x0 = cell(bounds.x);
+        y0 = cell(bounds.y);
+        x1 = cell(bounds.maxX());
+        y1 = cell(bounds.maxY());
+        index = ((long)x1 - x0 + 1) * ((long)y1 - y0 + 1) <= MAX_CELLS;
+      }
+      // if we're in the same cells as before, no need to move
+      if (index && entry.indexed && x0 == entry.x0 && y0 == entry.y0 &&
+          x1 == entry.x1 && y1 == entry.y1) continue;
+      unlink(entry);
+      entry.indexed = index;
+      if (!index) unindexed.add(entry);
+      else {
+        entry.x0 = x0; entry.y0 = y0; entry.x1 = x1; entry.y1 = y1;
+        for (int yy = y0; yy <= y1; yy++) {
+          for (int xx = x0; xx <= x1; xx++) {
+            int key = key(xx, yy);
+            Cell cell = findCell(key);
+            if (cell == null) cell = addCell(key);
+            cell.add(entry);
+          }
+        }
+      }
+    }
+    dirty.clear();
+  }
+
+  private void unlink (Entry entry) {
+    if (!entry.indexed) unindexed.remove(entry);
+    else {
+      for (int yy = entry.y0; yy <= entry.y1; yy++) {
+        for (int xx = entry.x0; xx <= entry.x1; xx++) {
+          Cell cell = findCell(key(xx, yy));
+          cell.remove(entry);
+          if (cell.isEmpty()) removeCell(cell);
+        }
+      }
+      entry.indexed = false;
+    }
+  }
+
+  private Cell findCell (int key) {
+    Cell[] cells = this.cells;
+    int mask = cells.length-1;
+    for (int slot = hash(key) & mask; ; slot = (slot+1) & mask) {
+      Cell cell = cells[slot];
+      if (cell == null || cell.key == key) return cell;
+    }
+  }
+
+  private Cell addCell (int key) {
+    if (2*(cellCount+1) > cells.length) {
+      Cell[] old = cells;
+      cells = new Cell[old.length*2];
+      for (Cell cell : old) if (cell != null) insertCell(cell);
+    }
+    int spares = spareCells.size();
+    Cell cell = (spares > 0) ? spareCells.remove(spares-1) : new Cell();
+    cell.key = key;
+    insertCell(cell);
+    cellCount++;
+    return cell;
+  }
+
+  private void insertCell (Cell cell) {
+    int mask = cells.length-1, slot = hash(cell.key) & mask;
+    while (cells[slot] != null) slot = (slot+1) & mask;
+    cells[slot] = cell;
+  }
+
+  private void removeCell (Cell cell) {
+    Cell[] cells = this.cells;
+    int mask = cells.length-1, hole = hash(cell.key) & mask;
+    while (cells[hole] != cell) hole = (hole+1) & mask;
+    cells[hole] = null;
+    // shift back any later cells in the probe run which can no longer be reached past the hole
+    for (int slot = (hole+1) & mask; cells[slot] != null; slot = (slot+1) & mask) {
+      int home = hash(cells[slot].key) & mask;
+      if (((slot - home) & mask) >= ((slot - hole) & mask)) {
+        cells[hole] = cells[slot];
+        cells[slot] = null;
+        hole = slot;
+      }
+    }
+    cellCount--;
+    spareCells.add(cell);
+  }
+
+  private int cell (float coord) {
+    return MathUtil.ifloor(coord / cellSize);
+  }
+
+  // distinct cells may share a key if they're very far apart, which merely means that we report
+  // some extra candidates
+  private static int key (int x, int y) {
+    return (x << 16) ^ (y & 0xFFFF);
+  }
+
+  private static int hash (int key) {
+    int h = key * 0x9E3779B9;
+    return h ^ (h >>> 16);
+  }
+}
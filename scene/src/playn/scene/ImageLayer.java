@@ -99,6 +99,7 @@ public class ImageLayer extends Layer {
       if (this.tile != null) this.tile.texture().release();
       this.tile = tile;
       checkOrigin();
+      invalidateBounds();
     }
     return this;
   }
@@ -134,6 +135,7 @@ public class ImageLayer extends Layer {
     forceWidth = width;
     forceHeight = height;
     checkOrigin();
+    invalidateBounds();
     return this;
   }
 
@@ -146,6 +148,7 @@ public class ImageLayer extends Layer {
   public ImageLayer setRegion (Rectangle region) {
     this.region = region;
     checkOrigin();
+    invalidateBounds();
     return this;
   }
 
@@ -166,6 +169,10 @@ public class ImageLayer extends Layer {
     setTile((Tile)null);
   }
 
+  @Override protected boolean paintsWithinBounds () {
+    return true;
+  }
+
   @Override protected void paintImpl (Surface surf) {
     if (tile != null) {
       float dwidth = width(), dheight = height();
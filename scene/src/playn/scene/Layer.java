@@ -17,10 +17,14 @@ package playn.scene;
 
 import pythagoras.f.AffineTransform;
 import pythagoras.f.FloatMath;
+import pythagoras.f.IRectangle;
 import pythagoras.f.MathUtil;
 import pythagoras.f.Point;
+import pythagoras.f.Rectangle;
+import pythagoras.f.Transforms;
 import pythagoras.f.Vector;
 import pythagoras.f.XY;
+import pythagoras.util.NoninvertibleTransformException;
 
 import react.Closeable;
 import react.Signal;
@@ -136,6 +140,7 @@ public abstract class Layer implements Closeable {
   /** Creates an unclipped layer. The {@link #paint} method must be overridden by the creator. */
   public Layer() {
     setFlag(Flag.VISIBLE, true);
+    setFlag(Flag.BDIRTY, true);
   }
 
   /** Returns the name of this layer. This defaults to the simple name of the class, but can be set
@@ -226,7 +231,10 @@ public abstract class Layer implements Closeable {
    * @return a reference to this layer for call chaining.
    */
   public Layer setVisible(boolean visible) {
-    setFlag(Flag.VISIBLE, visible);
+    if (visible() != visible) {
+      setFlag(Flag.VISIBLE, visible);
+      invalidateBounds();
+    }
     return this;
   }
 
@@ -276,6 +284,10 @@ public abstract class Layer implements Closeable {
    * If you intend to manipulate a layer's transform matrix directly, <em>do not</em> call those
    * other methods. Also do not expect {@link #scaleX}, {@link #scaleY}, or {@link #rotation} to
    * reflect the direct changes you've made to the transform matrix. They will not. </p>
+   *
+   * <p>Hit testing and {@link LayerUtil} notice direct changes to this matrix, but the cached
+   * {@link #bounds} (and damage tracking) do not: call {@link #invalidateBounds} after changing
+   * it. </p>
    */
   public AffineTransform transform() {
     if (isSet(Flag.XFDIRTY)) {
@@ -316,6 +328,7 @@ public abstract class Layer implements Closeable {
     this.alpha = alpha;
     int ialpha = (int)(0xFF * MathUtil.clamp(alpha, 0, 1));
     this.tint = (ialpha << 24) | (tint & 0xFFFFFF);
+    invalidate();
     return this;
   }
 
@@ -341,6 +354,7 @@ public abstract class Layer implements Closeable {
   public Layer setTint(int tint) {
     this.tint = tint;
     this.alpha = ((tint >> 24) & 0xFF) / 255f;
+    invalidate();
     return this;
   }
 
@@ -389,6 +403,7 @@ public abstract class Layer implements Closeable {
     this.originY = y;
     this.origin = Origin.FIXED;
     setFlag(Flag.ODIRTY, false);
+    invalidateBounds();
     return this;
   }
 
@@ -401,6 +416,7 @@ public abstract class Layer implements Closeable {
   public Layer setOrigin (Origin origin) {
     this.origin = origin;
     setFlag(Flag.ODIRTY, true);
+    invalidateBounds();
     return this;
   }
 
@@ -419,10 +435,19 @@ public abstract class Layer implements Closeable {
     if (depth != oldDepth) {
       this.depth = depth;
       if (parent != null) parent.depthChanged(this, oldDepth);
+      invalidate();
     }
     return this;
   }
 
+  // updates our depth without informing our parent, which is reordering its children in bulk
+  void applyDepth (float depth) {
+    if (depth != this.depth) {
+      this.depth = depth;
+      invalidate();
+    }
+  }
+
   /** Returns this layer's current translation in the x direction. */
   public float tx () { return transform.tx(); }
   /** Returns this layer's current translation in the y direction. */
@@ -448,6 +473,7 @@ public abstract class Layer implements Closeable {
    */
   public Layer setTx(float x) {
     transform.setTx(x);
+    invalidateBounds();
     return this;
   }
 
@@ -464,6 +490,7 @@ public abstract class Layer implements Closeable {
    */
   public Layer setTy(float y) {
     transform.setTy(y);
+    invalidateBounds();
     return this;
   }
 
@@ -480,6 +507,7 @@ public abstract class Layer implements Closeable {
    */
   public Layer setTranslation(float x, float y) {
     transform.setTranslation(x, y);
+    invalidateBounds();
     return this;
   }
 
@@ -544,6 +572,7 @@ public abstract class Layer implements Closeable {
     if (scaleX != sx) {
       scaleX = sx;
       setFlag(Flag.XFDIRTY, true);
+      invalidateBounds();
     }
     return this;
   }
@@ -565,6 +594,7 @@ public abstract class Layer implements Closeable {
     if (scaleY != sy) {
       scaleY = sy;
       setFlag(Flag.XFDIRTY, true);
+      invalidateBounds();
     }
     return this;
   }
@@ -589,6 +619,7 @@ public abstract class Layer implements Closeable {
       scaleX = sx;
       scaleY = sy;
       setFlag(Flag.XFDIRTY, true);
+      invalidateBounds();
     }
     return this;
   }
@@ -620,6 +651,7 @@ public abstract class Layer implements Closeable {
     if (rotation != angle) {
       rotation = angle;
       setFlag(Flag.XFDIRTY, true);
+      invalidateBounds();
     }
     return this;
   }
@@ -671,6 +703,7 @@ public abstract class Layer implements Closeable {
    */
   public Layer setHitTester (HitTester tester) {
     hitTester = tester;
+    if (parent != null) parent.childChanged(this);
     return this;
   }
 
@@ -701,9 +734,40 @@ public abstract class Layer implements Closeable {
    */
   public Layer setBatch (QuadBatch batch) {
     this.batch = batch;
+    invalidate();
     return this;
   }
 
+  /**
+   * Notes that this layer needs to be repainted. This only matters if damage tracking is enabled
+   * on the {@link RootLayer} to which this layer is added (see {@link RootLayer#setTrackDamage}),
+   * in which case the screen region covered by this layer will be repainted on the next frame.
+   *
+   * <p>The layer setters call this automatically. A custom layer must call it whenever something
+   * that it renders changes without going through one of those setters, as must code which
+   * updates a texture displayed by a layer. If a layer's size or {@link #transform} is changed
+   * other than via its setters, {@link #invalidateBounds} must be called instead.</p>
+   */
+  public void invalidate () {
+    if (damageRoot != null && !isSet(Flag.DIRTY)) {
+      setFlag(Flag.DIRTY, true);
+      damageRoot.addDirty(this);
+    }
+  }
+
+  /**
+   * Notes that the bounds of this layer (its size, origin or transform) have changed. This
+   * causes the cached bounds of this layer and its parents to be recomputed when next needed,
+   * and {@link #invalidate}s this layer. The layer setters call this automatically, but a custom
+   * layer must call it if its size changes, as must code which modifies a layer's {@link
+   * #transform} directly.
+   */
+  public void invalidateBounds () {
+    xfGen++;
+    markBoundsDirty();
+    invalidate();
+  }
+
   /**
    * Visits this layer and its children, in depth first order, with {@code visitor}.
    */
@@ -731,10 +795,24 @@ public abstract class Layer implements Closeable {
   }
 
   /**
-   * Renders this layer to {@code surf}, including its children.
+   * Renders this layer to {@code surf}, including its children. If {@code surf} is configured to
+   * {@link Surface#setCheckIntersection check intersection}, layers whose bounds lie entirely
+   * outside the surface's render target are not painted, nor are their children.
    */
   public final void paint (Surface surf) {
     if (!visible()) return;
+    if (surf.checkIntersection() && !inView(surf)) return;
+
+    // most layers have neither a tint nor a custom batch, in which case there is no surface state
+    // to change and then restore, so we can skip all that (and the try/finally)
+    if (batch == null && tint == Tint.NOOP_TINT) {
+      surf.concatenate(transform(), originX(), originY());
+      paintImpl(surf);
+      if (DEBUG_RECTS) {
+        drawDebugRect(surf);
+      }
+      return;
+    }
 
     int otint = surf.combineTint(tint);
     QuadBatch obatch = surf.pushBatch(batch);
@@ -779,21 +857,210 @@ public abstract class Layer implements Closeable {
     }
   }
 
+  /**
+   * Returns true if everything painted by this layer lies within its {@link #width} and {@link
+   * #height} (adjusted by its origin). Damage tracking uses this to determine the screen region
+   * affected by changes to this layer; layers which return false cause the entire view to be
+   * repainted when they change. Custom layers that paint only inside their bounds should override
+   * this method to return true.
+   */
+  protected boolean paintsWithinBounds () { return false; }
+
+  /**
+   * Returns the axis-aligned bounds of this layer and its children, in the coordinate system of
+   * this layer's parent. An invisible layer has empty bounds. Returns null if the bounds are not
+   * known, which is the case when this layer or one of its children does not {@link
+   * #paintsWithinBounds paint within its bounds}. The returned rectangle must not be modified.
+   *
+   * <p>Bounds are cached and recomputed only after this layer or one of its children has been
+   * changed via one of the layer setters (or {@link #invalidateBounds}).</p>
+   */
+  public IRectangle bounds () {
+    return parentBounds();
+  }
+
+  Rectangle parentBounds () {
+    if (isSet(Flag.BDIRTY)) {
+      Rectangle bounds = this.bounds;
+      if (bounds == null) bounds = this.bounds = new Rectangle();
+      boolean known = true;
+      if (!visible()) bounds.setBounds(0, 0, 0, 0);
+      else if (!(known = localBounds(bounds))) bounds.setBounds(0, 0, 0, 0);
+      else transformBounds(transform(), bounds.x - originX(), bounds.y - originY(),
+                           bounds.width, bounds.height, bounds);
+      setFlag(Flag.NOBOUNDS, !known);
+      setFlag(Flag.BDIRTY, false);
+    }
+    return isSet(Flag.NOBOUNDS) ? null : bounds;
+  }
+
+  // computes our bounds in our own coordinate system; returns false if they're not known
+  boolean localBounds (Rectangle into) {
+    if (!paintsWithinBounds()) return false;
+    into.setBounds(0, 0, width(), height());
+    return true;
+  }
+
+  // marks our bounds and those of our parents as needing to be recomputed
+  void markBoundsDirty () {
+    for (Layer layer = this; layer != null && !layer.isSet(Flag.BDIRTY); layer = layer.parent) {
+      layer.setFlag(Flag.BDIRTY, true);
+      if (layer.parent != null) layer.parent.childChanged(layer);
+    }
+  }
+
+  boolean hasHitTester () {
+    return hitTester != null;
+  }
+
+  // returns false if our bounds are known to lie outside the render target of {@code surf}
+  private boolean inView (Surface surf) {
+    Rectangle bounds = parentBounds();
+    if (bounds == null) return true;
+    if (bounds.width <= 0 || bounds.height <= 0) return false;
+    Rectangle view = viewBounds;
+    transformBounds(surf.tx(), bounds.x, bounds.y, bounds.width, bounds.height, view);
+    return surf.intersectsTarget(view.x, view.y, view.width, view.height);
+  }
+
+  static class World {
+    public final AffineTransform tx = new AffineTransform(), invTx = new AffineTransform();
+    // the local transform and origin from which tx was computed, so that we notice direct changes
+    // to the transform matrix, which do not bump xfGen
+    public final AffineTransform ltx = new AffineTransform();
+    public float ox, oy;
+    public int stamp, invStamp, xfGen, parentStamp;
+
+    public boolean sameLocal (AffineTransform ltx, float ox, float oy) {
+      AffineTransform c = this.ltx;
+      return ltx.m00 == c.m00 && ltx.m01 == c.m01 && ltx.m10 == c.m10 && ltx.m11 == c.m11 &&
+        ltx.tx == c.tx && ltx.ty == c.ty && ox == this.ox && oy == this.oy;
+    }
+  }
+
   void onAdd() {
     if (disposed()) throw new IllegalStateException("Illegal to use disposed layer: " + this);
+    if (parent != null) damageRoot = parent.damageRoot;
     setState(State.ADDED);
   }
   void onRemove() {
+    damageRoot = null;
     setState(State.REMOVED);
   }
-  void setParent(GroupLayer parent) { this.parent = parent; }
+
+  // recomputes our bounds (in root coordinates) and adds both our old and new bounds to the
+  // root's damage region; {@code ptx} is the transform from our parent's coordinates to the root
+  void updateDamage (RootLayer root, AffineTransform ptx, int level) {
+    setFlag(Flag.DIRTY, false);
+    Rectangle bounds = damageBounds;
+    if (bounds == null) bounds = damageBounds = new Rectangle();
+    else root.addDamage(bounds);
+    if (!visible()) bounds.setBounds(0, 0, 0, 0);
+    else {
+      AffineTransform ltx = root.damageTx(level);
+      Transforms.multiply(ptx, transform(), ltx);
+      ltx.translate(-originX(), -originY());
+      updateDamageBounds(root, ltx, level, bounds);
+      root.addDamage(bounds);
+    }
+  }
+
+  void updateDamageBounds (RootLayer root, AffineTransform ltx, int level, Rectangle into) {
+    if (paintsWithinBounds()) transformBounds(ltx, 0, 0, width(), height(), into);
+    else {
+      into.setBounds(0, 0, 0, 0);
+      root.damageAll();
+    }
+  }
+
+  // computes the axis-aligned bounds of the rect {@code (x, y, width, height)} under {@code xf}
+  static void transformBounds (AffineTransform xf, float x, float y, float width, float height,
+                               Rectangle into) {
+    float x1 = xf.m00*x + xf.m10*y + xf.tx, y1 = xf.m01*x + xf.m11*y + xf.ty;
+    float x2 = xf.m00*width + x1, y2 = xf.m01*width + y1;
+    float x3 = xf.m10*height + x1, y3 = xf.m11*height + y1;
+    float x4 = x2 + x3 - x1, y4 = y2 + y3 - y1;
+    float minX = Math.min(Math.min(x1, x2), Math.min(x3, x4));
+    float minY = Math.min(Math.min(y1, y2), Math.min(y3, y4));
+    float maxX = Math.max(Math.max(x1, x2), Math.max(x3, x4));
+    float maxY = Math.max(Math.max(y1, y2), Math.max(y3, y4));
+    into.setBounds(minX, minY, maxX - minX, maxY - minY);
+  }
+
+  // unions {@code r} into {@code into}, ignoring empty rectangles (which pythagoras does not)
+  static void union (Rectangle into, Rectangle r) {
+    if (r == null || r.width <= 0 || r.height <= 0) return;
+    if (into.width <= 0 || into.height <= 0) into.setBounds(r);
+    else {
+      float x1 = Math.min(into.x, r.x), y1 = Math.min(into.y, r.y);
+      float x2 = Math.max(into.maxX(), r.maxX()), y2 = Math.max(into.maxY(), r.maxY());
+      into.setBounds(x1, y1, x2-x1, y2-y1);
+    }
+  }
+  void setParent(GroupLayer parent) {
+    this.parent = parent;
+    xfGen++;
+  }
+
+  // returns the transform from our coordinates to those of the root of our scene graph; this
+  // includes our origin, and the transforms (and origins) of all of our parents
+  AffineTransform worldTransform () {
+    return validateWorld().tx;
+  }
+
+  // returns the inverse of {@link #worldTransform}; throws NoninvertibleTransformException if the
+  // world transform is degenerate
+  AffineTransform inverseWorldTransform () {
+    World world = validateWorld();
+    if (world.invStamp != world.stamp) {
+      AffineTransform wtx = world.tx;
+      float det = wtx.m00 * wtx.m11 - wtx.m01 * wtx.m10;
+      if (det == 0) throw new NoninvertibleTransformException(wtx.toString());
+      float rdet = 1 / det;
+      world.invTx.setTransform(
+        wtx.m11 * rdet, -wtx.m01 * rdet, -wtx.m10 * rdet, wtx.m00 * rdet,
+        (wtx.m10 * wtx.ty - wtx.m11 * wtx.tx) * rdet, (wtx.m01 * wtx.tx - wtx.m00 * wtx.ty) * rdet);
+      world.invStamp = world.stamp;
+    }
+    return world.invTx;
+  }
+
+  // ensures that our cached world transform is up to date and returns it; this walks up the parent
+  // chain comparing generations, but only recomputes transforms that are out of date
+  World validateWorld () {
+    World pworld = (parent == null) ? null : parent.validateWorld();
+    int pstamp = (pworld == null) ? 0 : pworld.stamp;
+    AffineTransform ltx = transform();
+    float ox = originX(), oy = originY();
+    World world = this.world;
+    if (world == null) world = this.world = new World();
+    else if (world.stamp != 0 && world.xfGen == xfGen && world.parentStamp == pstamp &&
+             world.sameLocal(ltx, ox, oy)) return world;
+
+    AffineTransform wtx = world.tx;
+    world.ltx.setTransform(ltx.m00, ltx.m01, ltx.m10, ltx.m11, ltx.tx, ltx.ty);
+    world.ox = ox;
+    world.oy = oy;
+    wtx.setTransform(ltx.m00, ltx.m01, ltx.m10, ltx.m11,
+                     ltx.tx - ltx.m00 * ox - ltx.m10 * oy, ltx.ty - ltx.m01 * ox - ltx.m11 * oy);
+    if (pworld != null) Transforms.multiply(pworld.tx, wtx, wtx);
+    world.xfGen = xfGen;
+    world.parentStamp = pstamp;
+    // bump our stamp so that our children know to recompute theirs; stamps are never zero, so
+    // that "stamp != 0" means "computed"
+    if (++world.stamp == 0) world.stamp = 1;
+    return world;
+  }
 
   /** Enumerates bit flags tracked by this layer. */
   protected static enum Flag {
     VISIBLE(1 << 0),
     INTERACTIVE(1 << 1),
     XFDIRTY(1 << 2),
-    ODIRTY(1 << 3);
+    ODIRTY(1 << 3),
+    DIRTY(1 << 4),
+    BDIRTY(1 << 5),
+    NOBOUNDS(1 << 6);
 
     public final int bitmask;
 
@@ -844,6 +1111,17 @@ public abstract class Layer implements Closeable {
   private HitTester hitTester;
   private QuadBatch batch;
 
+  // the root with which we register damage, if damage tracking is enabled
+  RootLayer damageRoot;
+  // our bounds (in root coordinates) as of the last damage computation
+  Rectangle damageBounds;
+  // our bounds in our parent's coordinates, see {@link #bounds}
+  private Rectangle bounds;
+  // incremented whenever our transform, origin or parent changes
+  private int xfGen;
+  // our cached world transforms, created on demand
+  private World world;
+
   // these values are cached in the layer to make the getters return sane values rather than have
   // to extract the values from the affine transform matrix (which is expensive, doesn't preserve
   // sign, and wraps rotation around at pi)
@@ -859,6 +1137,8 @@ public abstract class Layer implements Closeable {
   protected float alpha = 1;
 
   protected static int paintNestLevel;
+  // used to cull layers during painting, which is only ever done on one thread
+  private static final Rectangle viewBounds = new Rectangle();
 
   protected final static int[] DEBUG_COLORS = {
     0xFFFFFFFF, // white (root layer, never visible)
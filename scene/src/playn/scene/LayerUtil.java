@@ -34,7 +34,7 @@ public class LayerUtil {
    * coordinates. The results are stored into {@code into}, which is returned for convenience.
    */
   public static Point layerToScreen(Layer layer, XY point, Point into) {
-    return layerToParent(layer, null, point, into);
+    return layer.worldTransform().transform(into.set(point), into);
   }
 
   /**
@@ -82,9 +82,7 @@ public class LayerUtil {
    * , which is returned for convenience.
    */
   public static Point screenToLayer(Layer layer, XY point, Point into) {
-    Layer parent = layer.parent();
-    XY cur = (parent == null) ? point : screenToLayer(parent, point, into);
-    return parentToLayer(layer, cur, into);
+    return layer.inverseWorldTransform().transform(into.set(point), into);
   }
 
   /**
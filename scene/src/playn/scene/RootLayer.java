@@ -13,13 +13,26 @@
  */
 package playn.scene;
 
+import java.util.ArrayList;
+import java.util.List;
+
+import pythagoras.f.AffineTransform;
+import pythagoras.f.Rectangle;
+import pythagoras.f.Transforms;
+
 /**
  * Serves as the root of the scene graph. This is just a {@link GroupLayer} with minor tweaks to
  * ensure that when layers are added to it, they transition properly to the "added to scene graph"
- * state.
+ * state. It also optionally tracks the region of the view damaged by changes to its layers, which
+ * allows {@link SceneGame} to avoid repainting parts of the view that have not changed.
  */
 public class RootLayer extends GroupLayer {
 
+  private final List<Layer> dirty = new ArrayList<>();
+  private final List<AffineTransform> damageTxs = new ArrayList<>();
+  private final Rectangle damage = new Rectangle();
+  private boolean trackDamage, remeasure, damageAll;
+
   /** Creates an unclipped root layer. This is almost always what you want. */
   public RootLayer () {
     setState(State.ADDED);
@@ -30,4 +43,108 @@ public class RootLayer extends GroupLayer {
     super(width, height);
     setState(State.ADDED);
   }
+
+  /** Returns whether damage tracking is enabled for this scene graph. */
+  public boolean trackDamage () { return trackDamage; }
+
+  /**
+   * Enables or disables damage tracking for this scene graph. When enabled, changes to the layers
+   * in this scene graph are noted (see {@link Layer#invalidate}) and {@link #computeDamage} can be
+   * used to determine which region of the view must be repainted to reflect those changes.
+   */
+  public void setTrackDamage (boolean trackDamage) {
+    if (this.trackDamage == trackDamage) return;
+    this.trackDamage = trackDamage;
+    final RootLayer droot = trackDamage ? this : null;
+    visit(new Visitor() {
+      public void visit (Layer layer, int depth) {
+        layer.damageRoot = droot;
+        layer.damageBounds = null;
+        layer.setFlag(Flag.DIRTY, false);
+      }
+    });
+    dirty.clear();
+    // the first computation after tracking is enabled must measure (and damage) everything
+    remeasure = trackDamage;
+  }
+
+  /**
+   * Computes the region of the view which has changed since the last call to this method, in
+   * view coordinates, and stores it into {@code into}. The damaged region is clipped to {@code
+   * (0, 0, width, height)}. If a changed layer does not know its bounds (see {@link
+   * Layer#paintsWithinBounds}), the entire view is considered damaged.
+   *
+   * @return true if some part of the view was damaged, false if nothing changed.
+   * @throws IllegalStateException if damage tracking is not enabled.
+   */
+  public boolean computeDamage (float width, float height, Rectangle into) {
+    if (!trackDamage) throw new IllegalStateException("Damage tracking not enabled.");
+    damage.setBounds(0, 0, 0, 0);
+    AffineTransform ptx = damageTx(0);
+    for (int ii = 0; ii < dirty.size(); ii++) {
+      Layer layer = dirty.get(ii);
+      // if we were updated along with a dirty ancestor, we're already done
+      if (!layer.isSet(Flag.DIRTY)) continue;
+      // compute the transform from our parent's coordinates to the root, and note whether we're
+      // still in this scene graph and visible
+      ptx.setTransform(1, 0, 0, 1, 0, 0);
+      boolean shown = true;
+      Layer top = layer;
+      for (Layer pp = layer.parent(); pp != null; pp = pp.parent()) {
+        if (!pp.visible()) shown = false;
+        ptx.tx -= pp.originX();
+        ptx.ty -= pp.originY();
+        Transforms.multiply(pp.transform(), ptx, ptx);
+        top = pp;
+      }
+      if (top == this && shown) layer.updateDamage(this, ptx, 1);
+      else {
+        // we've been removed or hidden, so we just damage the region where we were last painted
+        layer.setFlag(Flag.DIRTY, false);
+        if (layer.damageBounds != null) {
+          addDamage(layer.damageBounds);
+          layer.damageBounds.setBounds(0, 0, 0, 0);
+        }
+        // if we were moved directly into some other damage tracking scene graph, tell it
+        if (layer.damageRoot != null && layer.damageRoot != this) layer.invalidate();
+      }
+    }
+    dirty.clear();
+    if (remeasure) {
+      remeasure = false;
+      damageAll = true;
+      updateDamage(this, ptx.setTransform(1, 0, 0, 1, 0, 0), 1);
+    }
+
+    if (damageAll) {
+      damageAll = false;
+      into.setBounds(0, 0, width, height);
+      return width > 0 && height > 0;
+    }
+    float x1 = Math.max(damage.x, 0), y1 = Math.max(damage.y, 0);
+    float x2 = Math.min(damage.maxX(), width), y2 = Math.min(damage.maxY(), height);
+    if (damage.width <= 0 || damage.height <= 0 || x2 <= x1 || y2 <= y1) {
+      into.setBounds(0, 0, 0, 0);
+      return false;
+    }
+    into.setBounds(x1, y1, x2-x1, y2-y1);
+    return true;
+  }
+
+  void addDirty (Layer layer) {
+    dirty.add(layer);
+  }
+
+  void addDamage (Rectangle bounds) {
+    union(damage, bounds);
+  }
+
+  void damageAll () {
+    damageAll = true;
+  }
+
+  AffineTransform damageTx (int level) {
+    while (damageTxs.size() <= level) damageTxs.add(new AffineTransform());
+    return damageTxs.get(level);
+  }
 }
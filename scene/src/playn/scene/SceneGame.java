@@ -14,6 +14,9 @@
 package playn.scene;
 
 import pythagoras.f.AffineTransform;
+import pythagoras.f.IDimension;
+import pythagoras.f.MathUtil;
+import pythagoras.f.Rectangle;
 
 import playn.core.*;
 import react.Slot;
@@ -29,6 +32,8 @@ public abstract class SceneGame extends Game {
   public final Surface viewSurf;
   public final RootLayer rootLayer;
   private final AffineTransform savedTransform;
+  private final Rectangle damage = new Rectangle();
+  private int paintedArea;
 
   public SceneGame (Platform plat, int updateRate) {
     super(plat, updateRate);
@@ -66,16 +71,59 @@ public abstract class SceneGame extends Game {
     setClearColor(red, green, blue, alpha);
   }
 
+  /**
+   * Configures whether the scene graph is painted only where it has changed. When enabled, the
+   * root layer tracks damage (see {@link RootLayer#setTrackDamage}), frames in which nothing
+   * changed are not painted at all, and other frames repaint only the damaged region of the view.
+   *
+   * <p><em>Note:</em> this requires that the frame buffer retain its contents from one frame to
+   * the next, which is not the case on all platforms (nor with all buffer swap configurations).
+   * Also, any layer which changes what it renders without calling one of the layer setters must
+   * call {@link Layer#invalidate} when it does so.</p>
+   */
+  public void setTrackDamage (boolean trackDamage) {
+    rootLayer.setTrackDamage(trackDamage);
+  }
+
+  /**
+   * Returns the number of pixels repainted by the most recently painted frame. This is the area
+   * of the entire view unless damage tracking is enabled (see {@link #setTrackDamage}).
+   */
+  public int paintedArea () {
+    return paintedArea;
+  }
+
   /**
    * Renders the main scene graph into the OpenGL frame buffer.
    */
   protected void paintScene () {
+    RenderTarget target = plat.graphics().defaultRenderTarget;
+    int tw = target.width(), th = target.height();
+    int cx = 0, cy = 0, cw = tw, ch = th;
+    if (rootLayer.trackDamage()) {
+      IDimension size = plat.graphics().viewSize;
+      if (!rootLayer.computeDamage(size.width(), size.height(), damage)) {
+        paintedArea = 0;
+        return;
+      }
+      // convert the damaged region from view coordinates into pixels
+      float sx = target.xscale(), sy = target.yscale();
+      cx = Math.max(MathUtil.ifloor(damage.x * sx), 0);
+      cy = Math.max(MathUtil.ifloor(damage.y * sy), 0);
+      cw = Math.min(MathUtil.iceil(damage.maxX() * sx), tw) - cx;
+      ch = Math.min(MathUtil.iceil(damage.maxY() * sy), th) - cy;
+    }
+    boolean clipped = (cx > 0 || cy > 0 || cw < tw || ch < th);
+    paintedArea = cw * ch;
+
     savedTransform.set(viewSurf.tx());
     viewSurf.begin();
+    if (clipped) viewSurf.startClipped(cx, cy, cw, ch);
     viewSurf.clear(cred, cgreen, cblue, calpha);
     try {
       rootLayer.paint(viewSurf);
     } finally {
+      if (clipped) viewSurf.endClipped();
       viewSurf.end();
       viewSurf.tx().set(savedTransform);
     }
@@ -0,0 +1,101 @@
+/**
+ * Copyright 2010-2015 The PlayN Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package playn.scene;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Prepares a scene graph for painting by bringing the cached world transforms and bounds of all
+ * of its layers up to date, processing independent subtrees in parallel on a {@link
+ * ForkJoinPool}. The bounds are used to cull layers during painting (see {@link
+ * playn.core.Surface#setCheckIntersection}) and the world transforms are used for hit testing and
+ * coordinate conversion (see {@link LayerUtil}). Both would otherwise be computed lazily on the
+ * main thread, as needed. The results are identical to those computed lazily.
+ *
+ * <p>{@link #prepare} blocks until the pass is complete, so it should be called on the main
+ * thread, after the scene graph has been updated for the frame and before it is painted. No layer
+ * may be modified while the pass is running. Note that custom layers' {@link Layer#width} and
+ * {@link Layer#height} methods will be called on the pool's threads.</p>
+ *
+ * <p>This class is not available in the HTML backend.</p>
+ */
+public class ScenePreparer {
+
+  private final ForkJoinPool pool;
+  private final int threshold;
+
+  /** Creates a preparer which uses {@code pool} and splits groups of more than 256 children. */
+  public ScenePreparer (ForkJoinPool pool) {
+    this(pool, 256);
+  }
+
+  /**
+   * Creates a preparer which uses {@code pool}.
+   *
+   * @param threshold the number of children of a group layer which will be processed by a single
+   * task; larger groups are split into multiple tasks.
+   */
+  public ScenePreparer (ForkJoinPool pool, int threshold) {
+    if (threshold < 1) throw new IllegalArgumentException("Threshold must be at least one.");
+    this.pool = pool;
+    this.threshold = threshold;
+  }
+
+  /** Brings the world transforms and bounds of {@code root} and all of its descendants up to
+    * date. */
+  public void prepare (Layer root) {
+    if (pool.getParallelism() > 1 && root instanceof GroupLayer) pool.invoke(new RootTask(root));
+    else prepareTree(root, false);
+  }
+
+  private void prepareTree (Layer layer, boolean parallel) {
+    // our parent's world transform is up to date, so this computes only our own
+    layer.validateWorld();
+    if (layer instanceof GroupLayer) {
+      GroupLayer group = (GroupLayer)layer;
+      int count = group.children();
+      if (parallel && count > threshold) new ChildrenTask(group, 0, count).invoke();
+      else for (int ii = 0; ii < count; ii++) prepareTree(group.childAt(ii), parallel);
+    }
+    // all of our children's bounds are up to date, so this just combines them
+    layer.parentBounds();
+  }
+
+  private class RootTask extends RecursiveAction {
+    private final Layer root;
+    public RootTask (Layer root) { this.root = root; }
+    @Override protected void compute () { prepareTree(root, true); }
+  }
+
+  private class ChildrenTask extends RecursiveAction {
+    private final GroupLayer group;
+    private final int from, to;
+
+    public ChildrenTask (GroupLayer group, int from, int to) {
+      this.group = group;
+      this.from = from;
+      this.to = to;
+    }
+
+    @Override protected void compute () {
+      if (to - from > threshold) {
+        int mid = (from + to) >>> 1;
+        invokeAll(new ChildrenTask(group, from, mid), new ChildrenTask(group, mid, to));
+      } else {
+        for (int ii = from; ii < to; ii++) prepareTree(group.childAt(ii), true);
+      }
+    }
+  }
+}
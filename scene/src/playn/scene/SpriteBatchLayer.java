@@ -0,0 +1,390 @@
+/**
+ * Copyright 2010-2015 The PlayN Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package playn.scene;
+
+import java.util.Arrays;
+
+import pythagoras.f.AffineTransform;
+import pythagoras.f.FloatMath;
+import pythagoras.f.Rectangle;
+
+import playn.core.QuadBatch;
+import playn.core.Surface;
+import playn.core.Texture;
+import playn.core.Tint;
+
+/**
+ * Renders a large number of sprites, all drawn from a single texture, without the overhead of a
+ * layer per sprite. Sprite state (position, rotation, scale, tint and frame) is stored in parallel
+ * primitive arrays, and all sprites are added to the current {@link QuadBatch} in a single loop.
+ *
+ * <p>Each sprite displays a <em>frame</em>, which is a region of the texture added via {@link
+ * #addFrame}. Frame 0 is the entire texture. A sprite is drawn centered on its position, scaled
+ * and rotated around its center. Sprites are drawn in index order, and are identified by their
+ * index, which changes only when sprites are removed (see {@link #remove}).</p>
+ */
+public class SpriteBatchLayer extends Layer {
+
+  private final Texture texture;
+
+  // frame data: half-width and half-height (display units) and texture coordinates
+  private float[] fhws = new float[4], fhhs = new float[4];
+  private float[] fsls = new float[4], fsts = new float[4], fsrs = new float[4], fsbs = new float[4];
+  private int frameCount;
+
+  // sprite data
+  private float[] xs, ys, rots, scales;
+  private float[] coss, sins; // scale * cos(rot) and scale * sin(rot)
+  private int[] tints, frames;
+  private int count;
+
+  /** Creates a sprite batch layer which renders sprites from {@code texture}. The texture is
+    * referenced while this layer is in use and released when it is {@link #close}d. */
+  public SpriteBatchLayer (Texture texture) {
+    this(texture, 16);
+  }
+
+  /** Creates a sprite batch layer which renders sprites from {@code texture}, with room for
+    * {@code capacity} sprites before it must expand its internal arrays. */
+  public SpriteBatchLayer (Texture texture, int capacity) {
+    this.texture = texture;
+    texture.reference();
+    capacity = Math.max(capacity, 1);
+    xs = new float[capacity];
+    ys = new float[capacity];
+    rots = new float[capacity];
+    scales = new float[capacity];
+    coss = new float[capacity];
+    sins = new float[capacity];
+    tints = new int[capacity];
+    frames = new int[capacity];
+    addFrame(0, 0, texture.displayWidth, texture.displayHeight);
+  }
+
+  /** Returns the texture from which this layer's sprites are drawn. */
+  public Texture texture () { return texture; }
+
+  /**
+   * Adds a frame which displays the region {@code (x, y, width, height)} (in display units) of
+   * this layer's texture.
+   *
+   * @return the index of the new frame.
+   */
+  public int addFrame (float x, float y, float width, float height) {
+    if (frameCount == fhws.length) {
+      int ncap = frameCount*2;
+      fhws = Arrays.copyOf(fhws, ncap);
+      fhhs = Arrays.copyOf(fhhs, ncap);
+      fsls = Arrays.copyOf(fsls, ncap);
+      fsts = Arrays.copyOf(fsts, ncap);
+      fsrs = Arrays.copyOf(fsrs, ncap);
+      fsbs = Arrays.copyOf(fsbs, ncap);
+    }
+    float tw = texture.displayWidth, th = texture.displayHeight;
+    int frame = frameCount++;
+    fhws[frame] = width/2;
+    fhhs[frame] = height/2;
+    fsls[frame] = x/tw;
+    fsts[frame] = y/th;
+    fsrs[frame] = (x+width)/tw;
+    fsbs[frame] = (y+height)/th;
+    return frame;
+  }
+
+  /** Returns the number of frames configured for this layer. */
+  public int frames () { return frameCount; }
+
+  /** Returns the number of sprites in this layer. */
+  public int size () { return count; }
+
+  /**
+   * Adds a sprite which displays {@code frame}, centered at {@code (x, y)}, with no rotation, a
+   * scale of one, and no tint.
+   *
+   * @return the index of the new sprite.
+   */
+  public int add (int frame, float x, float y) {
+    checkFrame(frame);
+    if (count == xs.length) ensureCapacity(count*2);
+    int idx = count++;
+    xs[idx] = x;
+    ys[idx] = y;
+    rots[idx] = 0;
+    scales[idx] = 1;
+    coss[idx] = 1;
+    sins[idx] = 0;
+    tints[idx] = Tint.NOOP_TINT;
+    frames[idx] = frame;
+    changed();
+    return idx;
+  }
+
+  /**
+   * Removes the sprite at {@code index}. To avoid shifting all subsequent sprites, the last sprite
+   * is moved into the vacated index. Thus removing a sprite changes the index (and the drawing
+   * order) of the last sprite.
+   */
+  public void remove (int index) {
+    checkIndex(index);
+    int last = --count;
+    if (index != last) {
+      xs[index] = xs[last];
+      ys[index] = ys[last];
+      rots[index] = rots[last];
+      scales[index] = scales[last];
+      coss[index] = coss[last];
+      sins[index] = sins[last];
+      tints[index] = tints[last];
+      frames[index] = frames[last];
+    }
+    changed();
+  }
+
+  /** Removes all sprites from this layer. */
+  public void clear () {
+    count = 0;
+    changed();
+  }
+
+  /** Ensures that this layer can hold {@code capacity} sprites without expanding its arrays. */
+  public void ensureCapacity (int capacity) {
+    if (capacity <= xs.length) return;
+    xs = Arrays.copyOf(xs, capacity);
+    ys = Arrays.copyOf(ys, capacity);
+    rots = Arrays.copyOf(rots, capacity);
+    scales = Arrays.copyOf(scales, capacity);
+    coss = Arrays.copyOf(coss, capacity);
+    sins = Arrays.copyOf(sins, capacity);
+    tints = Arrays.copyOf(tints, capacity);
+    frames = Arrays.copyOf(frames, capacity);
+  }
+
+  /** Returns the x position of sprite {@code index}. */
+  public float spriteX (int index) { checkIndex(index); return xs[index]; }
+  /** Returns the y position of sprite {@code index}. */
+  public float spriteY (int index) { checkIndex(index); return ys[index]; }
+  /** Returns the rotation of sprite {@code index}. */
+  public float spriteRotation (int index) { checkIndex(index); return rots[index]; }
+  /** Returns the scale of sprite {@code index}. */
+  public float spriteScale (int index) { checkIndex(index); return scales[index]; }
+  /** Returns the tint of sprite {@code index}. */
+  public int spriteTint (int index) { checkIndex(index); return tints[index]; }
+  /** Returns the frame displayed by sprite {@code index}. */
+  public int spriteFrame (int index) { checkIndex(index); return frames[index]; }
+
+  /** Moves sprite {@code index} such that it is centered at {@code (x, y)}. */
+  public SpriteBatchLayer setSpritePosition (int index, float x, float y) {
+    checkIndex(index);
+    xs[index] = x;
+    ys[index] = y;
+    changed();
+    return this;
+  }
+
+  /** Sets the rotation (in radians) of sprite {@code index}. */
+  public SpriteBatchLayer setSpriteRotation (int index, float angle) {
+    checkIndex(index);
+    rots[index] = angle;
+    updateMatrix(index);
+    changed();
+    return this;
+  }
+
+  /** Sets the (uniform) scale of sprite {@code index}. */
+  public SpriteBatchLayer setSpriteScale (int index, float scale) {
+    checkIndex(index);
+    scales[index] = scale;
+    updateMatrix(index);
+    changed();
+    return this;
+  }
+
+  /** Sets the tint of sprite {@code index}. This is combined with the tint of this layer. */
+  public SpriteBatchLayer setSpriteTint (int index, int tint) {
+    checkIndex(index);
+    tints[index] = tint;
+    invalidate();
+    return this;
+  }
+
+  /** Configures sprite {@code index} to display {@code frame}. */
+  public SpriteBatchLayer setSpriteFrame (int index, int frame) {
+    checkIndex(index);
+    checkFrame(frame);
+    frames[index] = frame;
+    changed();
+    return this;
+  }
+
+  /**
+   * Updates the positions of sprites {@code [first, first+count)} from {@code xys}, which
+   * contains {@code x, y} pairs starting at {@code offset}.
+   */
+  public SpriteBatchLayer setPositions (int first, int count, float[] xys, int offset) {
+    checkRange(first, count);
+    float[] xs = this.xs, ys = this.ys;
+    for (int ii = first, ll = first+count, pp = offset; ii < ll; ii++) {
+      xs[ii] = xys[pp++];
+      ys[ii] = xys[pp++];
+    }
+    changed();
+    return this;
+  }
+
+  /**
+   * Translates sprites {@code [first, first+count)} by the velocities in {@code dxys}, which
+   * contains {@code dx, dy} pairs starting at {@code offset}, scaled by {@code dt}. This is
+   * convenient for simple particle systems.
+   */
+  public SpriteBatchLayer translate (int first, int count, float[] dxys, int offset, float dt) {
+    checkRange(first, count);
+    float[] xs = this.xs, ys = this.ys;
+    for (int ii = first, ll = first+count, pp = offset; ii < ll; ii++) {
+      xs[ii] += dxys[pp++] * dt;
+      ys[ii] += dxys[pp++] * dt;
+    }
+    changed();
+    return this;
+  }
+
+  /**
+   * Updates the rotations of sprites {@code [first, first+count)} from {@code angles}, starting
+   * at {@code offset}.
+   */
+  public SpriteBatchLayer setRotations (int first, int count, float[] angles, int offset) {
+    checkRange(first, count);
+    for (int ii = first, ll = first+count, pp = offset; ii < ll; ii++) {
+      rots[ii] = angles[pp++];
+      updateMatrix(ii);
+    }
+    changed();
+    return this;
+  }
+
+  /**
+   * Updates the scales of sprites {@code [first, first+count)} from {@code scales}, starting at
+   * {@code offset}.
+   */
+  public SpriteBatchLayer setScales (int first, int count, float[] scales, int offset) {
+    checkRange(first, count);
+    for (int ii = first, ll = first+count, pp = offset; ii < ll; ii++) {
+      this.scales[ii] = scales[pp++];
+      updateMatrix(ii);
+    }
+    changed();
+    return this;
+  }
+
+  /**
+   * Updates the tints of sprites {@code [first, first+count)} from {@code tints}, starting at
+   * {@code offset}.
+   */
+  public SpriteBatchLayer setTints (int first, int count, int[] tints, int offset) {
+    checkRange(first, count);
+    System.arraycopy(tints, offset, this.tints, first, count);
+    invalidate();
+    return this;
+  }
+
+  /**
+   * Adds all of this layer's sprites to {@code batch}, transformed by {@code xf} and tinted by
+   * {@code tint}. This is called by {@link #paintImpl}, but is exposed so that sprites can be
+   * rendered into a batch directly.
+   */
+  public void addToBatch (QuadBatch batch, int tint, AffineTransform xf) {
+    if (count == 0) return;
+    batch.setTexture(texture);
+    float m00 = xf.m00, m01 = xf.m01, m10 = xf.m10, m11 = xf.m11, tx = xf.tx, ty = xf.ty;
+    float[] xs = this.xs, ys = this.ys, coss = this.coss, sins = this.sins;
+    float[] fhws = this.fhws, fhhs = this.fhhs;
+    float[] fsls = this.fsls, fsts = this.fsts, fsrs = this.fsrs, fsbs = this.fsbs;
+    int[] tints = this.tints, frames = this.frames;
+    for (int ii = 0, ll = count; ii < ll; ii++) {
+      float c = coss[ii], s = sins[ii], x = xs[ii], y = ys[ii];
+      int frame = frames[ii], stint = tints[ii];
+      float hw = fhws[frame], hh = fhhs[frame];
+      // concatenate the sprite's transform: rotate and scale, then translate to (x, y)
+      batch.addQuad((stint == Tint.NOOP_TINT) ? tint : Tint.combine(stint, tint),
+                    m00*c + m10*s, m01*c + m11*s, m10*c - m00*s, m11*c - m01*s,
+                    m00*x + m10*y + tx, m01*x + m11*y + ty,
+                    -hw, -hh, hw, hh, fsls[frame], fsts[frame], fsrs[frame], fsbs[frame]);
+    }
+  }
+
+  @Override public void close () {
+    boolean wasDisposed = disposed();
+    super.close();
+    if (!wasDisposed) texture.release();
+    count = 0;
+  }
+
+  @Override boolean localBounds (Rectangle into) {
+    into.setBounds(0, 0, 0, 0);
+    if (count <= 0) return true;
+    float minX = Float.MAX_VALUE, minY = Float.MAX_VALUE;
+    float maxX = -Float.MAX_VALUE, maxY = -Float.MAX_VALUE;
+    for (int ii = 0; ii < count; ii++) {
+      // use a sprite's bounding circle so that we need not care about its rotation
+      int frame = frames[ii];
+      float hw = fhws[frame], hh = fhhs[frame];
+      float r = Math.abs(scales[ii]) * FloatMath.sqrt(hw*hw + hh*hh);
+      minX = Math.min(minX, xs[ii] - r);
+      minY = Math.min(minY, ys[ii] - r);
+      maxX = Math.max(maxX, xs[ii] + r);
+      maxY = Math.max(maxY, ys[ii] + r);
+    }
+    into.setBounds(minX, minY, maxX-minX, maxY-minY);
+    return true;
+  }
+
+  @Override void updateDamageBounds (RootLayer root, AffineTransform ltx, int level,
+                                     Rectangle into) {
+    // we know where our sprites are, so a change to them need only damage the area they cover
+    localBounds(into);
+    transformBounds(ltx, into.x, into.y, into.width, into.height, into);
+  }
+
+  @Override protected void paintImpl (Surface surf) {
+    addToBatch(surf.batch(), surf.tint(), surf.tx());
+  }
+
+  private void updateMatrix (int index) {
+    float rot = rots[index], scale = scales[index];
+    coss[index] = scale * FloatMath.cos(rot);
+    sins[index] = scale * FloatMath.sin(rot);
+  }
+
+  // notes that our sprites changed in a way that affects our bounds; we don't use
+  // invalidateBounds() because our own transform has not changed
+  private void changed () {
+    markBoundsDirty();
+    invalidate();
+  }
+
+  private void checkIndex (int index) {
+    if (index < 0 || index >= count) throw new IndexOutOfBoundsException(
+      "Invalid sprite index " + index + " (have " + count + " sprites)");
+  }
+
+  private void checkRange (int first, int count) {
+    if (first < 0 || count < 0 || first + count > this.count) throw new IndexOutOfBoundsException(
+      "Invalid sprite range [" + first + ", " + (first+count) + ") (have " + this.count +
+      " sprites)");
+  }
+
+  private void checkFrame (int frame) {
+    if (frame < 0 || frame >= frameCount) throw new IllegalArgumentException(
+      "Invalid frame " + frame + " (have " + frameCount + " frames)");
+  }
+}
@@ -24,6 +24,12 @@ import java.util.Random;
 import org.junit.Test;
 import static org.junit.Assert.*;
 
+import pythagoras.f.FloatMath;
+import pythagoras.f.Point;
+import pythagoras.f.Rectangle;
+
+import playn.core.Surface;
+
 /**
  * Tests parts of {@link GroupLayer}.
  */
@@ -68,6 +74,33 @@ public class GroupLayerTest {
     }
   }
 
+  @Test public void testSetDepths () {
+    GroupLayer group = new GroupLayer();
+    for (Layer l : createLayers()) group.add(l);
+    Random rando = new Random(42);
+    for (int iter = 0; iter < 50; iter++) {
+      List<Layer> before = new ArrayList<Layer>();
+      float[] depths = new float[group.children()];
+      for (int ii = 0; ii < depths.length; ii++) {
+        before.add(group.childAt(ii));
+        depths[ii] = rando.nextInt(5);
+      }
+      group.setDepths(depths);
+      validateOrder(group);
+      // each child got its new depth, and children with equal depths kept their relative order
+      for (int ii = 0; ii < depths.length; ii++) assertEquals(depths[ii], before.get(ii).depth(), 0);
+      for (int ii = 1; ii < depths.length; ii++) {
+        Layer prev = group.childAt(ii-1), cur = group.childAt(ii);
+        if (prev.depth() == cur.depth()) assertTrue(before.indexOf(prev) < before.indexOf(cur));
+      }
+    }
+
+    try {
+      group.setDepths(new float[group.children()+1]);
+      fail("setDepths must require one depth per child");
+    } catch (IllegalArgumentException iae) {} // expected
+  }
+
   @Test public void testLifecycle () {
     RootLayer root = new RootLayer();
     GroupLayer group = new GroupLayer();
@@ -110,6 +143,136 @@ public class GroupLayerTest {
     assertEquals(Layer.State.DISPOSED, leaf1.state.get());
   }
 
+  @Test public void testBounds () {
+    GroupLayer group = new GroupLayer();
+    ImageLayer a = new ImageLayer().setSize(10, 20), b = new ImageLayer().setSize(10, 10);
+    group.addAt(a, 5, 5);
+    group.addAt(b, 50, 50);
+    assertEquals(new Rectangle(5, 5, 10, 20), a.bounds());
+    assertEquals(new Rectangle(5, 5, 55, 55), group.bounds());
+
+    // changes to children are reflected in their parent's (cached) bounds
+    b.setOrigin(Layer.Origin.CENTER);
+    assertEquals(new Rectangle(5, 5, 50, 50), group.bounds());
+    b.setVisible(false);
+    assertEquals(new Rectangle(5, 5, 10, 20), group.bounds());
+    a.setRotation(FloatMath.HALF_PI);
+    assertEquals(-15, a.bounds().x(), 1e-5f);
+    assertEquals(5, a.bounds().y(), 1e-5f);
+    assertEquals(20, a.bounds().width(), 1e-5f);
+    assertEquals(10, a.bounds().height(), 1e-5f);
+
+    // a group's own transform is applied to its bounds
+    a.setRotation(0);
+    group.setTranslation(100, 100).setScale(2);
+    assertEquals(new Rectangle(110, 110, 20, 40), group.bounds());
+
+    // a clipped group's bounds are its clip rect, regardless of its children
+    GroupLayer clipped = new GroupLayer(30, 30);
+    clipped.addAt(new ImageLayer().setSize(100, 100), 10, 10);
+    assertEquals(new Rectangle(0, 0, 30, 30), clipped.bounds());
+    group.add(clipped);
+    assertEquals(new Rectangle(100, 100, 60, 60), group.bounds());
+
+    // a layer that paints who knows what has unknown bounds, as does any group that contains it
+    group.add(new Layer() {
+      @Override protected void paintImpl (Surface surf) {}
+    });
+    assertNull(group.bounds());
+  }
+
+  @Test public void testHitGrid () {
+    Random rando = new Random(42);
+    GroupLayer plain = new GroupLayer(), indexed = new GroupLayer().setHitGrid(16);
+    int count = 200;
+    for (int ii = 0; ii < count; ii++) {
+      float x = rando.nextFloat()*200, y = rando.nextFloat()*200, size = 5 + rando.nextFloat()*20;
+      float depth = rando.nextInt(3), rot = (ii % 7 == 0) ? rando.nextFloat() : 0;
+      for (GroupLayer group : new GroupLayer[] { plain, indexed }) {
+        ImageLayer layer = new ImageLayer().setSize(size, size);
+        layer.setDepth(depth).setRotation(rot).setInteractive(true);
+        group.addAt(layer, x, y);
+      }
+    }
+    checkHits(rando, plain, indexed);
+
+    // move, hide, reorder and remove some children and make sure the index keeps up
+    for (int ii = 0; ii < 50; ii++) {
+      int idx = rando.nextInt(plain.children());
+      Layer p = plain.childAt(idx), i = indexed.childAt(idx);
+      switch (ii % 5) {
+      case 0:
+        float x = rando.nextFloat()*200, y = rando.nextFloat()*200;
+        p.setTranslation(x, y);
+        i.setTranslation(x, y);
+        break;
+      case 1: p.setVisible(!p.visible()); i.setVisible(!i.visible()); break;
+      case 2: p.setScale(3); i.setScale(3); break;
+      case 3: p.setDepth(ii); i.setDepth(ii); break;
+      case 4: plain.remove(p); indexed.remove(i); break;
+      }
+      checkHits(rando, plain, indexed);
+    }
+
+    // a child with a custom hit tester is checked regardless of its bounds
+    Layer.HitTester absorber = new Layer.HitTester() {
+      public Layer hitTest (Layer layer, Point p) { return layer; }
+    };
+    plain.childAt(plain.children()-1).setHitTester(absorber);
+    indexed.childAt(indexed.children()-1).setHitTester(absorber);
+    checkHits(rando, plain, indexed);
+    assertSame(indexed.childAt(indexed.children()-1),
+               LayerUtil.getHitLayer(indexed, new Point(-500, -500)));
+  }
+
+  @Test public void testHitGridChurn () {
+    // move children around a wide area many times, so that cells are repeatedly emptied and
+    // refilled, and check that the index still finds every child
+    Random rando = new Random(42);
+    GroupLayer plain = new GroupLayer(), indexed = new GroupLayer().setHitGrid(8);
+    for (int ii = 0; ii < 50; ii++) {
+      for (GroupLayer group : new GroupLayer[] { plain, indexed })
+        group.add(new ImageLayer().setSize(10, 10).setInteractive(true));
+    }
+    for (int ii = 0; ii < 20; ii++) {
+      for (int cc = 0; cc < plain.children(); cc++) {
+        float x = rando.nextFloat()*1000-500, y = rando.nextFloat()*1000-500;
+        plain.childAt(cc).setTranslation(x, y);
+        indexed.childAt(cc).setTranslation(x, y);
+      }
+      // query once to bring the index up to date, then check a hit on every child
+      LayerUtil.getHitLayer(indexed, new Point(0, 0));
+      for (int cc = 0; cc < plain.children(); cc++) {
+        Layer child = plain.childAt(cc);
+        float x = child.tx() + 5, y = child.ty() + 5;
+        Layer ph = LayerUtil.getHitLayer(plain, new Point(x, y));
+        Layer ih = LayerUtil.getHitLayer(indexed, new Point(x, y));
+        assertNotNull(ih);
+        int idx = 0;
+        while (plain.childAt(idx) != ph) idx++;
+        assertSame(indexed.childAt(idx), ih);
+      }
+    }
+  }
+
+  protected void checkHits (Random rando, GroupLayer plain, GroupLayer indexed) {
+    Point pp = new Point(), ip = new Point();
+    for (int ii = 0; ii < 500; ii++) {
+      float x = rando.nextFloat()*250-25, y = rando.nextFloat()*250-25;
+      Layer ph = LayerUtil.getHitLayer(plain, pp.set(x, y));
+      Layer ih = LayerUtil.getHitLayer(indexed, ip.set(x, y));
+      if (ph == null) assertNull(ih);
+      else {
+        assertNotNull(ih);
+        assertEquals(plain.children(), indexed.children());
+        int idx = 0;
+        while (plain.childAt(idx) != ph) idx++;
+        assertSame(indexed.childAt(idx), ih);
+        assertEquals(pp, ip);
+      }
+    }
+  }
+
   protected List<Layer> createLayers() {
     int[] zs = { 0, 0, 0, 1, 1, 1, 2, 2, 2, 3, 3, 3, 4 };
     Layer[] layers = new Layer[zs.length];
@@ -15,9 +15,15 @@
  */
 package playn.scene;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
 import org.junit.Test;
 
+import pythagoras.f.FloatMath;
 import pythagoras.f.Point;
+import pythagoras.f.XY;
 import static org.junit.Assert.*;
 
 /**
@@ -116,4 +122,94 @@ public class LayerUtilTest {
 
     root.removeAll();
   }
+
+  @Test public void testCachedTransformsMatchUncached() {
+    Random rando = new Random(42);
+    // build a random tree of groups four deep, with image layers at the leaves
+    GroupLayer root = new GroupLayer();
+    List<Layer> layers = new ArrayList<Layer>();
+    layers.add(root);
+    for (int ii = 0; ii < 40; ii++) {
+      Layer parent = layers.get(rando.nextInt(layers.size()));
+      if (!(parent instanceof GroupLayer)) continue;
+      Layer child = (ii % 3 == 0) ? new ImageLayer().setSize(20, 10) : new GroupLayer();
+      ((GroupLayer)parent).add(child);
+      layers.add(child);
+    }
+    checkTransforms(rando, layers);
+
+    // mutate layers at random and make sure the cached transforms keep up
+    for (int ii = 0; ii < 200; ii++) {
+      Layer layer = layers.get(rando.nextInt(layers.size()));
+      switch (ii % 5) {
+      case 0: layer.setTranslation(rando.nextFloat()*100-50, rando.nextFloat()*100-50); break;
+      case 1: layer.setRotation(rando.nextFloat()*FloatMath.TWO_PI); break;
+      case 2: layer.setScale(0.5f + rando.nextFloat()*2, 0.5f + rando.nextFloat()*2); break;
+      case 3:
+        if (layer.width() > 0) layer.setOrigin(Layer.Origin.CENTER);
+        else layer.setOrigin(rando.nextFloat()*10, rando.nextFloat()*10);
+        break;
+      case 4:
+        // reparent the layer to some group that is not one of its descendants
+        Layer np = layers.get(rando.nextInt(layers.size()));
+        boolean ok = (np instanceof GroupLayer);
+        for (Layer pp = np; ok && pp != null; pp = pp.parent()) ok = (pp != layer);
+        if (ok) ((GroupLayer)np).add(layer);
+        break;
+      }
+      checkTransforms(rando, layers);
+    }
+  }
+
+  @Test public void testDirectTransformChanges() {
+    GroupLayer root = new GroupLayer();
+    GroupLayer group = new GroupLayer();
+    ImageLayer layer = new ImageLayer().setSize(20, 10);
+    root.addAt(group, 10, 10);
+    group.addAt(layer, 5, 5);
+    List<Layer> layers = new ArrayList<Layer>();
+    layers.add(root);
+    layers.add(group);
+    layers.add(layer);
+    Random rando = new Random(42);
+    checkTransforms(rando, layers);
+
+    // changes made directly to the transform matrix, without invalidateBounds(), are noticed by
+    // the cached world transforms of the changed layer and its children
+    group.transform().rotate(0.5f).scale(2, 3);
+    checkTransforms(rando, layers);
+    layer.transform().translate(7, -3);
+    checkTransforms(rando, layers);
+    group.transform().setTransform(1, 0, 0, 1, -20, 40);
+    checkTransforms(rando, layers);
+    Point p = LayerUtil.layerToScreen(layer, 0, 0);
+    assertEquals(-20 + 5 + 7, p.x, tol);
+    assertEquals(40 + 5 - 3, p.y, tol);
+  }
+
+  protected void checkTransforms (Random rando, List<Layer> layers) {
+    Point point = new Point(), cached = new Point(), uncached = new Point();
+    for (Layer layer : layers) {
+      point.set(rando.nextFloat()*200-100, rando.nextFloat()*200-100);
+      LayerUtil.screenToLayer(layer, point, cached);
+      uncachedScreenToLayer(layer, point, uncached);
+      float ctol = tol * Math.max(1, Math.abs(uncached.x) + Math.abs(uncached.y));
+      assertEquals(uncached.x, cached.x, ctol);
+      assertEquals(uncached.y, cached.y, ctol);
+
+      LayerUtil.layerToScreen(layer, point, cached);
+      // layerToParent with a null parent walks the parent chain
+      LayerUtil.layerToParent(layer, null, point, uncached);
+      ctol = tol * Math.max(1, Math.abs(uncached.x) + Math.abs(uncached.y));
+      assertEquals(uncached.x, cached.x, ctol);
+      assertEquals(uncached.y, cached.y, ctol);
+    }
+  }
+
+  // the original (uncached) implementation of screenToLayer
+  protected static Point uncachedScreenToLayer (Layer layer, XY point, Point into) {
+    Layer parent = layer.parent();
+    XY cur = (parent == null) ? point : uncachedScreenToLayer(parent, point, into);
+    return LayerUtil.parentToLayer(layer, cur, into);
+  }
 }
@@ -0,0 +1,183 @@
+/**
+ * Copyright 2010-2015 The PlayN Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package playn.scene;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+import pythagoras.f.Rectangle;
+
+import playn.core.Surface;
+
+/**
+ * Tests damage tracking in {@link RootLayer}.
+ */
+public class RootLayerTest {
+  static final float W = 640, H = 480;
+
+  @Test public void testNoChangeNoDamage () {
+    RootLayer root = createRoot();
+    root.add(new ImageLayer().setSize(10, 10));
+    Rectangle damage = new Rectangle();
+    // the first computation damages the whole view
+    assertTrue(root.computeDamage(W, H, damage));
+    assertEquals(W*H, area(damage), 0);
+    // thereafter nothing changed, so nothing is damaged
+    assertFalse(root.computeDamage(W, H, damage));
+    assertEquals(0, area(damage), 0);
+  }
+
+  @Test public void testMoveDamagesOldAndNew () {
+    RootLayer root = createRoot();
+    ImageLayer layer = new ImageLayer().setSize(10, 10);
+    root.addAt(layer, 10, 10);
+    Rectangle damage = new Rectangle();
+    root.computeDamage(W, H, damage);
+
+    layer.setTranslation(30, 10);
+    assertTrue(root.computeDamage(W, H, damage));
+    assertEquals(new Rectangle(10, 10, 30, 10), damage);
+
+    layer.setAlpha(0.5f);
+    assertTrue(root.computeDamage(W, H, damage));
+    assertEquals(new Rectangle(30, 10, 10, 10), damage);
+  }
+
+  @Test public void testGroupTransformDamagesChildren () {
+    RootLayer root = createRoot();
+    GroupLayer group = new GroupLayer();
+    root.add(group);
+    group.addAt(new ImageLayer().setSize(10, 10), 0, 0);
+    group.addAt(new ImageLayer().setSize(10, 10), 90, 40);
+    Rectangle damage = new Rectangle();
+    root.computeDamage(W, H, damage);
+
+    group.setScale(2);
+    assertTrue(root.computeDamage(W, H, damage));
+    assertEquals(new Rectangle(0, 0, 200, 100), damage);
+
+    // now that the group is scaled, moving a child damages its scaled bounds
+    group.childAt(0).setTranslation(10, 0);
+    assertTrue(root.computeDamage(W, H, damage));
+    assertEquals(new Rectangle(0, 0, 40, 20), damage);
+  }
+
+  @Test public void testRemoveAndHide () {
+    RootLayer root = createRoot();
+    ImageLayer a = new ImageLayer().setSize(10, 10), b = new ImageLayer().setSize(20, 20);
+    root.addAt(a, 5, 5);
+    root.addAt(b, 100, 100);
+    Rectangle damage = new Rectangle();
+    root.computeDamage(W, H, damage);
+
+    root.remove(a);
+    assertTrue(root.computeDamage(W, H, damage));
+    assertEquals(new Rectangle(5, 5, 10, 10), damage);
+
+    b.setVisible(false);
+    assertTrue(root.computeDamage(W, H, damage));
+    assertEquals(new Rectangle(100, 100, 20, 20), damage);
+    // changes to an invisible layer damage nothing
+    b.setTranslation(200, 200);
+    assertFalse(root.computeDamage(W, H, damage));
+    b.setVisible(true);
+    assertTrue(root.computeDamage(W, H, damage));
+    assertEquals(new Rectangle(200, 200, 20, 20), damage);
+
+    // re-adding a layer damages its bounds
+    root.add(a);
+    assertTrue(root.computeDamage(W, H, damage));
+    assertEquals(new Rectangle(5, 5, 10, 10), damage);
+  }
+
+  @Test public void testOffscreenAndUnknownBounds () {
+    RootLayer root = createRoot();
+    ImageLayer layer = new ImageLayer().setSize(10, 10);
+    root.addAt(layer, -100, -100);
+    Layer custom = new Layer() {
+      @Override protected void paintImpl (Surface surf) {} // paints who knows what
+    };
+    root.add(custom);
+    Rectangle damage = new Rectangle();
+    root.computeDamage(W, H, damage);
+
+    // changes entirely outside the view damage nothing
+    layer.setTranslation(-50, -50);
+    assertFalse(root.computeDamage(W, H, damage));
+    // a layer without known bounds damages everything
+    custom.invalidate();
+    assertTrue(root.computeDamage(W, H, damage));
+    assertEquals(W*H, area(damage), 0);
+  }
+
+  @Test public void testSpriteBatchDamagesSprites () {
+    RootLayer root = createRoot();
+    SpriteBatchLayer sprites = new SpriteBatchLayer(SpriteBatchLayerTest.createTexture(10, 10));
+    int frame = sprites.addFrame(0, 0, 10, 10);
+    int idx = sprites.add(frame, 100, 100);
+    sprites.add(frame, 150, 100);
+    root.addAt(sprites, 10, 20);
+    Rectangle damage = new Rectangle();
+    root.computeDamage(W, H, damage);
+
+    // moving a sprite damages the bounds of the batch before and after the move (which include
+    // the bounding circles of its sprites), rather than the whole view
+    float r = (float)Math.sqrt(50);
+    sprites.setSpritePosition(idx, 200, 100);
+    assertTrue(root.computeDamage(W, H, damage));
+    assertRectEquals(new Rectangle(110-r, 120-r, 100+2*r, 2*r), damage);
+
+    sprites.setSpriteTint(idx, 0xFF00FF00);
+    assertTrue(root.computeDamage(W, H, damage));
+    assertRectEquals(new Rectangle(160-r, 120-r, 50+2*r, 2*r), damage);
+  }
+
+  @Test public void testDisabledTracking () {
+    RootLayer root = new RootLayer();
+    ImageLayer layer = new ImageLayer().setSize(10, 10);
+    root.add(layer);
+    layer.setTranslation(10, 10); // must not fail or accumulate anything
+    assertFalse(layer.isSet(Layer.Flag.DIRTY));
+    try {
+      root.computeDamage(W, H, new Rectangle());
+      fail("computeDamage must fail when damage tracking is disabled");
+    } catch (IllegalStateException ise) {} // expected
+
+    // enabling tracking after the fact picks up existing layers
+    root.setTrackDamage(true);
+    Rectangle damage = new Rectangle();
+    root.computeDamage(W, H, damage);
+    layer.setTranslation(20, 20);
+    assertTrue(root.computeDamage(W, H, damage));
+    assertEquals(new Rectangle(10, 10, 20, 20), damage);
+  }
+
+  protected RootLayer createRoot () {
+    RootLayer root = new RootLayer();
+    root.setTrackDamage(true);
+    return root;
+  }
+
+  protected static void assertRectEquals (Rectangle expect, Rectangle actual) {
+    float tol = 0.001f;
+    assertEquals(expect.x, actual.x, tol);
+    assertEquals(expect.y, actual.y, tol);
+    assertEquals(expect.width, actual.width, tol);
+    assertEquals(expect.height, actual.height, tol);
+  }
+
+  protected static float area (Rectangle r) {
+    return r.width * r.height;
+  }
+}
@@ -0,0 +1,118 @@
+/**
+ * Copyright 2010-2015 The PlayN Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package playn.scene;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+import pythagoras.f.AffineTransform;
+import pythagoras.f.FloatMath;
+import pythagoras.f.Rectangle;
+
+/**
+ * Tests {@link ScenePreparer}.
+ */
+public class ScenePreparerTest {
+
+  @Test public void testMatchesLazyComputation () {
+    // build two identical trees; prepare one in parallel and let the other compute lazily
+    List<Layer> prepared = createTree(new Random(42)), lazy = createTree(new Random(42));
+    ForkJoinPool pool = new ForkJoinPool(4);
+    try {
+      ScenePreparer preparer = new ScenePreparer(pool, 8);
+      preparer.prepare(prepared.get(0));
+      checkIdentical(prepared, lazy);
+
+      // mutate both trees identically and make sure the prepared results stay identical
+      Random prando = new Random(7), lrando = new Random(7);
+      for (int ii = 0; ii < 20; ii++) {
+        for (int jj = 0; jj < 25; jj++) {
+          mutate(prando, prepared, jj);
+          mutate(lrando, lazy, jj);
+        }
+        preparer.prepare(prepared.get(0));
+        checkIdentical(prepared, lazy);
+      }
+    } finally {
+      pool.shutdown();
+    }
+  }
+
+  protected List<Layer> createTree (Random rando) {
+    GroupLayer root = new GroupLayer();
+    List<Layer> layers = new ArrayList<Layer>();
+    layers.add(root);
+    // a few groups with many children, so that the preparer splits them across tasks
+    for (int gg = 0; gg < 4; gg++) {
+      GroupLayer group = new GroupLayer();
+      root.addAt(group, rando.nextFloat()*500, rando.nextFloat()*500);
+      layers.add(group);
+      for (int ii = 0; ii < 100; ii++) {
+        Layer child = (ii % 10 == 0) ? new GroupLayer() : new ImageLayer().setSize(20, 10);
+        child.setRotation(rando.nextFloat()*FloatMath.TWO_PI).setScale(0.5f + rando.nextFloat());
+        group.addAt(child, rando.nextFloat()*200, rando.nextFloat()*200);
+        layers.add(child);
+        if (child instanceof GroupLayer) {
+          for (int cc = 0; cc < 5; cc++) {
+            Layer leaf = new ImageLayer().setSize(5, 5).setOrigin(Layer.Origin.CENTER);
+            ((GroupLayer)child).addAt(leaf, rando.nextFloat()*20, rando.nextFloat()*20);
+            layers.add(leaf);
+          }
+        }
+      }
+    }
+    return layers;
+  }
+
+  protected void mutate (Random rando, List<Layer> layers, int op) {
+    Layer layer = layers.get(rando.nextInt(layers.size()));
+    switch (op % 4) {
+    case 0: layer.setTranslation(rando.nextFloat()*100-50, rando.nextFloat()*100-50); break;
+    case 1: layer.setRotation(rando.nextFloat()*FloatMath.TWO_PI); break;
+    case 2: layer.setScale(0.5f + rando.nextFloat()*2); break;
+    case 3: layer.setVisible(!layer.visible()); break;
+    }
+  }
+
+  protected void checkIdentical (List<Layer> prepared, List<Layer> lazy) {
+    for (int ii = 0; ii < prepared.size(); ii++) {
+      Layer p = prepared.get(ii), l = lazy.get(ii);
+      AffineTransform ptx = p.worldTransform(), ltx = l.worldTransform();
+      assertBits(ltx.m00, ptx.m00);
+      assertBits(ltx.m01, ptx.m01);
+      assertBits(ltx.m10, ptx.m10);
+      assertBits(ltx.m11, ptx.m11);
+      assertBits(ltx.tx, ptx.tx);
+      assertBits(ltx.ty, ptx.ty);
+      Rectangle pb = p.parentBounds(), lb = l.parentBounds();
+      if (lb == null) assertNull(pb);
+      else {
+        assertNotNull(pb);
+        assertBits(lb.x, pb.x);
+        assertBits(lb.y, pb.y);
+        assertBits(lb.width, pb.width);
+        assertBits(lb.height, pb.height);
+      }
+    }
+  }
+
+  protected static void assertBits (float expect, float actual) {
+    assertEquals(Float.floatToIntBits(expect), Float.floatToIntBits(actual));
+  }
+}
@@ -0,0 +1,146 @@
+/**
+ * Copyright 2010-2015 The PlayN Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package playn.scene;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+import pythagoras.f.AffineTransform;
+import pythagoras.f.IRectangle;
+import pythagoras.f.Point;
+import pythagoras.f.Rectangle;
+
+import playn.core.QuadBatch;
+import playn.core.Scale;
+import playn.core.Texture;
+import playn.core.Tint;
+
+/**
+ * Tests {@link SpriteBatchLayer}.
+ */
+public class SpriteBatchLayerTest {
+  static float tol = 0.001f; // tolerance for floating point equality checks
+
+  /** Records the corners (in render target coordinates) and tint of each quad added to it. */
+  static class RecordingBatch extends QuadBatch {
+    public final List<float[]> quads = new ArrayList<>();
+    public RecordingBatch () { super(null); }
+    @Override public void addQuad (int tint,
+                                   float m00, float m01, float m10, float m11, float tx, float ty,
+                                   float x1, float y1, float sx1, float sy1,
+                                   float x2, float y2, float sx2, float sy2,
+                                   float x3, float y3, float sx3, float sy3,
+                                   float x4, float y4, float sx4, float sy4) {
+      float[] xys = { x1, y1, x2, y2, x3, y3, x4, y4 };
+      float[] quad = new float[9];
+      for (int ii = 0; ii < 8; ii += 2) {
+        quad[ii]   = m00*xys[ii] + m10*xys[ii+1] + tx;
+        quad[ii+1] = m01*xys[ii] + m11*xys[ii+1] + ty;
+      }
+      quad[8] = Float.intBitsToFloat(tint);
+      quads.add(quad);
+    }
+  }
+
+  @Test public void testMatchesImageLayer () {
+    Texture tex = createTexture(64, 32);
+    SpriteBatchLayer sprites = new SpriteBatchLayer(tex, 2);
+    int half = sprites.addFrame(0, 0, 32, 32);
+    float[][] params = { // frame, x, y, rotation, scale
+      { 0, 10, 20, 0, 1 }, { half, 100, 50, 0.7f, 2 }, { 0, -30, 5, -2.1f, 0.5f },
+      { half, 0, 0, 3, 1.5f }
+    };
+    for (float[] ps : params) {
+      int idx = sprites.add((int)ps[0], ps[1], ps[2]);
+      sprites.setSpriteRotation(idx, ps[3]).setSpriteScale(idx, ps[4]);
+    }
+    assertEquals(params.length, sprites.size());
+
+    AffineTransform xf = new AffineTransform(2, 0.5f, 15, -10);
+    RecordingBatch batch = new RecordingBatch();
+    sprites.addToBatch(batch, Tint.NOOP_TINT, xf);
+    assertEquals(params.length, batch.quads.size());
+
+    for (int ii = 0; ii < params.length; ii++) {
+      float[] ps = params[ii];
+      // configure an image layer to display the same thing as the sprite
+      ImageLayer layer = new ImageLayer().setSize(ps[0] == 0 ? 64 : 32, 32);
+      layer.setOrigin(Layer.Origin.CENTER).setTranslation(ps[1], ps[2]).
+        setRotation(ps[3]).setScale(ps[4]);
+      float[] quad = batch.quads.get(ii);
+      float[][] corners = { { 0, 0 }, { layer.width(), 0 }, { 0, layer.height() },
+                            { layer.width(), layer.height() } };
+      for (int cc = 0; cc < corners.length; cc++) {
+        Point p = new Point(corners[cc][0] - layer.originX(), corners[cc][1] - layer.originY());
+        xf.transform(layer.transform().transform(p, p), p);
+        assertEquals(p.x, quad[cc*2], tol);
+        assertEquals(p.y, quad[cc*2+1], tol);
+      }
+    }
+  }
+
+  @Test public void testRemoveAndTint () {
+    SpriteBatchLayer sprites = new SpriteBatchLayer(createTexture(10, 10));
+    for (int ii = 0; ii < 100; ii++) sprites.add(0, ii, ii);
+    // removal moves the last sprite into the vacated slot
+    sprites.remove(10);
+    assertEquals(99, sprites.size());
+    assertEquals(99, sprites.spriteX(10), 0);
+    sprites.remove(98);
+    assertEquals(98, sprites.size());
+
+    sprites.setSpriteTint(0, 0x80FF0000);
+    RecordingBatch batch = new RecordingBatch();
+    sprites.addToBatch(batch, 0xFF00FF00, new AffineTransform());
+    assertEquals(98, batch.quads.size());
+    assertEquals(Tint.combine(0x80FF0000, 0xFF00FF00),
+                 Float.floatToRawIntBits(batch.quads.get(0)[8]));
+    assertEquals(0xFF00FF00, Float.floatToRawIntBits(batch.quads.get(1)[8]));
+
+    try {
+      sprites.setSpritePosition(98, 0, 0);
+      fail("Out of bounds sprite index must fail");
+    } catch (IndexOutOfBoundsException e) {} // expected
+  }
+
+  @Test public void testBulkUpdatesAndBounds () {
+    SpriteBatchLayer sprites = new SpriteBatchLayer(createTexture(10, 10));
+    for (int ii = 0; ii < 4; ii++) sprites.add(0, 0, 0);
+    sprites.setPositions(0, 4, new float[] { 0, 0, 10, 0, 0, 10, 10, 10 }, 0);
+    sprites.translate(2, 2, new float[] { 5, 5, 5, 5 }, 0, 2);
+    assertEquals(20, sprites.spriteX(3), 0);
+    assertEquals(20, sprites.spriteY(3), 0);
+
+    // bounds include the bounding circles of each sprite
+    float r = (float)Math.sqrt(50);
+    assertBounds(new Rectangle(-r, -r, 20+2*r, 20+2*r), sprites);
+    sprites.setScales(0, 4, new float[] { 2, 2, 2, 2 }, 0);
+    assertBounds(new Rectangle(-2*r, -2*r, 20+4*r, 20+4*r), sprites);
+  }
+
+  protected static void assertBounds (Rectangle expect, Layer layer) {
+    IRectangle bounds = layer.bounds();
+    assertEquals(expect.x, bounds.x(), tol);
+    assertEquals(expect.y, bounds.y(), tol);
+    assertEquals(expect.width, bounds.width(), tol);
+    assertEquals(expect.height, bounds.height(), tol);
+  }
+
+  protected static Texture createTexture (int width, int height) {
+    return new Texture(null, 1, Texture.Config.UNMANAGED, width, height, Scale.ONE, width, height);
+  }
+}